@@ -26,6 +26,7 @@ import org.openstreetmap.josm.Main;
 import org.openstreetmap.josm.data.Version;
 import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.DatasetConsistencyTest;
+import org.openstreetmap.josm.data.osm.TagSetPool;
 import org.openstreetmap.josm.data.preferences.Setting;
 import org.openstreetmap.josm.gui.ExtendedDialog;
 import org.openstreetmap.josm.gui.preferences.SourceEditor;
@@ -178,6 +179,11 @@ public final class ShowStatusReportAction extends JosmAction {
                 } else {
                     text.append("\nDataset consistency test:\n").append(result).append('\n');
                 }
+                TagSetPool pool = dataset.getTagSetPool();
+                text.append("Shared tag sets: ").append(pool.getTagSetCount())
+                    .append(" used by ").append(pool.getReferenceCount())
+                    .append(" primitives (").append(pool.getSavedBytes()/1024)
+                    .append(" KB saved)\n");
             }
         }
         text.append('\n');
@@ -26,6 +26,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 import javax.swing.ButtonGroup;
 import javax.swing.JCheckBox;
@@ -673,8 +674,13 @@ public class SearchAction extends JosmAction implements ParameterizedAction {
                 }
 
                 Collection<OsmPrimitive> all;
+                // in_selection needs the selected primitives which do not match
+                Collection<OsmPrimitive> candidates = setting.allElements || setting.mode == SearchMode.in_selection
+                        ? null : matcher.getCandidates(ds);
                 if (setting.allElements) {
                     all = ds.allPrimitives();
+                } else if (candidates != null) {
+                    all = candidates.stream().filter(OsmPrimitive::isSelectable).collect(Collectors.toList());
                 } else {
                     all = ds.getPrimitives(OsmPrimitive::isSelectable);
                 }
@@ -25,6 +25,7 @@ import org.openstreetmap.josm.actions.search.PushbackTokenizer.Range;
 import org.openstreetmap.josm.actions.search.PushbackTokenizer.Token;
 import org.openstreetmap.josm.data.Bounds;
 import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.Node;
 import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
@@ -274,6 +275,16 @@ public class SearchCompiler {
             return false;
         }
 
+        /**
+         * Returns the primitives of a data set which may match this criterion, if they can be found without testing
+         * all primitives, using the {@link DataSet#getTagIndex() tag index}.
+         * @param ds the data set
+         * @return the non-deleted primitives which may match, or {@code null} if any primitive may match
+         */
+        public Collection<OsmPrimitive> getCandidates(DataSet ds) {
+            return null;
+        }
+
         @Override
         public final boolean test(OsmPrimitive object) {
             return match(object);
@@ -454,6 +465,16 @@ public class SearchCompiler {
             return lhs.match(osm) && rhs.match(osm);
         }
 
+        @Override
+        public Collection<OsmPrimitive> getCandidates(DataSet ds) {
+            Collection<OsmPrimitive> left = lhs.getCandidates(ds);
+            Collection<OsmPrimitive> right = rhs.getCandidates(ds);
+            if (left == null || (right != null && right.size() < left.size())) {
+                return right;
+            }
+            return left;
+        }
+
         @Override
         public String toString() {
             return (lhs instanceof AbstractBinaryMatch && !(lhs instanceof And) ? parenthesis(lhs) : lhs) + " && "
@@ -865,6 +886,18 @@ public class SearchCompiler {
             throw new AssertionError("Missed state");
         }
 
+        @Override
+        public Collection<OsmPrimitive> getCandidates(DataSet ds) {
+            switch (mode) {
+            case ANY_VALUE:
+                return ds.getTagIndex().getPrimitives(key);
+            case EXACT:
+                return ds.getTagIndex().getPrimitives(key, value);
+            default:
+                return null;
+            }
+        }
+
         @Override
         public String toString() {
             return key + '=' + value;
@@ -19,6 +19,7 @@ import org.openstreetmap.josm.data.validation.OsmValidator;
 import org.openstreetmap.josm.data.validation.Severity;
 import org.openstreetmap.josm.data.validation.Test;
 import org.openstreetmap.josm.data.validation.TestError;
+import org.openstreetmap.josm.data.validation.TestRunner;
 import org.openstreetmap.josm.data.validation.util.AggregatePrimitivesVisitor;
 import org.openstreetmap.josm.gui.ExtendedDialog;
 import org.openstreetmap.josm.gui.dialogs.validator.ValidatorTreePanel;
@@ -54,20 +55,18 @@ public class ValidateUploadHook implements UploadHook {
         Collection<OsmPrimitive> selection = v.visit(apiDataSet.getPrimitivesToUpdate());
 
         List<TestError> errors = new ArrayList<>(30);
-        for (Test test : tests) {
-            test.setBeforeUpload(true);
-            test.setPartialSelection(true);
-            test.startTest(null);
-            test.visit(selection);
-            test.endTest();
-            if (ValidatorPreference.PREF_OTHER.get() && ValidatorPreference.PREF_OTHER_UPLOAD.get()) {
-                errors.addAll(test.getErrors());
-            } else {
-                for (TestError e : test.getErrors()) {
-                    if (e.getSeverity() != Severity.OTHER) {
-                        errors.add(e);
-                    }
-                }
+        List<TestError> testErrors;
+        synchronized (OsmValidator.getTestLock()) {
+            for (Test test : tests) {
+                test.setBeforeUpload(true);
+                test.setPartialSelection(true);
+            }
+            testErrors = TestRunner.runTests(tests, selection, test -> null);
+        }
+        for (TestError e : testErrors) {
+            if (e.getSeverity() != Severity.OTHER
+                    || (ValidatorPreference.PREF_OTHER.get() && ValidatorPreference.PREF_OTHER_UPLOAD.get())) {
+                errors.add(e);
             }
         }
         OsmDataLayer editLayer = Main.getLayerManager().getEditLayer();
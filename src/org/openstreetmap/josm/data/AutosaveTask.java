@@ -14,16 +14,20 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
@@ -31,7 +35,12 @@ import java.util.regex.Pattern;
 import org.openstreetmap.josm.Main;
 import org.openstreetmap.josm.actions.OpenFileAction.OpenFileTask;
 import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.PrimitiveData;
+import org.openstreetmap.josm.data.osm.PrimitiveId;
+import org.openstreetmap.josm.data.osm.SimplePrimitiveId;
 import org.openstreetmap.josm.data.osm.event.AbstractDatasetChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataChangedEvent;
 import org.openstreetmap.josm.data.osm.event.DataSetListenerAdapter;
 import org.openstreetmap.josm.data.osm.event.DataSetListenerAdapter.Listener;
 import org.openstreetmap.josm.data.preferences.BooleanProperty;
@@ -42,7 +51,10 @@ import org.openstreetmap.josm.gui.layer.LayerManager.LayerChangeListener;
 import org.openstreetmap.josm.gui.layer.LayerManager.LayerOrderChangeEvent;
 import org.openstreetmap.josm.gui.layer.LayerManager.LayerRemoveEvent;
 import org.openstreetmap.josm.gui.layer.OsmDataLayer;
+import org.openstreetmap.josm.gui.progress.PleaseWaitProgressMonitor;
 import org.openstreetmap.josm.gui.util.GuiHelper;
+import org.openstreetmap.josm.io.AutosaveJournal;
+import org.openstreetmap.josm.io.IllegalDataException;
 import org.openstreetmap.josm.io.OsmExporter;
 import org.openstreetmap.josm.io.OsmImporter;
 import org.openstreetmap.josm.tools.Utils;
@@ -63,6 +75,11 @@ import org.openstreetmap.josm.tools.Utils;
  *
  *      The deleted layers dir keeps at most PROP_DELETED_LAYERS files.
  *
+ * If PROP_JOURNAL is enabled, a layer is only saved completely once. The following autosaves append the changed
+ * primitives to a journal next to this snapshot, see {@link AutosaveJournal}. A new snapshot is written when the journal
+ * exceeds PROP_JOURNAL_SNAPSHOT_RECORDS records or when the changes are unknown. A journal is moved together with its
+ * snapshot, and applied in memory when the layer is recovered.
+ *
  * @since  3378 (creation)
  * @since 10386 (new LayerChangeListener interface)
  */
@@ -79,12 +96,20 @@ public class AutosaveTask extends TimerTask implements LayerChangeListener, List
     public static final IntegerProperty PROP_INDEX_LIMIT = new IntegerProperty("autosave.index-limit", 1000);
     /** Defines if a notification should be displayed after each autosave */
     public static final BooleanProperty PROP_NOTIFICATION = new BooleanProperty("autosave.notification", false);
+    /** Defines if the changes are appended to a journal instead of saving the complete layer each time */
+    public static final BooleanProperty PROP_JOURNAL = new BooleanProperty("autosave.journal", false);
+    /** Defines the number of journal records after which a new snapshot of the layer is saved */
+    public static final IntegerProperty PROP_JOURNAL_SNAPSHOT_RECORDS = new IntegerProperty("autosave.journal.snapshot-records", 100_000);
 
     protected static final class AutosaveLayerInfo {
         private final OsmDataLayer layer;
         private String layerName;
         private String layerFileName;
         private final Deque<File> backupFiles = new LinkedList<>();
+        private int journalRecords;
+        private int dataSourceCount;
+        /** The ids of the new primitives, as written to the snapshot or journal. Only used in journal mode */
+        private final Map<OsmPrimitive, Long> journalIds = new IdentityHashMap<>();
 
         AutosaveLayerInfo(OsmDataLayer layer) {
             this.layer = layer;
@@ -93,6 +118,8 @@ public class AutosaveTask extends TimerTask implements LayerChangeListener, List
 
     private final DataSetListenerAdapter datasetAdapter = new DataSetListenerAdapter(this);
     private final Set<DataSet> changedDatasets = new HashSet<>();
+    /** The primitives changed since the last autosave, {@code null} values if they are unknown. Only used in journal mode */
+    private final Map<DataSet, Set<OsmPrimitive>> changedPrimitives = new HashMap<>();
     private final List<AutosaveLayerInfo> layersInfo = new ArrayList<>();
     private final Object layersLock = new Object();
     private final Deque<File> deletedLayers = new LinkedList<>();
@@ -127,7 +154,9 @@ public class AutosaveTask extends TimerTask implements LayerChangeListener, List
             File[] files = deletedLayersDir.listFiles();
             if (files != null) {
                 for (File f: files) {
-                    deletedLayers.add(f); // FIXME: sort by mtime
+                    if (!AutosaveJournal.isJournal(f)) {
+                        deletedLayers.add(f); // FIXME: sort by mtime
+                    }
                 }
             }
 
@@ -207,18 +236,127 @@ public class AutosaveTask extends TimerTask implements LayerChangeListener, List
             info.layerName = info.layer.getName();
         }
         if (changedDatasets.remove(info.layer.data)) {
-            File file = getNewLayerFile(info, new Date(), 0);
-            if (file != null) {
-                info.backupFiles.add(file);
-                new OsmExporter().exportData(file, info.layer, true /* no backup with appended ~ */);
+            Set<OsmPrimitive> changed;
+            synchronized (changedPrimitives) {
+                changed = changedPrimitives.remove(info.layer.data);
+            }
+            if (!PROP_JOURNAL.get() || !appendToJournal(info, changed)) {
+                File file = getNewLayerFile(info, new Date(), 0);
+                if (file != null) {
+                    info.backupFiles.add(file);
+                    info.journalRecords = 0;
+                    info.dataSourceCount = info.layer.data.dataSources.size();
+                    rememberNewIds(info);
+                    new OsmExporter().exportData(file, info.layer, true /* no backup with appended ~ */);
+                }
             }
         }
         while (info.backupFiles.size() > PROP_FILES_PER_LAYER.get()) {
             File oldFile = info.backupFiles.remove();
             if (Utils.deleteFile(oldFile, marktr("Unable to delete old backup file {0}"))) {
                 Utils.deleteFile(getPidFile(oldFile), marktr("Unable to delete old backup file {0}"));
+                deleteJournal(oldFile);
+            }
+        }
+    }
+
+    /**
+     * Appends the changed primitives to the journal of the last snapshot of a layer.
+     * @param info the layer
+     * @param changed the changed primitives, {@code null} if unknown
+     * @return {@code true} if the changes have been saved, {@code false} if a new snapshot must be saved
+     */
+    private boolean appendToJournal(AutosaveLayerInfo info, Set<OsmPrimitive> changed) {
+        DataSet ds = info.layer.data;
+        File snapshot = info.backupFiles.peekLast();
+        if (snapshot == null || changed == null || ds.dataSources.size() != info.dataSourceCount
+                || info.journalRecords + changed.size() > PROP_JOURNAL_SNAPSHOT_RECORDS.get()) {
+            return false;
+        }
+        Map<PrimitiveId, PrimitiveId> idChanges = new LinkedHashMap<>();
+        List<PrimitiveData> states = new ArrayList<>(changed.size());
+        List<PrimitiveId> removed = new ArrayList<>();
+        ds.getReadLock().lock();
+        try {
+            for (OsmPrimitive p : changed) {
+                // new primitives get a new id when they are uploaded, the journal must refer to the id it knows
+                Long journalId = info.journalIds.remove(p);
+                PrimitiveId id = journalId != null ? new SimplePrimitiveId(journalId, p.getType()) : p.getPrimitiveId();
+                if (p.getDataSet() == ds) {
+                    if (!id.equals(p.getPrimitiveId())) {
+                        idChanges.put(id, p.getPrimitiveId());
+                    }
+                    if (p.isNew()) {
+                        info.journalIds.put(p, p.getUniqueId());
+                    }
+                    states.add(p.save());
+                } else {
+                    removed.add(id);
+                }
+            }
+        } finally {
+            ds.getReadLock().unlock();
+        }
+        try {
+            AutosaveJournal.append(AutosaveJournal.getJournalFile(snapshot), idChanges, states, removed);
+            info.journalRecords += changed.size();
+            return true;
+        } catch (IOException e) {
+            Main.error(e, tr("IOError while writing autosave journal, a new snapshot will be saved: {0}", e.getMessage()));
+            return false;
+        }
+    }
+
+    /**
+     * Remembers the ids of the new primitives of a layer before a snapshot is saved. Ids changed later, e.g. by an upload,
+     * are recorded in the journal.
+     * @param info the layer
+     */
+    private static void rememberNewIds(AutosaveLayerInfo info) {
+        info.journalIds.clear();
+        if (!PROP_JOURNAL.get()) {
+            return;
+        }
+        DataSet ds = info.layer.data;
+        ds.getReadLock().lock();
+        try {
+            for (OsmPrimitive p : ds.allPrimitives()) {
+                if (p.isNew()) {
+                    info.journalIds.put(p, p.getUniqueId());
+                }
             }
+        } finally {
+            ds.getReadLock().unlock();
+        }
+    }
+
+    private static void deleteJournal(File snapshot) {
+        AutosaveJournal.delete(snapshot);
+    }
+
+    /**
+     * Recovers a snapshot with its journal applied, without writing the result back.
+     * @param snapshot the snapshot file
+     * @return {@code true} if the layer has been recovered, {@code false} if the snapshot has to be opened as is
+     */
+    private boolean recoverJournal(File snapshot) {
+        File journal = AutosaveJournal.getJournalFile(snapshot);
+        PleaseWaitProgressMonitor monitor = new PleaseWaitProgressMonitor(tr("Restoring files"));
+        try {
+            DataSet ds = AutosaveJournal.load(snapshot, journal, monitor);
+            OsmDataLayer layer = new OsmDataLayer(ds, snapshot.getName(), snapshot);
+            GuiHelper.runInEDT(() -> {
+                Main.getLayerManager().addLayer(layer);
+                layer.onPostLoadFromFile();
+            });
+        } catch (IOException | IllegalDataException e) {
+            Main.error(e, tr("Unable to apply autosave journal {0}: {1}", journal.getName(), e.getMessage()));
+            return false;
+        } finally {
+            monitor.close();
         }
+        moveToDeletedLayersFolder(snapshot);
+        return true;
     }
 
     @Override
@@ -271,6 +409,9 @@ public class AutosaveTask extends TimerTask implements LayerChangeListener, List
             synchronized (layersLock) {
                 OsmDataLayer osmLayer = (OsmDataLayer) e.getRemovedLayer();
                 osmLayer.data.removeDataSetListener(datasetAdapter);
+                synchronized (changedPrimitives) {
+                    changedPrimitives.remove(osmLayer.data);
+                }
                 Iterator<AutosaveLayerInfo> it = layersInfo.iterator();
                 while (it.hasNext()) {
                     AutosaveLayerInfo info = it.next();
@@ -279,11 +420,13 @@ public class AutosaveTask extends TimerTask implements LayerChangeListener, List
                         savelayer(info);
                         File lastFile = info.backupFiles.pollLast();
                         if (lastFile != null) {
+                            // the journal is moved with its snapshot, it is applied when the layer is recovered
                             moveToDeletedLayersFolder(lastFile);
                         }
                         for (File file: info.backupFiles) {
                             if (Utils.deleteFile(file)) {
                                 Utils.deleteFile(getPidFile(file));
+                                deleteJournal(file);
                             }
                         }
 
@@ -297,6 +440,36 @@ public class AutosaveTask extends TimerTask implements LayerChangeListener, List
     @Override
     public void processDatasetEvent(AbstractDatasetChangedEvent event) {
         changedDatasets.add(event.getDataset());
+        if (PROP_JOURNAL.get()) {
+            DataSet ds = event.getDataset();
+            synchronized (changedPrimitives) {
+                if (!changedPrimitives.containsKey(ds)) {
+                    // identity set, the ids of new primitives change when they are uploaded
+                    changedPrimitives.put(ds, Collections.newSetFromMap(new IdentityHashMap<>()));
+                }
+                Set<OsmPrimitive> changed = changedPrimitives.get(ds);
+                if (changed != null && !collectPrimitives(event, changed)) {
+                    changedPrimitives.put(ds, null);
+                }
+            }
+        }
+    }
+
+    private static boolean collectPrimitives(AbstractDatasetChangedEvent event, Set<OsmPrimitive> changed) {
+        if (event instanceof DataChangedEvent) {
+            List<AbstractDatasetChangedEvent> events = ((DataChangedEvent) event).getEvents();
+            if (events == null) {
+                return false;
+            }
+            for (AbstractDatasetChangedEvent e : events) {
+                if (!collectPrimitives(e, changed)) {
+                    return false;
+                }
+            }
+        } else {
+            changed.addAll(event.getPrimitives());
+        }
+        return true;
     }
 
     protected File getPidFile(File osmFile) {
@@ -351,17 +524,18 @@ public class AutosaveTask extends TimerTask implements LayerChangeListener, List
      */
     public Future<?> recoverUnsavedLayers() {
         List<File> files = getUnsavedLayersFiles();
-        final OpenFileTask openFileTsk = new OpenFileTask(files, null, tr("Restoring files"));
-        final Future<?> openFilesFuture = Main.worker.submit(openFileTsk);
         return Main.worker.submit(() -> {
-            try {
-                // Wait for opened tasks to be generated.
-                openFilesFuture.get();
-                for (File f: openFileTsk.getSuccessfullyOpenedFiles()) {
-                    moveToDeletedLayersFolder(f);
+            // snapshots with a journal are loaded with the journal applied, the others are opened as usual
+            List<File> snapshots = new ArrayList<>();
+            for (File f: files) {
+                if (!AutosaveJournal.exists(f) || !recoverJournal(f)) {
+                    snapshots.add(f);
                 }
-            } catch (InterruptedException | ExecutionException e) {
-                Main.error(e);
+            }
+            OpenFileTask openFileTsk = new OpenFileTask(snapshots, null, tr("Restoring files"));
+            openFileTsk.run();
+            for (File f: openFileTsk.getSuccessfullyOpenedFiles()) {
+                moveToDeletedLayersFolder(f);
             }
         });
     }
@@ -382,6 +556,12 @@ public class AutosaveTask extends TimerTask implements LayerChangeListener, List
             deletedLayers.remove(backupFile);
             Utils.deleteFile(backupFile, marktr("Unable to delete old backup file {0}"));
         }
+        try {
+            // the journal is kept with its snapshot
+            AutosaveJournal.move(f, backupFile);
+        } catch (IOException e) {
+            Main.warn(e, String.format("Could not move autosave journal of %s to %s folder", f.getName(), deletedLayersDir.getName()));
+        }
         if (f.renameTo(backupFile)) {
             deletedLayers.add(backupFile);
             Utils.deleteFile(pidFile);
@@ -390,6 +570,8 @@ public class AutosaveTask extends TimerTask implements LayerChangeListener, List
             // we cannot move to deleted folder, so just try to delete it directly
             if (Utils.deleteFile(f, marktr("Unable to delete backup file {0}"))) {
                 Utils.deleteFile(pidFile, marktr("Unable to delete PID file {0}"));
+                deleteJournal(backupFile);
+                deleteJournal(f);
             }
         }
         while (deletedLayers.size() > PROP_DELETED_LAYERS.get()) {
@@ -398,6 +580,7 @@ public class AutosaveTask extends TimerTask implements LayerChangeListener, List
                 break;
             }
             Utils.deleteFile(next, marktr("Unable to delete archived backup file {0}"));
+            deleteJournal(next);
         }
     }
 
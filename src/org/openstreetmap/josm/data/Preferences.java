@@ -1421,6 +1421,12 @@ public class Preferences {
             Main.info(tr("Try enabling IPv6 network, prefering IPv6 over IPv4 (only works on early startup)."));
         }
         Utils.updateSystemProperty("http.agent", Version.getInstance().getAgentString());
+        // HttpURLConnection keeps idle connections for reuse (HTTP keep-alive) in a pool shared by all requests.
+        // Allow as many idle connections per host as there are concurrent download threads, e.g. for imagery tiles.
+        // Only read when the first connection is made, and not overridden if set on the command line
+        if (System.getProperty("http.maxConnections") == null) {
+            Utils.updateSystemProperty("http.maxConnections", Integer.toString(getInteger("socket.max-idle-connections-per-host", 10)));
+        }
         Utils.updateSystemProperty("user.language", get("language"));
         // Workaround to fix a Java bug. This ugly hack comes from Sun bug database: https://bugs.openjdk.java.net/browse/JDK-6292739
         // Force AWT toolkit to update its internal preferences (fix #6345).
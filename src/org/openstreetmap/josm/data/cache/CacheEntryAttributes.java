@@ -50,6 +50,15 @@ public class CacheEntryAttributes extends ElementAttributes {
         attrs.put(HTTP_RESPONSE_CODE, "200");
     }
 
+    /**
+     * Constructs a new {@code CacheEntryAttributes} with stored attributes.
+     * @param attributes the attributes, as returned by {@link #getMetadata()}
+     */
+    CacheEntryAttributes(Map<String, String> attributes) {
+        super();
+        attrs.putAll(attributes);
+    }
+
     /**
      * @return if the entry is marked as "no tile at this zoom level"
      */
@@ -17,6 +17,9 @@ import org.openstreetmap.josm.Main;
  * Queue for ThreadPoolExecutor that implements per-host limit. It will acquire a semaphore for each task
  * and it will set a runnable task with semaphore release, when job has finished.
  * <p>
+ * Among the hosts that have not reached their limit, the job with the lowest {@link JCSCachedTileLoaderJob#getPriority()}
+ * is taken first, jobs with equal priority in FIFO order.
+ * <p>
  * This implementation doesn't guarantee to have at most hostLimit connections per host[1], and it doesn't
  * guarantee that all threads will be busy, when there is work for them[2]. <br>
  * [1] More connection per host may happen, when ThreadPoolExecutor is growing its pool, and thus
@@ -49,30 +52,45 @@ public class HostLimitQueue extends LinkedBlockingDeque<Runnable> {
     }
 
     private JCSCachedTileLoaderJob<?, ?> findJob() {
-        for (Iterator<Runnable> it = iterator(); it.hasNext();) {
-            Runnable r = it.next();
-            if (r instanceof JCSCachedTileLoaderJob) {
-                JCSCachedTileLoaderJob<?, ?> job = (JCSCachedTileLoaderJob<?, ?>) r;
-                if (tryAcquireSemaphore(job)) {
-                    if (remove(job)) {
-                        return job;
-                    } else {
-                        // we have acquired the semaphore, but we didn't manage to remove job, as someone else did
-                        // release the semaphore and look for another candidate
-                        releaseSemaphore(job);
+        while (true) {
+            // look for the job with the lowest priority value among the hosts, that have not reached their limit
+            JCSCachedTileLoaderJob<?, ?> best = null;
+            int bestPriority = 0;
+            for (Iterator<Runnable> it = iterator(); it.hasNext();) {
+                Runnable r = it.next();
+                if (r instanceof JCSCachedTileLoaderJob) {
+                    JCSCachedTileLoaderJob<?, ?> job = (JCSCachedTileLoaderJob<?, ?>) r;
+                    int priority = job.getPriority();
+                    if (best != null && priority >= bestPriority) {
+                        continue;
                     }
-                } else {
-                    URL url = null;
-                    try {
-                        url = job.getUrl();
-                    } catch (IOException e) {
-                        Main.debug(e);
+                    if (getSemaphore(job).availablePermits() > 0) {
+                        best = job;
+                        bestPriority = priority;
+                    } else if (Main.isDebugEnabled()) {
+                        URL url = null;
+                        try {
+                            url = job.getUrl();
+                        } catch (IOException e) {
+                            Main.debug(e);
+                        }
+                        Main.debug("TMS - Skipping job {0} because host limit reached", url);
                     }
-                    Main.debug("TMS - Skipping job {0} because host limit reached", url);
                 }
             }
+            if (best == null) {
+                return null;
+            }
+            if (tryAcquireSemaphore(best)) {
+                if (remove(best)) {
+                    return best;
+                }
+                // we have acquired the semaphore, but we didn't manage to remove job, as someone else did
+                // release the semaphore and look for another candidate
+                releaseSemaphore(best);
+            }
+            // otherwise another thread took the last permit of the host in the meantime, look again
         }
-        return null;
     }
 
     @Override
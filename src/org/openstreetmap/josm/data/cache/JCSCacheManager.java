@@ -46,9 +46,32 @@ public final class JCSCacheManager {
     private static long maxObjectTTL = -1;
     private static final String PREFERENCE_PREFIX = "jcs.cache";
     public static final BooleanProperty USE_BLOCK_CACHE = new BooleanProperty(PREFERENCE_PREFIX + ".use_block_cache", true);
+    /**
+     * Use the {@link MappedDiskCache} for disk caches. Takes precedence over {@link #USE_BLOCK_CACHE}.
+     * Off by default, as enabling it discards the existing block or indexed disk caches.
+     */
+    public static final BooleanProperty USE_MAPPED_CACHE = new BooleanProperty(PREFERENCE_PREFIX + ".use_mapped_cache", false);
+
+    private static final String BLOCK_SUFFIX = "_BLOCK_v2";
+    private static final String INDEX_SUFFIX = "_INDEX_v2";
+    /**
+     * Suffix of the directories of {@link MappedDiskCache}s.
+     */
+    public static final String MAPPED_SUFFIX = "_MAPPED_v1";
+    /** the segments of a mapped cache are at most 64 MB, and a sixteenth of the cache size */
+    private static final int MAX_SEGMENT_SIZE = 64 * 1024 * 1024;
+    private static final int MIN_SEGMENT_SIZE = 256 * 1024;
 
-    private static final AuxiliaryCacheFactory diskCacheFactory =
-            USE_BLOCK_CACHE.get() ? new BlockDiskCacheFactory() : new IndexedDiskCacheFactory();
+    private static final AuxiliaryCacheFactory diskCacheFactory;
+    static {
+        if (USE_MAPPED_CACHE.get()) {
+            diskCacheFactory = new MappedDiskCacheFactory();
+        } else if (USE_BLOCK_CACHE.get()) {
+            diskCacheFactory = new BlockDiskCacheFactory();
+        } else {
+            diskCacheFactory = new IndexedDiskCacheFactory();
+        }
+    }
     private static FileLock cacheDirLock;
 
     /**
@@ -199,12 +222,27 @@ public final class JCSCacheManager {
         }
     }
 
-    private static IDiskCacheAttributes getDiskCacheAttributes(int maxDiskObjects, String cachePath, String cacheName) {
+    static IDiskCacheAttributes getDiskCacheAttributes(int maxDiskObjects, String cachePath, String cacheName) {
         IDiskCacheAttributes ret;
-        removeStaleFiles(cachePath + File.separator + cacheName, USE_BLOCK_CACHE.get() ? "_INDEX_v2" : "_BLOCK_v2");
-        String newCacheName = cacheName + (USE_BLOCK_CACHE.get() ? "_BLOCK_v2" : "_INDEX_v2");
+        String basePath = cachePath + File.separator + cacheName;
+        String newCacheName;
+        if (USE_MAPPED_CACHE.get()) {
+            removeStaleFiles(basePath, BLOCK_SUFFIX);
+            removeStaleFiles(basePath, INDEX_SUFFIX);
+            newCacheName = cacheName + MAPPED_SUFFIX;
+        } else {
+            removeStaleFiles(basePath, USE_BLOCK_CACHE.get() ? INDEX_SUFFIX : BLOCK_SUFFIX);
+            Utils.deleteDirectory(new File(basePath + MAPPED_SUFFIX));
+            newCacheName = cacheName + (USE_BLOCK_CACHE.get() ? BLOCK_SUFFIX : INDEX_SUFFIX);
+        }
 
-        if (USE_BLOCK_CACHE.get()) {
+        if (USE_MAPPED_CACHE.get()) {
+            MappedDiskCacheAttributes mappedAttr = new MappedDiskCacheAttributes();
+            long maxBytes = maxDiskObjects * 1024L;
+            mappedAttr.setMaxBytes(maxBytes);
+            mappedAttr.setSegmentSize((int) Math.max(MIN_SEGMENT_SIZE, Math.min(MAX_SEGMENT_SIZE, maxBytes / 16)));
+            ret = mappedAttr;
+        } else if (USE_BLOCK_CACHE.get()) {
             BlockDiskCacheAttributes blockAttr = new BlockDiskCacheAttributes();
             /*
              * BlockDiskCache never optimizes the file, so when file size is reduced, it will never be truncated to desired size.
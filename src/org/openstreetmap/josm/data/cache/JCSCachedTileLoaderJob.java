@@ -97,6 +97,7 @@ public abstract class JCSCachedTileLoaderJob<K, V extends CacheEntry> implements
     private final ThreadPoolExecutor downloadJobExecutor;
     private Runnable finishTask;
     private boolean force;
+    private volatile int priority;
 
     /**
      * @param cache cache instance that we will work on
@@ -174,10 +175,25 @@ public abstract class JCSCachedTileLoaderJob<K, V extends CacheEntry> implements
         if (first || force) {
             // submit all jobs to separate thread, so calling thread is not blocked with IO when loading from disk
             LOG.log(Level.FINE, "JCS - Submitting job for execution for url: {0}", getUrlNoException());
+            jobQueued();
             downloadJobExecutor.execute(this);
         }
     }
 
+    /**
+     * This method is run when the job is passed to the download executor, before it is queued
+     */
+    protected void jobQueued() {
+        // nothing to do by default
+    }
+
+    /**
+     * This method is run when the job leaves the queue of the download executor, when it is executed or canceled
+     */
+    protected void jobDequeued() {
+        // nothing to do by default
+    }
+
     /**
      * This method is run when job has finished
      */
@@ -222,6 +238,7 @@ public abstract class JCSCachedTileLoaderJob<K, V extends CacheEntry> implements
 
     @Override
     public void run() {
+        jobDequeued();
         final Thread currentThread = Thread.currentThread();
         final String oldName = currentThread.getName();
         currentThread.setName("JCS Downloading: " + getUrlNoException());
@@ -360,6 +377,8 @@ public abstract class JCSCachedTileLoaderJob<K, V extends CacheEntry> implements
                 if (urlConn.getResponseCode() == HttpURLConnection.HTTP_OK) {
                     raw = Utils.readBytesFromStream(urlConn.getContent());
                 } else {
+                    // keep the connection for the next tile
+                    urlConn.release();
                     raw = new byte[]{};
                 }
 
@@ -491,6 +510,24 @@ public abstract class JCSCachedTileLoaderJob<K, V extends CacheEntry> implements
         }
     }
 
+    /**
+     * Sets the priority of this job. A {@link HostLimitQueue} executes the jobs with the lowest value first,
+     * and jobs with equal priority in the order of their submission. The priority may be changed while the job is queued.
+     * @param priority the priority, {@code 0} by default
+     */
+    public void setPriority(int priority) {
+        this.priority = priority;
+    }
+
+    /**
+     * Returns the priority of this job.
+     * @return the priority, lower values are executed first
+     * @see #setPriority(int)
+     */
+    public int getPriority() {
+        return priority;
+    }
+
     /**
      * Sets a job, that will be run, when job will finish execution
      * @param runnable that will be executed
@@ -504,6 +541,7 @@ public abstract class JCSCachedTileLoaderJob<K, V extends CacheEntry> implements
      * Marks this job as canceled
      */
     public void handleJobCancellation() {
+        jobDequeued();
         finishLoading(LoadResult.CANCELED);
     }
 
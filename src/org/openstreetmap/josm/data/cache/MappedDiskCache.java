@@ -0,0 +1,826 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+import org.apache.commons.jcs.auxiliary.AuxiliaryCacheAttributes;
+import org.apache.commons.jcs.auxiliary.disk.AbstractDiskCache;
+import org.apache.commons.jcs.engine.CacheConstants;
+import org.apache.commons.jcs.engine.CacheElement;
+import org.apache.commons.jcs.engine.behavior.ICacheElement;
+import org.apache.commons.jcs.engine.behavior.IElementAttributes;
+import org.apache.commons.jcs.engine.behavior.IElementSerializer;
+import org.apache.commons.jcs.engine.stats.StatElement;
+import org.apache.commons.jcs.engine.stats.Stats;
+import org.apache.commons.jcs.engine.stats.behavior.IStatElement;
+import org.apache.commons.jcs.engine.stats.behavior.IStats;
+import org.openstreetmap.josm.Main;
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * A JCS disk cache for imagery tiles, storing the entries in memory-mapped segment files.
+ * <p>
+ * Entries are appended to the active segment file as records holding the key, the attributes and the raw tile bytes.
+ * {@link CacheEntry} contents and {@link CacheEntryAttributes} are stored without Java serialization. Keys are found
+ * by a {@link MappedDiskIndex hash index} kept outside the Java heap, which is only published after the record has been
+ * written, so a record is either complete or not visible at all. Sealed segments are mapped read-only.
+ * <p>
+ * When the segments exceed the size limit, the oldest segment is removed. Its entries accessed since it has been sealed are
+ * copied to the active segment first, so recently used tiles survive the eviction.
+ * <p>
+ * The index is saved with the segment lengths on shutdown and after some sealed segments. On startup, records appended
+ * after the last save are recovered by scanning the segments, up to the first incomplete record.
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class MappedDiskCache<K, V> extends AbstractDiskCache<K, V> {
+
+    private static final String INDEX_FILE = "index";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final int RECORD_MAGIC = 0x4a4f534d;
+    private static final int INDEX_MAGIC = 0x4a4f5349;
+    /** version 2 added the groups of the keys, older indexes are rebuilt by scanning the segments */
+    private static final int INDEX_VERSION = 2;
+    /** magic number, body length and CRC of the body */
+    private static final int RECORD_HEADER = 12;
+    /** the index is saved after this number of sealed segments, to limit the data scanned after a crash */
+    private static final int CHECKPOINT_SEGMENTS = 4;
+
+    private static final byte SERIALIZED = 0;
+    private static final byte STRING_KEY = 1;
+    private static final byte TILE_ATTRIBUTES = 2;
+    private static final byte IMAGE_ENTRY = 3;
+    private static final byte BYTES_ENTRY = 4;
+    private static final byte GROUP_DELIMITER = (byte) CacheConstants.NAME_COMPONENT_DELIMITER.charAt(0);
+
+    private final MappedDiskCacheAttributes attributes;
+    private final IElementSerializer serializer;
+    private final File directory;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    /** the segments by id, the last one is the active segment */
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private MappedDiskIndex index;
+    private long totalLength;
+    private int sealedSinceCheckpoint;
+
+    /**
+     * A segment file.
+     */
+    private static final class Segment {
+        private final int id;
+        private final File file;
+        private final FileChannel channel;
+        /** the length of the complete records */
+        private long length;
+        /** the time the segment has been sealed, 0 for the active segment */
+        private long sealTime;
+        private volatile ByteBuffer mapped;
+
+        Segment(int id, File file) throws IOException {
+            this.id = id;
+            this.file = file;
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        void read(ByteBuffer dst, long position) throws IOException {
+            ByteBuffer map = mapped;
+            if (map != null && position + dst.remaining() <= map.capacity()) {
+                ByteBuffer src = map.duplicate();
+                src.position((int) position);
+                src.limit((int) position + dst.remaining());
+                dst.put(src);
+                return;
+            }
+            long pos = position;
+            while (dst.hasRemaining()) {
+                int n = channel.read(dst, pos);
+                if (n < 0) {
+                    throw new IOException("Unexpected end of " + file);
+                }
+                pos += n;
+            }
+        }
+
+        void append(ByteBuffer src) throws IOException {
+            long pos = length;
+            while (src.hasRemaining()) {
+                pos += channel.write(src, pos);
+            }
+            length = pos;
+        }
+
+        void seal(long time) {
+            sealTime = time;
+            try {
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            } catch (IOException e) {
+                // e.g. no address space left, read through the channel instead
+                Main.warn(e, "Unable to map cache file " + file);
+            }
+        }
+
+        /**
+         * Closes and deletes the segment file. Must be called with the write lock, so that no reader uses the mapping.
+         */
+        void delete() {
+            ByteBuffer map = mapped;
+            mapped = null;
+            Utils.close(channel);
+            if (map == null || unmap(map)) {
+                Utils.deleteFile(file);
+            } else {
+                // a mapped file cannot be deleted on some platforms, the next load removes it as an evicted segment
+                file.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Releases the mapping of a buffer at once, instead of when it is garbage collected.
+     * @param buffer the mapped buffer, which must not be used anymore
+     * @return {@code true} if the buffer has been unmapped
+     */
+    private static boolean unmap(ByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner;
+            try {
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            } catch (NoSuchMethodException e) {
+                // Java 8
+                Main.trace(e);
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                Utils.setObjectsAccessible(cleanerMethod);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+                return true;
+            }
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            Utils.setObjectsAccessible(theUnsafe);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            return true;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            Main.trace(e);
+            return false;
+        }
+    }
+
+    /**
+     * Constructs a new {@code MappedDiskCache} and loads the existing entries.
+     * @param attributes the cache attributes
+     * @param serializer the serializer for keys and values which are not stored directly
+     * @throws IOException if the cache directory cannot be accessed
+     */
+    public MappedDiskCache(MappedDiskCacheAttributes attributes, IElementSerializer serializer) throws IOException {
+        super(attributes);
+        this.attributes = attributes;
+        this.serializer = serializer;
+        this.directory = new File(attributes.getDiskPath(), attributes.getCacheName());
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Cannot create cache directory " + directory);
+        }
+        lock.writeLock().lock();
+        try {
+            load();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        setAlive(true);
+    }
+
+    private void load() throws IOException {
+        Map<Integer, long[]> saved = new HashMap<>();
+        File indexFile = new File(directory, INDEX_FILE);
+        if (indexFile.exists()) {
+            try (FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+                ByteBuffer header = ByteBuffer.allocate(12);
+                MappedDiskIndex.readFully(channel, header);
+                header.flip();
+                if (header.getInt() != INDEX_MAGIC || header.getInt() != INDEX_VERSION) {
+                    throw new IOException("Unsupported index " + indexFile);
+                }
+                ByteBuffer table = ByteBuffer.allocate(header.getInt() * 20);
+                MappedDiskIndex.readFully(channel, table);
+                table.flip();
+                while (table.hasRemaining()) {
+                    saved.put(table.getInt(), new long[] {table.getLong(), table.getLong()});
+                }
+                index = MappedDiskIndex.read(channel);
+            } catch (IOException | RuntimeException e) {
+                Main.warn(e, "Unable to read cache index " + indexFile);
+                saved.clear();
+                index = null;
+            }
+        }
+        if (index == null) {
+            index = new MappedDiskIndex(1024);
+        }
+        int lastSaved = saved.keySet().stream().mapToInt(Integer::intValue).max().orElse(0);
+        TreeMap<Integer, File> files = new TreeMap<>();
+        File[] list = directory.listFiles((dir, name) -> name.endsWith(SEGMENT_SUFFIX));
+        if (list != null) {
+            for (File f : list) {
+                try {
+                    files.put(Integer.valueOf(f.getName().substring(0, f.getName().length() - SEGMENT_SUFFIX.length())), f);
+                } catch (NumberFormatException e) {
+                    Main.trace(e);
+                }
+            }
+        }
+        for (Entry<Integer, File> e : files.entrySet()) {
+            int id = e.getKey();
+            long[] info = saved.remove(id);
+            if (info == null && id <= lastSaved) {
+                // removed by eviction
+                Utils.deleteFile(e.getValue());
+                continue;
+            }
+            Segment s = new Segment(id, e.getValue());
+            segments.put(id, s);
+            if (info != null && s.channel.size() >= info[0]) {
+                s.length = info[0];
+                s.sealTime = info[1];
+            } else if (info != null) {
+                removeEntries(id);
+            }
+            if (s.channel.size() > s.length) {
+                scan(s, e.getValue().lastModified());
+            }
+            totalLength += s.length;
+        }
+        // segment files lost since the index was saved
+        for (Integer id : saved.keySet()) {
+            removeEntries(id);
+        }
+        Segment last = segments.isEmpty() ? null : segments.lastEntry().getValue();
+        for (Segment s : segments.values()) {
+            if (s != last || s.sealTime != 0 || s.length >= attributes.getSegmentSize()) {
+                s.seal(s.sealTime != 0 ? s.sealTime : s.file.lastModified());
+            }
+        }
+        trimToBudget();
+    }
+
+    /**
+     * Adds the complete records of a segment after its known length to the index, and truncates the segment after them.
+     */
+    private void scan(Segment s, long accessTime) throws IOException {
+        long size = s.channel.size();
+        long pos = s.length;
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+        while (pos + RECORD_HEADER <= size) {
+            header.clear();
+            s.read(header, pos);
+            header.flip();
+            int magic = header.getInt();
+            int bodyLength = header.getInt();
+            int crc = header.getInt();
+            if (magic != RECORD_MAGIC || bodyLength < 4 || pos + RECORD_HEADER + bodyLength > size) {
+                break;
+            }
+            ByteBuffer body = ByteBuffer.allocate(bodyLength);
+            s.read(body, pos + RECORD_HEADER);
+            CRC32 checksum = new CRC32();
+            checksum.update(body.array(), 0, bodyLength);
+            body.flip();
+            int keyLength = body.getInt();
+            if ((int) checksum.getValue() != crc || keyLength < 0 || keyLength > body.remaining()) {
+                break;
+            }
+            byte[] key = new byte[keyLength];
+            body.get(key);
+            index.put(MappedDiskIndex.hash(key), s.id, (int) pos, RECORD_HEADER + bodyLength, getGroup(key), accessTime);
+            pos += RECORD_HEADER + bodyLength;
+        }
+        if (pos < size) {
+            Main.info("Truncating incomplete cache file {0} at {1}", s.file, pos);
+            s.channel.truncate(pos);
+        }
+        s.length = pos;
+    }
+
+    private void saveIndex() throws IOException {
+        Segment active = segments.isEmpty() ? null : segments.lastEntry().getValue();
+        if (active != null) {
+            // the records must be on disk before the index refers to them
+            active.channel.force(false);
+        }
+        File tmp = new File(directory, INDEX_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(12 + segments.size() * 20);
+            header.putInt(INDEX_MAGIC).putInt(INDEX_VERSION).putInt(segments.size());
+            for (Segment s : segments.values()) {
+                header.putInt(s.id).putLong(s.length).putLong(s.sealTime);
+            }
+            header.flip();
+            MappedDiskIndex.writeFully(channel, header);
+            index.write(channel);
+            channel.force(true);
+        }
+        try {
+            Files.move(tmp.toPath(), new File(directory, INDEX_FILE).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Main.trace(e);
+            Files.move(tmp.toPath(), new File(directory, INDEX_FILE).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        sealedSinceCheckpoint = 0;
+    }
+
+    /**
+     * Returns the active segment, starting a new one if the record does not fit.
+     */
+    private Segment getActiveSegment(int recordLength) throws IOException {
+        Segment active = segments.isEmpty() ? null : segments.lastEntry().getValue();
+        if (active != null && active.sealTime == 0 && (active.length == 0 || active.length + recordLength <= attributes.getSegmentSize())) {
+            return active;
+        }
+        if (active != null && active.sealTime == 0) {
+            active.seal(System.currentTimeMillis());
+            sealedSinceCheckpoint++;
+        }
+        int id = active == null ? 1 : active.id + 1;
+        Segment s = new Segment(id, new File(directory, String.format("%08d", id) + SEGMENT_SUFFIX));
+        s.channel.truncate(0);
+        segments.put(id, s);
+        if (sealedSinceCheckpoint >= CHECKPOINT_SEGMENTS) {
+            saveIndex();
+        }
+        return s;
+    }
+
+    private void trimToBudget() throws IOException {
+        while (totalLength > attributes.getMaxBytes() && segments.size() > 1) {
+            evict(segments.firstEntry().getValue());
+        }
+    }
+
+    /**
+     * Removes a segment. The entries accessed since it has been sealed are copied to the active segment, up to half of its length.
+     */
+    private void evict(Segment s) throws IOException {
+        long limit = s.length / 2;
+        long copied = 0;
+        for (long hash : getHashes(s.id)) {
+            int slot = index.find(hash);
+            int length = index.getLength(slot);
+            long accessTime = index.getAccessTime(slot);
+            if (accessTime >= s.sealTime && copied + length <= limit) {
+                ByteBuffer record = ByteBuffer.allocate(length);
+                s.read(record, index.getOffset(slot));
+                record.flip();
+                Segment active = getActiveSegment(length);
+                int offset = (int) active.length;
+                active.append(record);
+                totalLength += length;
+                index.put(hash, active.id, offset, length, index.getGroup(slot), accessTime);
+                copied += length;
+            } else {
+                index.remove(hash);
+            }
+        }
+        segments.remove(s.id);
+        totalLength -= s.length;
+        s.delete();
+    }
+
+    private List<Long> getHashes(int segment) {
+        List<Long> result = new ArrayList<>();
+        for (int slot = 0; slot < index.capacity(); slot++) {
+            long hash = index.getHash(slot);
+            if (hash != 0 && index.getSegment(slot) == segment) {
+                result.add(hash);
+            }
+        }
+        return result;
+    }
+
+    private void removeEntries(int segment) {
+        for (long hash : getHashes(segment)) {
+            index.remove(hash);
+        }
+    }
+
+    /**
+     * Returns the hash of the group of an encoded key, i.e. of its first name component, as removed by {@link #processRemove}.
+     * @return the hash of the key up to the first {@link CacheConstants#NAME_COMPONENT_DELIMITER}, {@code 0} if there is none
+     */
+    private static int getGroup(byte[] key) {
+        if (key.length == 0 || key[0] != STRING_KEY) {
+            return 0;
+        }
+        for (int i = 1; i < key.length; i++) {
+            if (key[i] == GROUP_DELIMITER) {
+                long h = MappedDiskIndex.hash(Arrays.copyOf(key, i + 1));
+                int group = (int) (h ^ (h >>> 32));
+                return group == 0 ? 1 : group;
+            }
+        }
+        return 0;
+    }
+
+    private byte[] encodeKey(K key) throws IOException {
+        byte[] data;
+        byte type;
+        if (key instanceof String) {
+            data = ((String) key).getBytes(StandardCharsets.UTF_8);
+            type = STRING_KEY;
+        } else {
+            data = serializer.serialize(key);
+            type = SERIALIZED;
+        }
+        byte[] result = new byte[data.length + 1];
+        result[0] = type;
+        System.arraycopy(data, 0, result, 1, data.length);
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private K decodeKey(byte[] encoded) throws IOException {
+        if (encoded[0] == STRING_KEY) {
+            return (K) new String(encoded, 1, encoded.length - 1, StandardCharsets.UTF_8);
+        }
+        return deserialize(encoded, 1, encoded.length - 1);
+    }
+
+    private <T> T deserialize(byte[] data, int offset, int length) throws IOException {
+        byte[] bytes = offset == 0 && length == data.length ? data : new byte[length];
+        if (bytes != data) {
+            System.arraycopy(data, offset, bytes, 0, length);
+        }
+        try {
+            return serializer.deSerialize(bytes, null);
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private ByteBuffer encodeRecord(byte[] key, ICacheElement<K, V> element) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(key.length);
+        out.write(key);
+
+        IElementAttributes attr = element.getElementAttributes();
+        // the creation time cannot be restored, so the attributes are serialized if it is needed
+        if (attr != null && attr.getClass() == CacheEntryAttributes.class && attr.getMaxLife() == -1) {
+            CacheEntryAttributes tileAttr = (CacheEntryAttributes) attr;
+            ByteArrayOutputStream attrBytes = new ByteArrayOutputStream();
+            DataOutputStream attrOut = new DataOutputStream(attrBytes);
+            attrOut.writeBoolean(tileAttr.getIsEternal());
+            attrOut.writeBoolean(tileAttr.getIsSpool());
+            attrOut.writeBoolean(tileAttr.getIsLateral());
+            attrOut.writeBoolean(tileAttr.getIsRemote());
+            attrOut.writeLong(tileAttr.getIdleTime());
+            attrOut.writeLong(tileAttr.getLastAccessTime());
+            attrOut.writeInt(tileAttr.getSize());
+            Map<String, String> metadata = new LinkedHashMap<>(tileAttr.getMetadata());
+            attrOut.writeInt(metadata.size());
+            for (Entry<String, String> e : metadata.entrySet()) {
+                writeString(attrOut, e.getKey());
+                writeString(attrOut, e.getValue());
+            }
+            writeField(out, TILE_ATTRIBUTES, attrBytes.toByteArray());
+        } else {
+            writeField(out, SERIALIZED, serializer.serialize(attr));
+        }
+
+        V value = element.getVal();
+        if (value != null && value.getClass() == BufferedImageCacheEntry.class) {
+            writeField(out, IMAGE_ENTRY, ((CacheEntry) value).getContent());
+        } else if (value != null && value.getClass() == CacheEntry.class) {
+            writeField(out, BYTES_ENTRY, ((CacheEntry) value).getContent());
+        } else {
+            writeField(out, SERIALIZED, serializer.serialize(value));
+        }
+        out.flush();
+
+        byte[] body = bytes.toByteArray();
+        CRC32 checksum = new CRC32();
+        checksum.update(body);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + body.length);
+        record.putInt(RECORD_MAGIC).putInt(body.length).putInt((int) checksum.getValue()).put(body);
+        record.flip();
+        return record;
+    }
+
+    private static void writeField(DataOutputStream out, byte type, byte[] data) throws IOException {
+        out.writeByte(type);
+        out.writeInt(data.length);
+        out.write(data);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] data = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(data.length);
+        out.write(data);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] data = new byte[in.getInt()];
+        in.get(data);
+        return new String(data, StandardCharsets.UTF_8);
+    }
+
+    @SuppressWarnings("unchecked")
+    private ICacheElement<K, V> decodeRecord(K key, ByteBuffer body) throws IOException {
+        byte attrType = body.get();
+        int attrLength = body.getInt();
+        IElementAttributes attr;
+        if (attrType == TILE_ATTRIBUTES) {
+            boolean eternal = body.get() != 0;
+            boolean spool = body.get() != 0;
+            boolean lateral = body.get() != 0;
+            boolean remote = body.get() != 0;
+            long idleTime = body.getLong();
+            long lastAccessTime = body.getLong();
+            int size = body.getInt();
+            Map<String, String> metadata = new HashMap<>();
+            for (int n = body.getInt(); n > 0; n--) {
+                metadata.put(readString(body), readString(body));
+            }
+            CacheEntryAttributes tileAttr = new CacheEntryAttributes(metadata);
+            tileAttr.setIsEternal(eternal);
+            tileAttr.setIsSpool(spool);
+            tileAttr.setIsLateral(lateral);
+            tileAttr.setIsRemote(remote);
+            tileAttr.setIdleTime(idleTime);
+            tileAttr.setLastAccessTime(lastAccessTime);
+            tileAttr.setSize(size);
+            attr = tileAttr;
+        } else {
+            attr = deserialize(body.array(), body.arrayOffset() + body.position(), attrLength);
+            body.position(body.position() + attrLength);
+        }
+
+        byte valueType = body.get();
+        byte[] value = new byte[body.getInt()];
+        body.get(value);
+        V val;
+        if (valueType == IMAGE_ENTRY) {
+            val = (V) new BufferedImageCacheEntry(value);
+        } else if (valueType == BYTES_ENTRY) {
+            val = (V) new CacheEntry(value);
+        } else {
+            val = deserialize(value, 0, value.length);
+        }
+        return new CacheElement<>(getCacheName(), key, val, attr);
+    }
+
+    /**
+     * Reads the body of the record of a slot.
+     * @return the body, after the key, or {@code null} if the stored key is not the given key
+     */
+    private ByteBuffer readRecord(int slot, byte[] key) throws IOException {
+        Segment s = segments.get(index.getSegment(slot));
+        if (s == null) {
+            return null;
+        }
+        ByteBuffer record = ByteBuffer.allocate(index.getLength(slot));
+        s.read(record, index.getOffset(slot));
+        record.flip();
+        if (record.getInt() != RECORD_MAGIC || record.getInt() != record.capacity() - RECORD_HEADER) {
+            throw new IOException("Invalid record in " + s.file + " at " + index.getOffset(slot));
+        }
+        record.getInt(); // checksum, only verified when recovering
+        int keyLength = record.getInt();
+        if (keyLength != key.length) {
+            return null;
+        }
+        for (byte b : key) {
+            if (record.get() != b) {
+                return null;
+            }
+        }
+        return record;
+    }
+
+    /**
+     * Reads the encoded key of the record of a slot.
+     */
+    private byte[] readKey(int slot) throws IOException {
+        Segment s = segments.get(index.getSegment(slot));
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER + 4);
+        s.read(header, index.getOffset(slot));
+        header.flip();
+        ByteBuffer key = ByteBuffer.allocate(header.getInt(RECORD_HEADER));
+        s.read(key, index.getOffset(slot) + RECORD_HEADER + 4L);
+        return key.array();
+    }
+
+    @Override
+    protected ICacheElement<K, V> processGet(K key) throws IOException {
+        if (!isAlive()) {
+            return null;
+        }
+        byte[] encodedKey = encodeKey(key);
+        long hash = MappedDiskIndex.hash(encodedKey);
+        ByteBuffer body;
+        lock.readLock().lock();
+        try {
+            int slot = index.find(hash);
+            if (slot < 0) {
+                return null;
+            }
+            body = readRecord(slot, encodedKey);
+            if (body == null) {
+                return null;
+            }
+            index.setAccessTime(slot, System.currentTimeMillis());
+        } finally {
+            lock.readLock().unlock();
+        }
+        return decodeRecord(key, body);
+    }
+
+    @Override
+    protected Map<K, ICacheElement<K, V>> processGetMatching(String pattern) throws IOException {
+        Set<K> matchingKeys = getKeyMatcher().getMatchingKeysFromArray(pattern, getKeySet());
+        Map<K, ICacheElement<K, V>> elements = new HashMap<>();
+        for (K key : matchingKeys) {
+            ICacheElement<K, V> element = processGet(key);
+            if (element != null) {
+                elements.put(key, element);
+            }
+        }
+        return elements;
+    }
+
+    @Override
+    protected void processUpdate(ICacheElement<K, V> cacheElement) throws IOException {
+        if (!isAlive()) {
+            return;
+        }
+        byte[] encodedKey = encodeKey(cacheElement.getKey());
+        ByteBuffer record = encodeRecord(encodedKey, cacheElement);
+        int length = record.remaining();
+        lock.writeLock().lock();
+        try {
+            Segment active = getActiveSegment(length);
+            int offset = (int) active.length;
+            active.append(record);
+            totalLength += length;
+            index.put(MappedDiskIndex.hash(encodedKey), active.id, offset, length, getGroup(encodedKey), System.currentTimeMillis());
+            trimToBudget();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    protected boolean processRemove(K key) throws IOException {
+        if (!isAlive()) {
+            return false;
+        }
+        lock.writeLock().lock();
+        try {
+            if (key instanceof String && ((String) key).endsWith(CacheConstants.NAME_COMPONENT_DELIMITER)) {
+                String name = (String) key;
+                byte[] prefix = encodeKey(key);
+                int group = getGroup(prefix);
+                // the keys are only read if the prefix is longer than the group, e.g. "source:zoom:".
+                // Otherwise keys of another group with the same 32 bit hash are removed as well, which is harmless for a cache
+                boolean readKeys = name.indexOf(CacheConstants.NAME_COMPONENT_DELIMITER) < name.length() - 1;
+                List<Long> matching = new ArrayList<>();
+                for (int slot = 0; slot < index.capacity(); slot++) {
+                    if (index.getHash(slot) != 0 && index.getGroup(slot) == group && (!readKeys || startsWith(readKey(slot), prefix))) {
+                        matching.add(index.getHash(slot));
+                    }
+                }
+                for (long hash : matching) {
+                    index.remove(hash);
+                }
+                return !matching.isEmpty();
+            }
+            return index.remove(MappedDiskIndex.hash(encodeKey(key)));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static boolean startsWith(byte[] key, byte[] prefix) {
+        if (key.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (key[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    protected void processRemoveAll() throws IOException {
+        lock.writeLock().lock();
+        try {
+            index.clear();
+            for (Segment s : segments.values()) {
+                s.delete();
+            }
+            segments.clear();
+            totalLength = 0;
+            Utils.deleteFileIfExists(new File(directory, INDEX_FILE));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    protected void processDispose() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (!isAlive()) {
+                return;
+            }
+            setAlive(false);
+            saveIndex();
+        } finally {
+            for (Segment s : segments.values()) {
+                s.mapped = null;
+                Utils.close(s.channel);
+            }
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Set<K> getKeySet() throws IOException {
+        Set<K> keys = new HashSet<>();
+        lock.readLock().lock();
+        try {
+            for (int slot = 0; slot < index.capacity(); slot++) {
+                if (index.getHash(slot) != 0) {
+                    keys.add(decodeKey(readKey(slot)));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return keys;
+    }
+
+    @Override
+    public int getSize() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    protected String getDiskLocation() {
+        return directory.getAbsolutePath();
+    }
+
+    @Override
+    public AuxiliaryCacheAttributes getAuxiliaryCacheAttributes() {
+        return attributes;
+    }
+
+    @Override
+    public IStats getStatistics() {
+        IStats stats = new Stats();
+        stats.setTypeName("Mapped Disk Cache");
+        List<IStatElement<?>> elems = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            elems.add(new StatElement<>("Is Alive", Boolean.valueOf(isAlive())));
+            elems.add(new StatElement<>("Key Map Size", Integer.valueOf(index.size())));
+            elems.add(new StatElement<>("Data File Length", Long.valueOf(totalLength)));
+            elems.add(new StatElement<>("Number Of Segments", Integer.valueOf(segments.size())));
+        } finally {
+            lock.readLock().unlock();
+        }
+        elems.addAll(super.getStatistics().getStatElements());
+        stats.setStatElements(elems);
+        return stats;
+    }
+}
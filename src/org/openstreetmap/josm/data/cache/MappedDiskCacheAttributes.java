@@ -0,0 +1,54 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.cache;
+
+import org.apache.commons.jcs.auxiliary.disk.AbstractDiskCacheAttributes;
+
+/**
+ * Configuration of a {@link MappedDiskCache}.
+ */
+public class MappedDiskCacheAttributes extends AbstractDiskCacheAttributes {
+    private static final long serialVersionUID = 1L; //version
+
+    /** default size of a segment file */
+    private static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private long maxBytes = 512L * 1024 * 1024;
+    private int segmentSize = DEFAULT_SEGMENT_SIZE;
+
+    /**
+     * Returns the maximum size of the segment files.
+     * @return the maximum size in bytes
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Sets the maximum size of the segment files. The least recently used entries are removed when it is exceeded.
+     * @param maxBytes the maximum size in bytes
+     */
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the size of a segment file, the unit of eviction.
+     * @return the size in bytes
+     */
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * Sets the size of a segment file, the unit of eviction.
+     * @param segmentSize the size in bytes
+     */
+    public void setSegmentSize(int segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+
+    @Override
+    public String toString() {
+        return "MappedDiskCacheAttributes [maxBytes=" + maxBytes + ", segmentSize=" + segmentSize + ", " + super.toString() + ']';
+    }
+}
@@ -0,0 +1,22 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.cache;
+
+import org.apache.commons.jcs.auxiliary.AbstractAuxiliaryCacheFactory;
+import org.apache.commons.jcs.auxiliary.AuxiliaryCacheAttributes;
+import org.apache.commons.jcs.engine.behavior.ICompositeCacheManager;
+import org.apache.commons.jcs.engine.behavior.IElementSerializer;
+import org.apache.commons.jcs.engine.logging.behavior.ICacheEventLogger;
+
+/**
+ * Creates {@link MappedDiskCache} instances.
+ */
+public class MappedDiskCacheFactory extends AbstractAuxiliaryCacheFactory {
+
+    @Override
+    public <K, V> MappedDiskCache<K, V> createCache(AuxiliaryCacheAttributes attr, ICompositeCacheManager cacheMgr,
+            ICacheEventLogger cacheEventLogger, IElementSerializer elementSerializer) throws Exception {
+        MappedDiskCache<K, V> cache = new MappedDiskCache<>((MappedDiskCacheAttributes) attr, elementSerializer);
+        cache.setCacheEventLogger(cacheEventLogger);
+        return cache;
+    }
+}
@@ -0,0 +1,261 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.cache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * The key index of a {@link MappedDiskCache}: a hash table with open addressing, stored in a direct buffer outside the Java heap.
+ * <p>
+ * Each slot holds the 64 bit hash of a key, the location of its record, a 32 bit hash of the group of the key and the time
+ * of the last access. The hash {@code 0} marks an empty slot. Keys with equal hashes share a slot, the cache compares the key stored in the record.
+ * <p>
+ * This class is not thread safe, except that {@link #setAccessTime} may be called concurrently with the read methods.
+ */
+final class MappedDiskIndex {
+
+    private static final int SLOT_SIZE = 32;
+    private static final int HASH = 0;
+    private static final int SEGMENT = 8;
+    private static final int OFFSET = 12;
+    private static final int LENGTH = 16;
+    private static final int GROUP = 20;
+    private static final int ACCESS_TIME = 24;
+
+    private ByteBuffer slots;
+    private int capacity;
+    private int size;
+
+    /**
+     * Constructs a new empty {@code MappedDiskIndex}.
+     * @param capacity the initial number of slots, rounded up to a power of two
+     */
+    MappedDiskIndex(int capacity) {
+        this.capacity = Integer.highestOneBit(Math.max(16, capacity - 1)) << 1;
+        this.slots = ByteBuffer.allocateDirect(this.capacity * SLOT_SIZE);
+    }
+
+    private MappedDiskIndex(ByteBuffer slots, int capacity, int size) {
+        this.slots = slots;
+        this.capacity = capacity;
+        this.size = size;
+    }
+
+    /**
+     * Returns the hash of an encoded key, never {@code 0}.
+     * @param key the encoded key
+     * @return the 64 bit FNV-1a hash of the key
+     */
+    static long hash(byte[] key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return h == 0 ? 1 : h;
+    }
+
+    /**
+     * Returns the number of keys.
+     * @return the number of keys
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of slots.
+     * @return the number of slots, a power of two
+     */
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Finds the slot of a key.
+     * @param hash the hash of the key
+     * @return the slot, or -1 if the key is not in the index
+     */
+    int find(long hash) {
+        int mask = capacity - 1;
+        for (int slot = (int) (hash ^ (hash >>> 32)) & mask;; slot = (slot + 1) & mask) {
+            long h = getHash(slot);
+            if (h == hash) {
+                return slot;
+            } else if (h == 0) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Adds a key or replaces its location.
+     * @param hash the hash of the key
+     * @param segment the segment of the record
+     * @param offset the offset of the record in the segment
+     * @param length the length of the record
+     * @param group the hash of the group of the key, {@code 0} if the key has no group
+     * @param accessTime the time of the last access
+     */
+    void put(long hash, int segment, int offset, int length, int group, long accessTime) {
+        if (size + 1 > capacity / 4 * 3) {
+            resize(capacity * 2);
+        }
+        int mask = capacity - 1;
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        while (getHash(slot) != 0 && getHash(slot) != hash) {
+            slot = (slot + 1) & mask;
+        }
+        if (getHash(slot) == 0) {
+            size++;
+        }
+        int base = slot * SLOT_SIZE;
+        slots.putLong(base + HASH, hash);
+        slots.putInt(base + SEGMENT, segment);
+        slots.putInt(base + OFFSET, offset);
+        slots.putInt(base + LENGTH, length);
+        slots.putInt(base + GROUP, group);
+        slots.putLong(base + ACCESS_TIME, accessTime);
+    }
+
+    /**
+     * Removes a key.
+     * @param hash the hash of the key
+     * @return {@code true} if the key has been removed
+     */
+    boolean remove(long hash) {
+        int slot = find(hash);
+        if (slot < 0) {
+            return false;
+        }
+        // shift the following entries back, so that no entry is separated from its home slot by an empty slot
+        int mask = capacity - 1;
+        int empty = slot;
+        for (int next = (empty + 1) & mask; getHash(next) != 0; next = (next + 1) & mask) {
+            long h = getHash(next);
+            int home = (int) (h ^ (h >>> 32)) & mask;
+            if (((next - home) & mask) >= ((next - empty) & mask)) {
+                copySlot(next, empty);
+                empty = next;
+            }
+        }
+        slots.putLong(empty * SLOT_SIZE + HASH, 0);
+        size--;
+        return true;
+    }
+
+    /**
+     * Removes all keys.
+     */
+    void clear() {
+        for (int slot = 0; slot < capacity; slot++) {
+            slots.putLong(slot * SLOT_SIZE + HASH, 0);
+        }
+        size = 0;
+    }
+
+    private void copySlot(int from, int to) {
+        for (int i = 0; i < SLOT_SIZE; i += 8) {
+            slots.putLong(to * SLOT_SIZE + i, slots.getLong(from * SLOT_SIZE + i));
+        }
+    }
+
+    private void resize(int newCapacity) {
+        ByteBuffer old = slots;
+        int oldCapacity = capacity;
+        slots = ByteBuffer.allocateDirect(newCapacity * SLOT_SIZE);
+        capacity = newCapacity;
+        size = 0;
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            int base = slot * SLOT_SIZE;
+            long h = old.getLong(base + HASH);
+            if (h != 0) {
+                put(h, old.getInt(base + SEGMENT), old.getInt(base + OFFSET), old.getInt(base + LENGTH), old.getInt(base + GROUP),
+                        old.getLong(base + ACCESS_TIME));
+            }
+        }
+    }
+
+    /**
+     * Returns the key hash of a slot.
+     * @param slot the slot
+     * @return the hash, {@code 0} if the slot is empty
+     */
+    long getHash(int slot) {
+        return slots.getLong(slot * SLOT_SIZE + HASH);
+    }
+
+    int getSegment(int slot) {
+        return slots.getInt(slot * SLOT_SIZE + SEGMENT);
+    }
+
+    int getOffset(int slot) {
+        return slots.getInt(slot * SLOT_SIZE + OFFSET);
+    }
+
+    int getLength(int slot) {
+        return slots.getInt(slot * SLOT_SIZE + LENGTH);
+    }
+
+    int getGroup(int slot) {
+        return slots.getInt(slot * SLOT_SIZE + GROUP);
+    }
+
+    long getAccessTime(int slot) {
+        return slots.getLong(slot * SLOT_SIZE + ACCESS_TIME);
+    }
+
+    void setAccessTime(int slot, long accessTime) {
+        slots.putLong(slot * SLOT_SIZE + ACCESS_TIME, accessTime);
+    }
+
+    /**
+     * Writes the index to a file channel at its current position.
+     * @param channel the channel
+     * @throws IOException if an I/O error occurs
+     */
+    void write(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(8);
+        header.putInt(capacity).putInt(size).flip();
+        writeFully(channel, header);
+        ByteBuffer data = slots.duplicate();
+        data.clear();
+        writeFully(channel, data);
+    }
+
+    /**
+     * Reads an index written by {@link #write} from a file channel at its current position.
+     * @param channel the channel
+     * @return the index
+     * @throws IOException if an I/O error occurs or the data is invalid
+     */
+    static MappedDiskIndex read(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(8);
+        readFully(channel, header);
+        header.flip();
+        int capacity = header.getInt();
+        int size = header.getInt();
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1 || size < 0 || size > capacity
+                || channel.size() - channel.position() != (long) capacity * SLOT_SIZE) {
+            throw new IOException("Invalid index header");
+        }
+        ByteBuffer slots = ByteBuffer.allocateDirect(capacity * SLOT_SIZE);
+        readFully(channel, slots);
+        return new MappedDiskIndex(slots, capacity, size);
+    }
+
+    static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+    }
+}
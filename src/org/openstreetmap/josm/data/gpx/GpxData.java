@@ -12,6 +12,8 @@ import java.util.LinkedList;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
 
 import org.openstreetmap.josm.Main;
 import org.openstreetmap.josm.data.Bounds;
@@ -193,8 +195,7 @@ public class GpxData extends WithAttributes implements Data {
      */
     public static Date[] getMinMaxTimeForTrack(GpxTrack trk) {
         final DoubleSummaryStatistics statistics = trk.getSegments().stream()
-                .flatMap(seg -> seg.getWayPoints().stream())
-                .mapToDouble(pnt -> pnt.time)
+                .flatMapToDouble(GpxData::getTimes)
                 .summaryStatistics();
         return statistics.getCount() == 0
                 ? null
@@ -212,8 +213,7 @@ public class GpxData extends WithAttributes implements Data {
         double now = System.currentTimeMillis() / 1000.0;
         final DoubleSummaryStatistics statistics = tracks.stream()
                 .flatMap(trk -> trk.getSegments().stream())
-                .flatMap(seg -> seg.getWayPoints().stream())
-                .mapToDouble(pnt -> pnt.time)
+                .flatMapToDouble(GpxData::getTimes)
                 .filter(t -> t > 0 && t <= now)
                 .summaryStatistics();
         return statistics.getCount() == 0
@@ -221,6 +221,11 @@ public class GpxData extends WithAttributes implements Data {
                 : new Date[]{new Date((long) (statistics.getMin() * 1000)), new Date((long) (statistics.getMax() * 1000))};
     }
 
+    private static DoubleStream getTimes(GpxTrackSegment seg) {
+        ImmutableGpxTrackSegment points = ImmutableGpxTrackSegment.of(seg);
+        return IntStream.range(0, points.size()).mapToDouble(points::getTime);
+    }
+
     /**
      * Makes a WayPoint at the projection of point p onto the track providing p is less than
      * tolerance away from the track
@@ -263,12 +268,13 @@ public class GpxData extends WithAttributes implements Data {
         if (tracks == null)
             return null;
         for (GpxTrack track : tracks) {
-            for (GpxTrackSegment seg : track.getSegments()) {
-                WayPoint r = null;
-                for (WayPoint S : seg.getWayPoints()) {
-                    EastNorth en = S.getEastNorth();
-                    if (r == null) {
-                        r = S;
+            for (GpxTrackSegment trkseg : track.getSegments()) {
+                ImmutableGpxTrackSegment seg = ImmutableGpxTrackSegment.of(trkseg);
+                int r = -1;
+                for (int s = 0; s < seg.size(); s++) {
+                    EastNorth en = seg.getEastNorth(s);
+                    if (r < 0) {
+                        r = s;
                         rx = en.east();
                         ry = en.north();
                         x = px - rx;
@@ -277,7 +283,7 @@ public class GpxData extends WithAttributes implements Data {
                         if (pRsq < pnminsq) {
                             pnminsq = pRsq;
                             bestEN = en;
-                            bestTime = r.time;
+                            bestTime = seg.getTime(r);
                         }
                     } else {
                         sx = en.east();
@@ -303,17 +309,17 @@ public class GpxData extends WithAttributes implements Data {
                                 double nx = rx - rnoverRS * b;
                                 double ny = ry + rnoverRS * a;
                                 bestEN = new EastNorth(nx, ny);
-                                bestTime = r.time + rnoverRS * (S.time - r.time);
+                                bestTime = seg.getTime(r) + rnoverRS * (seg.getTime(s) - seg.getTime(r));
                                 pnminsq = pnsq;
                             }
                         }
-                        r = S;
+                        r = s;
                         rx = sx;
                         ry = sy;
                     }
                 }
-                if (r != null) {
-                    EastNorth c = r.getEastNorth();
+                if (r >= 0) {
+                    EastNorth c = seg.getEastNorth(r);
                     /* if there is only one point in the seg, it will do this twice, but no matter */
                     rx = c.east();
                     ry = c.north();
@@ -323,7 +329,7 @@ public class GpxData extends WithAttributes implements Data {
                     if (prsq < pnminsq) {
                         pnminsq = prsq;
                         bestEN = c;
-                        bestTime = r.time;
+                        bestTime = seg.getTime(r);
                     }
                 }
             }
@@ -359,6 +365,10 @@ public class GpxData extends WithAttributes implements Data {
         if (tracks != null) {
             for (GpxTrack track: tracks) {
                 for (GpxTrackSegment segment: track.getSegments()) {
+                    if (segment instanceof ImmutableGpxTrackSegment) {
+                        ((ImmutableGpxTrackSegment) segment).invalidateEastNorthCache();
+                        continue;
+                    }
                     for (WayPoint wp: segment.getWayPoints()) {
                         wp.invalidateEastNorthCache();
                     }
@@ -26,10 +26,19 @@ public class ImmutableGpxTrack extends WithAttributes implements GpxTrack {
      * @param attributes track attributes
      */
     public ImmutableGpxTrack(Collection<Collection<WayPoint>> trackSegs, Map<String, Object> attributes) {
+        this(createSegments(trackSegs), attributes);
+    }
+
+    /**
+     * Constructs a new {@code ImmutableGpxTrack} from existing segments.
+     * @param trackSegs track segments, empty segments are skipped
+     * @param attributes track attributes
+     */
+    public ImmutableGpxTrack(List<GpxTrackSegment> trackSegs, Map<String, Object> attributes) {
         List<GpxTrackSegment> newSegments = new ArrayList<>();
-        for (Collection<WayPoint> trackSeg: trackSegs) {
-            if (trackSeg != null && !trackSeg.isEmpty()) {
-                newSegments.add(new ImmutableGpxTrackSegment(trackSeg));
+        for (GpxTrackSegment trackSeg: trackSegs) {
+            if (trackSeg != null && !trackSeg.getWayPoints().isEmpty()) {
+                newSegments.add(trackSeg);
             }
         }
         this.attr = Collections.unmodifiableMap(new HashMap<>(attributes));
@@ -38,6 +47,16 @@ public class ImmutableGpxTrack extends WithAttributes implements GpxTrack {
         this.bounds = calculateBounds();
     }
 
+    private static List<GpxTrackSegment> createSegments(Collection<Collection<WayPoint>> trackSegs) {
+        List<GpxTrackSegment> segments = new ArrayList<>();
+        for (Collection<WayPoint> trackSeg: trackSegs) {
+            if (trackSeg != null && !trackSeg.isEmpty()) {
+                segments.add(new ImmutableGpxTrackSegment(trackSeg));
+            }
+        }
+        return segments;
+    }
+
     private double calculateLength() {
         double result = 0.0; // in meters
 
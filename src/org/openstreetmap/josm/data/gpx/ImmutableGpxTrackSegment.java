@@ -1,36 +1,119 @@
 // License: GPL. For details, see LICENSE file.
 package org.openstreetmap.josm.data.gpx;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.RandomAccess;
 
+import org.openstreetmap.josm.Main;
 import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.projection.Projection;
+import org.openstreetmap.josm.tools.date.DateUtils;
 
+/**
+ * A read-only track segment storing its points in columns, to keep large tracks in memory.
+ * <p>
+ * Coordinates and times are stored in primitive arrays, attributes in one array per attribute key. Equal attribute values
+ * are shared and the {@link GpxConstants#PT_TIME time attribute} is only kept if it cannot be restored from the time.
+ * The {@link WayPoint}s returned by {@link #getWayPoints()} are created when they are first accessed and then kept by the
+ * segment, so each call returns the same objects and changes to them are seen by the accessors of this class.
+ */
 public class ImmutableGpxTrackSegment implements GpxTrackSegment {
 
-    private final List<WayPoint> wayPoints;
+    private final double[] lat;
+    private final double[] lon;
+    private final double[] time;
+    /** The points whose time attribute is restored from the time */
+    private final BitSet formattedTime;
+    /** The attribute values, by key and point */
+    private final Map<String, Object[]> attributes;
     private final Bounds bounds;
     private final double length;
 
+    /** The waypoints, created on demand */
+    private volatile WayPoint[] wayPoints;
+
+    /** The projected coordinates, computed on demand */
+    private volatile ProjectedCoordinates projected;
+
+    private static final class ProjectedCoordinates {
+        private final Projection projection;
+        private final double[] east;
+        private final double[] north;
+
+        ProjectedCoordinates(Projection projection, int size) {
+            this.projection = projection;
+            this.east = new double[size];
+            this.north = new double[size];
+        }
+    }
+
     /**
      * Constructs a new {@code ImmutableGpxTrackSegment}.
      * @param wayPoints list of waypoints
      */
     public ImmutableGpxTrackSegment(Collection<WayPoint> wayPoints) {
-        this.wayPoints = Collections.unmodifiableList(new ArrayList<>(wayPoints));
+        int size = wayPoints.size();
+        lat = new double[size];
+        lon = new double[size];
+        time = new double[size];
+        formattedTime = new BitSet(size);
+        attributes = new LinkedHashMap<>();
+        Map<Object, Object> sharedValues = new HashMap<>();
+        int i = 0;
+        for (WayPoint wpt : wayPoints) {
+            LatLon coor = wpt.getCoor();
+            lat[i] = coor.lat();
+            lon[i] = coor.lon();
+            time[i] = wpt.time;
+            for (Entry<String, Object> e : wpt.attr.entrySet()) {
+                Object value = e.getValue();
+                if (GpxConstants.PT_TIME.equals(e.getKey()) && value instanceof String && value.equals(DateUtils.fromDate(wpt.getTime()))) {
+                    formattedTime.set(i);
+                } else if (value != null) {
+                    if (value instanceof String || value instanceof Number) {
+                        // values like elevation or hdop are often repeated
+                        value = sharedValues.computeIfAbsent(value, v -> v);
+                    }
+                    attributes.computeIfAbsent(e.getKey(), k -> new Object[size])[i] = value;
+                }
+            }
+            i++;
+        }
         this.bounds = calculateBounds();
         this.length = calculateLength();
     }
 
+    /**
+     * Returns the given segment if it is an {@code ImmutableGpxTrackSegment}, or a copy of its current points otherwise.
+     * @param segment the track segment
+     * @return a segment with the points of {@code segment}
+     */
+    public static ImmutableGpxTrackSegment of(GpxTrackSegment segment) {
+        if (segment instanceof ImmutableGpxTrackSegment) {
+            return (ImmutableGpxTrackSegment) segment;
+        }
+        return new ImmutableGpxTrackSegment(segment.getWayPoints());
+    }
+
     private Bounds calculateBounds() {
         Bounds result = null;
-        for (WayPoint wpt: wayPoints) {
+        for (int i = 0; i < lat.length; i++) {
             if (result == null) {
-                result = new Bounds(wpt.getCoor());
+                result = new Bounds(lat[i], lon[i], true);
             } else {
-                result.extend(wpt.getCoor());
+                result.extend(lat[i], lon[i]);
             }
         }
         return result;
@@ -38,15 +121,16 @@ public class ImmutableGpxTrackSegment implements GpxTrackSegment {
 
     private double calculateLength() {
         double result = 0.0; // in meters
-        WayPoint last = null;
-        for (WayPoint tpt : wayPoints) {
+        LatLon last = null;
+        for (int i = 0; i < lat.length; i++) {
+            LatLon coor = new LatLon(lat[i], lon[i]);
             if (last != null) {
-                Double d = last.getCoor().greatCircleDistance(tpt.getCoor());
-                if (!d.isNaN() && !d.isInfinite()) {
+                double d = last.greatCircleDistance(coor);
+                if (!Double.isNaN(d) && !Double.isInfinite(d)) {
                     result += d;
                 }
             }
-            last = tpt;
+            last = coor;
         }
         return result;
     }
@@ -59,9 +143,159 @@ public class ImmutableGpxTrackSegment implements GpxTrackSegment {
             return new Bounds(bounds);
     }
 
+    /**
+     * Returns the segment waypoints. The waypoints are created when they are first accessed and then kept by this segment.
+     * @return the segment waypoints
+     */
     @Override
-    public Collection<WayPoint> getWayPoints() {
-        return wayPoints;
+    public List<WayPoint> getWayPoints() {
+        return new WayPointList();
+    }
+
+    /**
+     * Returns the waypoint at the given index if it has been created by {@link #getWayPoints()}.
+     * @param index the index of the point
+     * @return the waypoint, or {@code null}
+     */
+    private WayPoint getCreatedWayPoint(int index) {
+        WayPoint[] created = wayPoints;
+        if (created == null)
+            return null;
+        synchronized (created) {
+            return created[index];
+        }
+    }
+
+    private final class WayPointList extends AbstractList<WayPoint> implements RandomAccess {
+        @Override
+        public WayPoint get(int index) {
+            WayPoint[] created = wayPoints;
+            if (created == null) {
+                synchronized (ImmutableGpxTrackSegment.this) {
+                    created = wayPoints;
+                    if (created == null) {
+                        created = new WayPoint[lat.length];
+                        wayPoints = created;
+                    }
+                }
+            }
+            synchronized (created) {
+                if (created[index] == null) {
+                    created[index] = createWayPoint(index);
+                }
+                return created[index];
+            }
+        }
+
+        @Override
+        public int size() {
+            return lat.length;
+        }
+    }
+
+    /**
+     * Returns the number of points of this segment.
+     * @return the number of points
+     */
+    public int size() {
+        return lat.length;
+    }
+
+    /**
+     * Returns the waypoint at the given index, with all its attributes, see {@link #getWayPoints()}.
+     * @param index the index of the point
+     * @return the waypoint
+     */
+    public WayPoint getWayPoint(int index) {
+        return getWayPoints().get(index);
+    }
+
+    private WayPoint createWayPoint(int index) {
+        WayPoint wpt = new WayPoint(new LatLon(lat[index], lon[index]));
+        wpt.time = time[index];
+        for (Entry<String, Object[]> e : attributes.entrySet()) {
+            Object value = e.getValue()[index];
+            if (value != null) {
+                wpt.attr.put(e.getKey(), value);
+            }
+        }
+        if (formattedTime.get(index)) {
+            wpt.attr.put(GpxConstants.PT_TIME, DateUtils.fromDate(wpt.getTime()));
+        }
+        return wpt;
+    }
+
+    /**
+     * Returns the latitude of a point.
+     * @param index the index of the point
+     * @return the latitude
+     */
+    public double getLat(int index) {
+        return lat[index];
+    }
+
+    /**
+     * Returns the longitude of a point.
+     * @param index the index of the point
+     * @return the longitude
+     */
+    public double getLon(int index) {
+        return lon[index];
+    }
+
+    /**
+     * Returns the time of a point, see {@link WayPoint#time}.
+     * @param index the index of the point
+     * @return the seconds since 1970-01-01 00:00 UTC, 0 if unknown
+     */
+    public double getTime(int index) {
+        WayPoint wpt = getCreatedWayPoint(index);
+        return wpt != null ? wpt.time : time[index];
+    }
+
+    /**
+     * Returns an attribute of a point, see {@link WayPoint#get(String)}.
+     * @param index the index of the point
+     * @param key the attribute key
+     * @return the attribute value, or {@code null}
+     */
+    public Object getAttribute(int index, String key) {
+        WayPoint wpt = getCreatedWayPoint(index);
+        if (wpt != null) {
+            return wpt.get(key);
+        }
+        if (GpxConstants.PT_TIME.equals(key) && formattedTime.get(index)) {
+            return DateUtils.fromDate(new Date((long) (time[index] * 1000)));
+        }
+        Object[] values = attributes.get(key);
+        return values != null ? values[index] : null;
+    }
+
+    /**
+     * Returns the projected coordinates of a point, in the current projection. They are cached until the projection changes.
+     * @param index the index of the point
+     * @return the east/north coordinates
+     */
+    public EastNorth getEastNorth(int index) {
+        Projection projection = Main.getProjection();
+        ProjectedCoordinates p = projected;
+        if (p == null || p.projection != projection) {
+            p = new ProjectedCoordinates(projection, lat.length);
+            for (int i = 0; i < lat.length; i++) {
+                EastNorth en = projection.latlon2eastNorth(new LatLon(lat[i], lon[i]));
+                p.east[i] = en.east();
+                p.north[i] = en.north();
+            }
+            projected = p;
+        }
+        return new EastNorth(p.east[index], p.north[index]);
+    }
+
+    /**
+     * Invalidates the cache of projected coordinates.
+     */
+    public void invalidateEastNorthCache() {
+        projected = null;
     }
 
     @Override
@@ -76,7 +310,18 @@ public class ImmutableGpxTrackSegment implements GpxTrackSegment {
 
     @Override
     public int hashCode() {
-        return 31 + ((wayPoints == null) ? 0 : wayPoints.hashCode());
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + Arrays.hashCode(lat);
+        result = prime * result + Arrays.hashCode(lon);
+        result = prime * result + Arrays.hashCode(time);
+        result = prime * result + Objects.hashCode(formattedTime);
+        if (attributes != null) {
+            for (Entry<String, Object[]> e : attributes.entrySet()) {
+                result += Objects.hashCode(e.getKey()) ^ Arrays.hashCode(e.getValue());
+            }
+        }
+        return result;
     }
 
     @Override
@@ -88,11 +333,17 @@ public class ImmutableGpxTrackSegment implements GpxTrackSegment {
         if (getClass() != obj.getClass())
             return false;
         ImmutableGpxTrackSegment other = (ImmutableGpxTrackSegment) obj;
-        if (wayPoints == null) {
-            if (other.wayPoints != null)
-                return false;
-        } else if (!wayPoints.equals(other.wayPoints))
+        if (!Arrays.equals(lat, other.lat) || !Arrays.equals(lon, other.lon) || !Arrays.equals(time, other.time)
+                || !Objects.equals(formattedTime, other.formattedTime))
+            return false;
+        if (attributes == null || other.attributes == null)
+            return attributes == other.attributes;
+        if (!attributes.keySet().equals(other.attributes.keySet()))
             return false;
+        for (Entry<String, Object[]> e : attributes.entrySet()) {
+            if (!Arrays.equals(e.getValue(), other.attributes.get(e.getKey())))
+                return false;
+        }
         return true;
     }
 }
@@ -1,9 +1,15 @@
 // License: GPL. For details, see LICENSE file.
 package org.openstreetmap.josm.data.imagery;
 
+import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToIntFunction;
 
 import org.apache.commons.jcs.access.behavior.ICacheAccess;
 import org.openstreetmap.gui.jmapviewer.Tile;
@@ -14,6 +20,7 @@ import org.openstreetmap.gui.jmapviewer.interfaces.TileLoaderListener;
 import org.openstreetmap.gui.jmapviewer.interfaces.TileSource;
 import org.openstreetmap.josm.data.cache.BufferedImageCacheEntry;
 import org.openstreetmap.josm.data.cache.HostLimitQueue;
+import org.openstreetmap.josm.data.cache.JCSCachedTileLoaderJob;
 import org.openstreetmap.josm.data.preferences.IntegerProperty;
 import org.openstreetmap.josm.tools.CheckParameterUtil;
 import org.openstreetmap.josm.tools.Utils;
@@ -42,6 +49,12 @@ public class TMSCachedTileLoader implements TileLoader, CachedTileLoader {
      */
     public static final IntegerProperty HOST_LIMIT = new IntegerProperty("imagery.tms.tmsloader.maxjobsperhost", 6);
 
+    /**
+     * The lowest priority of speculative requests, see {@link #createTileLoaderJob(Tile, int)}.
+     * Lower priorities are used for the tiles in view.
+     */
+    public static final int PRIORITY_PREFETCH = 1 << 16;
+
     /**
      * separate from JCS thread pool for TMS loader, so we can have different thread pools for default JCS
      * and for TMS imagery
@@ -50,6 +63,15 @@ public class TMSCachedTileLoader implements TileLoader, CachedTileLoader {
 
 
     private ThreadPoolExecutor downloadExecutor = DEFAULT_DOWNLOAD_JOB_DISPATCHER;
+    /** the jobs created by this loader which wait in the queue of the download executor */
+    private final Set<TMSCachedTileLoaderJob> queuedJobs = ConcurrentHashMap.newKeySet();
+
+    /** the tiles requested by a prefetch, which have not been shown yet */
+    private final Set<Tile> prefetchedTiles = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+    private final AtomicLong visibleRequests = new AtomicLong();
+    private final AtomicLong prefetchRequests = new AtomicLong();
+    private final AtomicLong prefetchHits = new AtomicLong();
+    private final AtomicLong canceledRequests = new AtomicLong();
 
     /**
      * Constructor
@@ -102,6 +124,42 @@ public class TMSCachedTileLoader implements TileLoader, CachedTileLoader {
                 connectTimeout, readTimeout, headers, getDownloadExecutor());
     }
 
+    /**
+     * Creates a job to load a tile with the given priority.
+     * @param tile the tile
+     * @param priority the priority of the job, lower values are loaded first. Tiles in view should get their distance
+     * to the center of the view, speculative requests {@link #PRIORITY_PREFETCH} or more
+     * @return the job
+     * @see JCSCachedTileLoaderJob#setPriority(int)
+     */
+    public TileJob createTileLoaderJob(Tile tile, int priority) {
+        TileJob job = createTileLoaderJob(tile);
+        if (job instanceof JCSCachedTileLoaderJob) {
+            ((JCSCachedTileLoaderJob<?, ?>) job).setPriority(priority);
+        }
+        if (job instanceof TMSCachedTileLoaderJob) {
+            ((TMSCachedTileLoaderJob) job).setQueuedJobs(queuedJobs);
+        }
+        if (priority >= PRIORITY_PREFETCH) {
+            prefetchRequests.incrementAndGet();
+            prefetchedTiles.add(tile);
+        } else {
+            visibleRequests.incrementAndGet();
+            prefetchedTiles.remove(tile);
+        }
+        return job;
+    }
+
+    /**
+     * Notes that a tile is in view. If it has been requested by a prefetch and is loaded already, it is counted as a prefetch hit.
+     * @param tile the tile
+     */
+    public void tileShown(Tile tile) {
+        if (prefetchedTiles.remove(tile) && tile.isLoaded()) {
+            prefetchHits.incrementAndGet();
+        }
+    }
+
     @Override
     public void clearCache(TileSource source) {
         this.cache.remove(source.getName() + ':');
@@ -111,7 +169,8 @@ public class TMSCachedTileLoader implements TileLoader, CachedTileLoader {
      * @return cache statistics as string
      */
     public String getStats() {
-        return cache.getStats();
+        return cache.getStats() + '\n' + "Tile requests: in view " + visibleRequests.get() + ", prefetched " + prefetchRequests.get()
+                + ", prefetch hits " + prefetchHits.get() + ", canceled " + canceledRequests.get();
     }
 
     /**
@@ -123,10 +182,44 @@ public class TMSCachedTileLoader implements TileLoader, CachedTileLoader {
         for (Runnable r: downloadExecutor.getQueue()) {
             if (downloadExecutor.remove(r) && r instanceof TMSCachedTileLoaderJob) {
                 ((TMSCachedTileLoaderJob) r).handleJobCancellation();
+                canceledRequests.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Updates the priority of the outstanding tasks of a tile source, e.g. after the view has changed, and cancels the tasks
+     * whose tiles are not needed anymore. This rollbacks the state of the canceled tiles to loading = false / loaded = false
+     * @param source the tile source, tasks of other sources are not changed
+     * @param priority the new priority of a tile, negative if the task should be canceled
+     * @see #createTileLoaderJob(Tile, int)
+     */
+    public void updateOutstandingTasks(TileSource source, ToIntFunction<Tile> priority) {
+        // only the jobs queued by this loader are visited, not the whole queue of the (shared) download executor
+        for (TMSCachedTileLoaderJob job : queuedJobs) {
+            Tile tile = job.getTile();
+            if (tile.getSource() != source) {
+                continue;
+            }
+            int p = priority.applyAsInt(tile);
+            if (p >= 0) {
+                job.setPriority(p);
+            } else if (downloadExecutor.remove(job)) {
+                job.handleJobCancellation();
+                canceledRequests.incrementAndGet();
             }
         }
     }
 
+    /**
+     * Cancels the outstanding tasks of a tile source. This rollbacks the state of the canceled tiles
+     * to loading = false / loaded = false
+     * @param source the tile source, tasks of other sources are not canceled
+     */
+    public void cancelOutstandingTasks(TileSource source) {
+        updateOutstandingTasks(source, tile -> -1);
+    }
+
     /**
      * Sets the download executor that will be used to download tiles instead of default one.
      * You can use {@link #getNewThreadPoolExecutor} to create a new download executor with separate
@@ -46,6 +46,7 @@ public class TMSCachedTileLoaderJob extends JCSCachedTileLoaderJob<String, Buffe
     private static final LongProperty MINIMUM_EXPIRES = new LongProperty("imagery.generic.minimum_expires", TimeUnit.HOURS.toMillis(1));
     private final Tile tile;
     private volatile URL url;
+    private Set<TMSCachedTileLoaderJob> queuedJobs;
 
     // we need another deduplication of Tile Loader listeners, as for each submit, new TMSCachedTileLoaderJob was created
     // that way, we reduce calls to tileLoadingFinished, and general CPU load due to surplus Map repaints
@@ -85,6 +86,28 @@ public class TMSCachedTileLoaderJob extends JCSCachedTileLoaderJob<String, Buffe
         return getCachedTile();
     }
 
+    /**
+     * Sets the set in which this job is kept while it is waiting in the queue of the download executor.
+     * @param queuedJobs the set of queued jobs of the tile loader
+     */
+    void setQueuedJobs(Set<TMSCachedTileLoaderJob> queuedJobs) {
+        this.queuedJobs = queuedJobs;
+    }
+
+    @Override
+    protected void jobQueued() {
+        if (queuedJobs != null) {
+            queuedJobs.add(this);
+        }
+    }
+
+    @Override
+    protected void jobDequeued() {
+        if (queuedJobs != null) {
+            queuedJobs.remove(this);
+        }
+    }
+
     @Override
     public String getCacheKey() {
         if (tile != null) {
@@ -275,6 +298,7 @@ public class TMSCachedTileLoaderJob extends JCSCachedTileLoaderJob<String, Buffe
                 if (data != null) {
                     if (data.getImage() != null) {
                         tile.setImage(data.getImage());
+                        TileMemoryCache.getInstance().setContent(tile, data.getContent());
                         tile.finishLoading();
                     } else {
                         // we had some data, but we didn't get any image. Malformed image?
@@ -330,6 +354,7 @@ public class TMSCachedTileLoaderJob extends JCSCachedTileLoaderJob<String, Buffe
                     tile.setError(tr("Could not load image from tile server"));
                     return false;
                 }
+                TileMemoryCache.getInstance().setContent(tile, content);
             }
         }
         return true;
@@ -0,0 +1,453 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.imagery;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import javax.imageio.ImageIO;
+
+import org.openstreetmap.gui.jmapviewer.Tile;
+import org.openstreetmap.gui.jmapviewer.interfaces.TileCache;
+import org.openstreetmap.gui.jmapviewer.interfaces.TileLoaderListener;
+import org.openstreetmap.gui.jmapviewer.interfaces.TileSource;
+import org.openstreetmap.josm.Main;
+import org.openstreetmap.josm.tools.MemoryManager;
+import org.openstreetmap.josm.tools.MemoryManager.MemoryHandle;
+import org.openstreetmap.josm.tools.MemoryManager.NotEnoughMemoryException;
+
+/**
+ * The tiles of all imagery layers in memory, limited by one budget in bytes.
+ * <p>
+ * The decoded images and the raw tile data, which the tile loaders pass with {@link #setContent}, are accounted separately.
+ * When the budget is exceeded, the decoded images of the least recently used tiles are dropped first, as long as the images
+ * take more than half of the budget. When such a tile is requested, it is returned without image and decoded again from its
+ * raw data in the background, see {@link #createCache(int, TileLoaderListener, Executor)}. Then the least recently used
+ * tiles are removed.
+ * <p>
+ * The cache also keeps one processed image per tile, e.g. with the imagery filters applied, see {@link #setProcessedImage}.
+ * Processed images are accounted like decoded images, and dropped together with them.
+ * <p>
+ * The budget is the memory the imagery layers allocate with {@link #allocateMemory} from the {@link MemoryManager}, but at
+ * least {@link #MIN_BUDGET}. Each layer accesses the tiles through its own {@link TileCache}, see {@link #createCache(int)}.
+ */
+public final class TileMemoryCache {
+
+    /** The budget if no memory has been allocated */
+    public static final long MIN_BUDGET = 16L * 1024 * 1024;
+    /** The estimated memory used by a tile without its image and data */
+    private static final long ENTRY_OVERHEAD = 256;
+
+    private static final TileMemoryCache INSTANCE = new TileMemoryCache();
+
+    /** The entries by layer and tile key, in least recently used order */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final Map<Tile, Entry> entriesByTile = new IdentityHashMap<>();
+    /** The entries whose decoded image can be dropped, in least recently used order */
+    private final LinkedHashSet<Entry> decodedEntries = new LinkedHashSet<>();
+    private long allocated;
+    private long decodedBytes;
+    private long rawBytes;
+    private int nextCacheId;
+
+    private static final class Entry {
+        private final LayerCache cache;
+        private final Tile tile;
+        private byte[] content;
+        /** the image whose size is accounted, {@code null} if the image has been dropped */
+        private BufferedImage image;
+        private long imageSize;
+        private boolean dropped;
+        /** the image from which {@link #processed} has been computed */
+        private BufferedImage processedSource;
+        private Object processedKey;
+        private BufferedImage processed;
+        private long processedSize;
+        /** {@code true} while the dropped image is decoded again */
+        private boolean decoding;
+
+        Entry(LayerCache cache, Tile tile) {
+            this.cache = cache;
+            this.tile = tile;
+        }
+
+        boolean canDrop() {
+            return (content != null && imageSize > 0) || processedSize > 0;
+        }
+    }
+
+    /**
+     * The tile cache of one layer.
+     */
+    private final class LayerCache implements TileCache {
+        private final String prefix;
+        private final int cacheSize;
+        private final TileLoaderListener listener;
+        private final Executor executor;
+        private int tileCount;
+
+        LayerCache(int id, int cacheSize, TileLoaderListener listener, Executor executor) {
+            this.prefix = id + "/";
+            this.cacheSize = cacheSize;
+            this.listener = listener;
+            this.executor = executor;
+        }
+
+        @Override
+        public Tile getTile(TileSource source, int x, int y, int z) {
+            return TileMemoryCache.this.getTile(prefix + Tile.getTileKey(source, x, y, z));
+        }
+
+        @Override
+        public void addTile(Tile tile) {
+            TileMemoryCache.this.addTile(this, tile);
+        }
+
+        @Override
+        public int getTileCount() {
+            synchronized (TileMemoryCache.this) {
+                return tileCount;
+            }
+        }
+
+        @Override
+        public void clear() {
+            TileMemoryCache.this.clear(this);
+        }
+
+        @Override
+        public int getCacheSize() {
+            return cacheSize;
+        }
+    }
+
+    private TileMemoryCache() {
+        // Hide default constructor for singleton
+    }
+
+    /**
+     * Returns the unique instance.
+     * @return the unique instance
+     */
+    public static TileMemoryCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Creates the tile cache of a layer. Tiles whose image has been dropped are returned as not loaded, so that the layer
+     * loads them again.
+     * @param cacheSize the number of tiles the layer expects to keep, see {@link TileCache#getCacheSize()}
+     * @return a new tile cache, sharing the budget with the other layers
+     */
+    public TileCache createCache(int cacheSize) {
+        return createCache(cacheSize, null, null);
+    }
+
+    /**
+     * Creates the tile cache of a layer. Tiles whose image has been dropped are returned as loading, and decoded again from
+     * their raw data by the given executor. The listener is notified when the image has been decoded.
+     * @param cacheSize the number of tiles the layer expects to keep, see {@link TileCache#getCacheSize()}
+     * @param listener the listener notified when a dropped image has been decoded, {@code null} to load the tile again
+     * @param executor the executor decoding the dropped images, {@code null} to load the tile again
+     * @return a new tile cache, sharing the budget with the other layers
+     */
+    public synchronized TileCache createCache(int cacheSize, TileLoaderListener listener, Executor executor) {
+        return new LayerCache(nextCacheId++, cacheSize, listener, executor);
+    }
+
+    /**
+     * Allocates memory for the tiles of a layer, which is added to the budget until it is freed.
+     * @param name a name for the memory area
+     * @param bytes the number of bytes
+     * @return the memory handle
+     * @throws NotEnoughMemoryException if there is not enough memory
+     */
+    public MemoryHandle<?> allocateMemory(String name, long bytes) throws NotEnoughMemoryException {
+        MemoryHandle<TileMemoryCache> handle = MemoryManager.getInstance().allocateMemory(name, bytes, () -> this);
+        synchronized (this) {
+            allocated += bytes;
+        }
+        return new MemoryHandle<TileMemoryCache>() {
+            @Override
+            public TileMemoryCache get() {
+                return handle.get();
+            }
+
+            @Override
+            public long getSize() {
+                return handle.getSize();
+            }
+
+            @Override
+            public void free() {
+                handle.free();
+                synchronized (TileMemoryCache.this) {
+                    allocated -= bytes;
+                    trim();
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns the budget.
+     * @return the number of bytes the tiles may use
+     */
+    public synchronized long getBudget() {
+        return Math.max(MIN_BUDGET, allocated);
+    }
+
+    /**
+     * Returns the memory used by the decoded tile images.
+     * @return the estimated number of bytes
+     */
+    public synchronized long getDecodedBytes() {
+        return decodedBytes;
+    }
+
+    /**
+     * Returns the memory used by the raw tile data and the tiles themselves.
+     * @return the estimated number of bytes
+     */
+    public synchronized long getRawBytes() {
+        return rawBytes;
+    }
+
+    /**
+     * Sets the raw data of a tile, which is used to decode its image again when it has been dropped.
+     * The tile image must have been decoded from this data. The size of the image is updated as well.
+     * @param tile the tile
+     * @param content the raw data, as returned by the tile server
+     */
+    public synchronized void setContent(Tile tile, byte[] content) {
+        Entry e = entriesByTile.get(tile);
+        if (e != null) {
+            rawBytes += (content == null ? 0 : content.length) - (e.content == null ? 0 : e.content.length);
+            e.content = content;
+            updateImage(e);
+            trim();
+        }
+    }
+
+    /**
+     * Updates the memory used by a tile after its image has changed, e.g. when it has been loaded.
+     * @param tile the tile
+     */
+    public synchronized void update(Tile tile) {
+        Entry e = entriesByTile.get(tile);
+        if (e != null) {
+            updateImage(e);
+            trim();
+        }
+    }
+
+    private void updateImage(Entry e) {
+        BufferedImage image = e.tile.getImage();
+        if (e.dropped && image == null) {
+            return;
+        }
+        decodedBytes -= e.imageSize;
+        e.image = image;
+        e.imageSize = getSize(image);
+        e.dropped = false;
+        decodedBytes += e.imageSize;
+        if (e.processedSource != image) {
+            dropProcessed(e);
+        }
+        updateDecodedEntries(e);
+    }
+
+    private void updateDecodedEntries(Entry e) {
+        decodedEntries.remove(e);
+        if (e.canDrop()) {
+            decodedEntries.add(e);
+        }
+    }
+
+    private void dropProcessed(Entry e) {
+        decodedBytes -= e.processedSize;
+        e.processedSource = null;
+        e.processedKey = null;
+        e.processed = null;
+        e.processedSize = 0;
+    }
+
+    /**
+     * Returns the processed image of a tile, if it has been computed from the current image of the tile.
+     * @param tile the tile
+     * @param key the key of the processing, e.g. a generation of the filter settings, or {@code null} to accept any key
+     * @return the processed image, or {@code null}
+     */
+    public synchronized BufferedImage getProcessedImage(Tile tile, Object key) {
+        Entry e = entriesByTile.get(tile);
+        if (e == null || e.processed == null || e.processedSource != tile.getImage() || (key != null && !key.equals(e.processedKey))) {
+            return null;
+        }
+        if (decodedEntries.remove(e)) {
+            decodedEntries.add(e);
+        }
+        return e.processed;
+    }
+
+    /**
+     * Sets the processed image of a tile, replacing the one of another key.
+     * @param tile the tile
+     * @param source the image of the tile, from which the image has been processed
+     * @param key the key of the processing, e.g. a generation of the filter settings
+     * @param processed the processed image, which may be {@code source} itself
+     * @return {@code true} if the image has been stored, {@code false} if the tile is not in the cache or its image has changed
+     */
+    public synchronized boolean setProcessedImage(Tile tile, BufferedImage source, Object key, BufferedImage processed) {
+        Entry e = entriesByTile.get(tile);
+        if (e == null || tile.getImage() != source) {
+            return false;
+        }
+        dropProcessed(e);
+        e.processedSource = source;
+        e.processedKey = key;
+        e.processed = processed;
+        e.processedSize = processed == source ? 0 : getSize(processed);
+        decodedBytes += e.processedSize;
+        updateDecodedEntries(e);
+        trim();
+        return true;
+    }
+
+    /**
+     * Returns the memory used by an image.
+     * @param image the image
+     * @return the estimated number of bytes, 0 for the shared placeholder images
+     */
+    static long getSize(BufferedImage image) {
+        if (image == null || image == Tile.LOADING_IMAGE || image == Tile.ERROR_IMAGE) {
+            return 0;
+        }
+        DataBuffer buffer = image.getRaster().getDataBuffer();
+        return (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+    }
+
+    private synchronized void addTile(LayerCache cache, Tile tile) {
+        String key = cache.prefix + tile.getKey();
+        Entry e = new Entry(cache, tile);
+        Entry old = entries.put(key, e);
+        if (old != null) {
+            forget(old);
+        }
+        entriesByTile.put(tile, e);
+        cache.tileCount++;
+        rawBytes += ENTRY_OVERHEAD;
+        updateImage(e);
+        trim();
+    }
+
+    private Tile getTile(String key) {
+        Entry e;
+        byte[] content = null;
+        synchronized (this) {
+            e = entries.get(key);
+            if (e == null) {
+                return null;
+            }
+            if (decodedEntries.remove(e)) {
+                decodedEntries.add(e);
+            }
+            if (e.dropped && e.content != null && !e.decoding) {
+                if (e.cache.listener == null || e.cache.executor == null) {
+                    // the layer loads the tile again
+                    e.tile.loadingCanceled();
+                } else {
+                    // the tile is painted as missing, and not loaded again by the layer, until the image is decoded
+                    e.decoding = true;
+                    e.tile.initLoading();
+                    content = e.content;
+                }
+            }
+        }
+        if (content != null) {
+            // never decode here, the tiles are requested while painting
+            byte[] data = content;
+            e.cache.executor.execute(() -> decode(e, data));
+        }
+        return e.tile;
+    }
+
+    private void decode(Entry e, byte[] content) {
+        BufferedImage image = null;
+        try {
+            image = ImageIO.read(new ByteArrayInputStream(content));
+        } catch (IOException ex) {
+            Main.warn(ex);
+        }
+        synchronized (this) {
+            e.decoding = false;
+            if (!e.dropped || entriesByTile.get(e.tile) != e) {
+                return;
+            }
+            if (image == null) {
+                e.tile.setError(tr("Could not load image from tile server"));
+            } else {
+                e.tile.setImage(image);
+            }
+            e.tile.finishLoading();
+            updateImage(e);
+            trim();
+        }
+        e.cache.listener.tileLoadingFinished(e.tile, image != null);
+    }
+
+    private synchronized void clear(LayerCache cache) {
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext();) {
+            Entry e = it.next();
+            if (e.cache == cache) {
+                it.remove();
+                forget(e);
+            }
+        }
+    }
+
+    /**
+     * Removes an entry which has already been removed from {@link #entries}.
+     */
+    private void forget(Entry e) {
+        entriesByTile.remove(e.tile);
+        decodedEntries.remove(e);
+        e.cache.tileCount--;
+        decodedBytes -= e.imageSize + e.processedSize;
+        rawBytes -= ENTRY_OVERHEAD + (e.content == null ? 0 : e.content.length);
+    }
+
+    private void trim() {
+        long budget = getBudget();
+        // drop decoded images first, but keep the most recently used ones in half of the budget
+        Iterator<Entry> decoded = decodedEntries.iterator();
+        while (decodedBytes + rawBytes > budget && decodedBytes > budget / 2 && decoded.hasNext()) {
+            Entry e = decoded.next();
+            decoded.remove();
+            dropProcessed(e);
+            if (e.content != null && e.imageSize > 0) {
+                if (e.tile.getImage() == e.image) {
+                    e.tile.setImage(null);
+                    e.dropped = true;
+                }
+                decodedBytes -= e.imageSize;
+                e.image = null;
+                e.imageSize = 0;
+            }
+        }
+        Iterator<Entry> all = entries.values().iterator();
+        while (decodedBytes + rawBytes > budget && all.hasNext()) {
+            Entry e = all.next();
+            all.remove();
+            forget(e);
+        }
+    }
+}
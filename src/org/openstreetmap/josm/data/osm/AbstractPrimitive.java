@@ -433,7 +433,7 @@ public abstract class AbstractPrimitive implements IPrimitive {
      * Writes to it are not synchronized by this object, the writers have to synchronize writes themselves.
      * <p>
      * In short this means that you should not rely on this variable being the same value when read again and your should always
-     * copy it on writes.
+     * copy it on writes. The array may be shared with other primitives, so it must never be modified in place.
      * <p>
      * Further reading:
      * <ul>
@@ -447,6 +447,14 @@ public abstract class AbstractPrimitive implements IPrimitive {
      */
     protected volatile String[] keys;
 
+    /**
+     * Replaces the key/value list of this primitive. All writes to {@link #keys} go through this method.
+     * @param newKeys the new key/value list, may be null
+     */
+    protected void setKeysArray(String[] newKeys) {
+        keys = newKeys;
+    }
+
     /**
      * Replies the map of key/value pairs. Never replies null. The map can be empty, though.
      *
@@ -489,7 +497,7 @@ public abstract class AbstractPrimitive implements IPrimitive {
     public void setKeys(Map<String, String> keys) {
         Map<String, String> originalKeys = getKeys();
         if (keys == null || keys.isEmpty()) {
-            this.keys = null;
+            setKeysArray(null);
             keysChangedImpl(originalKeys);
             return;
         }
@@ -499,7 +507,7 @@ public abstract class AbstractPrimitive implements IPrimitive {
             newKeys[index++] = entry.getKey();
             newKeys[index++] = entry.getValue();
         }
-        this.keys = newKeys;
+        setKeysArray(newKeys);
         keysChangedImpl(originalKeys);
     }
 
@@ -510,13 +518,13 @@ public abstract class AbstractPrimitive implements IPrimitive {
     public void setKeys(TagMap keys) {
         Map<String, String> originalKeys = getKeys();
         if (keys == null) {
-            this.keys = null;
+            setKeysArray(null);
         } else {
             String[] arr = keys.getTagsArray();
             if (arr.length == 0) {
-                this.keys = null;
+                setKeysArray(null);
             } else {
-                this.keys = arr;
+                setKeysArray(arr);
             }
         }
         keysChangedImpl(originalKeys);
@@ -542,7 +550,7 @@ public abstract class AbstractPrimitive implements IPrimitive {
         else if (value == null) {
             remove(key);
         } else if (keys == null) {
-            keys = new String[] {key, value};
+            setKeysArray(new String[] {key, value});
             keysChangedImpl(originalKeys);
         } else {
             int keyIndex = indexOfKey(keys, key);
@@ -559,7 +567,7 @@ public abstract class AbstractPrimitive implements IPrimitive {
             String[] newKeys = Arrays.copyOf(keys, tagArrayLength);
             newKeys[keyIndex] = key;
             newKeys[keyIndex + 1] = value;
-            keys = newKeys;
+            setKeysArray(newKeys);
             keysChangedImpl(originalKeys);
         }
     }
@@ -597,7 +605,7 @@ public abstract class AbstractPrimitive implements IPrimitive {
             return;
         Map<String, String> originalKeys = getKeys();
         if (keys.length == 2) {
-            keys = null;
+            setKeysArray(null);
             keysChangedImpl(originalKeys);
             return;
         }
@@ -609,7 +617,7 @@ public abstract class AbstractPrimitive implements IPrimitive {
                 newKeys[j++] = keys[i+1];
             }
         }
-        keys = newKeys;
+        setKeysArray(newKeys);
         keysChangedImpl(originalKeys);
     }
 
@@ -623,7 +631,7 @@ public abstract class AbstractPrimitive implements IPrimitive {
     public void removeAll() {
         if (keys != null) {
             Map<String, String> originalKeys = getKeys();
-            keys = null;
+            setKeysArray(null);
             keysChangedImpl(originalKeys);
         }
     }
@@ -33,6 +33,7 @@ import org.openstreetmap.josm.data.coor.LatLon;
 import org.openstreetmap.josm.data.osm.event.AbstractDatasetChangedEvent;
 import org.openstreetmap.josm.data.osm.event.ChangesetIdChangedEvent;
 import org.openstreetmap.josm.data.osm.event.DataChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataSetChangeSummary;
 import org.openstreetmap.josm.data.osm.event.DataSetListener;
 import org.openstreetmap.josm.data.osm.event.NodeMovedEvent;
 import org.openstreetmap.josm.data.osm.event.PrimitiveFlagsChangedEvent;
@@ -42,6 +43,8 @@ import org.openstreetmap.josm.data.osm.event.RelationMembersChangedEvent;
 import org.openstreetmap.josm.data.osm.event.TagsChangedEvent;
 import org.openstreetmap.josm.data.osm.event.WayNodesChangedEvent;
 import org.openstreetmap.josm.data.osm.visitor.BoundingXYVisitor;
+import org.openstreetmap.josm.data.preferences.BooleanProperty;
+import org.openstreetmap.josm.data.preferences.StringProperty;
 import org.openstreetmap.josm.data.projection.Projection;
 import org.openstreetmap.josm.data.projection.ProjectionChangeListener;
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
@@ -102,10 +105,22 @@ public final class DataSet implements Data, ProjectionChangeListener {
     private static final int MAX_SINGLE_EVENTS = 30;
 
     /**
-     * Maximum number of events to kept between beginUpdate/endUpdate. When more events are created, that simple DatasetChangedEvent is sent)
+     * Maximum number of events to kept between beginUpdate/endUpdate. When more events are created, a DatasetChangedEvent without events
+     * is sent, with the summary of the changes only
      */
     private static final int MAX_EVENTS = 1000;
 
+    /**
+     * The spatial index used for nodes and ways of new data sets: {@code quadbuckets} ({@link QuadBuckets})
+     * or {@code rtree} ({@link PackedRTree}, faster to bulk load for very large data sets).
+     */
+    public static final StringProperty SPATIAL_INDEX = new StringProperty("osm.spatial-index", "quadbuckets");
+
+    /**
+     * Whether new data sets store the node coordinates in a columnar {@link NodeCoordinateStore}.
+     */
+    public static final BooleanProperty NODE_COORDINATE_STORE = new BooleanProperty("osm.node-coordinate-store", false);
+
     private final Storage<OsmPrimitive> allPrimitives = new Storage<>(new Storage.PrimitiveIdHash(), true);
     private final Map<PrimitiveId, OsmPrimitive> primitivesMap = allPrimitives.foreignKey(new Storage.PrimitiveIdHash());
     private final CopyOnWriteArrayList<DataSetListener> listeners = new CopyOnWriteArrayList<>();
@@ -118,6 +133,8 @@ public final class DataSet implements Data, ProjectionChangeListener {
     private int updateCount;
     // Events that occurred while dataset was locked but should be fired after write lock is released
     private final List<AbstractDatasetChangedEvent> cachedEvents = new ArrayList<>();
+    // Summary of the events of the current update, sent if there are too many events to be sent as single events
+    private DataSetChangeSummary changeSummary;
 
     private int highlightUpdateCount;
 
@@ -235,11 +252,44 @@ public final class DataSet implements Data, ProjectionChangeListener {
     public AutoCompletionManager getAutoCompletionManager() {
         if (autocomplete == null) {
             autocomplete = new AutoCompletionManager(this);
-            addDataSetListener(autocomplete);
         }
         return autocomplete;
     }
 
+    /**
+     * Index of the tags and member roles, created on first use.
+     */
+    private volatile TagIndex tagIndex;
+
+    private final Object tagIndexLock = new Object();
+
+    /**
+     * Returns the index of the tags and member roles used in this data set.
+     * <p>
+     * The index is built with the first call, then it is kept up to date with every change of the data set.
+     * @return the tag index
+     */
+    public TagIndex getTagIndex() {
+        TagIndex index = tagIndex;
+        if (index == null) {
+            // the read lock prevents changes while the index is built, unless they are made by the current thread.
+            // Concurrent readers wait for the first one to build the index (double-checked, the field is volatile)
+            lock.readLock().lock();
+            try {
+                synchronized (tagIndexLock) {
+                    index = tagIndex;
+                    if (index == null) {
+                        index = new TagIndex(this);
+                        tagIndex = index;
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        return index;
+    }
+
     /**
      * The API version that created this data set, if any.
      */
@@ -309,7 +359,7 @@ public final class DataSet implements Data, ProjectionChangeListener {
      * All nodes goes here, even when included in other data (ways etc). This enables the instant
      * conversion of the whole DataSet by iterating over this data structure.
      */
-    private final QuadBuckets<Node> nodes = new QuadBuckets<>();
+    private final SpatialIndex<Node> nodes = createSpatialIndex();
 
     /**
      * Gets a filtered collection of primitives matching the given predicate.
@@ -357,12 +407,42 @@ public final class DataSet implements Data, ProjectionChangeListener {
         return nodes.contains(n);
     }
 
+    /**
+     * Gets the pool of the tag arrays shared by the primitives of this dataset.
+     * @return the tag set pool
+     */
+    public TagSetPool getTagSetPool() {
+        return tagSetPool;
+    }
+
+    /**
+     * Gets the columnar store for the coordinates of the nodes of this dataset.
+     * @return the store or {@code null} if the nodes store their coordinates themselves
+     */
+    NodeCoordinateStore getNodeCoordinateStore() {
+        return nodeCoordinates;
+    }
+
     /**
      * All ways (Streets etc.) in the DataSet.
      *
      * The way nodes are stored only in the way list.
      */
-    private final QuadBuckets<Way> ways = new QuadBuckets<>();
+    private final SpatialIndex<Way> ways = createSpatialIndex();
+
+    /**
+     * The tag arrays shared by the primitives of this dataset.
+     */
+    private final TagSetPool tagSetPool = new TagSetPool();
+
+    /**
+     * The coordinates of all nodes, {@code null} if the nodes store their coordinates themselves.
+     */
+    private final NodeCoordinateStore nodeCoordinates = NODE_COORDINATE_STORE.get() ? new NodeCoordinateStore() : null;
+
+    private static <T extends OsmPrimitive> SpatialIndex<T> createSpatialIndex() {
+        return "rtree".equals(SPATIAL_INDEX.get()) ? new PackedRTree<>() : new QuadBuckets<>();
+    }
 
     /**
      * Replies an unmodifiable collection of ways in this dataset
@@ -525,6 +605,68 @@ public final class DataSet implements Data, ProjectionChangeListener {
         }
     }
 
+    /**
+     * Adds several primitives to the dataset at once.
+     * <p>
+     * This is faster than calling {@link #addPrimitive(OsmPrimitive)} for each primitive, since the spatial index
+     * can be built in bulk and only one {@link PrimitivesAddedEvent} is fired.
+     * @param primitives the primitives
+     */
+    public void addPrimitives(Collection<? extends OsmPrimitive> primitives) {
+        if (primitives.isEmpty())
+            return;
+        beginUpdate();
+        try {
+            // check the whole batch first, so that an invalid primitive leaves the dataset unchanged
+            Set<PrimitiveId> ids = new HashSet<>();
+            for (OsmPrimitive primitive : primitives) {
+                Objects.requireNonNull(primitive, "primitive");
+                if (getPrimitiveById(primitive) != null || !ids.add(new SimplePrimitiveId(primitive.getUniqueId(), primitive.getType())))
+                    throw new DataIntegrityProblemException(
+                            tr("Unable to add primitive {0} to the dataset because it is already included", primitive.toString()));
+                if (primitive.getDataSet() != null)
+                    throw new DataIntegrityProblemException("Primitive cannot be included in more than one Dataset");
+                if (primitive instanceof Node && !primitive.isIncomplete() && primitive.isVisible() && !((Node) primitive).isLatLonKnown())
+                    throw new DataIntegrityProblemException("Complete node with null coordinates: " + primitive.toString());
+            }
+
+            List<Node> newNodes = new ArrayList<>();
+            List<Way> newWays = new ArrayList<>();
+            List<Relation> newRelations = new ArrayList<>();
+            for (OsmPrimitive primitive : primitives) {
+                allPrimitives.add(primitive);
+                primitive.setDataset(this);
+                primitive.updatePosition();
+                if (primitive instanceof Node) {
+                    newNodes.add((Node) primitive);
+                } else if (primitive instanceof Way) {
+                    newWays.add((Way) primitive);
+                } else if (primitive instanceof Relation) {
+                    newRelations.add((Relation) primitive);
+                }
+            }
+            int nodeCount = nodes.size();
+            int wayCount = ways.size();
+            nodes.addAll(newNodes);
+            ways.addAll(newWays);
+            relations.addAll(newRelations);
+            if (nodes.size() != nodeCount + newNodes.size() || ways.size() != wayCount + newWays.size()) {
+                // roll back, so that no primitive is left in the dataset without being indexed
+                nodes.removeAll(newNodes);
+                ways.removeAll(newWays);
+                relations.removeAll(newRelations);
+                for (OsmPrimitive primitive : primitives) {
+                    allPrimitives.remove(primitive);
+                    primitive.setDataset(null);
+                }
+                throw new JosmRuntimeException("failed to add primitives: " + primitives);
+            }
+            firePrimitivesAdded(new ArrayList<>(primitives), false);
+        } finally {
+            endUpdate();
+        }
+    }
+
     /**
      * Removes a primitive from the dataset. This method only removes the
      * primitive form the respective collection of primitives managed
@@ -1144,9 +1286,12 @@ public final class DataSet implements Data, ProjectionChangeListener {
         if (updateCount > 0) {
             updateCount--;
             List<AbstractDatasetChangedEvent> eventsToFire = Collections.emptyList();
+            DataSetChangeSummary summary = null;
             if (updateCount == 0) {
                 eventsToFire = new ArrayList<>(cachedEvents);
                 cachedEvents.clear();
+                summary = changeSummary;
+                changeSummary = null;
             }
 
             if (!eventsToFire.isEmpty()) {
@@ -1158,9 +1303,9 @@ public final class DataSet implements Data, ProjectionChangeListener {
                             fireEventToListeners(event);
                         }
                     } else if (eventsToFire.size() == MAX_EVENTS) {
-                        fireEventToListeners(new DataChangedEvent(this));
+                        fireEventToListeners(new DataChangedEvent(this, null, summary));
                     } else {
-                        fireEventToListeners(new DataChangedEvent(this, eventsToFire));
+                        fireEventToListeners(new DataChangedEvent(this, eventsToFire, summary));
                     }
                 } finally {
                     lock.readLock().unlock();
@@ -1182,9 +1327,18 @@ public final class DataSet implements Data, ProjectionChangeListener {
     private void fireEvent(AbstractDatasetChangedEvent event) {
         if (updateCount == 0)
             throw new AssertionError("dataset events can be fired only when dataset is locked");
+        TagIndex index = tagIndex;
+        if (index != null) {
+            event.fire(index);
+        }
         if (cachedEvents.size() < MAX_EVENTS) {
             cachedEvents.add(event);
         }
+        // the event is added to the summary when the change is made, so it can compare the original and the current tags
+        if (changeSummary == null) {
+            changeSummary = new DataSetChangeSummary();
+        }
+        changeSummary.add(event);
     }
 
     void firePrimitivesAdded(Collection<? extends OsmPrimitive> added, boolean wasIncomplete) {
@@ -1205,8 +1359,9 @@ public final class DataSet implements Data, ProjectionChangeListener {
     }
 
     void fireNodeMoved(Node node, LatLon newCoor, EastNorth eastNorth) {
+        LatLon oldCoor = node.getCoor();
         reindexNode(node, newCoor, eastNorth);
-        fireEvent(new NodeMovedEvent(this, node));
+        fireEvent(new NodeMovedEvent(this, node, oldCoor));
     }
 
     void fireWayNodesChanged(Way way) {
@@ -1234,10 +1389,16 @@ public final class DataSet implements Data, ProjectionChangeListener {
      */
     public void invalidateEastNorthCache() {
         if (Main.getProjection() == null) return; // sanity check
+        if (nodeCoordinates != null) {
+            // the nodes in the store are reprojected in one pass on next access
+            nodeCoordinates.invalidateEastNorth();
+        }
         try {
             beginUpdate();
             for (Node n: Utils.filteredCollection(allPrimitives, Node.class)) {
-                n.invalidateEastNorthCache();
+                if (!n.isInCoordinateStore()) {
+                    n.invalidateEastNorthCache();
+                }
             }
         } finally {
             endUpdate();
@@ -1302,6 +1463,9 @@ public final class DataSet implements Data, ProjectionChangeListener {
             ways.clear();
             relations.clear();
             allPrimitives.clear();
+            if (tagIndex != null) {
+                tagIndex.clear();
+            }
         } finally {
             endUpdate();
         }
@@ -1347,6 +1511,10 @@ public final class DataSet implements Data, ProjectionChangeListener {
     @Override
     public void projectionChanged(Projection oldValue, Projection newValue) {
         invalidateEastNorthCache();
+        if (nodeCoordinates != null && newValue != null) {
+            // all nodes in the store are reprojected in one pass over the coordinate arrays
+            nodeCoordinates.reproject(newValue);
+        }
     }
 
     public ProjectionBounds getDataSourceBoundingBox() {
@@ -44,6 +44,8 @@ public class DataSetMerger {
      */
     private final Set<PrimitiveId> objectsWithChildrenToMerge;
     private final Set<OsmPrimitive> objectsToDelete;
+    /** the new primitives created during merging, added to the target dataset in bulk after each primitive type */
+    private final List<OsmPrimitive> primitivesToAdd;
 
     /**
      * constructor
@@ -62,6 +64,7 @@ public class DataSetMerger {
         mergedMap = new HashMap<>();
         objectsWithChildrenToMerge = new HashSet<>();
         objectsToDelete = new HashSet<>();
+        primitivesToAdd = new ArrayList<>();
     }
 
     /**
@@ -119,11 +122,16 @@ public class DataSetMerger {
         default: throw new AssertionError();
         }
         target.mergeFrom(source);
-        targetDataSet.addPrimitive(target);
+        primitivesToAdd.add(target);
         mergedMap.put(source.getPrimitiveId(), target.getPrimitiveId());
         objectsWithChildrenToMerge.add(source.getPrimitiveId());
     }
 
+    private void addMergedPrimitives() {
+        targetDataSet.addPrimitives(primitivesToAdd);
+        primitivesToAdd.clear();
+    }
+
     protected OsmPrimitive getMergeTarget(OsmPrimitive mergeSource) {
         PrimitiveId targetId = mergedMap.get(mergeSource.getPrimitiveId());
         if (targetId == null)
@@ -413,6 +421,7 @@ public class DataSetMerger {
                     progressMonitor.worked(1);
                 }
             }
+            addMergedPrimitives();
             candidates.clear();
             candidates = new ArrayList<>(targetDataSet.getWays());
             for (Way way: sourceDataSet.getWays()) {
@@ -421,6 +430,7 @@ public class DataSetMerger {
                     progressMonitor.worked(1);
                 }
             }
+            addMergedPrimitives();
             candidates.clear();
             candidates = new ArrayList<>(targetDataSet.getRelations());
             for (Relation relation: sourceDataSet.getRelations()) {
@@ -429,6 +439,7 @@ public class DataSetMerger {
                     progressMonitor.worked(1);
                 }
             }
+            addMergedPrimitives();
             candidates.clear();
             fixReferences();
         } finally {
@@ -25,21 +25,37 @@ import org.openstreetmap.josm.tools.Utils;
  */
 public final class Node extends OsmPrimitive implements INode {
 
-    /*
-     * We "inline" lat/lon rather than using a LatLon-object => reduces memory footprint
+    /**
+     * The coordinates of a node that is not kept in a {@link NodeCoordinateStore}.
      */
-    private double lat = Double.NaN;
-    private double lon = Double.NaN;
+    private static final class Coordinates {
+        /*
+         * We "inline" lat/lon rather than using a LatLon-object => reduces memory footprint
+         */
+        private double lat = Double.NaN;
+        private double lon = Double.NaN;
+
+        /*
+         * the cached projected coordinates
+         */
+        private double east = Double.NaN;
+        private double north = Double.NaN;
+        /**
+         * The cache key to use for {@link #east} and {@link #north}.
+         */
+        private Object eastNorthCacheKey;
+    }
 
-    /*
-     * the cached projected coordinates
+    /**
+     * The coordinates of this node or {@code null} while they are kept in the {@link NodeCoordinateStore} of its dataset.
      */
-    private double east = Double.NaN;
-    private double north = Double.NaN;
+    private Coordinates coordinates = new Coordinates();
+
     /**
-     * The cache key to use for {@link #east} and {@link #north}.
+     * The slot of this node in the {@link NodeCoordinateStore} of its dataset or -1 if the coordinates are stored in
+     * {@link #coordinates}.
      */
-    private Object eastNorthCacheKey;
+    private int coordinateSlot = -1;
 
     /**
      * Determines if this node has valid coordinates.
@@ -47,7 +63,25 @@ public final class Node extends OsmPrimitive implements INode {
      * @since 7828
      */
     public boolean isLatLonKnown() {
-        return !Double.isNaN(lat) && !Double.isNaN(lon);
+        return !Double.isNaN(lat()) && !Double.isNaN(lon());
+    }
+
+    private double lat() {
+        Coordinates c = coordinates;
+        return c != null ? c.lat : getDataSet().getNodeCoordinateStore().getLat(coordinateSlot);
+    }
+
+    private double lon() {
+        Coordinates c = coordinates;
+        return c != null ? c.lon : getDataSet().getNodeCoordinateStore().getLon(coordinateSlot);
+    }
+
+    /**
+     * Determines if the coordinates of this node are kept in the {@link NodeCoordinateStore} of its dataset.
+     * @return {@code true} if the coordinates of this node are kept in the coordinate store
+     */
+    boolean isInCoordinateStore() {
+        return coordinates == null;
     }
 
     @Override
@@ -80,7 +114,7 @@ public final class Node extends OsmPrimitive implements INode {
     @Override
     public LatLon getCoor() {
         if (!isLatLonKnown()) return null;
-        return new LatLon(lat, lon);
+        return new LatLon(lat(), lon());
     }
 
     /**
@@ -109,17 +143,19 @@ public final class Node extends OsmPrimitive implements INode {
      * @since 10827
      */
     public EastNorth getEastNorth(Projection projection) {
-        if (!isLatLonKnown()) return null;
+        Coordinates c = coordinates;
+        if (c == null) return getDataSet().getNodeCoordinateStore().getEastNorth(coordinateSlot, projection);
+        if (Double.isNaN(c.lat) || Double.isNaN(c.lon)) return null;
 
-        if (Double.isNaN(east) || Double.isNaN(north) || !Objects.equals(projection.getCacheKey(), eastNorthCacheKey)) {
+        if (Double.isNaN(c.east) || Double.isNaN(c.north) || !Objects.equals(projection.getCacheKey(), c.eastNorthCacheKey)) {
             // projected coordinates haven't been calculated yet,
             // so fill the cache of the projected node coordinates
-            EastNorth en = Projections.project(new LatLon(lat, lon));
-            this.east = en.east();
-            this.north = en.north();
-            this.eastNorthCacheKey = projection.getCacheKey();
+            EastNorth en = Projections.project(new LatLon(c.lat, c.lon));
+            c.east = en.east();
+            c.north = en.north();
+            c.eastNorthCacheKey = projection.getCacheKey();
         }
-        return new EastNorth(east, north);
+        return new EastNorth(c.east, c.north);
     }
 
     /**
@@ -128,27 +164,40 @@ public final class Node extends OsmPrimitive implements INode {
      * @param eastNorth east/north
      */
     void setCoorInternal(LatLon coor, EastNorth eastNorth) {
+        Coordinates c = coordinates;
         if (coor != null) {
-            this.lat = coor.lat();
-            this.lon = coor.lon();
-            invalidateEastNorthCache();
+            setLatLon(coor.lat(), coor.lon());
         } else if (eastNorth != null) {
             LatLon ll = Projections.inverseProject(eastNorth);
-            this.lat = ll.lat();
-            this.lon = ll.lon();
-            this.east = eastNorth.east();
-            this.north = eastNorth.north();
-            this.eastNorthCacheKey = Main.getProjection().getCacheKey();
+            Object cacheKey = Main.getProjection().getCacheKey();
+            if (c != null) {
+                c.lat = ll.lat();
+                c.lon = ll.lon();
+                c.east = eastNorth.east();
+                c.north = eastNorth.north();
+                c.eastNorthCacheKey = cacheKey;
+            } else {
+                getDataSet().getNodeCoordinateStore().setCoor(coordinateSlot, ll.lat(), ll.lon(), eastNorth, cacheKey);
+            }
         } else {
-            this.lat = Double.NaN;
-            this.lon = Double.NaN;
-            invalidateEastNorthCache();
+            setLatLon(Double.NaN, Double.NaN);
             if (isVisible()) {
                 setIncomplete(true);
             }
         }
     }
 
+    private void setLatLon(double lat, double lon) {
+        Coordinates c = coordinates;
+        if (c != null) {
+            c.lat = lat;
+            c.lon = lon;
+            invalidateEastNorthCache();
+        } else {
+            getDataSet().getNodeCoordinateStore().setLatLon(coordinateSlot, lat, lon);
+        }
+    }
+
     protected Node(long id, boolean allowNegative) {
         super(id, allowNegative);
     }
@@ -221,7 +270,22 @@ public final class Node extends OsmPrimitive implements INode {
 
     @Override
     void setDataset(DataSet dataSet) {
+        if (coordinates == null && dataSet == null) {
+            // move the coordinates back into this node
+            NodeCoordinateStore store = getDataSet().getNodeCoordinateStore();
+            Coordinates c = new Coordinates();
+            c.lat = store.getLat(coordinateSlot);
+            c.lon = store.getLon(coordinateSlot);
+            coordinates = c;
+            store.release(coordinateSlot);
+            coordinateSlot = -1;
+        }
         super.setDataset(dataSet);
+        if (coordinates != null && dataSet != null && dataSet.getNodeCoordinateStore() != null) {
+            // the store is the only copy of the coordinates while this node is in the dataset
+            coordinateSlot = dataSet.getNodeCoordinateStore().allocate(coordinates.lat, coordinates.lon);
+            coordinates = null;
+        }
         if (!isIncomplete() && isVisible() && !isLatLonKnown())
             throw new DataIntegrityProblemException("Complete node with null coordinates: " + toString());
     }
@@ -300,7 +364,7 @@ public final class Node extends OsmPrimitive implements INode {
 
     @Override
     public String toString() {
-        String coorDesc = isLatLonKnown() ? "lat="+lat+",lon="+lon : "";
+        String coorDesc = isLatLonKnown() ? "lat="+lat()+",lon="+lon() : "";
         return "{Node id=" + getUniqueId() + " version=" + getVersion() + ' ' + getFlagsAsString() + ' ' + coorDesc+'}';
     }
 
@@ -335,12 +399,12 @@ public final class Node extends OsmPrimitive implements INode {
 
     @Override
     public BBox getBBox() {
-        return new BBox(lon, lat);
+        return new BBox(lon(), lat());
     }
 
     @Override
     protected void addToBBox(BBox box, Set<PrimitiveId> visited) {
-        box.add(lon, lat);
+        box.add(lon(), lat());
     }
 
     @Override
@@ -370,9 +434,14 @@ public final class Node extends OsmPrimitive implements INode {
      * next time.
      */
     public void invalidateEastNorthCache() {
-        this.east = Double.NaN;
-        this.north = Double.NaN;
-        this.eastNorthCacheKey = null;
+        Coordinates c = coordinates;
+        if (c != null) {
+            c.east = Double.NaN;
+            c.north = Double.NaN;
+            c.eastNorthCacheKey = null;
+        } else {
+            getDataSet().getNodeCoordinateStore().invalidateEastNorth(coordinateSlot);
+        }
     }
 
     @Override
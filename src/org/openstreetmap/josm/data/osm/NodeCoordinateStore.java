@@ -0,0 +1,221 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.projection.Projection;
+
+/**
+ * Columnar storage for the coordinates of the nodes of a {@link DataSet}.
+ * <p>
+ * Each node of the data set gets a dense slot. The lat/lon coordinates and the projected east/north coordinates are
+ * stored in parallel primitive arrays indexed by that slot. All projected coordinates share one cache key, so after a
+ * projection change all nodes are reprojected in one pass over the arrays instead of one by one on first access.
+ * <p>
+ * Slots of removed nodes are reused. All modifications, including the lazy computation of projected coordinates,
+ * are synchronized on the store. Readers don't lock: the arrays are published through a volatile {@link Columns}
+ * holder which is only replaced after the new arrays have been filled completely.
+ */
+final class NodeCoordinateStore {
+    private static final int INITIAL_CAPACITY = 1024;
+    /** cache key used when the projected coordinates need to be recomputed */
+    private static final Object INVALID = new Object();
+
+    /**
+     * The coordinate arrays together with the cache key of the projected coordinates.
+     */
+    private static final class Columns {
+        private final double[] lat;
+        private final double[] lon;
+        private final double[] east;
+        private final double[] north;
+        /** the cache key of the projection all valid east/north values were computed with */
+        private final Object eastNorthCacheKey;
+
+        Columns(double[] lat, double[] lon, double[] east, double[] north, Object eastNorthCacheKey) {
+            this.lat = lat;
+            this.lon = lon;
+            this.east = east;
+            this.north = north;
+            this.eastNorthCacheKey = eastNorthCacheKey;
+        }
+    }
+
+    private volatile Columns columns = new Columns(new double[INITIAL_CAPACITY], new double[INITIAL_CAPACITY],
+            new double[INITIAL_CAPACITY], new double[INITIAL_CAPACITY], INVALID);
+    /** the number of slots that have been handed out at least once */
+    private int used;
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+
+    /**
+     * Allocates a slot for a node.
+     * @param latitude the latitude, {@code NaN} if unknown
+     * @param longitude the longitude, {@code NaN} if unknown
+     * @return the slot
+     */
+    synchronized int allocate(double latitude, double longitude) {
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            Columns c = columns;
+            if (used == c.lat.length) {
+                int capacity = c.lat.length * 2;
+                columns = new Columns(Arrays.copyOf(c.lat, capacity), Arrays.copyOf(c.lon, capacity),
+                        Arrays.copyOf(c.east, capacity), Arrays.copyOf(c.north, capacity), c.eastNorthCacheKey);
+            }
+            slot = used++;
+        }
+        setLatLon(slot, latitude, longitude);
+        return slot;
+    }
+
+    /**
+     * Releases a slot so that it can be reused by an other node.
+     * @param slot the slot
+     */
+    synchronized void release(int slot) {
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+        }
+        freeSlots[freeCount++] = slot;
+        setLatLon(slot, Double.NaN, Double.NaN);
+    }
+
+    /**
+     * Sets the lat/lon coordinates of a slot and invalidates its projected coordinates.
+     * @param slot the slot
+     * @param latitude the latitude
+     * @param longitude the longitude
+     */
+    synchronized void setLatLon(int slot, double latitude, double longitude) {
+        Columns c = columns;
+        c.east[slot] = Double.NaN;
+        c.north[slot] = Double.NaN;
+        c.lat[slot] = latitude;
+        c.lon[slot] = longitude;
+    }
+
+    /**
+     * Sets the lat/lon coordinates of a slot together with its known projected coordinates.
+     * @param slot the slot
+     * @param latitude the latitude
+     * @param longitude the longitude
+     * @param eastNorth the projected coordinates
+     * @param cacheKey the cache key of the projection used for {@code eastNorth}
+     */
+    synchronized void setCoor(int slot, double latitude, double longitude, EastNorth eastNorth, Object cacheKey) {
+        setLatLon(slot, latitude, longitude);
+        Columns c = columns;
+        if (Objects.equals(cacheKey, c.eastNorthCacheKey)) {
+            c.east[slot] = eastNorth.east();
+            c.north[slot] = eastNorth.north();
+        }
+    }
+
+    double getLat(int slot) {
+        return columns.lat[slot];
+    }
+
+    double getLon(int slot) {
+        return columns.lon[slot];
+    }
+
+    /**
+     * Gets the projected coordinates of a slot, reprojecting the whole store if the projection changed.
+     * @param slot the slot
+     * @param projection the projection
+     * @return the projected coordinates or {@code null} if the lat/lon coordinates are unknown
+     */
+    EastNorth getEastNorth(int slot, Projection projection) {
+        Columns c = columns;
+        if (Double.isNaN(c.lat[slot]) || Double.isNaN(c.lon[slot]))
+            return null;
+        if (Objects.equals(projection.getCacheKey(), c.eastNorthCacheKey)) {
+            double e = c.east[slot];
+            double n = c.north[slot];
+            if (!Double.isNaN(e) && !Double.isNaN(n))
+                return new EastNorth(e, n);
+        }
+        return project(slot, projection);
+    }
+
+    /**
+     * Computes the projected coordinates of a slot which are not cached yet.
+     * @param slot the slot
+     * @param projection the projection
+     * @return the projected coordinates or {@code null} if the lat/lon coordinates are unknown
+     */
+    private synchronized EastNorth project(int slot, Projection projection) {
+        if (!Objects.equals(projection.getCacheKey(), columns.eastNorthCacheKey)) {
+            reproject(projection);
+        }
+        Columns c = columns;
+        double e = c.east[slot];
+        double n = c.north[slot];
+        if (!Double.isNaN(e) && !Double.isNaN(n))
+            return new EastNorth(e, n);
+        if (Double.isNaN(c.lat[slot]) || Double.isNaN(c.lon[slot]))
+            return null;
+        EastNorth en = projection.latlon2eastNorth(new LatLon(c.lat[slot], c.lon[slot]));
+        c.east[slot] = en.east();
+        c.north[slot] = en.north();
+        return en;
+    }
+
+    /**
+     * Invalidates the projected coordinates of a single slot.
+     * @param slot the slot
+     */
+    synchronized void invalidateEastNorth(int slot) {
+        Columns c = columns;
+        c.east[slot] = Double.NaN;
+        c.north[slot] = Double.NaN;
+    }
+
+    /**
+     * Invalidates the projected coordinates of all slots. They are recomputed in one pass on next access.
+     */
+    synchronized void invalidateEastNorth() {
+        Columns c = columns;
+        columns = new Columns(c.lat, c.lon, c.east, c.north, INVALID);
+    }
+
+    /**
+     * Recomputes the projected coordinates of all slots.
+     * <p>
+     * The projected coordinates are written to new arrays, so concurrent readers never see a partially reprojected store.
+     * @param projection the new projection
+     */
+    synchronized void reproject(Projection projection) {
+        Object cacheKey = projection.getCacheKey();
+        Columns c = columns;
+        if (Objects.equals(cacheKey, c.eastNorthCacheKey))
+            return;
+        double[] east = new double[c.east.length];
+        double[] north = new double[c.north.length];
+        for (int i = 0; i < used; i++) {
+            if (Double.isNaN(c.lat[i]) || Double.isNaN(c.lon[i])) {
+                east[i] = Double.NaN;
+                north[i] = Double.NaN;
+            } else {
+                EastNorth en = projection.latlon2eastNorth(new LatLon(c.lat[i], c.lon[i]));
+                east[i] = en.east();
+                north[i] = en.north();
+            }
+        }
+        columns = new Columns(c.lat, c.lon, east, north, cacheKey);
+    }
+
+    /**
+     * Gets the number of nodes stored.
+     * @return the number of slots in use
+     */
+    synchronized int size() {
+        return used - freeCount;
+    }
+}
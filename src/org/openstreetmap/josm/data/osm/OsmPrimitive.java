@@ -233,6 +233,15 @@ public abstract class OsmPrimitive extends AbstractPrimitive implements Comparab
     void setDataset(DataSet dataSet) {
         if (this.dataSet != null && dataSet != null && this.dataSet != dataSet)
             throw new DataIntegrityProblemException("Primitive cannot be included in more than one Dataset");
+        if (this.dataSet != dataSet) {
+            // share the tag array with the other primitives of the dataset that have the same tags
+            if (this.dataSet != null) {
+                this.dataSet.getTagSetPool().release(keys);
+            }
+            if (dataSet != null) {
+                keys = dataSet.getTagSetPool().acquire(keys);
+            }
+        }
         this.dataSet = dataSet;
     }
 
@@ -898,6 +907,18 @@ public abstract class OsmPrimitive extends AbstractPrimitive implements Comparab
         }
     }
 
+    @Override
+    protected void setKeysArray(String[] newKeys) {
+        if (dataSet != null) {
+            TagSetPool pool = dataSet.getTagSetPool();
+            String[] oldKeys = keys;
+            super.setKeysArray(pool.acquire(newKeys));
+            pool.release(oldKeys);
+        } else {
+            super.setKeysArray(newKeys);
+        }
+    }
+
     @Override
     protected void keysChangedImpl(Map<String, String> originalKeys) {
         clearCachedStyle();
@@ -1130,7 +1151,8 @@ public abstract class OsmPrimitive extends AbstractPrimitive implements Comparab
      * @return true if other isn't null and has the same interesting tags (key/value-pairs) as this.
      */
     public boolean hasSameInterestingTags(OsmPrimitive other) {
-        return (keys == null && other.keys == null)
+        // tag arrays are shared within a dataset, so equal tags are usually the same array
+        return keys == other.keys
                 || getInterestingTags().equals(other.getInterestingTags());
     }
 
@@ -1158,7 +1180,8 @@ public abstract class OsmPrimitive extends AbstractPrimitive implements Comparab
 
     boolean hasEqualSemanticAttributes(final OsmPrimitive other, final boolean testInterestingTagsOnly) {
         return hasEqualSemanticFlags(other)
-                && (testInterestingTagsOnly ? hasSameInterestingTags(other) : getKeys().equals(other.getKeys()));
+                && (keys == other.keys
+                    || (testInterestingTagsOnly ? hasSameInterestingTags(other) : getKeys().equals(other.getKeys())));
     }
 
     /**
@@ -0,0 +1,619 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * An R-tree that is bulk loaded using the Sort-Tile-Recursive (STR) packing algorithm.
+ * <p>
+ * When many primitives are added at once (see {@link #addAll(Collection)}), the whole tree is rebuilt bottom-up:
+ * entries are sorted into vertical slices by the x coordinate of their center, each slice is sorted by y and packed into
+ * full leaves. This is much cheaper than inserting one primitive at a time and results in fully packed nodes with
+ * little overlap. Primitives added afterwards are inserted incrementally (least enlargement, sort split).
+ * <p>
+ * The bounding boxes of all entries are kept in primitive arrays inside the tree nodes, so a search does not need to
+ * call {@link OsmPrimitive#getBBox()} for the candidates.
+ * <p>
+ * Note: bbox of primitives added to the tree has to stay the same. In case of coordinate change, primitive must
+ * be removed and re-added.
+ *
+ * This class is not thread safe.
+ * @param <T> type of primitives
+ */
+public class PackedRTree<T extends OsmPrimitive> extends AbstractCollection<T> implements SpatialIndex<T> {
+
+    /**
+     * The maximum number of entries per tree node.
+     */
+    static final int MAX_ENTRIES = 16;
+
+    private static final class RNode {
+        private final boolean leaf;
+        private int count;
+        /** The children: either {@code RNode}s or primitives if this is a leaf. One extra slot for overflow. */
+        private final Object[] children = new Object[MAX_ENTRIES + 1];
+        /** The bounds of the children, in the order xmin, ymin, xmax, ymax. */
+        private final double[] bounds = new double[4 * (MAX_ENTRIES + 1)];
+        private double xmin;
+        private double ymin;
+        private double xmax;
+        private double ymax;
+
+        RNode(boolean leaf) {
+            this.leaf = leaf;
+            resetBounds();
+        }
+
+        private void resetBounds() {
+            xmin = Double.POSITIVE_INFINITY;
+            ymin = Double.POSITIVE_INFINITY;
+            xmax = Double.NEGATIVE_INFINITY;
+            ymax = Double.NEGATIVE_INFINITY;
+        }
+
+        void append(Object child, double x0, double y0, double x1, double y1) {
+            children[count] = child;
+            setChildBounds(count, x0, y0, x1, y1);
+            count++;
+            extend(x0, y0, x1, y1);
+        }
+
+        void appendNode(RNode child) {
+            append(child, child.xmin, child.ymin, child.xmax, child.ymax);
+        }
+
+        void setChildBounds(int i, double x0, double y0, double x1, double y1) {
+            bounds[4 * i] = x0;
+            bounds[4 * i + 1] = y0;
+            bounds[4 * i + 2] = x1;
+            bounds[4 * i + 3] = y1;
+        }
+
+        void extend(double x0, double y0, double x1, double y1) {
+            xmin = Math.min(xmin, x0);
+            ymin = Math.min(ymin, y0);
+            xmax = Math.max(xmax, x1);
+            ymax = Math.max(ymax, y1);
+        }
+
+        void removeAt(int i) {
+            int moved = count - i - 1;
+            if (moved > 0) {
+                System.arraycopy(children, i + 1, children, i, moved);
+                System.arraycopy(bounds, 4 * (i + 1), bounds, 4 * i, 4 * moved);
+            }
+            count--;
+            children[count] = null;
+        }
+
+        void recomputeBounds() {
+            resetBounds();
+            for (int i = 0; i < count; i++) {
+                extend(bounds[4 * i], bounds[4 * i + 1], bounds[4 * i + 2], bounds[4 * i + 3]);
+            }
+        }
+
+        boolean intersects(int i, BBox b) {
+            return bounds[4 * i] <= b.xmax && bounds[4 * i + 2] >= b.xmin
+                && bounds[4 * i + 1] <= b.ymax && bounds[4 * i + 3] >= b.ymin;
+        }
+
+        boolean contains(int i, BBox b) {
+            return bounds[4 * i] <= b.xmin && bounds[4 * i + 2] >= b.xmax
+                && bounds[4 * i + 1] <= b.ymin && bounds[4 * i + 3] >= b.ymax;
+        }
+    }
+
+    private RNode root;
+    private int size;
+    private Collection<T> invalidBBoxPrimitives;
+
+    /**
+     * Constructs a new, empty {@code PackedRTree}.
+     */
+    public PackedRTree() {
+        clear();
+    }
+
+    @Override
+    public final void clear() {
+        root = new RNode(true);
+        invalidBBoxPrimitives = new LinkedHashSet<>();
+        size = 0;
+    }
+
+    @Override
+    public boolean add(T o) {
+        BBox b = o.getBBox();
+        if (b.isValid()) {
+            insert(o, b);
+        } else {
+            invalidBBoxPrimitives.add(o);
+        }
+        size++;
+        return true;
+    }
+
+    /**
+     * Adds all primitives. If the number of new primitives is at least as large as the current size of the tree,
+     * the tree is rebuilt using STR bulk loading, otherwise the primitives are inserted one by one.
+     * @param objects The primitives to add
+     * @return {@code true} if the collection changed
+     */
+    @Override
+    public boolean addAll(Collection<? extends T> objects) {
+        if (objects.isEmpty()) {
+            return false;
+        }
+        if (objects.size() < size) {
+            for (T o : objects) {
+                add(o);
+            }
+            return true;
+        }
+        List<Object> entries = new ArrayList<>(size + objects.size());
+        collectEntries(root, entries);
+        int count = entries.size() + objects.size();
+        double[] entryBounds = new double[4 * count];
+        int n = 0;
+        for (Object e : entries) {
+            n = putBounds(entryBounds, n, ((OsmPrimitive) e).getBBox());
+        }
+        for (T o : objects) {
+            BBox b = o.getBBox();
+            if (b.isValid()) {
+                entries.add(o);
+                n = putBounds(entryBounds, n, b);
+            } else {
+                invalidBBoxPrimitives.add(o);
+            }
+        }
+        root = entries.isEmpty() ? new RNode(true) : bulkLoad(entries.toArray(), entryBounds, entries.size());
+        size += objects.size();
+        return true;
+    }
+
+    private static int putBounds(double[] target, int index, BBox b) {
+        target[4 * index] = b.xmin;
+        target[4 * index + 1] = b.ymin;
+        target[4 * index + 2] = b.xmax;
+        target[4 * index + 3] = b.ymax;
+        return index + 1;
+    }
+
+    private static void collectEntries(RNode node, List<Object> result) {
+        for (int i = 0; i < node.count; i++) {
+            if (node.leaf) {
+                result.add(node.children[i]);
+            } else {
+                collectEntries((RNode) node.children[i], result);
+            }
+        }
+    }
+
+    /**
+     * Builds a tree bottom-up using the Sort-Tile-Recursive algorithm.
+     * @param items The items of the current level
+     * @param itemBounds The bounds of the items, 4 values per item
+     * @param count The number of items, at least 1
+     * @return The root node
+     */
+    private static RNode bulkLoad(Object[] items, double[] itemBounds, int count) {
+        boolean leafLevel = true;
+        Object[] levelItems = items;
+        double[] levelBounds = itemBounds;
+        int levelCount = count;
+        while (true) {
+            RNode[] nodes = packLevel(levelItems, levelBounds, levelCount, leafLevel);
+            if (nodes.length == 1) {
+                return nodes[0];
+            }
+            levelItems = nodes;
+            levelBounds = new double[4 * nodes.length];
+            for (int i = 0; i < nodes.length; i++) {
+                levelBounds[4 * i] = nodes[i].xmin;
+                levelBounds[4 * i + 1] = nodes[i].ymin;
+                levelBounds[4 * i + 2] = nodes[i].xmax;
+                levelBounds[4 * i + 3] = nodes[i].ymax;
+            }
+            levelCount = nodes.length;
+            leafLevel = false;
+        }
+    }
+
+    private static RNode[] packLevel(Object[] items, double[] itemBounds, int count, boolean leaf) {
+        int nodeCount = Math.max(1, (count + MAX_ENTRIES - 1) / MAX_ENTRIES);
+        int sliceCount = (int) Math.ceil(Math.sqrt(nodeCount));
+        int sliceSize = sliceCount * MAX_ENTRIES;
+
+        int[] order = new int[count];
+        double[] keys = new double[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+            keys[i] = itemBounds[4 * i] + itemBounds[4 * i + 2];
+        }
+        sort(order, keys, 0, count);
+        for (int i = 0; i < count; i++) {
+            keys[i] = itemBounds[4 * order[i] + 1] + itemBounds[4 * order[i] + 3];
+        }
+
+        RNode[] nodes = new RNode[nodeCount];
+        int n = 0;
+        for (int sliceStart = 0; sliceStart < count; sliceStart += sliceSize) {
+            int sliceEnd = Math.min(count, sliceStart + sliceSize);
+            sort(order, keys, sliceStart, sliceEnd);
+            for (int nodeStart = sliceStart; nodeStart < sliceEnd; nodeStart += MAX_ENTRIES) {
+                RNode node = new RNode(leaf);
+                for (int i = nodeStart; i < Math.min(sliceEnd, nodeStart + MAX_ENTRIES); i++) {
+                    int item = order[i];
+                    node.append(items[item], itemBounds[4 * item], itemBounds[4 * item + 1],
+                            itemBounds[4 * item + 2], itemBounds[4 * item + 3]);
+                }
+                nodes[n++] = node;
+            }
+        }
+        return n == nodes.length ? nodes : Arrays.copyOf(nodes, n);
+    }
+
+    /**
+     * Sorts a range of indexes by their keys. Both arrays are permuted in the same way, so {@code keys[i]} stays the key
+     * of {@code order[i]}. Avoids boxing and indirect access for the (potentially very large) arrays.
+     * @param order The indexes to sort
+     * @param keys The sort keys
+     * @param from first index (inclusive)
+     * @param to last index (exclusive)
+     */
+    private static void sort(int[] order, double[] keys, int from, int to) {
+        while (to - from > 16) {
+            double pivot = median(keys[from], keys[(from + to) >>> 1], keys[to - 1]);
+            int i = from;
+            int j = to - 1;
+            while (i <= j) {
+                while (keys[i] < pivot) {
+                    i++;
+                }
+                while (keys[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(order, keys, i, j);
+                    i++;
+                    j--;
+                }
+            }
+            // recurse into the smaller part to bound the stack depth
+            if (j - from < to - i) {
+                sort(order, keys, from, j + 1);
+                from = i;
+            } else {
+                sort(order, keys, i, to);
+                to = j + 1;
+            }
+        }
+        for (int i = from + 1; i < to; i++) {
+            for (int j = i; j > from && keys[j - 1] > keys[j]; j--) {
+                swap(order, keys, j - 1, j);
+            }
+        }
+    }
+
+    private static void swap(int[] order, double[] keys, int i, int j) {
+        int tmpOrder = order[i];
+        order[i] = order[j];
+        order[j] = tmpOrder;
+        double tmpKey = keys[i];
+        keys[i] = keys[j];
+        keys[j] = tmpKey;
+    }
+
+    private static double median(double a, double b, double c) {
+        return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+    }
+
+    private void insert(T o, BBox b) {
+        RNode split = insert(root, o, b);
+        if (split != null) {
+            RNode newRoot = new RNode(false);
+            newRoot.appendNode(root);
+            newRoot.appendNode(split);
+            root = newRoot;
+        }
+    }
+
+    /**
+     * Inserts a primitive below the given node.
+     * @return The new sibling of {@code node} if it had to be split, {@code null} otherwise
+     */
+    private static RNode insert(RNode node, Object o, BBox b) {
+        if (node.leaf) {
+            node.append(o, b.xmin, b.ymin, b.xmax, b.ymax);
+        } else {
+            int i = chooseSubtree(node, b);
+            RNode child = (RNode) node.children[i];
+            RNode split = insert(child, o, b);
+            node.setChildBounds(i, child.xmin, child.ymin, child.xmax, child.ymax);
+            node.extend(b.xmin, b.ymin, b.xmax, b.ymax);
+            if (split != null) {
+                node.appendNode(split);
+            }
+        }
+        return node.count > MAX_ENTRIES ? split(node) : null;
+    }
+
+    private static int chooseSubtree(RNode node, BBox b) {
+        int best = 0;
+        double bestEnlargement = Double.POSITIVE_INFINITY;
+        double bestMarginEnlargement = Double.POSITIVE_INFINITY;
+        double bestArea = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < node.count; i++) {
+            double x0 = node.bounds[4 * i];
+            double y0 = node.bounds[4 * i + 1];
+            double x1 = node.bounds[4 * i + 2];
+            double y1 = node.bounds[4 * i + 3];
+            double w = x1 - x0;
+            double h = y1 - y0;
+            double uw = Math.max(x1, b.xmax) - Math.min(x0, b.xmin);
+            double uh = Math.max(y1, b.ymax) - Math.min(y0, b.ymin);
+            double area = w * h;
+            double enlargement = uw * uh - area;
+            // points and horizontal/vertical segments have no area, so the margin is used to break ties
+            double marginEnlargement = uw + uh - w - h;
+            if (enlargement < bestEnlargement
+                    || (enlargement == bestEnlargement && (marginEnlargement < bestMarginEnlargement
+                    || (marginEnlargement == bestMarginEnlargement && area < bestArea)))) {
+                best = i;
+                bestEnlargement = enlargement;
+                bestMarginEnlargement = marginEnlargement;
+                bestArea = area;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Splits an overflowing node along the axis with the larger spread of entry centers.
+     * @return The new sibling holding the upper half of the entries
+     */
+    private static RNode split(RNode node) {
+        int count = node.count;
+        double minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            double cx = node.bounds[4 * i] + node.bounds[4 * i + 2];
+            double cy = node.bounds[4 * i + 1] + node.bounds[4 * i + 3];
+            minX = Math.min(minX, cx);
+            maxX = Math.max(maxX, cx);
+            minY = Math.min(minY, cy);
+            maxY = Math.max(maxY, cy);
+        }
+        int axis = maxX - minX >= maxY - minY ? 0 : 1;
+        int[] order = new int[count];
+        double[] keys = new double[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+            keys[i] = node.bounds[4 * i + axis] + node.bounds[4 * i + 2 + axis];
+        }
+        sort(order, keys, 0, count);
+
+        Object[] children = Arrays.copyOf(node.children, count);
+        double[] bounds = Arrays.copyOf(node.bounds, 4 * count);
+        RNode sibling = new RNode(node.leaf);
+        node.count = 0;
+        Arrays.fill(node.children, null);
+        node.resetBounds();
+        int half = count / 2;
+        for (int i = 0; i < count; i++) {
+            int item = order[i];
+            (i < half ? node : sibling).append(children[item],
+                    bounds[4 * item], bounds[4 * item + 1], bounds[4 * item + 2], bounds[4 * item + 3]);
+        }
+        return sibling;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        @SuppressWarnings("unchecked")
+        T t = (T) o;
+        BBox b = t.getBBox();
+        boolean removed;
+        if (b.isValid()) {
+            removed = remove(root, t, b);
+            if (!root.leaf && root.count == 0) {
+                root = new RNode(true);
+            } else if (!root.leaf && root.count == 1) {
+                root = (RNode) root.children[0];
+            }
+        } else {
+            removed = invalidBBoxPrimitives.remove(o);
+        }
+        if (removed) {
+            size--;
+        }
+        return removed;
+    }
+
+    private static boolean remove(RNode node, Object o, BBox b) {
+        for (int i = 0; i < node.count; i++) {
+            if (node.leaf) {
+                if (node.children[i] == o) {
+                    node.removeAt(i);
+                    node.recomputeBounds();
+                    return true;
+                }
+            } else if (node.contains(i, b)) {
+                RNode child = (RNode) node.children[i];
+                if (remove(child, o, b)) {
+                    if (child.count == 0) {
+                        node.removeAt(i);
+                    } else {
+                        node.setChildBounds(i, child.xmin, child.ymin, child.xmax, child.ymax);
+                    }
+                    node.recomputeBounds();
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        @SuppressWarnings("unchecked")
+        T t = (T) o;
+        BBox b = t.getBBox();
+        if (!b.isValid()) {
+            return invalidBBoxPrimitives.contains(o);
+        }
+        return contains(root, t, b);
+    }
+
+    private static boolean contains(RNode node, Object o, BBox b) {
+        for (int i = 0; i < node.count; i++) {
+            if (node.leaf) {
+                if (node.children[i] == o) {
+                    return true;
+                }
+            } else if (node.contains(i, b) && contains((RNode) node.children[i], o, b)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public List<T> search(BBox searchBbox) {
+        List<T> ret = new ArrayList<>();
+        if (searchBbox.isValid() && root.count > 0) {
+            search(root, searchBbox, ret);
+        }
+        return ret;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void search(RNode node, BBox searchBbox, List<T> result) {
+        for (int i = 0; i < node.count; i++) {
+            if (node.intersects(i, searchBbox)) {
+                if (node.leaf) {
+                    result.add((T) node.children[i]);
+                } else {
+                    search((RNode) node.children[i], searchBbox, result);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the height of the tree. Used for tests.
+     * @return The number of levels, 1 if the root is a leaf.
+     */
+    int getHeight() {
+        int height = 1;
+        for (RNode node = root; !node.leaf; node = (RNode) node.children[0]) {
+            height++;
+        }
+        return height;
+    }
+
+    private class RTreeIterator implements Iterator<T> {
+        /** The path from the root to the current leaf */
+        private final RNode[] path = new RNode[64];
+        private final int[] pathIndex = new int[64];
+        private int depth;
+        private final Iterator<T> invalidBBoxIterator = invalidBBoxPrimitives.iterator();
+        private boolean fromInvalidBBoxPrimitives;
+        private boolean canRemove;
+
+        RTreeIterator() {
+            path[0] = root;
+            pathIndex[0] = 0;
+            depth = 0;
+        }
+
+        /**
+         * Advances to the next leaf entry.
+         * @return {@code true} if {@code path[depth]} is a leaf with an entry at {@code pathIndex[depth]}
+         */
+        private boolean advance() {
+            while (depth >= 0) {
+                RNode node = path[depth];
+                int index = pathIndex[depth];
+                if (index >= node.count) {
+                    depth--;
+                    if (depth >= 0) {
+                        pathIndex[depth]++;
+                    }
+                } else if (node.leaf) {
+                    return true;
+                } else {
+                    depth++;
+                    path[depth] = (RNode) node.children[index];
+                    pathIndex[depth] = 0;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!fromInvalidBBoxPrimitives && advance()) {
+                return true;
+            }
+            fromInvalidBBoxPrimitives = true;
+            return invalidBBoxIterator.hasNext();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            canRemove = true;
+            if (fromInvalidBBoxPrimitives) {
+                return invalidBBoxIterator.next();
+            }
+            return (T) path[depth].children[pathIndex[depth]++];
+        }
+
+        @Override
+        public void remove() {
+            if (!canRemove) {
+                throw new IllegalStateException();
+            }
+            canRemove = false;
+            if (fromInvalidBBoxPrimitives) {
+                invalidBBoxIterator.remove();
+            } else {
+                // Only the leaf is modified. The bounds of the parent nodes stay as they are, they are still
+                // large enough to contain all remaining entries.
+                pathIndex[depth]--;
+                path[depth].removeAt(pathIndex[depth]);
+            }
+            size--;
+        }
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new RTreeIterator();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+}
@@ -21,7 +21,7 @@ import org.openstreetmap.josm.data.coor.QuadTiling;
  * @param <T> type of primitives
  * @since 2165
  */
-public class QuadBuckets<T extends OsmPrimitive> implements Collection<T> {
+public class QuadBuckets<T extends OsmPrimitive> implements SpatialIndex<T> {
     private static final boolean consistency_testing = false;
     private static final byte NW_INDEX = 1;
     private static final byte NE_INDEX = 3;
@@ -575,6 +575,7 @@ public class QuadBuckets<T extends OsmPrimitive> implements Collection<T> {
      * @param searchBbox the bbox
      * @return List of primitives within the bbox (or crossing the bbox if they are ways). Can be empty, but not null.
      */
+    @Override
     public List<T> search(BBox searchBbox) {
         List<T> ret = new ArrayList<>();
         if (!searchBbox.isValid()) {
@@ -0,0 +1,27 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A collection of primitives that can be queried by bounding box.
+ * <p>
+ * Note: bbox of primitives added to a spatial index has to stay the same. In case of coordinate change, primitive must
+ * be removed and re-added.
+ * <p>
+ * Implementations are free to build their index lazily or in bulk: {@link #addAll(Collection)} should be preferred over
+ * repeated calls to {@link #add(Object)} when many primitives are inserted at once.
+ * @param <T> type of primitives
+ * @see QuadBuckets
+ * @see PackedRTree
+ */
+public interface SpatialIndex<T extends OsmPrimitive> extends Collection<T> {
+
+    /**
+     * Search the index for objects in the bbox (or crossing the bbox if they are ways)
+     * @param searchBbox the bbox
+     * @return List of primitives within the bbox (or crossing the bbox if they are ways). Can be empty, but not null.
+     */
+    List<T> search(BBox searchBbox);
+}
@@ -0,0 +1,349 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.openstreetmap.josm.data.osm.event.AbstractDatasetChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataSetListener;
+import org.openstreetmap.josm.data.osm.event.NodeMovedEvent;
+import org.openstreetmap.josm.data.osm.event.PrimitivesAddedEvent;
+import org.openstreetmap.josm.data.osm.event.PrimitivesRemovedEvent;
+import org.openstreetmap.josm.data.osm.event.RelationMembersChangedEvent;
+import org.openstreetmap.josm.data.osm.event.TagsChangedEvent;
+import org.openstreetmap.josm.data.osm.event.WayNodesChangedEvent;
+
+/**
+ * Index of the tags and member roles used by the non-deleted primitives of a {@link DataSet}.
+ * <p>
+ * For each tag, the index keeps the primitives having it, so that the primitives having a tag are found without testing
+ * the other primitives with the same key.
+ * It is built once and then updated by the data set with each event as soon as the change is made (see {@link DataSet#getTagIndex()}),
+ * so it never needs to be rebuilt. Updating a primitive only touches the entries of its own tags.
+ * <p>
+ * Primitives are hashed by identity, as the id of a new primitive changes when it is uploaded.
+ * The methods reading from the index hold the read lock of the data set and return copies.
+ */
+public final class TagIndex implements DataSetListener {
+
+    private static final Hash<OsmPrimitive, OsmPrimitive> IDENTITY_HASH = new Hash<OsmPrimitive, OsmPrimitive>() {
+        @Override
+        public int getHashCode(OsmPrimitive k) {
+            return System.identityHashCode(k);
+        }
+
+        @Override
+        public boolean equals(OsmPrimitive k, OsmPrimitive t) {
+            return k == t;
+        }
+    };
+
+    private final DataSet ds;
+    /** key → value → primitives having the tag */
+    private final Map<String, Map<String, Storage<OsmPrimitive>>> postings = new HashMap<>();
+    /** key → number of primitives having the key */
+    private final Map<String, Integer> keyCounts = new HashMap<>();
+    /** role → number of members */
+    private final Map<String, Integer> roleCounts = new HashMap<>();
+    /** the counted roles of each relation having members with role */
+    private final Map<Relation, List<String>> relationRoles = new IdentityHashMap<>();
+
+    /**
+     * Constructs a new {@code TagIndex} from the primitives of the data set.
+     * The caller must hold a lock of the data set.
+     * @param ds data set
+     */
+    TagIndex(DataSet ds) {
+        this.ds = ds;
+        for (OsmPrimitive p : ds.allNonDeletedPrimitives()) {
+            add(p);
+        }
+    }
+
+    private boolean isIndexed(OsmPrimitive p) {
+        return p.getDataSet() == ds && !p.isDeleted();
+    }
+
+    private void add(OsmPrimitive p) {
+        p.visitKeys((primitive, key, value) -> addTag(p, key, value));
+        if (p instanceof Relation) {
+            updateRoles((Relation) p);
+        }
+    }
+
+    private void remove(OsmPrimitive p) {
+        p.visitKeys((primitive, key, value) -> removeTag(p, key, value));
+        if (p instanceof Relation) {
+            removeRoles((Relation) p);
+        }
+    }
+
+    private void addTag(OsmPrimitive p, String key, String value) {
+        // most values are used by few primitives, so start with a small posting list
+        if (postings.computeIfAbsent(key, k -> new HashMap<>()).computeIfAbsent(value, v -> new Storage<>(IDENTITY_HASH, 4)).add(p)) {
+            keyCounts.merge(key, 1, Integer::sum);
+        }
+    }
+
+    private void removeTag(OsmPrimitive p, String key, String value) {
+        Map<String, Storage<OsmPrimitive>> values = postings.get(key);
+        Storage<OsmPrimitive> primitives = values == null ? null : values.get(value);
+        if (primitives != null && primitives.remove(p)) {
+            if (primitives.isEmpty()) {
+                values.remove(value);
+                if (values.isEmpty()) {
+                    postings.remove(key);
+                }
+            }
+            keyCounts.computeIfPresent(key, (k, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    private void updateRoles(Relation r) {
+        removeRoles(r);
+        List<String> roles = new ArrayList<>();
+        for (RelationMember m : r.getMembers()) {
+            if (m.hasRole()) {
+                roles.add(m.getRole());
+                roleCounts.merge(m.getRole(), 1, Integer::sum);
+            }
+        }
+        if (!roles.isEmpty()) {
+            relationRoles.put(r, roles);
+        }
+    }
+
+    private void removeRoles(Relation r) {
+        List<String> roles = relationRoles.remove(r);
+        if (roles != null) {
+            for (String role : roles) {
+                roleCounts.computeIfPresent(role, (k, count) -> count > 1 ? count - 1 : null);
+            }
+        }
+    }
+
+    /**
+     * Removes all entries, when all primitives are removed from the data set.
+     */
+    void clear() {
+        postings.clear();
+        keyCounts.clear();
+        roleCounts.clear();
+        relationRoles.clear();
+    }
+
+    /**
+     * Returns the keys used by the primitives.
+     * @return the keys
+     */
+    public List<String> getKeys() {
+        ds.getReadLock().lock();
+        try {
+            return new ArrayList<>(postings.keySet());
+        } finally {
+            ds.getReadLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the values of a key.
+     * @param key the key
+     * @return the values used by the primitives for this key
+     */
+    public List<String> getValues(String key) {
+        ds.getReadLock().lock();
+        try {
+            Map<String, Storage<OsmPrimitive>> values = postings.get(key);
+            return values == null ? new ArrayList<>() : new ArrayList<>(values.keySet());
+        } finally {
+            ds.getReadLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the values of a key with the number of primitives using them.
+     * @param key the key
+     * @return the value counts for this key
+     */
+    public Map<String, Integer> getValueCounts(String key) {
+        ds.getReadLock().lock();
+        try {
+            Map<String, Storage<OsmPrimitive>> values = postings.get(key);
+            if (values == null) {
+                return Collections.emptyMap();
+            }
+            Map<String, Integer> result = new HashMap<>(values.size() * 4 / 3 + 1);
+            for (Entry<String, Storage<OsmPrimitive>> e : values.entrySet()) {
+                result.put(e.getKey(), e.getValue().size());
+            }
+            return result;
+        } finally {
+            ds.getReadLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of primitives having a key.
+     * @param key the key
+     * @return the number of primitives having the key
+     */
+    public int getCount(String key) {
+        ds.getReadLock().lock();
+        try {
+            return keyCounts.getOrDefault(key, 0);
+        } finally {
+            ds.getReadLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of primitives having a tag.
+     * @param key the key
+     * @param value the value
+     * @return the number of primitives having the tag
+     */
+    public int getCount(String key, String value) {
+        ds.getReadLock().lock();
+        try {
+            Storage<OsmPrimitive> primitives = getPosting(key, value);
+            return primitives == null ? 0 : primitives.size();
+        } finally {
+            ds.getReadLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the primitives having a key.
+     * @param key the key
+     * @return the non-deleted primitives having the key
+     */
+    public List<OsmPrimitive> getPrimitives(String key) {
+        return getPrimitives(key, null);
+    }
+
+    /**
+     * Returns the primitives having a tag.
+     * @param key the key
+     * @param value the value, or {@code null} for any value
+     * @return the non-deleted primitives having the tag
+     */
+    public List<OsmPrimitive> getPrimitives(String key, String value) {
+        ds.getReadLock().lock();
+        try {
+            if (value != null) {
+                Storage<OsmPrimitive> primitives = getPosting(key, value);
+                return primitives == null ? new ArrayList<>() : new ArrayList<>(primitives);
+            }
+            Map<String, Storage<OsmPrimitive>> values = postings.get(key);
+            if (values == null) {
+                return new ArrayList<>();
+            }
+            List<OsmPrimitive> result = new ArrayList<>(keyCounts.getOrDefault(key, 0));
+            for (Storage<OsmPrimitive> primitives : values.values()) {
+                result.addAll(primitives);
+            }
+            return result;
+        } finally {
+            ds.getReadLock().unlock();
+        }
+    }
+
+    private Storage<OsmPrimitive> getPosting(String key, String value) {
+        Map<String, Storage<OsmPrimitive>> values = postings.get(key);
+        return values == null ? null : values.get(value);
+    }
+
+    /**
+     * Returns the roles of the relation members.
+     * @return the roles used in the relations
+     */
+    public List<String> getRoles() {
+        ds.getReadLock().lock();
+        try {
+            return new ArrayList<>(roleCounts.keySet());
+        } finally {
+            ds.getReadLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of relation members having a role.
+     * @param role the role
+     * @return the number of members with this role
+     */
+    public int getRoleCount(String role) {
+        ds.getReadLock().lock();
+        try {
+            return roleCounts.getOrDefault(role, 0);
+        } finally {
+            ds.getReadLock().unlock();
+        }
+    }
+
+    /*
+     * The events are received when the change is made, so the original keys of a TagsChangedEvent are the tags counted for the
+     * primitive. Events of primitives that are not (or no longer) in the index do not change anything.
+     */
+
+    @Override
+    public void primitivesAdded(PrimitivesAddedEvent event) {
+        for (OsmPrimitive p : event.getPrimitives()) {
+            if (isIndexed(p)) {
+                add(p);
+            }
+        }
+    }
+
+    @Override
+    public void primitivesRemoved(PrimitivesRemovedEvent event) {
+        for (OsmPrimitive p : event.getPrimitives()) {
+            if (!isIndexed(p)) {
+                remove(p);
+            }
+        }
+    }
+
+    @Override
+    public void tagsChanged(TagsChangedEvent event) {
+        OsmPrimitive p = event.getPrimitive();
+        if (isIndexed(p)) {
+            for (Entry<String, String> e : event.getOriginalKeys().entrySet()) {
+                removeTag(p, e.getKey(), e.getValue());
+            }
+            p.visitKeys((primitive, key, value) -> addTag(p, key, value));
+        }
+    }
+
+    @Override
+    public void relationMembersChanged(RelationMembersChangedEvent event) {
+        if (isIndexed(event.getRelation())) {
+            updateRoles(event.getRelation());
+        }
+    }
+
+    @Override
+    public void nodeMoved(NodeMovedEvent event) {
+        // ignored
+    }
+
+    @Override
+    public void wayNodesChanged(WayNodesChangedEvent event) {
+        // ignored
+    }
+
+    @Override
+    public void otherDatasetChange(AbstractDatasetChangedEvent event) {
+        // ignored
+    }
+
+    @Override
+    public void dataChanged(DataChangedEvent event) {
+        // ignored, the index receives the single events
+    }
+}
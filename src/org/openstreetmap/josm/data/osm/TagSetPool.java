@@ -0,0 +1,130 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * A pool of the tag arrays used by the primitives of a {@link DataSet}.
+ * <p>
+ * Primitives with identical tags (e.g. thousands of <code>building=yes</code>) share one canonical key/value array.
+ * The arrays are never modified in place (see {@link AbstractPrimitive#keys}), every change of the tags of a primitive
+ * replaces its array and releases the old one. Arrays are removed from the pool when no primitive references them.
+ * <p>
+ * Two tag arrays are only considered equal if they contain the same tags in the same order.
+ */
+public final class TagSetPool {
+
+    private static final class Entry {
+        private final String[] tags;
+        private int references;
+
+        Entry(String[] tags) {
+            this.tags = tags;
+        }
+    }
+
+    private static final Hash<Entry, Entry> ENTRY_HASH = new Hash<Entry, Entry>() {
+        @Override
+        public int getHashCode(Entry k) {
+            return Arrays.hashCode(k.tags);
+        }
+
+        @Override
+        public boolean equals(Entry k, Entry t) {
+            return Arrays.equals(k.tags, t.tags);
+        }
+    };
+
+    private static final Hash<String[], Entry> TAGS_HASH = new Hash<String[], Entry>() {
+        @Override
+        public int getHashCode(String[] k) {
+            return Arrays.hashCode(k);
+        }
+
+        @Override
+        public boolean equals(String[] k, Entry t) {
+            return Arrays.equals(k, t.tags);
+        }
+    };
+
+    private final Storage<Entry> entries = new Storage<>(ENTRY_HASH);
+    private final Map<String[], Entry> entriesByTags = entries.foreignKey(TAGS_HASH);
+    private long references;
+    private long savedBytes;
+
+    TagSetPool() {
+        // Hide default constructor
+    }
+
+    /**
+     * Gets the canonical array for the given tags and adds a reference to it.
+     * @param tags the key/value array, may be null
+     * @return the canonical array, equal to <code>tags</code>
+     */
+    synchronized String[] acquire(String[] tags) {
+        if (tags == null)
+            return null;
+        Entry entry = entriesByTags.get(tags);
+        if (entry == null) {
+            entry = new Entry(tags);
+            entries.add(entry);
+        } else {
+            savedBytes += arraySize(tags);
+        }
+        entry.references++;
+        references++;
+        return entry.tags;
+    }
+
+    /**
+     * Removes a reference to a canonical array that was returned by {@link #acquire(String[])}.
+     * @param tags the key/value array, may be null
+     */
+    synchronized void release(String[] tags) {
+        if (tags == null)
+            return;
+        Entry entry = entriesByTags.get(tags);
+        if (entry == null || entry.tags != tags)
+            return;
+        references--;
+        if (--entry.references == 0) {
+            entries.remove(entry);
+        } else {
+            savedBytes -= arraySize(tags);
+        }
+    }
+
+    /**
+     * Estimates the heap size of a tag array: 16 bytes of header and 4 bytes per (compressed) reference.
+     * @param tags the tag array
+     * @return the approximate size in bytes
+     */
+    private static long arraySize(String[] tags) {
+        return (16L + 4L * tags.length + 7) & ~7L;
+    }
+
+    /**
+     * Gets the number of distinct tag sets in this pool.
+     * @return the number of distinct tag sets
+     */
+    public synchronized int getTagSetCount() {
+        return entries.size();
+    }
+
+    /**
+     * Gets the number of primitives that use a tag set of this pool.
+     * @return the number of references
+     */
+    public synchronized long getReferenceCount() {
+        return references;
+    }
+
+    /**
+     * Gets an estimate of the memory saved by sharing the tag arrays.
+     * @return the approximate number of bytes saved
+     */
+    public synchronized long getSavedBytes() {
+        return savedBytes;
+    }
+}
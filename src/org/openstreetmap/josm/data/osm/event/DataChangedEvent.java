@@ -8,17 +8,41 @@ import java.util.List;
 import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.OsmPrimitive;
 
+/**
+ * Represents a number of changes of a data set, fired instead of the single events for larger updates, or a complete change of the data.
+ */
 public class DataChangedEvent extends AbstractDatasetChangedEvent {
 
-    private final List<AbstractDatasetChangedEvent> events;
+    private List<AbstractDatasetChangedEvent> events;
+    private DataSetChangeSummary summary;
 
+    /**
+     * Constructs a new {@code DataChangedEvent} for the given events.
+     * @param dataSet the data set
+     * @param events the events, or {@code null} for a complete change of the data
+     */
     public DataChangedEvent(DataSet dataSet, List<AbstractDatasetChangedEvent> events) {
+        this(dataSet, events, events == null ? null : new DataSetChangeSummary(events));
+    }
+
+    /**
+     * Constructs a new {@code DataChangedEvent}.
+     * @param dataSet the data set
+     * @param events the events, or {@code null} if there have been too many events to keep them
+     * @param summary the summary of the changes, or {@code null} for a complete change of the data
+     */
+    public DataChangedEvent(DataSet dataSet, List<AbstractDatasetChangedEvent> events, DataSetChangeSummary summary) {
         super(dataSet);
         this.events = events;
+        this.summary = summary;
     }
 
+    /**
+     * Constructs a new {@code DataChangedEvent} for a complete change of the data.
+     * @param dataSet the data set
+     */
     public DataChangedEvent(DataSet dataSet) {
-        this(dataSet, null);
+        this(dataSet, null, null);
     }
 
     @Override
@@ -47,4 +71,37 @@ public class DataChangedEvent extends AbstractDatasetChangedEvent {
         return events;
     }
 
+    /**
+     * Returns the summary of the changes, which is kept for any number of events.
+     * @return the summary of the changes, or {@code null} if the data has completely changed (e.g. another data set is active)
+     */
+    public DataSetChangeSummary getSummary() {
+        return summary;
+    }
+
+    /**
+     * Adds a later event to this event, when consolidating the events.
+     * @param event the event to add
+     */
+    void add(AbstractDatasetChangedEvent event) {
+        if (summary == null) {
+            return;
+        }
+        if (event instanceof DataChangedEvent) {
+            DataChangedEvent dataEvent = (DataChangedEvent) event;
+            if (dataEvent.summary == null) {
+                events = null;
+                summary = null;
+                return;
+            } else if (events != null && dataEvent.events != null) {
+                events.addAll(dataEvent.events);
+            } else {
+                events = null;
+            }
+        } else if (events != null) {
+            events.add(event);
+        }
+        summary.add(event);
+    }
+
 }
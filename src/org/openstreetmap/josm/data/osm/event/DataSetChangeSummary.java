@@ -0,0 +1,206 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm.event;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.openstreetmap.josm.data.osm.BBox;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+
+/**
+ * The net changes of a number of data set events, see {@link DataChangedEvent#getSummary()}.
+ * <p>
+ * Unlike the list of events, the summary is kept for updates of any size, and contains each primitive only once:
+ * <ul>
+ * <li>a primitive added and removed again is not contained at all,</li>
+ * <li>a primitive removed and added again (e.g. deleted and undeleted) is modified.</li>
+ * </ul>
+ * The primitives are compared by identity, as the id of new primitives changes when they are uploaded.
+ * Use {@link org.openstreetmap.josm.tools.Utils#filteredCollection} to get the primitives of one type.
+ */
+public class DataSetChangeSummary {
+
+    private final Set<OsmPrimitive> added = newIdentitySet();
+    private final Set<OsmPrimitive> removed = newIdentitySet();
+    private final Set<OsmPrimitive> modified = newIdentitySet();
+    private final Set<String> changedKeys = new HashSet<>();
+    private final BBox movedNodesBBox = new BBox();
+
+    /**
+     * Constructs a new, empty {@code DataSetChangeSummary}.
+     */
+    public DataSetChangeSummary() {
+        // Nothing to do
+    }
+
+    /**
+     * Constructs a new {@code DataSetChangeSummary} of the given events.
+     * @param events the events, in the order they have been fired
+     */
+    public DataSetChangeSummary(Collection<? extends AbstractDatasetChangedEvent> events) {
+        for (AbstractDatasetChangedEvent event : events) {
+            add(event);
+        }
+    }
+
+    private static Set<OsmPrimitive> newIdentitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    /**
+     * Adds the changes of an event fired after the events already added.
+     * <p>
+     * The modified keys are determined by comparing the original keys of a {@link TagsChangedEvent} with the current keys
+     * of the primitive, so the event should be added when it is fired by the data set.
+     * @param event the event
+     */
+    public void add(AbstractDatasetChangedEvent event) {
+        switch (event.getType()) {
+        case PRIMITIVES_ADDED:
+            for (OsmPrimitive p : event.getPrimitives()) {
+                if (removed.remove(p)) {
+                    modified.add(p);
+                } else {
+                    added.add(p);
+                }
+            }
+            break;
+        case PRIMITIVES_REMOVED:
+            for (OsmPrimitive p : event.getPrimitives()) {
+                if (!added.remove(p)) {
+                    modified.remove(p);
+                    removed.add(p);
+                }
+            }
+            break;
+        case TAGS_CHANGED:
+            addChangedKeys((TagsChangedEvent) event);
+            addModified(event.getPrimitives());
+            break;
+        case NODE_MOVED:
+            NodeMovedEvent nodeMovedEvent = (NodeMovedEvent) event;
+            movedNodesBBox.add(nodeMovedEvent.getOldCoor());
+            movedNodesBBox.add(new BBox(nodeMovedEvent.getNode()));
+            addModified(event.getPrimitives());
+            break;
+        case DATA_CHANGED:
+            DataSetChangeSummary summary = ((DataChangedEvent) event).getSummary();
+            if (summary != null) {
+                // the sets are disjoint, so the order does not matter
+                summary.added.forEach(p -> add(p, added, removed));
+                summary.removed.forEach(p -> add(p, removed, added));
+                addModified(summary.modified);
+                changedKeys.addAll(summary.changedKeys);
+                movedNodesBBox.add(summary.movedNodesBBox);
+            }
+            break;
+        default:
+            addModified(event.getPrimitives());
+        }
+    }
+
+    private void add(OsmPrimitive p, Set<OsmPrimitive> set, Set<OsmPrimitive> opposite) {
+        if (opposite.remove(p)) {
+            if (set == added) {
+                modified.add(p);
+            }
+        } else {
+            modified.remove(p);
+            set.add(p);
+        }
+    }
+
+    private void addModified(Collection<? extends OsmPrimitive> primitives) {
+        for (OsmPrimitive p : primitives) {
+            if (!added.contains(p) && !removed.contains(p)) {
+                modified.add(p);
+            }
+        }
+    }
+
+    private void addChangedKeys(TagsChangedEvent event) {
+        Map<String, String> originalKeys = event.getOriginalKeys();
+        event.getPrimitive().visitKeys((primitive, key, value) -> {
+            if (!value.equals(originalKeys.get(key))) {
+                changedKeys.add(key);
+            }
+        });
+        for (Entry<String, String> e : originalKeys.entrySet()) {
+            if (!e.getValue().equals(event.getPrimitive().get(e.getKey()))) {
+                changedKeys.add(e.getKey());
+            }
+        }
+    }
+
+    /**
+     * Returns the primitives added to the data set.
+     * @return the added primitives
+     */
+    public Set<OsmPrimitive> getAddedPrimitives() {
+        return Collections.unmodifiableSet(added);
+    }
+
+    /**
+     * Returns the primitives removed from the data set, including the deleted primitives.
+     * @return the removed primitives
+     */
+    public Set<OsmPrimitive> getRemovedPrimitives() {
+        return Collections.unmodifiableSet(removed);
+    }
+
+    /**
+     * Returns the primitives whose tags, coordinates, nodes, members or flags have changed.
+     * @return the modified primitives, neither added nor removed
+     */
+    public Set<OsmPrimitive> getModifiedPrimitives() {
+        return Collections.unmodifiableSet(modified);
+    }
+
+    /**
+     * Returns all changed primitives.
+     * @return the added, removed and modified primitives
+     */
+    public Set<OsmPrimitive> getPrimitives() {
+        Set<OsmPrimitive> result = newIdentitySet();
+        result.addAll(added);
+        result.addAll(removed);
+        result.addAll(modified);
+        return result;
+    }
+
+    /**
+     * Returns the keys whose values have changed on the modified primitives.
+     * @return the changed keys, including the added and removed keys
+     */
+    public Set<String> getChangedKeys() {
+        return Collections.unmodifiableSet(changedKeys);
+    }
+
+    /**
+     * Returns the area covering the old and new coordinates of the moved nodes.
+     * @return the bounding box of the moved nodes, invalid if no node has been moved
+     */
+    public BBox getMovedNodesBBox() {
+        return new BBox(movedNodesBBox);
+    }
+
+    /**
+     * Determines if there is no change.
+     * @return {@code true} if no primitive has been changed
+     */
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && modified.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "DataSetChangeSummary [added=" + added.size() + ", removed=" + removed.size() + ", modified=" + modified.size()
+                + ", changedKeys=" + changedKeys + ']';
+    }
+}
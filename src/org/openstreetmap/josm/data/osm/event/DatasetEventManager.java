@@ -2,7 +2,6 @@
 package org.openstreetmap.josm.data.osm.event;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 import java.util.Queue;
@@ -36,6 +35,7 @@ public class DatasetEventManager implements ActiveLayerChangeListener, Listener
             while (!eventsInEDT.isEmpty()) {
                 DataSet dataSet = null;
                 AbstractDatasetChangedEvent consolidatedEvent = null;
+                DataChangedEvent mergedEvent = null;
                 AbstractDatasetChangedEvent event;
 
                 while ((event = eventsInEDT.poll()) != null) {
@@ -45,42 +45,25 @@ public class DatasetEventManager implements ActiveLayerChangeListener, Listener
                     if (consolidatedEvent != null && dataSet != event.getDataset()) {
                         fireConsolidatedEvents(inEDTListeners, consolidatedEvent);
                         consolidatedEvent = null;
+                        mergedEvent = null;
                     }
 
                     dataSet = event.getDataset();
 
                     // Build consolidated event
-                    if (event instanceof DataChangedEvent) {
-                        // DataChangeEvent can contains other events, so it gets special handling
-                        DataChangedEvent dataEvent = (DataChangedEvent) event;
-                        if (dataEvent.getEvents() == null) {
-                            consolidatedEvent = dataEvent; // Dataset was completely changed, we can ignore older events
-                        } else {
-                            if (consolidatedEvent == null) {
-                                consolidatedEvent = new DataChangedEvent(dataSet, dataEvent.getEvents());
-                            } else if (consolidatedEvent instanceof DataChangedEvent) {
-                                List<AbstractDatasetChangedEvent> evts = ((DataChangedEvent) consolidatedEvent).getEvents();
-                                if (evts != null) {
-                                    evts.addAll(dataEvent.getEvents());
-                                }
-                            } else {
-                                AbstractDatasetChangedEvent oldConsolidateEvent = consolidatedEvent;
-                                consolidatedEvent = new DataChangedEvent(dataSet, dataEvent.getEvents());
-                                ((DataChangedEvent) consolidatedEvent).getEvents().add(oldConsolidateEvent);
-                            }
-                        }
+                    if (event instanceof DataChangedEvent && ((DataChangedEvent) event).getSummary() == null) {
+                        consolidatedEvent = event; // Dataset was completely changed, we can ignore older events
+                        mergedEvent = null;
+                    } else if (consolidatedEvent == null) {
+                        consolidatedEvent = event;
                     } else {
-                        // Normal events
-                        if (consolidatedEvent == null) {
-                            consolidatedEvent = event;
-                        } else if (consolidatedEvent instanceof DataChangedEvent) {
-                            List<AbstractDatasetChangedEvent> evs = ((DataChangedEvent) consolidatedEvent).getEvents();
-                            if (evs != null) {
-                                evs.add(event);
-                            }
-                        } else {
-                            consolidatedEvent = new DataChangedEvent(dataSet, new ArrayList<>(Arrays.asList(consolidatedEvent)));
+                        if (mergedEvent == null) {
+                            // do not modify the events received by the other listeners
+                            mergedEvent = new DataChangedEvent(dataSet, new ArrayList<>(), new DataSetChangeSummary());
+                            mergedEvent.add(consolidatedEvent);
+                            consolidatedEvent = mergedEvent;
                         }
+                        mergedEvent.add(event);
                     }
                 }
 
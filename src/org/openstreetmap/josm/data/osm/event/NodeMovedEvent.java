@@ -4,6 +4,7 @@ package org.openstreetmap.josm.data.osm.event;
 import java.util.Collections;
 import java.util.List;
 
+import org.openstreetmap.josm.data.coor.LatLon;
 import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.Node;
 import org.openstreetmap.josm.data.osm.OsmPrimitive;
@@ -11,10 +12,22 @@ import org.openstreetmap.josm.data.osm.OsmPrimitive;
 public class NodeMovedEvent extends AbstractDatasetChangedEvent {
 
     private final Node node;
+    private final LatLon oldCoor;
 
     public NodeMovedEvent(DataSet dataSet, Node node) {
+        this(dataSet, node, null);
+    }
+
+    /**
+     * Constructs a new {@code NodeMovedEvent}.
+     * @param dataSet the data set
+     * @param node the moved node
+     * @param oldCoor the coordinates of the node before the move, can be null if unknown
+     */
+    public NodeMovedEvent(DataSet dataSet, Node node, LatLon oldCoor) {
         super(dataSet);
         this.node = node;
+        this.oldCoor = oldCoor;
     }
 
     @Override
@@ -26,6 +39,14 @@ public class NodeMovedEvent extends AbstractDatasetChangedEvent {
         return node;
     }
 
+    /**
+     * Returns the coordinates of the node before the move.
+     * @return the old coordinates, or {@code null} if they are unknown
+     */
+    public LatLon getOldCoor() {
+        return oldCoor;
+    }
+
     @Override
     public List<? extends OsmPrimitive> getPrimitives() {
         return Collections.singletonList(node);
@@ -0,0 +1,488 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm.visitor.paint;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.openstreetmap.josm.Main;
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.Preferences.PreferenceChangeEvent;
+import org.openstreetmap.josm.data.Preferences.PreferenceChangedListener;
+import org.openstreetmap.josm.data.ProjectionBounds;
+import org.openstreetmap.josm.data.SelectionChangedListener;
+import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.data.osm.BBox;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.osm.WaySegment;
+import org.openstreetmap.josm.data.osm.event.AbstractDatasetChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataSetListener;
+import org.openstreetmap.josm.data.osm.event.NodeMovedEvent;
+import org.openstreetmap.josm.data.osm.event.PrimitivesAddedEvent;
+import org.openstreetmap.josm.data.osm.event.PrimitivesRemovedEvent;
+import org.openstreetmap.josm.data.osm.event.RelationMembersChangedEvent;
+import org.openstreetmap.josm.data.osm.event.TagsChangedEvent;
+import org.openstreetmap.josm.data.osm.event.WayNodesChangedEvent;
+import org.openstreetmap.josm.data.preferences.BooleanProperty;
+import org.openstreetmap.josm.data.preferences.IntegerProperty;
+import org.openstreetmap.josm.data.projection.Projection;
+import org.openstreetmap.josm.gui.MapViewState;
+import org.openstreetmap.josm.gui.MapViewState.MapViewPoint;
+import org.openstreetmap.josm.gui.NavigatableComponent;
+import org.openstreetmap.josm.gui.mappaint.MapPaintStyles;
+import org.openstreetmap.josm.gui.mappaint.MapPaintStyles.MapPaintSylesUpdateListener;
+
+/**
+ * Caches the output of the {@link StyledMapRenderer} for a data set in tiles of {@link #TILE_SIZE} pixels.
+ * <p>
+ * The tiles are aligned to a grid in east/north space, so panning the map only draws the cached images and renders
+ * the tiles that became visible. The cache is cleared when the scale, the projection, the map paint styles or the
+ * rendering preferences change. Changes to the data set only invalidate the tiles that show the changed primitives, at
+ * their old and their new position.
+ * <p>
+ * Selected and highlighted primitives and the members of selected relations are not cached. They are rendered
+ * on every repaint in an overlay pass on top of the tiles, so selection changes do not require rendering the tiles again.
+ * The overlay is updated from the selection and data set events. Only a change of the highlighted primitives, which is
+ * not reported by an event, requires to search the primitives of the visible tiles again.
+ */
+public class RenderTileCache implements DataSetListener, MapPaintSylesUpdateListener, PreferenceChangedListener,
+        SelectionChangedListener {
+
+    /** Whether the OSM data layers use a render tile cache */
+    public static final BooleanProperty PROP_ENABLED = new BooleanProperty("mappaint.render-cache", false);
+    /** The maximum number of tiles cached for one data set */
+    public static final IntegerProperty PROP_MAX_TILES = new IntegerProperty("mappaint.render-cache.max-tiles", 128);
+
+    /** The size of a tile in pixels */
+    static final int TILE_SIZE = 256;
+    /** Primitives up to this number of pixels outside of a tile are rendered into it, so that icons and labels are not cut */
+    private static final int TILE_MARGIN = 64;
+    /** Above this number of changed primitives, all tiles are invalidated */
+    private static final int MAX_INCREMENTAL_CHANGES = 1000;
+    /** The cache is cleared if the distance of 100 pixels differs more than this fraction from the distance used for the tiles */
+    private static final double MAX_DIST100PIXEL_CHANGE = 0.1;
+    /** The prefixes of the preferences that change the rendering */
+    private static final String[] RENDERING_PREFERENCE_PREFIXES = {"color.", "draw.", "mappaint."};
+
+    private static final class Tile {
+        private final BufferedImage image;
+        private final ProjectionBounds bounds;
+        private final Set<OsmPrimitive> primitives;
+
+        Tile(BufferedImage image, ProjectionBounds bounds, Set<OsmPrimitive> primitives) {
+            this.image = image;
+            this.bounds = bounds;
+            this.primitives = primitives;
+        }
+    }
+
+    /**
+     * A view that is not displayed and covers a tile. The distance of 100 pixels is the same for all tiles,
+     * so that all tiles use the same styles.
+     */
+    private static final class TileViewport extends NavigatableComponent {
+        private final double dist100Pixel;
+
+        TileViewport(MapViewState state, double dist100Pixel) {
+            super(state);
+            this.dist100Pixel = dist100Pixel;
+        }
+
+        @Override
+        public double getDist100Pixel(boolean alwaysPositive) {
+            return dist100Pixel;
+        }
+    }
+
+    private final DataSet data;
+    private final Map<Point, Tile> tiles = new LinkedHashMap<>(64, 0.75f, true);
+    /** The primitives that are excluded from the tiles, because they are painted in the overlay pass */
+    private final Set<OsmPrimitive> overlayPrimitives = new HashSet<>();
+
+    /** The primitives changed since the last repaint. Data set events may be fired outside of the EDT. */
+    private final Queue<OsmPrimitive> changedPrimitives = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean cleared = new AtomicBoolean();
+    private final AtomicBoolean selectionChanged = new AtomicBoolean();
+
+    /** The area searched for overlay primitives, or {@code null} if the overlay has to be searched again */
+    private BBox overlayArea;
+    /** The highlight counter of the data set when the overlay was searched */
+    private int overlayHighlightUpdateCount;
+
+    private double scale;
+    private double dist100Pixel;
+    private Projection projection;
+    private boolean inactive;
+
+    /**
+     * Constructs a new {@code RenderTileCache} and registers it as listener.
+     * @param data the data set that is rendered
+     * @see #destroy()
+     */
+    public RenderTileCache(DataSet data) {
+        this.data = data;
+        data.addDataSetListener(this);
+        MapPaintStyles.addMapPaintSylesUpdateListener(this);
+        Main.pref.addPreferenceChangeListener(this);
+        DataSet.addSelectionListener(this);
+    }
+
+    /**
+     * Unregisters the listeners and discards all tiles.
+     */
+    public void destroy() {
+        data.removeDataSetListener(this);
+        MapPaintStyles.removeMapPaintSylesUpdateListener(this);
+        Main.pref.removePreferenceChangeListener(this);
+        DataSet.removeSelectionListener(this);
+        clear();
+    }
+
+    /**
+     * Discards all cached tiles, e.g. after a change that is not reported by data set events like a filter change.
+     */
+    public void clear() {
+        cleared.set(true);
+    }
+
+    /**
+     * Gets the number of tiles in the cache.
+     * @return the number of tiles
+     */
+    public synchronized int getTileCount() {
+        return tiles.size();
+    }
+
+    /**
+     * Renders the data set. This has the same result as {@link StyledMapRenderer#render}, except for that
+     * the selected and highlighted primitives are painted above all others.
+     * @param painter the renderer for the map view, used for the overlay pass
+     * @param nc the map view
+     * @param g the graphics of the map view
+     * @param isInactiveMode if true, the data is rendered such that it looks inactive
+     * @param renderVirtualNodes if true, renders virtual nodes
+     * @param bounds the area to render
+     */
+    public synchronized void paint(StyledMapRenderer painter, NavigatableComponent nc, Graphics2D g,
+            boolean isInactiveMode, boolean renderVirtualNodes, Bounds bounds) {
+        MapViewState state = nc.getState();
+        double currentDist100Pixel = nc.getDist100Pixel();
+        if (cleared.getAndSet(false) || scale != state.getScale() || projection != state.getProjection()
+                || inactive != isInactiveMode || Math.abs(currentDist100Pixel - dist100Pixel) > MAX_DIST100PIXEL_CHANGE * dist100Pixel) {
+            tiles.clear();
+            overlayPrimitives.clear();
+            overlayArea = null;
+            changedPrimitives.clear();
+            scale = state.getScale();
+            projection = state.getProjection();
+            inactive = isInactiveMode;
+            dist100Pixel = currentDist100Pixel;
+        }
+
+        data.getReadLock().lock();
+        try {
+            MapViewPoint topLeft = state.getForView(0, 0);
+            MapViewPoint bottomRight = state.getForView(state.getViewWidth(), state.getViewHeight());
+            int minX = tileIndex(topLeft.getEastNorth().east());
+            int maxX = tileIndex(bottomRight.getEastNorth().east());
+            int minY = tileIndex(-topLeft.getEastNorth().north());
+            int maxY = tileIndex(-bottomRight.getEastNorth().north());
+
+            Set<OsmPrimitive> changed = processChanges();
+            // the area rendered into the visible tiles
+            EastNorth areaTopLeft = new EastNorth((minX * TILE_SIZE - TILE_MARGIN) * scale, -(minY * TILE_SIZE - TILE_MARGIN) * scale);
+            updateOverlay(state.usingViewArea(areaTopLeft, (maxX - minX + 1) * TILE_SIZE + 2 * TILE_MARGIN,
+                    (maxY - minY + 1) * TILE_SIZE + 2 * TILE_MARGIN).getViewArea().getLatLonBoundsBox().toBBox(), changed);
+
+            BufferedImage buffer = null;
+            for (int y = minY; y <= maxY; y++) {
+                for (int x = minX; x <= maxX; x++) {
+                    Point key = new Point(x, y);
+                    Tile tile = tiles.get(key);
+                    if (tile == null) {
+                        if (buffer == null) {
+                            buffer = new BufferedImage(TILE_SIZE + 2 * TILE_MARGIN, TILE_SIZE + 2 * TILE_MARGIN,
+                                    BufferedImage.TYPE_INT_ARGB);
+                        }
+                        tile = renderTile(state, x, y, buffer);
+                        tiles.put(key, tile);
+                    }
+                    MapViewPoint p = state.getPointFor(new EastNorth(x * TILE_SIZE * scale, -y * TILE_SIZE * scale));
+                    g.drawImage(tile.image, (int) Math.round(p.getInViewX()), (int) Math.round(p.getInViewY()), null);
+                }
+            }
+
+            int maxTiles = Math.max(PROP_MAX_TILES.get(), (maxX - minX + 1) * (maxY - minY + 1));
+            for (Iterator<Tile> it = tiles.values().iterator(); tiles.size() > maxTiles && it.hasNext();) {
+                it.next();
+                it.remove();
+            }
+
+            painter.setRenderFilter(overlayPrimitives::contains);
+            painter.render(data, renderVirtualNodes, bounds);
+        } finally {
+            data.getReadLock().unlock();
+        }
+    }
+
+    private int tileIndex(double eastOrSouth) {
+        return (int) Math.floor(eastOrSouth / scale / TILE_SIZE);
+    }
+
+    private Tile renderTile(MapViewState state, int x, int y, BufferedImage buffer) {
+        int size = TILE_SIZE + 2 * TILE_MARGIN;
+        EastNorth topLeft = new EastNorth((x * TILE_SIZE - TILE_MARGIN) * scale, -(y * TILE_SIZE - TILE_MARGIN) * scale);
+        MapViewState tileState = state.usingViewArea(topLeft, size, size);
+        ProjectionBounds tileBounds = tileState.getViewArea().getProjectionBounds();
+        Bounds bounds = tileState.getViewArea().getLatLonBoundsBox();
+
+        Graphics2D g = buffer.createGraphics();
+        try {
+            g.setComposite(AlphaComposite.Clear);
+            g.fillRect(0, 0, size, size);
+            g.setComposite(AlphaComposite.SrcOver);
+            StyledMapRenderer renderer = new StyledMapRenderer(g, new TileViewport(tileState, dist100Pixel), inactive);
+            renderer.setRenderFilter(p -> !overlayPrimitives.contains(p));
+            renderer.render(data, false, bounds);
+        } finally {
+            g.dispose();
+        }
+
+        BufferedImage image = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D tileGraphics = image.createGraphics();
+        try {
+            tileGraphics.setComposite(AlphaComposite.Src);
+            tileGraphics.drawImage(buffer, -TILE_MARGIN, -TILE_MARGIN, null);
+        } finally {
+            tileGraphics.dispose();
+        }
+
+        BBox bbox = bounds.toBBox();
+        Set<OsmPrimitive> primitives = new HashSet<>();
+        primitives.addAll(data.searchNodes(bbox));
+        primitives.addAll(data.searchWays(bbox));
+        primitives.addAll(data.searchRelations(bbox));
+        return new Tile(image, tileBounds, primitives);
+    }
+
+    /**
+     * Decides if a primitive is painted in the overlay pass.
+     * @param p the primitive
+     * @param highlightedSegmentWays the ways with highlighted segments
+     * @return <code>true</code> if the primitive is painted in the overlay pass
+     */
+    private static boolean isOverlay(OsmPrimitive p, Set<Way> highlightedSegmentWays) {
+        if (p.isHighlighted() || highlightedSegmentWays.contains(p))
+            return true;
+        return !p.isDisabled() && (p.isSelected() || p.isMemberOfSelected() || p.isOuterMemberOfSelected());
+    }
+
+    /**
+     * Updates the set of overlay primitives and invalidates the tiles of the primitives that are moved to the overlay or
+     * back to the tiles.
+     * <p>
+     * The primitives of the given area are searched if the highlighting has changed or the area has not been searched
+     * before. Otherwise only the primitives whose state may have changed are checked: the changed primitives, and after a
+     * selection change the selected primitives, the members of selected relations and the current overlay primitives.
+     * @param area the area rendered into the visible tiles
+     * @param changed the primitives changed since the last repaint
+     */
+    private void updateOverlay(BBox area, Collection<OsmPrimitive> changed) {
+        Set<OsmPrimitive> candidates = new HashSet<>(changed);
+        int highlightUpdateCount = data.getHighlightUpdateCount();
+        if (overlayArea == null || overlayHighlightUpdateCount != highlightUpdateCount || !overlayArea.bounds(area)) {
+            // highlighted primitives can only be found by searching
+            candidates.addAll(data.searchNodes(area));
+            candidates.addAll(data.searchWays(area));
+            candidates.addAll(data.searchRelations(area));
+            candidates.addAll(overlayPrimitives);
+            overlayArea = area;
+            overlayHighlightUpdateCount = highlightUpdateCount;
+            selectionChanged.set(false);
+        } else if (selectionChanged.getAndSet(false)) {
+            candidates.addAll(overlayPrimitives);
+            for (OsmPrimitive p : data.getAllSelected()) {
+                candidates.add(p);
+                if (p instanceof Relation) {
+                    candidates.addAll(((Relation) p).getMemberPrimitivesList());
+                }
+            }
+        }
+        if (candidates.isEmpty()) {
+            return;
+        }
+        Set<Way> highlightedSegmentWays = new HashSet<>();
+        for (WaySegment ws : data.getHighlightedWaySegments()) {
+            highlightedSegmentWays.add(ws.way);
+        }
+        for (OsmPrimitive p : candidates) {
+            boolean overlay = p.getDataSet() == data && isOverlay(p, highlightedSegmentWays);
+            if (overlay ? overlayPrimitives.add(p) : overlayPrimitives.remove(p)) {
+                tiles.values().removeIf(tile -> tile.primitives.contains(p));
+            }
+        }
+    }
+
+    /**
+     * Invalidates the tiles affected by the changes since the last repaint.
+     * @return the changed primitives and their referrers, empty if all tiles have been invalidated
+     */
+    private Set<OsmPrimitive> processChanges() {
+        Set<OsmPrimitive> affected = new HashSet<>();
+        List<OsmPrimitive> pending = new ArrayList<>();
+        for (OsmPrimitive p = changedPrimitives.poll(); p != null; p = changedPrimitives.poll()) {
+            pending.add(p);
+        }
+        // the shape of the referrers changes as well
+        while (!pending.isEmpty() && affected.size() <= MAX_INCREMENTAL_CHANGES) {
+            OsmPrimitive p = pending.remove(pending.size() - 1);
+            if (affected.add(p)) {
+                pending.addAll(p.getReferrers());
+            }
+        }
+        if (affected.size() > MAX_INCREMENTAL_CHANGES) {
+            tiles.clear();
+            overlayArea = null;
+            return Collections.emptySet();
+        }
+        for (OsmPrimitive p : affected) {
+            // the tiles showing the primitive at its old position
+            tiles.values().removeIf(tile -> tile.primitives.contains(p));
+            // the tiles covering its new position
+            ProjectionBounds pb = getProjectionBounds(p);
+            if (pb != null) {
+                tiles.values().removeIf(tile -> tile.bounds.intersects(pb));
+            }
+        }
+        return affected;
+    }
+
+    private static ProjectionBounds getProjectionBounds(OsmPrimitive p) {
+        ProjectionBounds pb = null;
+        if (p instanceof Node) {
+            EastNorth en = ((Node) p).getEastNorth();
+            if (en != null) {
+                pb = new ProjectionBounds(en);
+            }
+        } else if (p instanceof Way) {
+            for (Node n : ((Way) p).getNodes()) {
+                EastNorth en = n.getEastNorth();
+                if (en == null) {
+                    continue;
+                } else if (pb == null) {
+                    pb = new ProjectionBounds(en);
+                } else {
+                    pb.extend(en);
+                }
+            }
+        } else {
+            BBox bbox = p.getBBox();
+            if (bbox.isValid()) {
+                pb = new ProjectionBounds(Main.getProjection().latlon2eastNorth(bbox.getTopLeft()));
+                pb.extend(Main.getProjection().latlon2eastNorth(bbox.getBottomRight()));
+            }
+        }
+        return pb;
+    }
+
+    private void primitivesChanged(Collection<? extends OsmPrimitive> primitives) {
+        if (primitives.size() > MAX_INCREMENTAL_CHANGES) {
+            clear();
+        } else {
+            changedPrimitives.addAll(primitives);
+        }
+    }
+
+    @Override
+    public void primitivesAdded(PrimitivesAddedEvent event) {
+        primitivesChanged(event.getPrimitives());
+    }
+
+    @Override
+    public void primitivesRemoved(PrimitivesRemovedEvent event) {
+        primitivesChanged(event.getPrimitives());
+    }
+
+    @Override
+    public void tagsChanged(TagsChangedEvent event) {
+        primitivesChanged(event.getPrimitives());
+    }
+
+    @Override
+    public void nodeMoved(NodeMovedEvent event) {
+        primitivesChanged(event.getPrimitives());
+    }
+
+    @Override
+    public void wayNodesChanged(WayNodesChangedEvent event) {
+        primitivesChanged(event.getPrimitives());
+    }
+
+    @Override
+    public void relationMembersChanged(RelationMembersChangedEvent event) {
+        primitivesChanged(event.getPrimitives());
+    }
+
+    @Override
+    public void otherDatasetChange(AbstractDatasetChangedEvent event) {
+        // e.g. the modified flag, which can be used in map paint styles
+        primitivesChanged(event.getPrimitives());
+    }
+
+    @Override
+    public void dataChanged(DataChangedEvent event) {
+        if (event.getSummary() == null) {
+            clear();
+        } else {
+            primitivesChanged(event.getSummary().getPrimitives());
+        }
+    }
+
+    @Override
+    public void mapPaintStylesUpdated() {
+        clear();
+    }
+
+    @Override
+    public void mapPaintStyleEntryUpdated(int idx) {
+        clear();
+    }
+
+    @Override
+    public void preferenceChanged(PreferenceChangeEvent e) {
+        String key = e.getKey();
+        if (key.startsWith(PROP_ENABLED.getKey())) {
+            // the settings of the cache itself
+            return;
+        }
+        for (String prefix : RENDERING_PREFERENCE_PREFIXES) {
+            if (key.startsWith(prefix)) {
+                clear();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void selectionChanged(Collection<? extends OsmPrimitive> newSelection) {
+        selectionChanged.set(true);
+    }
+}
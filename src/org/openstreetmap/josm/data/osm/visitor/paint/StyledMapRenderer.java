@@ -38,6 +38,7 @@ import java.util.Optional;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.RecursiveTask;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
@@ -432,6 +433,11 @@ public class StyledMapRenderer extends AbstractMapRenderer {
 
     private Supplier<RenderBenchmarkCollector> benchmarkFactory = RenderBenchmarkCollector.defaultBenchmarkSupplier();
 
+    /**
+     * Decides which of the primitives in the bounds are rendered. <code>null</code> to render all of them.
+     */
+    private Predicate<OsmPrimitive> renderFilter;
+
     /**
      * Constructs a new {@code StyledMapRenderer}.
      *
@@ -1928,6 +1934,14 @@ public class StyledMapRenderer extends AbstractMapRenderer {
         this.benchmarkFactory = benchmarkFactory;
     }
 
+    /**
+     * Restricts the rendering to some of the primitives. Used by {@link RenderTileCache}.
+     * @param renderFilter The primitives to render, <code>null</code> to render all of them.
+     */
+    void setRenderFilter(Predicate<OsmPrimitive> renderFilter) {
+        this.renderFilter = renderFilter;
+    }
+
     @Override
     public void render(final DataSet data, boolean renderVirtualNodes, Bounds bounds) {
         RenderBenchmarkCollector benchmark = benchmarkFactory.get();
@@ -1943,6 +1957,11 @@ public class StyledMapRenderer extends AbstractMapRenderer {
             List<Node> nodes = data.searchNodes(bbox);
             List<Way> ways = data.searchWays(bbox);
             List<Relation> relations = data.searchRelations(bbox);
+            if (renderFilter != null) {
+                nodes = nodes.stream().filter(renderFilter).collect(Collectors.toList());
+                ways = ways.stream().filter(renderFilter).collect(Collectors.toList());
+                relations = relations.stream().filter(renderFilter).collect(Collectors.toList());
+            }
 
             final List<StyleRecord> allStyleElems = new ArrayList<>(nodes.size()+ways.size()+relations.size());
 
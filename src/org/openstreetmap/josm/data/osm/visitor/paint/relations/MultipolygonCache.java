@@ -17,6 +17,7 @@ import org.openstreetmap.josm.data.osm.Relation;
 import org.openstreetmap.josm.data.osm.Way;
 import org.openstreetmap.josm.data.osm.event.AbstractDatasetChangedEvent;
 import org.openstreetmap.josm.data.osm.event.DataChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataSetChangeSummary;
 import org.openstreetmap.josm.data.osm.event.DataSetListener;
 import org.openstreetmap.josm.data.osm.event.NodeMovedEvent;
 import org.openstreetmap.josm.data.osm.event.PrimitivesAddedEvent;
@@ -42,6 +43,9 @@ public final class MultipolygonCache implements DataSetListener, LayerChangeList
 
     private static final MultipolygonCache INSTANCE = new MultipolygonCache();
 
+    /** Maximum number of changed primitives for which the multipolygons referring to them are removed, see {@link #dataChanged} */
+    private static final int MAX_SUMMARY_SIZE = 1000;
+
     private final Map<NavigatableComponent, Map<DataSet, Map<Relation, Multipolygon>>> cache;
 
     private final Collection<PolyData> selectedPolyData;
@@ -270,6 +274,18 @@ public final class MultipolygonCache implements DataSetListener, LayerChangeList
 
     @Override
     public void dataChanged(DataChangedEvent event) {
+        DataSetChangeSummary summary = event.getSummary();
+        if (summary != null) {
+            if (summary.getAddedPrimitives().size() + summary.getRemovedPrimitives().size()
+                    + summary.getModifiedPrimitives().size() > MAX_SUMMARY_SIZE) {
+                // walking the referrers of all changed primitives is slower than building the multipolygons again
+                clear(event.getDataset());
+            } else {
+                // the multipolygons referring to the changed primitives are removed from the cache
+                updateMultipolygonsReferringTo(event, summary.getPrimitives(), event.getDataset());
+            }
+            return;
+        }
         // Do not call updateMultipolygonsReferringTo as getPrimitives()
         // can return all the data set primitives for this event
         Collection<Map<Relation, Multipolygon>> maps = null;
@@ -0,0 +1,235 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.validation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.openstreetmap.josm.data.osm.BBox;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.osm.event.AbstractDatasetChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataSetChangeSummary;
+import org.openstreetmap.josm.data.osm.event.DataSetListenerAdapter;
+import org.openstreetmap.josm.data.validation.util.AggregatePrimitivesVisitor;
+import org.openstreetmap.josm.gui.preferences.validator.ValidatorPreference;
+
+/**
+ * Keeps a list of validation errors up to date while a data set is edited.
+ * <p>
+ * The changed primitives are collected from the data set events. {@link #validate(Collection)} expands them to all
+ * primitives whose errors may have changed: the parent ways and relations, the ways and nodes in the bounding box of each
+ * changed primitive or parent way, and their children. The tests are only run on these primitives. The returned
+ * {@link Result} then replaces the errors of these primitives in the error list.
+ * <p>
+ * If the data has completely changed, all primitives of the data set are validated again.
+ * <p>
+ * Events are collected on the thread firing them, typically the EDT. The validation can run on any other thread. It holds
+ * the read lock of the data set only while the primitives to validate are collected, and the
+ * {@link OsmValidator#getTestLock() test lock} while the shared tests run.
+ * @see ValidatorPreference#PREF_INCREMENTAL
+ */
+public class IncrementalValidator implements DataSetListenerAdapter.Listener {
+
+    private DataSet dataSet;
+    private Set<OsmPrimitive> changed = new HashSet<>();
+    private boolean validateAll;
+
+    /**
+     * The result of an incremental validation.
+     */
+    public static final class Result {
+        private final DataSet dataSet;
+        private final Set<OsmPrimitive> changed;
+        private final Set<OsmPrimitive> validated;
+        private final List<TestError> errors;
+
+        Result(DataSet dataSet, Set<OsmPrimitive> changed, Set<OsmPrimitive> validated, List<TestError> errors) {
+            this.dataSet = dataSet;
+            this.changed = changed;
+            this.validated = validated;
+            this.errors = errors;
+        }
+
+        /**
+         * Returns the validated data set.
+         * @return the validated data set
+         */
+        public DataSet getDataSet() {
+            return dataSet;
+        }
+
+        /**
+         * Returns the primitives the tests have been run on.
+         * @return the validated primitives
+         */
+        public Set<OsmPrimitive> getValidatedPrimitives() {
+            return Collections.unmodifiableSet(validated);
+        }
+
+        /**
+         * Returns the errors found for the validated primitives. Ignored errors are included and marked as ignored.
+         * @return the errors found
+         */
+        public List<TestError> getErrors() {
+            return Collections.unmodifiableList(errors);
+        }
+
+        /**
+         * Updates an error list of the validated data set. Removes the errors referring to a changed or deleted primitive
+         * or only to validated primitives, then adds the new errors which are not ignored.
+         * @param errorList the error list to update
+         * @return {@code true} if the error list has been changed
+         */
+        public boolean applyTo(List<TestError> errorList) {
+            boolean modified = errorList.removeIf(this::isOutdated);
+            for (TestError error : errors) {
+                if (!error.isIgnored()) {
+                    errorList.add(error);
+                    modified = true;
+                }
+            }
+            return modified;
+        }
+
+        private boolean isOutdated(TestError error) {
+            boolean allValidated = true;
+            for (OsmPrimitive p : error.getPrimitives()) {
+                if (changed.contains(p) || p.isDeleted() || p.getDataSet() != dataSet) {
+                    return true;
+                }
+                allValidated &= validated.contains(p);
+            }
+            return allValidated;
+        }
+    }
+
+    @Override
+    public synchronized void processDatasetEvent(AbstractDatasetChangedEvent event) {
+        if (event.getDataset() != dataSet) {
+            dataSet = event.getDataset();
+            changed.clear();
+            validateAll = false;
+        }
+        collectPrimitives(event);
+    }
+
+    private void collectPrimitives(AbstractDatasetChangedEvent event) {
+        if (event instanceof DataChangedEvent) {
+            List<AbstractDatasetChangedEvent> events = ((DataChangedEvent) event).getEvents();
+            DataSetChangeSummary summary = ((DataChangedEvent) event).getSummary();
+            if (events != null) {
+                for (AbstractDatasetChangedEvent e : events) {
+                    collectPrimitives(e);
+                }
+            } else if (summary != null) {
+                changed.addAll(summary.getPrimitives());
+            } else {
+                // the data has completely changed
+                validateAll = true;
+            }
+        } else {
+            changed.addAll(event.getPrimitives());
+        }
+    }
+
+    /**
+     * Determines if primitives have been changed since the last validation.
+     * @return {@code true} if there are changes to validate
+     */
+    public synchronized boolean hasChanges() {
+        return validateAll || !changed.isEmpty();
+    }
+
+    /**
+     * Runs the given tests on the primitives affected by the changes since the last call.
+     * @param tests the tests to run
+     * @return the result to apply to the error list, or {@code null} if nothing has changed
+     */
+    public Result validate(Collection<Test> tests) {
+        DataSet ds;
+        Set<OsmPrimitive> changedPrimitives;
+        boolean all;
+        synchronized (this) {
+            if (!hasChanges()) {
+                return null;
+            }
+            ds = dataSet;
+            changedPrimitives = changed;
+            all = validateAll;
+            changed = new HashSet<>();
+            validateAll = false;
+        }
+        Set<OsmPrimitive> affected;
+        List<TestError> errors;
+        // like ValidateAction, the tests run without the read lock so that edits are not blocked by the validation
+        ds.getReadLock().lock();
+        try {
+            affected = all ? new HashSet<>(ds.allNonDeletedPrimitives()) : getAffectedPrimitives(ds, changedPrimitives);
+        } finally {
+            ds.getReadLock().unlock();
+        }
+        synchronized (OsmValidator.getTestLock()) {
+            for (Test test : tests) {
+                test.setBeforeUpload(false);
+                test.setPartialSelection(true);
+            }
+            errors = TestRunner.runTests(tests, affected, test -> null);
+        }
+        if (ValidatorPreference.PREF_USE_IGNORE.get()) {
+            for (TestError error : errors) {
+                updateIgnored(error);
+            }
+        }
+        return new Result(ds, changedPrimitives, affected, errors);
+    }
+
+    private static void updateIgnored(TestError error) {
+        for (String state : new String[] {error.getIgnoreState(), error.getIgnoreGroup(), error.getIgnoreSubGroup()}) {
+            if (state != null && OsmValidator.hasIgnoredError(state)) {
+                error.setIgnored(true);
+            }
+        }
+    }
+
+    /**
+     * Expands changed primitives to all primitives whose validation errors may have changed.
+     * @param ds the data set of the primitives
+     * @param changed the changed primitives
+     * @return the changed primitives which are not deleted, their parents and spatial neighbours, and the children of all of
+     * them
+     */
+    static Set<OsmPrimitive> getAffectedPrimitives(DataSet ds, Collection<OsmPrimitive> changed) {
+        Set<OsmPrimitive> affected = new HashSet<>();
+        for (OsmPrimitive p : changed) {
+            if (p.isDeleted() || p.getDataSet() != ds) {
+                continue;
+            }
+            affected.add(p);
+            addNeighbours(ds, p, affected);
+            for (OsmPrimitive parent : p.getReferrers()) {
+                affected.add(parent);
+                if (parent instanceof Way) {
+                    addNeighbours(ds, parent, affected);
+                    affected.addAll(parent.getReferrers());
+                }
+            }
+        }
+        return new HashSet<>(new AggregatePrimitivesVisitor().visit(new ArrayList<>(affected)));
+    }
+
+    private static void addNeighbours(DataSet ds, OsmPrimitive p, Set<OsmPrimitive> affected) {
+        if (p instanceof Relation || !p.isUsable()) {
+            return;
+        }
+        BBox bbox = p.getBBox();
+        affected.addAll(ds.searchNodes(bbox));
+        affected.addAll(ds.searchWays(bbox));
+    }
+}
@@ -89,6 +89,11 @@ public final class OsmValidator {
     private static final Collection<Class<? extends Test>> allTests = new ArrayList<>();
     private static final Map<String, Test> allTestsMap = new HashMap<>();
 
+    /**
+     * Lock of the shared tests, see {@link #getTestLock()}
+     */
+    private static final Object TEST_LOCK = new Object();
+
     /**
      * All available tests in core
      */
@@ -261,6 +266,15 @@ public final class OsmValidator {
         }
     }
 
+    /**
+     * Returns the lock to hold while the shared tests of {@link #getEnabledTests(boolean)} are configured and run by a task
+     * which may overlap with another validation, e.g. the incremental validation and the validation before upload.
+     * @return the lock of the shared tests
+     */
+    public static Object getTestLock() {
+        return TEST_LOCK;
+    }
+
     public static Collection<Test> getTests() {
         return getAllTestsMap().values();
     }
@@ -73,6 +73,9 @@ public class Test extends AbstractVisitor {
     /** the start time to compute elapsed time when test finishes */
     protected long startTime;
 
+    /** the context of the current {@link TestRunner} run */
+    private TestRunContext runContext;
+
     /**
      * Constructor
      * @param name Name of the test
@@ -168,6 +171,22 @@ public class Test extends AbstractVisitor {
         this.partialSelection = partialSelection;
     }
 
+    /**
+     * Sets the context of the {@link TestRunner} run, before the test starts.
+     * @param runContext the run context, or {@code null} when the test has ended
+     */
+    void setRunContext(TestRunContext runContext) {
+        this.runContext = runContext;
+    }
+
+    /**
+     * Returns the data shared with the other tests of the current run.
+     * @return the run context, or {@code null} if the test is not run by {@link TestRunner}
+     */
+    public TestRunContext getRunContext() {
+        return runContext;
+    }
+
     /**
      * Gets the validation errors accumulated until this moment.
      * @return The list of errors
@@ -216,6 +235,33 @@ public class Test extends AbstractVisitor {
         }
     }
 
+    /**
+     * Determines if this test can run on a worker thread, concurrently with other tests.
+     * <p>
+     * By default, tests run serially on the thread that started the validation. A test may override this method and
+     * return {@code true} once it has been checked that it does not share mutable state with other tests, does not access
+     * the GUI while it runs and only reports its progress through {@link #progressMonitor}.
+     * @return {@code true} if this test can run concurrently with other tests
+     * @see TestRunner
+     */
+    public boolean isThreadSafe() {
+        return false;
+    }
+
+    /**
+     * Determines if the primitives of this test can be visited in several partitions at the same time.
+     * <p>
+     * This requires that the visit methods do not modify the state of the test, except for adding errors to {@link #errors},
+     * and that {@link #visit(Collection)} is not overridden to do more than filtering. The errors of the partitions are
+     * merged in the order of the primitives. Partitions are only visited concurrently if the test is also
+     * {@link #isThreadSafe() thread safe}.
+     * @return {@code true} if the primitives can be visited concurrently
+     * @see TestRunner
+     */
+    public boolean isPartitionable() {
+        return false;
+    }
+
     /**
      * Determines if the primitive is usable for tests.
      * @param p The primitive
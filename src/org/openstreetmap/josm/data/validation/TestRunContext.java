@@ -0,0 +1,64 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.validation;
+
+import java.util.Collection;
+import java.util.Collections;
+
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.validation.util.WaySegmentIndex;
+
+/**
+ * The data shared by the tests of one {@link TestRunner} run. It is created for each run and handed to the tests by
+ * {@link Test#getRunContext()}, so nothing is kept after the run.
+ */
+public final class TestRunContext {
+
+    private final Collection<OsmPrimitive> primitives;
+    private WaySegmentIndex segmentIndex;
+    private volatile boolean canceled;
+
+    TestRunContext(Collection<OsmPrimitive> primitives) {
+        this.primitives = primitives;
+    }
+
+    /**
+     * Returns the primitives validated in this run.
+     * @return the validated primitives
+     */
+    public Collection<OsmPrimitive> getPrimitives() {
+        return Collections.unmodifiableCollection(primitives);
+    }
+
+    /**
+     * Returns the index of the segments of all usable ways validated in this run. It is built by the first test asking
+     * for it.
+     * @return the segment index
+     */
+    public synchronized WaySegmentIndex getSegmentIndex() {
+        if (segmentIndex == null) {
+            segmentIndex = new WaySegmentIndex(OsmValidator.griddetail);
+            for (OsmPrimitive p : primitives) {
+                if (p instanceof Way && p.isUsable()) {
+                    segmentIndex.addWay((Way) p);
+                }
+            }
+        }
+        return segmentIndex;
+    }
+
+    /**
+     * Cancels the run. The remaining tests are not started and the running tests stop visiting primitives.
+     */
+    void cancel() {
+        canceled = true;
+    }
+
+    /**
+     * Determines if the run has been canceled.
+     * @return {@code true} if the run has been canceled
+     */
+    boolean isCanceled() {
+        return canceled;
+    }
+}
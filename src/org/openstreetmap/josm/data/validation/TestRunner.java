@@ -0,0 +1,296 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.validation;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+import org.openstreetmap.josm.Main;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.gui.preferences.validator.ValidatorPreference;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.gui.progress.ProgressMonitor;
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * Runs a collection of validation tests on a set of primitives.
+ * <p>
+ * If {@link ValidatorPreference#PREF_PARALLEL} is set, all tests that are {@link Test#isThreadSafe() thread safe} run
+ * concurrently on a thread pool, the other tests run serially on the calling thread. The primitives of
+ * {@link Test#isPartitionable() partitionable} tests are additionally split into partitions that are visited in parallel.
+ * <p>
+ * The errors are always returned in the order of the tests and, for each test, in the order of the primitives, so the
+ * result does not depend on the number of threads.
+ * <p>
+ * The progress monitors are only called on the calling thread. Tests running on the thread pool count their progress in a
+ * {@link WorkerProgressMonitor}, which is forwarded to the monitor of the test while the calling thread waits for it. When
+ * a monitor is canceled, the tests that have not started yet are skipped and the running tests stop visiting primitives.
+ */
+public final class TestRunner {
+
+    private static final ForkJoinPool THREAD_POOL =
+            Utils.newForkJoinPool("validator.numberOfThreads", "validator-%d", Thread.NORM_PRIORITY);
+
+    /** The number of primitives visited by one partition task */
+    private static final int PARTITION_SIZE = 500;
+
+    /** The interval in milliseconds in which the progress of a test running on the thread pool is forwarded */
+    private static final long PROGRESS_INTERVAL = 100;
+
+    private TestRunner() {
+        // Hide default constructor for utils classes
+    }
+
+    /**
+     * Runs the given tests.
+     * <p>
+     * The tests need to be initialized. Flags like {@link Test#setPartialSelection(boolean)} must be set before.
+     * @param tests the tests to run
+     * @param primitives the primitives to validate
+     * @param monitors creates the progress monitor for a test. It is called on the calling thread, just before the test
+     * starts or, if the test runs on the thread pool, before its progress is forwarded. So the tests running on the calling
+     * thread come first. It may return {@code null}.
+     * @return the errors of all tests
+     */
+    public static List<TestError> runTests(Collection<Test> tests, Collection<OsmPrimitive> primitives,
+            Function<Test, ProgressMonitor> monitors) {
+        List<OsmPrimitive> primitiveList = new ArrayList<>(primitives);
+        TestRunContext context = new TestRunContext(primitiveList);
+        return ValidatorPreference.PREF_PARALLEL.get()
+                ? runParallel(tests, primitiveList, context, monitors)
+                : runSerial(tests, primitiveList, context, monitors);
+    }
+
+    private static List<TestError> runSerial(Collection<Test> tests, List<OsmPrimitive> primitives, TestRunContext context,
+            Function<Test, ProgressMonitor> monitors) {
+        List<TestError> errors = new ArrayList<>(200);
+        for (Test test : tests) {
+            errors.addAll(runTest(test, primitives, context, monitors.apply(test), false));
+        }
+        return errors;
+    }
+
+    private static List<TestError> runParallel(Collection<Test> tests, List<OsmPrimitive> primitives, TestRunContext context,
+            Function<Test, ProgressMonitor> monitors) {
+        List<Test> testList = new ArrayList<>(tests);
+        List<ForkJoinTask<List<TestError>>> tasks = new ArrayList<>(testList.size());
+        List<WorkerProgressMonitor> workerMonitors = new ArrayList<>(testList.size());
+        for (Test test : testList) {
+            if (test.isThreadSafe()) {
+                WorkerProgressMonitor workerMonitor = new WorkerProgressMonitor(context);
+                tasks.add(THREAD_POOL.submit(() -> runTest(test, primitives, context, workerMonitor, true)));
+                workerMonitors.add(workerMonitor);
+            } else {
+                tasks.add(null);
+                workerMonitors.add(null);
+            }
+        }
+        List<List<TestError>> results = new ArrayList<>(testList.size());
+        for (int i = 0; i < testList.size(); i++) {
+            results.add(tasks.get(i) == null ? runTest(testList.get(i), primitives, context, monitors.apply(testList.get(i)),
+                    false) : null);
+        }
+        List<TestError> errors = new ArrayList<>(200);
+        for (int i = 0; i < testList.size(); i++) {
+            errors.addAll(tasks.get(i) == null ? results.get(i)
+                    : awaitTest(testList.get(i), tasks.get(i), workerMonitors.get(i), context, monitors.apply(testList.get(i))));
+        }
+        return errors;
+    }
+
+    /**
+     * Waits for a test running on the thread pool and forwards its progress to its monitor.
+     * @param test the test
+     * @param task the task running the test
+     * @param workerMonitor the monitor the test reports its progress to
+     * @param context the context of the run, canceled if the monitor is canceled
+     * @param monitor the monitor of the test, may be {@code null}
+     * @return the errors of the test
+     */
+    private static List<TestError> awaitTest(Test test, ForkJoinTask<List<TestError>> task, WorkerProgressMonitor workerMonitor,
+            TestRunContext context, ProgressMonitor monitor) {
+        ProgressMonitor progressMonitor = monitor != null ? monitor : NullProgressMonitor.INSTANCE;
+        progressMonitor.beginTask(tr("Running test {0}", test.getName()));
+        try {
+            while (true) {
+                try {
+                    return task.get(PROGRESS_INTERVAL, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    workerMonitor.forwardTo(progressMonitor);
+                    if (progressMonitor.isCanceled()) {
+                        context.cancel();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    context.cancel();
+                    return task.join();
+                } catch (ExecutionException e) {
+                    // rethrows the exception of the test
+                    return task.join();
+                }
+            }
+        } finally {
+            progressMonitor.finishTask();
+        }
+    }
+
+    private static List<TestError> runTest(Test test, List<OsmPrimitive> primitives, TestRunContext context,
+            ProgressMonitor monitor, boolean parallel) {
+        test.setRunContext(context);
+        try {
+            test.startTest(monitor);
+            if (test.isCanceled()) {
+                context.cancel();
+            }
+            if (context.isCanceled()) {
+                Main.debug(tr("Test ''{0}'' skipped, the validation has been canceled", test.getName()));
+            } else if (parallel && test.isPartitionable() && primitives.size() > PARTITION_SIZE) {
+                visitPartitioned(test, primitives);
+            } else {
+                test.visit(primitives);
+            }
+            if (test.isCanceled()) {
+                context.cancel();
+            }
+            test.endTest();
+        } finally {
+            // the context is only shared within one run
+            test.setRunContext(null);
+        }
+        return test.getErrors();
+    }
+
+    /**
+     * Visits the primitives in partitions of {@link #PARTITION_SIZE} primitives. While a partition is visited, the errors
+     * of the test are collected in a list of that partition. They are merged in the order of the partitions afterwards.
+     * @param test the test. Must be running in {@link #THREAD_POOL}.
+     * @param primitives the primitives to visit
+     */
+    private static void visitPartitioned(Test test, List<OsmPrimitive> primitives) {
+        if (test.progressMonitor != null) {
+            test.progressMonitor.setTicksCount(primitives.size());
+        }
+        List<TestError> errorsBefore = test.errors;
+        PartitionedErrorList partitionErrors = new PartitionedErrorList();
+        @SuppressWarnings("unchecked")
+        List<TestError>[] results = new List[(primitives.size() + PARTITION_SIZE - 1) / PARTITION_SIZE];
+        test.errors = partitionErrors;
+        try {
+            new VisitTask(test, primitives, partitionErrors, results, 0, results.length).invoke();
+        } finally {
+            test.errors = errorsBefore;
+        }
+        for (List<TestError> result : results) {
+            if (result != null) {
+                errorsBefore.addAll(result);
+            }
+        }
+    }
+
+    /**
+     * Visits the partitions {@code from} (inclusive) to {@code to} (exclusive).
+     */
+    private static final class VisitTask extends RecursiveAction {
+        // Needed for Findbugs / Coverity because parent class is serializable
+        private static final long serialVersionUID = 1L;
+
+        private final transient Test test;
+        private final transient List<OsmPrimitive> primitives;
+        private final transient PartitionedErrorList partitionErrors;
+        private final transient List<TestError>[] results;
+        private final int from;
+        private final int to;
+
+        VisitTask(Test test, List<OsmPrimitive> primitives, PartitionedErrorList partitionErrors, List<TestError>[] results,
+                int from, int to) {
+            this.test = test;
+            this.primitives = primitives;
+            this.partitionErrors = partitionErrors;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new VisitTask(test, primitives, partitionErrors, results, from, middle),
+                          new VisitTask(test, primitives, partitionErrors, results, middle, to));
+            } else if (!test.isCanceled()) {
+                visitPartition(from);
+            }
+        }
+
+        private void visitPartition(int partition) {
+            List<OsmPrimitive> part = primitives.subList(partition * PARTITION_SIZE,
+                    Math.min(primitives.size(), (partition + 1) * PARTITION_SIZE));
+            List<TestError> result = new ArrayList<>();
+            partitionErrors.partition.set(result);
+            try {
+                for (OsmPrimitive p : part) {
+                    if (test.isPrimitiveUsable(p)) {
+                        p.accept(test);
+                    }
+                }
+            } finally {
+                partitionErrors.partition.remove();
+            }
+            results[partition] = result;
+            ProgressMonitor monitor = test.progressMonitor;
+            if (monitor != null) {
+                monitor.worked(part.size());
+            }
+        }
+    }
+
+    /**
+     * The error list of a test while its partitions are visited. Each thread sees the errors of the partition it is visiting.
+     */
+    private static final class PartitionedErrorList extends AbstractList<TestError> {
+        private final ThreadLocal<List<TestError>> partition = new ThreadLocal<>();
+
+        private List<TestError> current() {
+            List<TestError> list = partition.get();
+            if (list == null) {
+                throw new IllegalStateException("Errors can only be accessed while a partition is visited");
+            }
+            return list;
+        }
+
+        @Override
+        public TestError get(int index) {
+            return current().get(index);
+        }
+
+        @Override
+        public int size() {
+            return current().size();
+        }
+
+        @Override
+        public TestError set(int index, TestError element) {
+            return current().set(index, element);
+        }
+
+        @Override
+        public void add(int index, TestError element) {
+            current().add(index, element);
+        }
+
+        @Override
+        public TestError remove(int index) {
+            return current().remove(index);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.validation;
+
+import java.awt.Component;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openstreetmap.josm.Main;
+import org.openstreetmap.josm.gui.progress.ProgressMonitor;
+import org.openstreetmap.josm.gui.progress.ProgressTaskId;
+
+/**
+ * The progress monitor of a test running on a worker thread of {@link TestRunner}.
+ * <p>
+ * It only counts the ticks, in a thread safe way, and reports the cancellation of the run. Texts are ignored. The thread
+ * that started the validation forwards the ticks to the progress monitor of the test and cancels the run when that
+ * monitor is canceled, so the shared progress monitors are never called from a worker thread.
+ */
+final class WorkerProgressMonitor implements ProgressMonitor {
+
+    private final TestRunContext context;
+    private final AtomicInteger ticks = new AtomicInteger();
+    private volatile int ticksCount;
+
+    WorkerProgressMonitor(TestRunContext context) {
+        this.context = context;
+    }
+
+    /**
+     * Forwards the ticks counted so far to the given monitor. Must be called on the thread owning the monitor.
+     * @param monitor the progress monitor of the test
+     */
+    void forwardTo(ProgressMonitor monitor) {
+        int count = ticksCount;
+        if (count > 0) {
+            if (monitor.getTicksCount() != count) {
+                monitor.setTicksCount(count);
+            }
+            monitor.setTicks(Math.min(ticks.get(), count));
+        }
+    }
+
+    @Override
+    public void beginTask(String title) {
+        beginTask(title, 0);
+    }
+
+    @Override
+    public void beginTask(String title, int ticks) {
+        this.ticksCount = ticks;
+        this.ticks.set(0);
+    }
+
+    @Override
+    public void finishTask() {
+        ticks.set(ticksCount);
+    }
+
+    @Override
+    public void invalidate() {
+        // Do nothing
+    }
+
+    @Override
+    public void setTicksCount(int ticks) {
+        this.ticksCount = ticks;
+    }
+
+    @Override
+    public int getTicksCount() {
+        return ticksCount;
+    }
+
+    @Override
+    public void setTicks(int ticks) {
+        this.ticks.set(ticks);
+    }
+
+    @Override
+    public int getTicks() {
+        return ticks.get();
+    }
+
+    @Override
+    public void worked(int ticks) {
+        if (ticks == ALL_TICKS) {
+            this.ticks.set(ticksCount);
+        } else {
+            this.ticks.addAndGet(ticks);
+        }
+    }
+
+    @Override
+    public void indeterminateSubTask(String title) {
+        // Do nothing
+    }
+
+    @Override
+    public void subTask(String title) {
+        // Do nothing
+    }
+
+    @Override
+    public void setCustomText(String text) {
+        // Do nothing
+    }
+
+    @Override
+    public void setExtraText(String text) {
+        // Do nothing
+    }
+
+    /**
+     * Creates a monitor for a sub task. Its ticks are not counted, but it reports the cancellation of the run.
+     */
+    @Override
+    public ProgressMonitor createSubTaskMonitor(int ticks, boolean internal) {
+        return new WorkerProgressMonitor(context);
+    }
+
+    @Override
+    public boolean isCanceled() {
+        return context.isCanceled();
+    }
+
+    @Override
+    public void cancel() {
+        context.cancel();
+    }
+
+    @Override
+    public void addCancelListener(CancelListener listener) {
+        // Do nothing
+    }
+
+    @Override
+    public void removeCancelListener(CancelListener listener) {
+        // Do nothing
+    }
+
+    @Override
+    public void appendLogMessage(String message) {
+        // Do nothing
+    }
+
+    @Override
+    public void setProgressTaskId(ProgressTaskId taskId) {
+        // Do nothing
+    }
+
+    @Override
+    public ProgressTaskId getProgressTaskId() {
+        return null;
+    }
+
+    @Override
+    public Component getWindowParent() {
+        return Main.parent;
+    }
+}
@@ -5,10 +5,13 @@ import static org.openstreetmap.josm.tools.I18n.tr;
 
 import java.awt.geom.Point2D;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 import org.openstreetmap.josm.Main;
 import org.openstreetmap.josm.data.coor.EastNorth;
@@ -20,7 +23,9 @@ import org.openstreetmap.josm.data.validation.OsmValidator;
 import org.openstreetmap.josm.data.validation.Severity;
 import org.openstreetmap.josm.data.validation.Test;
 import org.openstreetmap.josm.data.validation.TestError;
+import org.openstreetmap.josm.data.validation.TestRunContext;
 import org.openstreetmap.josm.data.validation.util.ValUtil;
+import org.openstreetmap.josm.data.validation.util.WaySegmentIndex;
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
 
 /**
@@ -35,8 +40,12 @@ public abstract class CrossingWays extends Test {
     private static final String RAILWAY = "railway";
     private static final String WATERWAY = "waterway";
 
-    /** All way segments, grouped by cells */
-    private final Map<Point2D, List<WaySegment>> cellSegments = new HashMap<>(1000);
+    /** The segments of all validated ways, shared with the other tests. May be {@code null} */
+    private WaySegmentIndex sharedIndex;
+    /** The segments of the visited ways that are not in {@link #sharedIndex} */
+    private WaySegmentIndex visitedIndex;
+    /** The ways visited so far */
+    private final Set<Way> visitedWays = new HashSet<>();
     /** The already detected ways in error */
     private final Map<List<Way>, List<WaySegment>> seenWays = new HashMap<>(50);
 
@@ -216,17 +225,28 @@ public abstract class CrossingWays extends Test {
     @Override
     public void startTest(ProgressMonitor monitor) {
         super.startTest(monitor);
-        cellSegments.clear();
+        sharedIndex = null;
+        visitedIndex = new WaySegmentIndex(OsmValidator.griddetail);
+        visitedWays.clear();
         seenWays.clear();
     }
 
     @Override
     public void endTest() {
         super.endTest();
-        cellSegments.clear();
+        sharedIndex = null;
+        visitedIndex = null;
+        visitedWays.clear();
         seenWays.clear();
     }
 
+    @Override
+    public void visit(Collection<OsmPrimitive> selection) {
+        TestRunContext context = getRunContext();
+        sharedIndex = context != null ? context.getSegmentIndex() : null;
+        super.visit(selection);
+    }
+
     static String getLayer(OsmPrimitive w) {
         String layer1 = w.get("layer");
         if ("0".equals(layer1)) {
@@ -255,10 +275,13 @@ public abstract class CrossingWays extends Test {
     public void visit(Way w) {
         if (this instanceof SelfCrossing) {
             // free memory, we are not interested in previous ways
-            cellSegments.clear();
+            visitedIndex = new WaySegmentIndex(OsmValidator.griddetail);
+            visitedWays.clear();
             seenWays.clear();
         }
 
+        // only report crossings with the segments visited before, like if the segments were added while visiting
+        boolean inSharedIndex = sharedIndex != null && sharedIndex.contains(w);
         int nodesSize = w.getNodesCount();
         for (int i = 0; i < nodesSize - 1; i++) {
             final WaySegment es1 = new WaySegment(w, i);
@@ -268,39 +291,47 @@ public abstract class CrossingWays extends Test {
                 Main.warn("Crossing ways test skipped "+es1);
                 continue;
             }
-            for (List<WaySegment> segments : getSegments(cellSegments, en1, en2)) {
-                for (WaySegment es2 : segments) {
-                    List<Way> prims;
-                    List<WaySegment> highlight;
-
-                    if (!es1.intersects(es2) || ignoreWaySegmentCombination(es1.way, es2.way)) {
-                        continue;
-                    }
-
-                    prims = new ArrayList<>();
-                    prims.add(es1.way);
-                    if (es1.way != es2.way)
-                        prims.add(es2.way);
-                    if ((highlight = seenWays.get(prims)) == null) {
-                        highlight = new ArrayList<>();
-                        highlight.add(es1);
-                        highlight.add(es2);
-
-                        final String message = createMessage(es1.way, es2.way);
-                        errors.add(TestError.builder(this, Severity.WARNING, CROSSING_WAYS)
-                                .message(message)
-                                .primitives(prims)
-                                .highlightWaySegments(highlight)
-                                .build());
-                        seenWays.put(prims, highlight);
-                    } else {
-                        highlight.add(es1);
-                        highlight.add(es2);
-                    }
+            final int lowerIndex = i;
+            List<WaySegment> crossing = new ArrayList<>();
+            if (sharedIndex != null) {
+                crossing.addAll(sharedIndex.getIntersecting(es1,
+                        (way, index) -> visitedWays.contains(way) || (way == w && index < lowerIndex)));
+            }
+            crossing.addAll(visitedIndex.getIntersecting(es1, (way, index) -> true));
+            for (WaySegment es2 : crossing) {
+                List<Way> prims;
+                List<WaySegment> highlight;
+
+                if (ignoreWaySegmentCombination(es1.way, es2.way)) {
+                    continue;
                 }
-                segments.add(es1);
+
+                prims = new ArrayList<>();
+                prims.add(es1.way);
+                if (es1.way != es2.way)
+                    prims.add(es2.way);
+                if ((highlight = seenWays.get(prims)) == null) {
+                    highlight = new ArrayList<>();
+                    highlight.add(es1);
+                    highlight.add(es2);
+
+                    final String message = createMessage(es1.way, es2.way);
+                    errors.add(TestError.builder(this, Severity.WARNING, CROSSING_WAYS)
+                            .message(message)
+                            .primitives(prims)
+                            .highlightWaySegments(highlight)
+                            .build());
+                    seenWays.put(prims, highlight);
+                } else {
+                    highlight.add(es1);
+                    highlight.add(es2);
+                }
+            }
+            if (!inSharedIndex) {
+                visitedIndex.addSegment(w, i);
             }
         }
+        visitedWays.add(w);
     }
 
     /**
@@ -310,6 +341,7 @@ public abstract class CrossingWays extends Test {
      * @param n1 The first EastNorth
      * @param n2 The second EastNorth
      * @return A list with all the cells the segment crosses
+     * @see WaySegmentIndex
      */
     public static List<List<WaySegment>> getSegments(Map<Point2D, List<WaySegment>> cellSegments, EastNorth n1, EastNorth n2) {
 
@@ -324,4 +356,9 @@ public abstract class CrossingWays extends Test {
         }
         return cells;
     }
+
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
 }
@@ -333,4 +333,9 @@ public class DuplicateWay extends Test {
         }
         return waysWithRelations <= 1;
     }
+
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
 }
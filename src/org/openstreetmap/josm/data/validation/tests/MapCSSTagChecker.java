@@ -59,6 +59,7 @@ import org.openstreetmap.josm.gui.mappaint.mapcss.parsergen.ParseException;
 import org.openstreetmap.josm.gui.preferences.SourceEntry;
 import org.openstreetmap.josm.gui.preferences.validator.ValidatorPreference;
 import org.openstreetmap.josm.gui.preferences.validator.ValidatorTagCheckerRulesPreference;
+import org.openstreetmap.josm.gui.progress.ProgressMonitor;
 import org.openstreetmap.josm.io.CachedFile;
 import org.openstreetmap.josm.io.IllegalDataException;
 import org.openstreetmap.josm.io.UTFInputStreamReader;
@@ -230,6 +231,12 @@ public class MapCSSTagChecker extends Test.TagTest {
 
     final MultiMap<String, TagCheck> checks = new MultiMap<>();
 
+    /**
+     * A copy of the checks taken when the test is started, so that the primitives can be checked without holding the lock.
+     */
+    private List<Set<TagCheck>> checksOfRun;
+    private boolean includeOtherSeverityOfRun;
+
     /**
      * Result of {@link TagCheck#readMapCSS}
      * @since 8936
@@ -702,7 +709,38 @@ public class MapCSSTagChecker extends Test.TagTest {
      */
     @Override
     public void check(OsmPrimitive p) {
-        errors.addAll(getErrorsForPrimitive(p, ValidatorPreference.PREF_OTHER.get()));
+        List<Set<TagCheck>> checksCol = checksOfRun;
+        if (checksCol != null) {
+            errors.addAll(getErrorsForPrimitive(p, includeOtherSeverityOfRun, checksCol));
+        } else {
+            errors.addAll(getErrorsForPrimitive(p, ValidatorPreference.PREF_OTHER.get()));
+        }
+    }
+
+    @Override
+    public synchronized void startTest(ProgressMonitor progressMonitor) {
+        super.startTest(progressMonitor);
+        includeOtherSeverityOfRun = ValidatorPreference.PREF_OTHER.get();
+        checksOfRun = new ArrayList<>();
+        for (Set<TagCheck> schecks : checks.values()) {
+            checksOfRun.add(new LinkedHashSet<>(schecks));
+        }
+    }
+
+    @Override
+    public void endTest() {
+        checksOfRun = null;
+        super.endTest();
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    @Override
+    public boolean isPartitionable() {
+        return true;
     }
 
     /**
@@ -6,7 +6,6 @@ import static org.openstreetmap.josm.tools.I18n.tr;
 import static org.openstreetmap.josm.tools.I18n.trn;
 
 import java.awt.geom.Area;
-import java.awt.geom.Point2D;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -33,6 +32,7 @@ import org.openstreetmap.josm.data.validation.OsmValidator;
 import org.openstreetmap.josm.data.validation.Severity;
 import org.openstreetmap.josm.data.validation.Test;
 import org.openstreetmap.josm.data.validation.TestError;
+import org.openstreetmap.josm.data.validation.util.WaySegmentIndex;
 import org.openstreetmap.josm.gui.DefaultNameFormatter;
 import org.openstreetmap.josm.gui.mappaint.ElemStyles;
 import org.openstreetmap.josm.gui.mappaint.MapPaintStyles;
@@ -515,7 +515,7 @@ public class MultipolygonTest extends Test {
 
         for (int loop = 0; loop < 2; loop++) {
             /** All way segments, grouped by cells */
-            final Map<Point2D, List<WaySegment>> cellSegments = new HashMap<>(1000);
+            final WaySegmentIndex cellSegments = new WaySegmentIndex(OsmValidator.griddetail);
             /** The already detected ways in error */
             final Map<List<Way>, List<WaySegment>> problemWays = new HashMap<>(50);
 
@@ -580,11 +580,11 @@ public class MultipolygonTest extends Test {
     /**
      * Find ways which are crossing without sharing a node.
      * @param w way that is member of the relation
-     * @param cellSegments map with already collected way segments
+     * @param cellSegments index with already collected way segments
      * @param crossingWays list to collect crossing ways
      * @param findSharedWaySegments true: find shared way segments instead of crossings
      */
-    private static void findIntersectingWay(Way w, Map<Point2D, List<WaySegment>> cellSegments,
+    private static void findIntersectingWay(Way w, WaySegmentIndex cellSegments,
             Map<List<Way>, List<WaySegment>> crossingWays, boolean findSharedWaySegments) {
         int nodesSize = w.getNodesCount();
         for (int i = 0; i < nodesSize - 1; i++) {
@@ -595,30 +595,26 @@ public class MultipolygonTest extends Test {
                 Main.warn("Crossing ways test (MP) skipped " + es1);
                 continue;
             }
-            for (List<WaySegment> segments : CrossingWays.getSegments(cellSegments, en1, en2)) {
-                for (WaySegment es2 : segments) {
-
-                    List<WaySegment> highlight;
-                    if (es2.way == w)
-                        continue; // reported by CrossingWays.SelfIntersection
-                    if (findSharedWaySegments && !es1.isSimilar(es2))
-                        continue;
-                    if (!findSharedWaySegments && !es1.intersects(es2))
-                        continue;
+            // segments of the same way are reported by CrossingWays.SelfIntersection
+            for (WaySegment es2 : cellSegments.getCandidates(en1, en2, (way, index) -> way != w)) {
+                List<WaySegment> highlight;
+                if (findSharedWaySegments && !es1.isSimilar(es2))
+                    continue;
+                if (!findSharedWaySegments && !es1.intersects(es2))
+                    continue;
 
-                    List<Way> prims = Arrays.asList(es1.way, es2.way);
-                    if ((highlight = crossingWays.get(prims)) == null) {
-                        highlight = new ArrayList<>();
-                        highlight.add(es1);
-                        highlight.add(es2);
-                        crossingWays.put(prims, highlight);
-                    } else {
-                        highlight.add(es1);
-                        highlight.add(es2);
-                    }
+                List<Way> prims = Arrays.asList(es1.way, es2.way);
+                if ((highlight = crossingWays.get(prims)) == null) {
+                    highlight = new ArrayList<>();
+                    highlight.add(es1);
+                    highlight.add(es2);
+                    crossingWays.put(prims, highlight);
+                } else {
+                    highlight.add(es1);
+                    highlight.add(es2);
                 }
-                segments.add(es1);
             }
+            cellSegments.addSegment(w, i);
         }
     }
 
@@ -61,4 +61,9 @@ public class SelfIntersectingWay extends Test {
             }
         }
     }
+
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
 }
@@ -582,6 +582,16 @@ public class TagChecker extends TagTest {
         }
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    @Override
+    public boolean isPartitionable() {
+        return true;
+    }
+
     @Override
     public void addGui(JPanel testPanel) {
         GBC a = GBC.eol();
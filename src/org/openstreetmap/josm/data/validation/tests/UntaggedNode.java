@@ -101,6 +101,16 @@ public class UntaggedNode extends Test implements AbstractPrimitive.KeyValueVisi
                 .build());
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    @Override
+    public boolean isPartitionable() {
+        return true;
+    }
+
     @Override
     public Command fixError(TestError testError) {
         return deletePrimitivesIfNeeded(testError.getPrimitives());
@@ -164,6 +164,16 @@ public class UntaggedWay extends Test {
         super.endTest();
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    @Override
+    public boolean isPartitionable() {
+        return true;
+    }
+
     @Override
     public boolean isFixable(TestError testError) {
         if (testError.getTester() instanceof UntaggedWay)
@@ -53,4 +53,9 @@ public class WronglyOrderedWays extends Test {
                 .primitives(w)
                 .build());
     }
+
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
 }
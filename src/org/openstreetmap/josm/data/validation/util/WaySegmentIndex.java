@@ -0,0 +1,258 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.validation.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.osm.WaySegment;
+import org.openstreetmap.josm.data.validation.OsmValidator;
+import org.openstreetmap.josm.data.validation.TestRunContext;
+
+/**
+ * A grid index of way segments, used by the geometry based validator tests.
+ * <p>
+ * The grid is the same as the one of {@link ValUtil#getSegmentCells(EastNorth, EastNorth, double)}. Cells are identified
+ * by a packed {@code long}, segments are stored as {@code int} references into parallel arrays, so no object is allocated
+ * per cell or per segment.
+ * <p>
+ * An index can be filled incrementally. {@link TestRunContext#getSegmentIndex()} returns an index of all usable ways of a
+ * validation run, which is built only once and shared between the tests. Queries are thread safe as long as no segment is
+ * added.
+ */
+public final class WaySegmentIndex {
+
+    /**
+     * Filter for segments returned by a query.
+     */
+    @FunctionalInterface
+    public interface SegmentFilter {
+        /**
+         * Determines if a segment is accepted.
+         * @param way the way of the segment
+         * @param lowerIndex the index of the first node of the segment in the way
+         * @return {@code true} if the segment should be returned
+         */
+        boolean accept(Way way, int lowerIndex);
+    }
+
+    private static final int EMPTY = -1;
+
+    private final double gridDetail;
+    private final Set<Way> ways = new HashSet<>();
+
+    /* segments */
+    private Way[] segmentWays = new Way[64];
+    private int[] segmentIndexes = new int[64];
+    private int segmentCount;
+
+    /* open addressing hash table of the cells. The entries of a cell form a linked list in insertion order. */
+    private long[] cellKeys = new long[256];
+    private int[] cellHeads = newEmptyArray(256);
+    private int[] cellTails = new int[256];
+    private int cellCount;
+
+    /* cell entries */
+    private int[] entrySegments = new int[128];
+    private int[] entryNext = new int[128];
+    private int entryCount;
+
+    /**
+     * Constructs a new, empty {@code WaySegmentIndex}.
+     * @param gridDetail The detail of the grid, see {@link OsmValidator#griddetail}
+     */
+    public WaySegmentIndex(double gridDetail) {
+        this.gridDetail = gridDetail;
+    }
+
+    private static int[] newEmptyArray(int size) {
+        int[] array = new int[size];
+        Arrays.fill(array, EMPTY);
+        return array;
+    }
+
+    /**
+     * Adds all segments of a way.
+     * @param w The way
+     */
+    public void addWay(Way w) {
+        int nodesCount = w.getNodesCount();
+        for (int i = 0; i < nodesCount - 1; i++) {
+            addSegment(w, i);
+        }
+    }
+
+    /**
+     * Adds a segment. Segments without coordinates are ignored.
+     * @param w The way
+     * @param lowerIndex The index of the first node of the segment in the way
+     */
+    public void addSegment(Way w, int lowerIndex) {
+        EastNorth en1 = w.getNode(lowerIndex).getEastNorth();
+        EastNorth en2 = w.getNode(lowerIndex + 1).getEastNorth();
+        if (en1 == null || en2 == null) {
+            return;
+        }
+        if (segmentCount == segmentWays.length) {
+            segmentWays = Arrays.copyOf(segmentWays, segmentCount * 2);
+            segmentIndexes = Arrays.copyOf(segmentIndexes, segmentCount * 2);
+        }
+        int segment = segmentCount++;
+        segmentWays[segment] = w;
+        segmentIndexes[segment] = lowerIndex;
+        ways.add(w);
+        ValUtil.visitSegmentCells(en1, en2, gridDetail, (x, y) -> addEntry(getOrCreateCell(pack(x, y)), segment));
+    }
+
+    /**
+     * Determines if segments of the given way have been added to this index.
+     * @param w The way
+     * @return {@code true} if the way is indexed
+     */
+    public boolean contains(Way w) {
+        return ways.contains(w);
+    }
+
+    /**
+     * Returns the number of indexed segments.
+     * @return the number of segments
+     */
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+    /**
+     * Finds all indexed segments that share a grid cell with the line between the given points.
+     * @param en1 The first point
+     * @param en2 The second point
+     * @param filter The filter for the segments
+     * @return The accepted segments, in the order of the cells and, within a cell, in insertion order. Each segment is
+     * returned only once.
+     */
+    public List<WaySegment> getCandidates(EastNorth en1, EastNorth en2, SegmentFilter filter) {
+        List<WaySegment> result = new ArrayList<>();
+        // segments can only be found twice if the line spans more than one cell
+        Set<Integer> seen = isInOneCell(en1, en2) ? null : new HashSet<>();
+        ValUtil.visitSegmentCells(en1, en2, gridDetail, (x, y) -> {
+            int slot = findCell(pack(x, y));
+            if (slot == EMPTY) {
+                return;
+            }
+            for (int entry = cellHeads[slot]; entry != EMPTY; entry = entryNext[entry]) {
+                int segment = entrySegments[entry];
+                if ((seen == null || seen.add(segment)) && filter.accept(segmentWays[segment], segmentIndexes[segment])) {
+                    result.add(new WaySegment(segmentWays[segment], segmentIndexes[segment]));
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Finds all indexed segments that intersect the given segment, see {@link WaySegment#intersects(WaySegment)}.
+     * @param segment The segment
+     * @param filter The filter for the segments
+     * @return The accepted intersecting segments, in the order of {@link #getCandidates}
+     */
+    public List<WaySegment> getIntersecting(WaySegment segment, SegmentFilter filter) {
+        Node n1 = segment.getFirstNode();
+        Node n2 = segment.getSecondNode();
+        if (n1.getEastNorth() == null || n2.getEastNorth() == null) {
+            return Collections.emptyList();
+        }
+        List<WaySegment> result = getCandidates(n1.getEastNorth(), n2.getEastNorth(), filter);
+        result.removeIf(s -> !segment.intersects(s));
+        return result;
+    }
+
+    private boolean isInOneCell(EastNorth en1, EastNorth en2) {
+        return Math.floor(en1.east() * gridDetail) == Math.floor(en2.east() * gridDetail)
+            && Math.floor(en1.north() * gridDetail + 1) == Math.floor(en2.north() * gridDetail + 1);
+    }
+
+    private static long pack(long x, long y) {
+        return (x << 32) ^ (y & 0xffffffffL);
+    }
+
+    private static int hash(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private int findCell(long key) {
+        int mask = cellKeys.length - 1;
+        for (int slot = hash(key, mask); cellHeads[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (cellKeys[slot] == key) {
+                return slot;
+            }
+        }
+        return EMPTY;
+    }
+
+    private int getOrCreateCell(long key) {
+        if (2 * (cellCount + 1) > cellKeys.length) {
+            growCells();
+        }
+        int mask = cellKeys.length - 1;
+        int slot = hash(key, mask);
+        while (cellHeads[slot] != EMPTY) {
+            if (cellKeys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        cellKeys[slot] = key;
+        cellTails[slot] = EMPTY;
+        cellCount++;
+        return ~slot;
+    }
+
+    private void growCells() {
+        long[] oldKeys = cellKeys;
+        int[] oldHeads = cellHeads;
+        int[] oldTails = cellTails;
+        cellKeys = new long[oldKeys.length * 2];
+        cellHeads = newEmptyArray(oldKeys.length * 2);
+        cellTails = new int[oldKeys.length * 2];
+        int mask = cellKeys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldHeads[i] != EMPTY) {
+                int slot = hash(oldKeys[i], mask);
+                while (cellHeads[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                cellKeys[slot] = oldKeys[i];
+                cellHeads[slot] = oldHeads[i];
+                cellTails[slot] = oldTails[i];
+            }
+        }
+    }
+
+    /**
+     * Appends a segment to a cell.
+     * @param cell the slot of the cell, or its complement if the cell was just created and has no entries yet
+     * @param segment the segment
+     */
+    private void addEntry(int cell, int segment) {
+        if (entryCount == entrySegments.length) {
+            entrySegments = Arrays.copyOf(entrySegments, entryCount * 2);
+            entryNext = Arrays.copyOf(entryNext, entryCount * 2);
+        }
+        int entry = entryCount++;
+        entrySegments[entry] = segment;
+        entryNext[entry] = EMPTY;
+        if (cell < 0) {
+            cell = ~cell;
+            cellHeads[cell] = entry;
+        } else {
+            entryNext[cellTails[cell]] = entry;
+        }
+        cellTails[cell] = entry;
+    }
+}
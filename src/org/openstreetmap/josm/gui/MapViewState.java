@@ -344,6 +344,20 @@ public final class MapViewState implements Serializable {
         return new MapViewState(positon, this).usingCenter(center);
     }
 
+    /**
+     * Creates a new state that is the same as the current state except for that it shows a view of the given size
+     * with the given top left corner. The position of that view on screen is not defined.
+     * <p>
+     * This can be used to render parts of the map that are not displayed.
+     * @param newTopLeft The top left corner in east/north space.
+     * @param width The view width
+     * @param height The view height
+     * @return The new state.
+     */
+    public MapViewState usingViewArea(EastNorth newTopLeft, int width, int height) {
+        return new MapViewState(projecting, width, height, scale, newTopLeft);
+    }
+
     /**
      * Creates a state that uses the projection.
      * @param projection The projection to use.
@@ -184,6 +184,16 @@ public class NavigatableComponent extends JComponent implements Helpful {
         Main.addProjectionChangeListener((oldValue, newValue) -> fixProjection());
     }
 
+    /**
+     * Constructs a new {@code NavigatableComponent} that is not displayed and always uses the given view state,
+     * unless it is zoomed or moved explicitly.
+     * @param state The view state to use
+     */
+    protected NavigatableComponent(MapViewState state) {
+        setLayout(null);
+        this.state = state;
+    }
+
     @Override
     public void addNotify() {
         updateLocationState();
@@ -29,6 +29,7 @@ import org.openstreetmap.josm.data.osm.FilterMatcher;
 import org.openstreetmap.josm.data.osm.FilterWorker;
 import org.openstreetmap.josm.data.osm.Node;
 import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.gui.layer.OsmDataLayer;
 import org.openstreetmap.josm.tools.Utils;
 
 /**
@@ -118,11 +119,18 @@ public class FilterTableModel extends AbstractTableModel {
         }
 
         if (changed && Main.isDisplayingMapView()) {
+            clearRenderCache();
             Main.map.mapView.repaint();
             Main.map.filterDialog.updateDialogHeader();
         }
     }
 
+    private static void clearRenderCache() {
+        for (OsmDataLayer layer : Main.getLayerManager().getLayersOfType(OsmDataLayer.class)) {
+            layer.clearRenderCache();
+        }
+    }
+
     public void executeFilters(Collection<? extends OsmPrimitive> primitives) {
         DataSet ds = Main.getLayerManager().getEditDataSet();
         if (ds == null)
@@ -169,6 +177,7 @@ public class FilterTableModel extends AbstractTableModel {
         }
 
         if (changed) {
+            clearRenderCache();
             Main.map.mapView.repaint();
             Main.map.filterDialog.updateDialogHeader();
             ds.clearSelection(deselect);
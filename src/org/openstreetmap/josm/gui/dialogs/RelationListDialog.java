@@ -46,6 +46,7 @@ import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.data.osm.Relation;
 import org.openstreetmap.josm.data.osm.event.AbstractDatasetChangedEvent;
 import org.openstreetmap.josm.data.osm.event.DataChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataSetChangeSummary;
 import org.openstreetmap.josm.data.osm.event.DataSetListener;
 import org.openstreetmap.josm.data.osm.event.DatasetEventManager;
 import org.openstreetmap.josm.data.osm.event.DatasetEventManager.FireMode;
@@ -80,6 +81,7 @@ import org.openstreetmap.josm.tools.ImageProvider;
 import org.openstreetmap.josm.tools.InputMapUtils;
 import org.openstreetmap.josm.tools.Shortcut;
 import org.openstreetmap.josm.tools.SubclassFilteredCollection;
+import org.openstreetmap.josm.tools.Utils;
 
 /**
  * A dialog showing all known relations, with buttons to add, edit, and delete them.
@@ -690,7 +692,21 @@ public class RelationListDialog extends ToggleDialog
 
     @Override
     public void dataChanged(DataChangedEvent event) {
-        initFromLayer(Main.getLayerManager().getEditLayer());
+        DataSetChangeSummary summary = event != null ? event.getSummary() : null;
+        if (summary == null) {
+            initFromLayer(Main.getLayerManager().getEditLayer());
+            return;
+        }
+        model.removeRelations(summary.getRemovedPrimitives());
+        model.addRelations(summary.getAddedPrimitives());
+        model.updateTitle();
+        if (!Utils.filteredCollection(summary.getModifiedPrimitives(), Relation.class).isEmpty()) {
+            // the display name of the modified relations may have changed
+            List<Relation> sel = model.getSelectedRelations();
+            model.sort();
+            model.setSelectedRelations(sel);
+            displaylist.repaint();
+        }
     }
 
     @Override
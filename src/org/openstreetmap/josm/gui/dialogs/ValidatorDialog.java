@@ -15,6 +15,7 @@ import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.swing.AbstractAction;
 import javax.swing.JComponent;
@@ -37,7 +38,11 @@ import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.Node;
 import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.data.osm.WaySegment;
+import org.openstreetmap.josm.data.osm.event.DataSetListenerAdapter;
+import org.openstreetmap.josm.data.osm.event.DatasetEventManager;
+import org.openstreetmap.josm.data.osm.event.DatasetEventManager.FireMode;
 import org.openstreetmap.josm.data.osm.visitor.BoundingXYVisitor;
+import org.openstreetmap.josm.data.validation.IncrementalValidator;
 import org.openstreetmap.josm.data.validation.OsmValidator;
 import org.openstreetmap.josm.data.validation.TestError;
 import org.openstreetmap.josm.data.validation.ValidatorVisitor;
@@ -50,6 +55,7 @@ import org.openstreetmap.josm.gui.layer.MainLayerManager.ActiveLayerChangeListen
 import org.openstreetmap.josm.gui.layer.OsmDataLayer;
 import org.openstreetmap.josm.gui.preferences.validator.ValidatorPreference;
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
+import org.openstreetmap.josm.gui.util.GuiHelper;
 import org.openstreetmap.josm.gui.widgets.PopupMenuLauncher;
 import org.openstreetmap.josm.io.OsmTransferException;
 import org.openstreetmap.josm.tools.ImageProvider;
@@ -87,6 +93,15 @@ public class ValidatorDialog extends ToggleDialog implements SelectionChangedLis
 
     private transient OsmDataLayer linkedLayer;
 
+    private final transient IncrementalValidator incrementalValidator = new IncrementalValidator();
+    private final transient DataSetListenerAdapter dataChangedAdapter = new DataSetListenerAdapter(event -> {
+        if (ValidatorPreference.PREF_INCREMENTAL.get()) {
+            incrementalValidator.processDatasetEvent(event);
+            scheduleIncrementalValidation();
+        }
+    });
+    private final AtomicBoolean incrementalValidationScheduled = new AtomicBoolean();
+
     /**
      * Constructor
      */
@@ -169,6 +184,38 @@ public class ValidatorDialog extends ToggleDialog implements SelectionChangedLis
             ignoreButton = null;
         }
         createLayout(tree, true, buttons);
+        DatasetEventManager.getInstance().addDatasetListener(dataChangedAdapter, FireMode.IN_EDT_CONSOLIDATED);
+    }
+
+    @Override
+    public void destroy() {
+        DatasetEventManager.getInstance().removeDatasetListener(dataChangedAdapter);
+        super.destroy();
+    }
+
+    /**
+     * Validates the changed primitives in the worker thread, so that it does not run in parallel with a complete
+     * validation, and updates the error list of the edit layer.
+     */
+    private void scheduleIncrementalValidation() {
+        if (!incrementalValidator.hasChanges() || !incrementalValidationScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        OsmValidator.initializeTests();
+        Main.worker.submit(() -> {
+            incrementalValidationScheduled.set(false);
+            IncrementalValidator.Result result = incrementalValidator.validate(OsmValidator.getEnabledTests(false));
+            if (result == null) {
+                return;
+            }
+            GuiHelper.runInEDT(() -> {
+                OsmDataLayer editLayer = Main.getLayerManager().getEditLayer();
+                if (editLayer != null && editLayer.data == result.getDataSet() && result.applyTo(editLayer.validationErrors)) {
+                    OsmValidator.initializeErrorLayer();
+                    tree.resetErrors();
+                }
+            });
+        });
     }
 
     @Override
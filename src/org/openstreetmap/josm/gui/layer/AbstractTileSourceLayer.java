@@ -36,7 +36,9 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -57,7 +59,6 @@ import javax.swing.JTextField;
 import javax.swing.Timer;
 
 import org.openstreetmap.gui.jmapviewer.AttributionSupport;
-import org.openstreetmap.gui.jmapviewer.MemoryTileCache;
 import org.openstreetmap.gui.jmapviewer.OsmTileLoader;
 import org.openstreetmap.gui.jmapviewer.Tile;
 import org.openstreetmap.gui.jmapviewer.TileXY;
@@ -80,7 +81,9 @@ import org.openstreetmap.josm.data.coor.LatLon;
 import org.openstreetmap.josm.data.imagery.ImageryInfo;
 import org.openstreetmap.josm.data.imagery.TMSCachedTileLoader;
 import org.openstreetmap.josm.data.imagery.TileLoaderFactory;
+import org.openstreetmap.josm.data.imagery.TileMemoryCache;
 import org.openstreetmap.josm.data.osm.visitor.BoundingXYVisitor;
+import org.openstreetmap.josm.data.preferences.BooleanProperty;
 import org.openstreetmap.josm.data.preferences.IntegerProperty;
 import org.openstreetmap.josm.gui.ExtendedDialog;
 import org.openstreetmap.josm.gui.MapFrame;
@@ -103,6 +106,7 @@ import org.openstreetmap.josm.tools.GBC;
 import org.openstreetmap.josm.tools.MemoryManager;
 import org.openstreetmap.josm.tools.MemoryManager.MemoryHandle;
 import org.openstreetmap.josm.tools.MemoryManager.NotEnoughMemoryException;
+import org.openstreetmap.josm.tools.Utils;
 
 /**
  * Base abstract class that supports displaying images provided by TileSource. It might be TMS source, WMS or WMTS
@@ -148,12 +152,17 @@ implements ImageObserver, TileLoaderListener, ZoomChangeListener, FilterChangeLi
      */
     public static final IntegerProperty ZOOM_OFFSET = new IntegerProperty(PREFERENCE_PREFIX + ".zoom_offset", 0);
 
+    /**
+     * Load the tiles around the view and the tiles of the next zoom level, when all tiles in view are loaded
+     */
+    public static final BooleanProperty PROP_PREFETCH = new BooleanProperty(PREFERENCE_PREFIX + ".prefetch", true);
+
     /*
-     *  use MemoryTileCache instead of tileLoader JCS cache, as tileLoader caches only content (byte[] of image)
-     *  and MemoryTileCache caches whole Tile. This gives huge performance improvement when a lot of tiles are visible
+     *  use TileMemoryCache instead of tileLoader JCS cache, as tileLoader caches only content (byte[] of image)
+     *  and TileMemoryCache caches whole Tile. This gives huge performance improvement when a lot of tiles are visible
      *  in MapView (for example - when limiting min zoom in imagery)
      *
-     *  Use per-layer tileCache instance, as the more layers there are, the more tiles needs to be cached
+     *  Use per-layer tileCache instance sharing one memory budget, as the more layers there are, the more tiles needs to be cached
      */
     protected TileCache tileCache; // initialized together with tileSource
     protected T tileSource;
@@ -162,6 +171,12 @@ implements ImageObserver, TileLoaderListener, ZoomChangeListener, FilterChangeLi
     /** A timer that is used to delay invalidation events if required. */
     private final Timer invalidateLaterTimer = new Timer(100, e -> this.invalidate());
 
+    /** The pool applying the image processors to the tiles, shared by all layers */
+    private static final ForkJoinPool PROCESSING_POOL =
+            Utils.newForkJoinPool("imagery.filter.numberOfThreads", "imagery-filter-%d", Thread.NORM_PRIORITY);
+    /** The tiles whose image is being processed */
+    private final Set<Tile> processingTiles = ConcurrentHashMap.newKeySet();
+
     private final MouseAdapter adapter = new MouseAdapter() {
         @Override
         public void mouseClicked(MouseEvent e) {
@@ -257,7 +272,8 @@ implements ImageObserver, TileLoaderListener, ZoomChangeListener, FilterChangeLi
         if (tileLoader == null)
             tileLoader = new OsmTileLoader(this, headers);
 
-        tileCache = new MemoryTileCache(estimateTileCacheSize());
+        // dropped tile images are decoded again on the processing pool, not while painting
+        tileCache = TileMemoryCache.getInstance().createCache(estimateTileCacheSize(), this, PROCESSING_POOL);
     }
 
     @Override
@@ -267,6 +283,7 @@ implements ImageObserver, TileLoaderListener, ZoomChangeListener, FilterChangeLi
             tile.setImage(null);
         }
         tile.setLoaded(success);
+        TileMemoryCache.getInstance().update(tile);
         invalidateLater();
         if (Main.isDebugEnabled()) {
             Main.debug("tileLoadingFinished() tile: " + tile + " success: " + success);
@@ -464,7 +481,7 @@ implements ImageObserver, TileLoaderListener, ZoomChangeListener, FilterChangeLi
         public void actionPerformed(ActionEvent ae) {
             Tile clickedTile = clickedTileHolder.getTile();
             if (clickedTile != null) {
-                loadTile(clickedTile, true);
+                loadTile(clickedTile, true, 0);
                 invalidate();
             }
         }
@@ -832,18 +849,39 @@ implements ImageObserver, TileLoaderListener, ZoomChangeListener, FilterChangeLi
     /**
      * This fires every time the user changes the zoom, but also (due to ZoomChangeListener) - on all
      * changes to visible map (panning/zooming)
+     * <p>
+     * The outstanding tile requests of a visible layer are not canceled here, the next paint cancels those that left
+     * the view and prioritizes the others, see {@link #updateTileRequests}. A layer which is not visible is not painted,
+     * so its requests are canceled here.
      */
     @Override
     public void zoomChanged() {
         if (Main.isDebugEnabled()) {
             Main.debug("zoomChanged(): " + currentZoomLevel);
         }
-        if (tileLoader instanceof TMSCachedTileLoader) {
-            ((TMSCachedTileLoader) tileLoader).cancelOutstandingTasks();
+        if (!isVisible()) {
+            cancelTileRequests();
         }
         invalidate();
     }
 
+    @Override
+    protected void fireVisibleChanged(boolean oldValue, boolean newValue) {
+        if (!newValue) {
+            cancelTileRequests();
+        }
+        super.fireVisibleChanged(oldValue, newValue);
+    }
+
+    /**
+     * Cancels the outstanding tile requests of this layer.
+     */
+    private void cancelTileRequests() {
+        if (tileLoader instanceof TMSCachedTileLoader) {
+            ((TMSCachedTileLoader) tileLoader).cancelOutstandingTasks(tileSource);
+        }
+    }
+
     protected int getMaxZoomLvl() {
         if (info.getMaxZoom() != 0)
             return checkMaxZoomLvl(info.getMaxZoom(), tileSource);
@@ -984,14 +1022,18 @@ implements ImageObserver, TileLoaderListener, ZoomChangeListener, FilterChangeLi
         return tileCache.getTile(tileSource, x, y, zoom);
     }
 
-    private boolean loadTile(Tile tile, boolean force) {
+    private boolean loadTile(Tile tile, boolean force, int priority) {
         if (tile == null)
             return false;
         if (!force && (tile.isLoaded() || tile.hasError()))
             return false;
         if (tile.isLoading())
             return false;
-        tileLoader.createTileLoaderJob(tile).submit(force);
+        if (tileLoader instanceof TMSCachedTileLoader) {
+            ((TMSCachedTileLoader) tileLoader).createTileLoaderJob(tile, priority).submit(force);
+        } else {
+            tileLoader.createTileLoaderJob(tile).submit(force);
+        }
         return true;
     }
 
@@ -1118,6 +1160,44 @@ implements ImageObserver, TileLoaderListener, ZoomChangeListener, FilterChangeLi
         }
     }
 
+    /**
+     * Returns the image of a tile with the image processors of this layer applied.
+     * <p>
+     * The processed images are cached in the {@link TileMemoryCache} for the current generation of the image processors.
+     * Missing images are processed in parallel in the background, and the layer is painted again when they are ready.
+     * Until then, the image processed with earlier filter settings, or the unprocessed image is returned.
+     * @param tile the tile
+     * @param img the loaded image of the tile
+     * @return the processed image, or a temporary replacement
+     */
+    private BufferedImage getProcessedImage(Tile tile, BufferedImage img) {
+        if (isImageProcessorsIdentity()) {
+            // e.g. all filters are off, nothing to process
+            return img;
+        }
+        Integer generation = getImageProcessorsGeneration();
+        TileMemoryCache cache = TileMemoryCache.getInstance();
+        BufferedImage processed = cache.getProcessedImage(tile, generation);
+        if (processed != null) {
+            return processed;
+        }
+        if (processingTiles.add(tile)) {
+            PROCESSING_POOL.execute(() -> {
+                try {
+                    BufferedImage result = applyImageProcessors(img);
+                    boolean stored = cache.setProcessedImage(tile, img, generation, result);
+                    if ((stored && result != img) || generation != getImageProcessorsGeneration()) {
+                        invalidateLater();
+                    }
+                } finally {
+                    processingTiles.remove(tile);
+                }
+            });
+        }
+        processed = cache.getProcessedImage(tile, null);
+        return processed != null ? processed : img;
+    }
+
     private List<Tile> paintTileImages(Graphics g, TileSet ts) {
         Object paintMutex = new Object();
         List<TilePosition> missed = Collections.synchronizedList(new ArrayList<>());
@@ -1127,7 +1207,7 @@ implements ImageObserver, TileLoaderListener, ZoomChangeListener, FilterChangeLi
                 missed.add(new TilePosition(tile));
                 return;
             }
-            img = applyImageProcessors((BufferedImage) img);
+            img = getProcessedImage(tile, (BufferedImage) img);
             Rectangle2D sourceRect = coordinateConverter.getRectangleForTile(tile);
             synchronized (paintMutex) {
                 //cannot paint in parallel
@@ -1163,7 +1243,7 @@ implements ImageObserver, TileLoaderListener, ZoomChangeListener, FilterChangeLi
             }
 
             // applying all filters to this layer
-            img = applyImageProcessors((BufferedImage) img);
+            img = getProcessedImage(tile, (BufferedImage) img);
 
             Rectangle2D sourceRect = coordinateConverter.getRectangleForTile(tile);
             if (!sourceRect.intersects(borderRect)) {
@@ -1339,13 +1419,36 @@ implements ImageObserver, TileLoaderListener, ZoomChangeListener, FilterChangeLi
             return allExistingTiles().stream().filter(Tile::isLoaded).collect(Collectors.toList());
         }
 
+        private int getZoom() {
+            return zoom;
+        }
+
         /**
-         * @return comparator, that sorts the tiles from the center to the edge of the current screen
+         * @return the tile set with one more tile on each side
          */
-        private Comparator<Tile> getTileDistanceComparator() {
+        private TileSet grow() {
+            return new TileSet(new TileXY(minX - 1d, minY - 1d), new TileXY(maxX + 1d, maxY + 1d), zoom);
+        }
+
+        private boolean contains(int x, int y, int z) {
+            return z == zoom && zoom != 0 && x >= minX && x <= maxX && y >= minY && y <= maxY && !insane();
+        }
+
+        /**
+         * @param t the tile
+         * @return the number of tiles between the tile and the center of this tile set
+         */
+        private int getDistance(Tile t) {
             final int centerX = (int) Math.ceil((minX + maxX) / 2d);
             final int centerY = (int) Math.ceil((minY + maxY) / 2d);
-            return Comparator.comparingInt(t -> Math.abs(t.getXtile() - centerX) + Math.abs(t.getYtile() - centerY));
+            return Math.abs(t.getXtile() - centerX) + Math.abs(t.getYtile() - centerY);
+        }
+
+        /**
+         * @return comparator, that sorts the tiles from the center to the edge of the current screen
+         */
+        private Comparator<Tile> getTileDistanceComparator() {
+            return Comparator.comparingInt(this::getDistance);
         }
 
         private void loadAllTiles(boolean force) {
@@ -1354,7 +1457,26 @@ implements ImageObserver, TileLoaderListener, ZoomChangeListener, FilterChangeLi
             List<Tile> allTiles = allTilesCreate();
             allTiles.sort(getTileDistanceComparator());
             for (Tile t : allTiles) {
-                loadTile(t, force);
+                if (tileLoader instanceof TMSCachedTileLoader) {
+                    ((TMSCachedTileLoader) tileLoader).tileShown(t);
+                }
+                loadTile(t, force, getDistance(t));
+            }
+        }
+
+        /**
+         * Loads the tiles of this tile set, that are not in view, with prefetch priority.
+         * @param visible the tile sets in view
+         */
+        private void prefetchTiles(List<TileSet> visible) {
+            List<Tile> tiles = tilePositions()
+                    .filter(tp -> visible.stream().noneMatch(ts -> ts.contains(tp.getX(), tp.getY(), tp.getZoom())))
+                    .map(AbstractTileSourceLayer.this::getOrCreateTile)
+                    .filter(Objects::nonNull)
+                    .sorted(getTileDistanceComparator())
+                    .collect(Collectors.toList());
+            for (Tile t : tiles) {
+                loadTile(t, false, TMSCachedTileLoader.PRIORITY_PREFETCH + getDistance(t));
             }
         }
 
@@ -1557,6 +1679,7 @@ implements ImageObserver, TileLoaderListener, ZoomChangeListener, FilterChangeLi
         }
 
         if (displayZoomLevel != zoom) {
+            TileSet loadedTs = ts;
             ts = dts.getTileSet(displayZoomLevel);
             if (!dts.getTileSetInfo(displayZoomLevel).hasAllLoadedTiles && displayZoomLevel < zoom) {
                 // if we are showing tiles from lower zoom level, ensure that all tiles are loaded as they are few,
@@ -1564,6 +1687,9 @@ implements ImageObserver, TileLoaderListener, ZoomChangeListener, FilterChangeLi
                 // This is especially needed when dts.getTileSet(zoom).tooLarge() is true and we are not loading tiles
                 ts.loadAllTiles(false);
             }
+            updateTileRequests(pb, Arrays.asList(loadedTs, ts));
+        } else {
+            updateTileRequests(pb, Collections.singletonList(ts));
         }
 
         g.setColor(Color.DARK_GRAY);
@@ -1647,6 +1773,56 @@ implements ImageObserver, TileLoaderListener, ZoomChangeListener, FilterChangeLi
         }
     }
 
+    /**
+     * Prefetches the tiles around the view and the tiles of the next zoom level, when all tiles in view are loaded.
+     * Then updates the priorities of the outstanding tile requests of this layer, and cancels those that are neither
+     * in view nor prefetched.
+     * @param pb the projection bounds of the view
+     * @param visible the tile sets in view, the first one is the tile set of the current zoom level
+     */
+    private void updateTileRequests(ProjectionBounds pb, List<TileSet> visible) {
+        if (!(tileLoader instanceof TMSCachedTileLoader)) {
+            return;
+        }
+        TileSet current = visible.get(0);
+        List<TileSet> prefetch = new ArrayList<>();
+        int zoom = current.getZoom();
+        if (PROP_PREFETCH.get() && zoom != 0 && !current.tooLarge()) {
+            TileSet around = current.grow();
+            prefetch.add(around);
+            int size = around.size();
+            if (zoom < getMaxZoomLvl()) {
+                TileSet next = getTileSet(pb.getMin(), pb.getMax(), zoom + 1);
+                if (!next.tooLarge()) {
+                    prefetch.add(next);
+                    size += next.size();
+                }
+            }
+            // prefetch only in idle time, and only if the prefetched tiles do not push the tiles in view out of the cache
+            if (getDisplaySettings().isAutoLoad() && size <= tileCache.getCacheSize()
+                    && current.allExistingTiles().stream().allMatch(t -> t.isLoaded() || t.hasError())) {
+                for (TileSet ts : prefetch) {
+                    ts.prefetchTiles(visible);
+                }
+            }
+        }
+        ((TMSCachedTileLoader) tileLoader).updateOutstandingTasks(tileSource, tile -> getTilePriority(tile, visible, prefetch));
+    }
+
+    private int getTilePriority(Tile tile, List<TileSet> visible, List<TileSet> prefetch) {
+        for (TileSet ts : visible) {
+            if (ts.contains(tile.getXtile(), tile.getYtile(), tile.getZoom())) {
+                return ts.getDistance(tile);
+            }
+        }
+        for (TileSet ts : prefetch) {
+            if (ts.contains(tile.getXtile(), tile.getYtile(), tile.getZoom())) {
+                return TMSCachedTileLoader.PRIORITY_PREFETCH + ts.getDistance(tile);
+            }
+        }
+        return -1;
+    }
+
     /**
      * Returns tile for a pixel position.<p>
      * This isn't very efficient, but it is only used when the user right-clicks on the map.
@@ -1927,6 +2103,9 @@ implements ImageObserver, TileLoaderListener, ZoomChangeListener, FilterChangeLi
     public void destroy() {
         super.destroy();
         adjustAction.destroy();
+        if (tileCache != null) {
+            tileCache.clear();
+        }
     }
 
     private class TileSourcePainter extends CompatibilityModeLayerPainter {
@@ -1947,10 +2126,9 @@ implements ImageObserver, TileLoaderListener, ZoomChangeListener, FilterChangeLi
 
         private void allocateCacheMemory() {
             if (memory == null) {
-                MemoryManager manager = MemoryManager.getInstance();
-                if (manager.isAvailable(getEstimatedCacheSize())) {
+                if (MemoryManager.getInstance().isAvailable(getEstimatedCacheSize())) {
                     try {
-                        memory = manager.allocateMemory("tile source layer", getEstimatedCacheSize(), Object::new);
+                        memory = TileMemoryCache.getInstance().allocateMemory("tile source layer", getEstimatedCacheSize());
                     } catch (NotEnoughMemoryException e) {
                         Main.warn("Could not allocate tile source memory", e);
                     }
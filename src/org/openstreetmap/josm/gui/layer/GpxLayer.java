@@ -10,9 +10,7 @@ import java.io.File;
 import java.text.DateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.Date;
-import java.util.LinkedList;
 import java.util.List;
 
 import javax.swing.Action;
@@ -28,7 +26,6 @@ import org.openstreetmap.josm.data.SystemOfMeasurement;
 import org.openstreetmap.josm.data.gpx.GpxConstants;
 import org.openstreetmap.josm.data.gpx.GpxData;
 import org.openstreetmap.josm.data.gpx.GpxTrack;
-import org.openstreetmap.josm.data.gpx.WayPoint;
 import org.openstreetmap.josm.data.osm.visitor.BoundingXYVisitor;
 import org.openstreetmap.josm.data.preferences.ColorProperty;
 import org.openstreetmap.josm.data.projection.Projection;
@@ -291,45 +288,11 @@ public class GpxLayer extends Layer {
         lastTracks.clear();
         lastTracks.addAll(data.tracks);
 
-        List<WayPoint> visibleSegments = listVisibleSegments(box);
-        if (!visibleSegments.isEmpty()) {
-            drawHelper.readPreferences(getName());
-            drawHelper.drawAll(g, mv, visibleSegments);
-            if (Main.getLayerManager().getActiveLayer() == this) {
-                drawHelper.drawColorBar(g, mv);
-            }
-        }
-    }
-
-    private List<WayPoint> listVisibleSegments(Bounds box) {
-        WayPoint last = null;
-        LinkedList<WayPoint> visibleSegments = new LinkedList<>();
-
         ensureTrackVisibilityLength();
-        for (Collection<WayPoint> segment : data.getLinesIterable(trackVisibility)) {
-
-            for (WayPoint pt : segment) {
-                Bounds b = new Bounds(pt.getCoor());
-                if (pt.drawLine && last != null) {
-                    b.extend(last.getCoor());
-                }
-                if (b.intersects(box)) {
-                    if (last != null && (visibleSegments.isEmpty()
-                            || visibleSegments.getLast() != last)) {
-                        if (last.drawLine) {
-                            WayPoint l = new WayPoint(last);
-                            l.drawLine = false;
-                            visibleSegments.add(l);
-                        } else {
-                            visibleSegments.add(last);
-                        }
-                    }
-                    visibleSegments.add(pt);
-                }
-                last = pt;
-            }
+        drawHelper.readPreferences(getName());
+        if (drawHelper.drawAll(g, mv, box, trackVisibility) && Main.getLayerManager().getActiveLayer() == this) {
+            drawHelper.drawColorBar(g, mv);
         }
-        return visibleSegments;
     }
 
     @Override
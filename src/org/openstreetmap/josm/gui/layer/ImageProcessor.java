@@ -24,4 +24,13 @@ public interface ImageProcessor {
      * @return processed image
      */
     BufferedImage process(BufferedImage image);
+
+    /**
+     * Determines if this processor, with its current settings, returns every image unchanged (e.g. a filter which is off).
+     * Such processors are skipped, and the images do not need to be processed again when such a processor is added.
+     * @return {@code true} if {@link #process} returns the given image for any image
+     */
+    default boolean isIdentity() {
+        return false;
+    }
 }
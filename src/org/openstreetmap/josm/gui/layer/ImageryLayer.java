@@ -11,8 +11,9 @@ import java.awt.GridBagLayout;
 import java.awt.event.ActionEvent;
 import java.awt.image.BufferedImage;
 import java.awt.image.BufferedImageOp;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.swing.AbstractAction;
 import javax.swing.Action;
@@ -47,7 +48,9 @@ public abstract class ImageryLayer extends Layer {
     public static final IntegerProperty PROP_FADE_AMOUNT = new IntegerProperty("imagery.fade_amount", 0);
     public static final IntegerProperty PROP_SHARPEN_LEVEL = new IntegerProperty("imagery.sharpen_level", 0);
 
-    private final List<ImageProcessor> imageProcessors = new ArrayList<>();
+    private final List<ImageProcessor> imageProcessors = new CopyOnWriteArrayList<>();
+    /** incremented whenever the result of the image processors changes */
+    private final AtomicInteger imageProcessorsGeneration = new AtomicInteger();
 
     public static Color getFadeColor() {
         return PROP_FADE_COLOR.get();
@@ -81,6 +84,7 @@ public abstract class ImageryLayer extends Layer {
         for (ImageProcessor processor : filterSettings.getProcessors()) {
             addImageProcessor(processor);
         }
+        filterSettings.addFilterChangeListener(imageProcessorsGeneration::incrementAndGet);
         filterSettings.setSharpenLevel(1 + PROP_SHARPEN_LEVEL.get() / 2f);
     }
 
@@ -278,7 +282,11 @@ public abstract class ImageryLayer extends Layer {
      * @return true if processor was added, false otherwise
      */
     public boolean addImageProcessor(ImageProcessor processor) {
-        return processor != null && imageProcessors.add(processor);
+        if (processor != null && imageProcessors.add(processor)) {
+            imageProcessorsGeneration.incrementAndGet();
+            return true;
+        }
+        return false;
     }
 
     /**
@@ -289,7 +297,33 @@ public abstract class ImageryLayer extends Layer {
      * @return true if processor was removed
      */
     public boolean removeImageProcessor(ImageProcessor processor) {
-        return imageProcessors.remove(processor);
+        if (imageProcessors.remove(processor)) {
+            imageProcessorsGeneration.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the generation of the image processors. It changes whenever a processor is added or removed, or the
+     * {@link #getFilterSettings() filter settings} change, so that images processed before can be recognized as outdated.
+     * @return the generation of the image processors
+     */
+    public int getImageProcessorsGeneration() {
+        return imageProcessorsGeneration.get();
+    }
+
+    /**
+     * Determines if the image processors return every image unchanged, e.g. if all filters are off.
+     * @return {@code true} if all image processors are {@link ImageProcessor#isIdentity() identities}
+     */
+    public boolean isImageProcessorsIdentity() {
+        for (ImageProcessor processor : imageProcessors) {
+            if (!processor.isIdentity()) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -321,7 +355,9 @@ public abstract class ImageryLayer extends Layer {
      */
     public BufferedImage applyImageProcessors(BufferedImage img) {
         for (ImageProcessor processor : imageProcessors) {
-            img = processor.process(img);
+            if (!processor.isIdentity()) {
+                img = processor.process(img);
+            }
         }
         return img;
     }
@@ -75,7 +75,9 @@ import org.openstreetmap.josm.data.osm.event.DataSetListenerAdapter.Listener;
 import org.openstreetmap.josm.data.osm.visitor.AbstractVisitor;
 import org.openstreetmap.josm.data.osm.visitor.BoundingXYVisitor;
 import org.openstreetmap.josm.data.osm.visitor.paint.MapRendererFactory;
+import org.openstreetmap.josm.data.osm.visitor.paint.RenderTileCache;
 import org.openstreetmap.josm.data.osm.visitor.paint.Rendering;
+import org.openstreetmap.josm.data.osm.visitor.paint.StyledMapRenderer;
 import org.openstreetmap.josm.data.osm.visitor.paint.relations.MultipolygonCache;
 import org.openstreetmap.josm.data.preferences.ColorProperty;
 import org.openstreetmap.josm.data.preferences.IntegerProperty;
@@ -125,6 +127,11 @@ public class OsmDataLayer extends AbstractModifiableLayer implements Listener, S
     private boolean requiresUploadToServer;
     private int highlightUpdateCount;
 
+    /**
+     * The cached rendering of the data, if enabled with {@link RenderTileCache#PROP_ENABLED}.
+     */
+    private RenderTileCache renderTileCache;
+
     /**
      * List of validation errors in this layer.
      * @since 3669
@@ -430,7 +437,15 @@ public class OsmDataLayer extends AbstractModifiableLayer implements Listener, S
         }
 
         Rendering painter = MapRendererFactory.getInstance().createActiveRenderer(g, mv, inactive);
-        painter.render(data, virtual, box);
+        if (RenderTileCache.PROP_ENABLED.get() && painter.getClass() == StyledMapRenderer.class) {
+            if (renderTileCache == null) {
+                renderTileCache = new RenderTileCache(data);
+            }
+            renderTileCache.paint((StyledMapRenderer) painter, mv, g, inactive, virtual, box);
+        } else {
+            clearRenderCache();
+            painter.render(data, virtual, box);
+        }
         Main.map.conflictDialog.paintConflicts(g, mv);
     }
 
@@ -942,6 +957,18 @@ public class OsmDataLayer extends AbstractModifiableLayer implements Listener, S
     public void destroy() {
         super.destroy();
         DataSet.removeSelectionListener(this);
+        clearRenderCache();
+    }
+
+    /**
+     * Discards the cached rendering of the data. This is required after changes that are not reported
+     * by data set events, e.g. after a filter has been changed.
+     */
+    public void clearRenderCache() {
+        if (renderTileCache != null) {
+            renderTileCache.destroy();
+            renderTileCache = null;
+        }
     }
 
     @Override
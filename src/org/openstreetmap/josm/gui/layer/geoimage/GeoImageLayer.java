@@ -27,12 +27,16 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import javax.swing.Action;
 import javax.swing.Icon;
@@ -169,7 +173,10 @@ public class GeoImageLayer extends AbstractModifiableLayer implements PropertyCh
      */
     static final class Loader extends PleaseWaitRunnable {
 
-        private boolean canceled;
+        private static final ForkJoinPool EXIF_POOL =
+                Utils.newForkJoinPool("geoimage.exif.numberOfThreads", "exif-reader-%d", Thread.NORM_PRIORITY);
+
+        private volatile boolean canceled;
         private GeoImageLayer layer;
         private final Collection<File> selection;
         private final Set<String> loadedDirectories = new HashSet<>();
@@ -204,10 +211,22 @@ public class GeoImageLayer extends AbstractModifiableLayer implements PropertyCh
             progressMonitor.subTask(tr("Read photos..."));
             progressMonitor.setTicksCount(files.size());
 
-            // read the image files
+            // read the image files, the EXIF metadata of several files at the same time
+            List<Future<ImageEntry>> readers = new ArrayList<>(files.size());
+            for (File f : files) {
+                readers.add(EXIF_POOL.submit(() -> {
+                    ImageEntry e = new ImageEntry(f);
+                    if (!canceled) {
+                        e.extractExif();
+                    }
+                    return e;
+                }));
+            }
             List<ImageEntry> entries = new ArrayList<>(files.size());
 
-            for (File f : files) {
+            Iterator<File> fileIterator = files.iterator();
+            for (Future<ImageEntry> reader : readers) {
+                File f = fileIterator.next();
 
                 if (canceled) {
                     break;
@@ -216,9 +235,14 @@ public class GeoImageLayer extends AbstractModifiableLayer implements PropertyCh
                 progressMonitor.subTask(tr("Reading {0}...", f.getName()));
                 progressMonitor.worked(1);
 
-                ImageEntry e = new ImageEntry(f);
-                e.extractExif();
-                entries.add(e);
+                try {
+                    entries.add(reader.get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                } catch (ExecutionException e) {
+                    throw new IOException(e);
+                }
             }
             layer = new GeoImageLayer(entries, gpxLayer);
             files.clear();
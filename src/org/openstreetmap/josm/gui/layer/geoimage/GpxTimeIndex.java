@@ -0,0 +1,265 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.gui.layer.geoimage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openstreetmap.josm.Main;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.gpx.GpxConstants;
+import org.openstreetmap.josm.data.gpx.GpxData;
+import org.openstreetmap.josm.data.gpx.GpxTrack;
+import org.openstreetmap.josm.data.gpx.GpxTrackSegment;
+import org.openstreetmap.josm.data.gpx.ImmutableGpxTrackSegment;
+
+/**
+ * The timed track points of GPX data, to find the position of images by their time.
+ * <p>
+ * The track points are grouped in runs of consecutive points with a time. The runs are sorted by time, so the runs
+ * around the time of an image are found by binary search, and so is the track point in a run if the times of the run
+ * increase. The index does not depend on the time offset, it can be used to match images with any offset.
+ */
+final class GpxTimeIndex {
+
+    /** Images taken up to 5 seconds before the first point of a run are placed at this point */
+    private static final long FIRST_POINT_INTERVAL = TimeUnit.SECONDS.toMillis(5);
+
+    /** The runs, sorted by the earliest time they match */
+    private final Run[] runs;
+    /** The earliest time matched by each run */
+    private final long[] starts;
+    /** The latest time matched by each run or any previous run */
+    private final long[] maxEnds;
+    /** The time of the first timed track point, -1 if there is none */
+    private final long firstTime;
+
+    /**
+     * Consecutive track points with a time.
+     */
+    private static final class Run {
+        /** the position in the GPX data, earlier runs take precedence */
+        private final int order;
+        private final long[] times;
+        private final double[] lat;
+        private final double[] lon;
+        /** the elevations, NaN if unknown */
+        private final double[] ele;
+        private final boolean increasing;
+        private final long start;
+        private final long end;
+
+        Run(int order, long[] times, double[] lat, double[] lon, double[] ele) {
+            this.order = order;
+            this.times = times;
+            this.lat = lat;
+            this.lon = lon;
+            this.ele = ele;
+            boolean inc = true;
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            for (int j = 0; j < times.length; j++) {
+                inc &= j == 0 || times[j] >= times[j - 1];
+                min = Math.min(min, getWindowStart(j));
+                max = Math.max(max, times[j]);
+            }
+            this.increasing = inc;
+            this.start = min;
+            this.end = max;
+        }
+
+        /**
+         * Returns the earliest time placed on the line to a point, see {@link #contains}.
+         */
+        private long getWindowStart(int j) {
+            long cur = times[j];
+            if (j == 0) {
+                return cur - FIRST_POINT_INTERVAL;
+            }
+            long prev = times[j - 1];
+            return cur <= prev ? cur - (prev - cur) : prev;
+        }
+
+        /**
+         * Determines if a time is placed on the line from the previous point to a point: between the times of the points,
+         * or up to the interval between them before the point if the time goes backwards.
+         */
+        private boolean contains(int j, long time) {
+            return time <= times[j] && time >= getWindowStart(j);
+        }
+
+        /**
+         * Finds the first point whose line contains a time.
+         * @param time the time, without offset
+         * @return the index of the point, -1 if no line contains the time
+         */
+        int find(long time) {
+            if (increasing) {
+                int j = Arrays.binarySearch(times, time);
+                if (j < 0) {
+                    j = -j - 1;
+                } else {
+                    // the first of equal times
+                    while (j > 0 && times[j - 1] == time) {
+                        j--;
+                    }
+                }
+                return j < times.length && contains(j, time) ? j : -1;
+            }
+            for (int j = 0; j < times.length; j++) {
+                if (contains(j, time)) {
+                    return j;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Constructs a new {@code GpxTimeIndex}.
+     * @param data the GPX data
+     */
+    GpxTimeIndex(GpxData data) {
+        List<Run> list = new ArrayList<>();
+        long first = -1;
+        for (GpxTrack trk : data.tracks) {
+            for (GpxTrackSegment seg : trk.getSegments()) {
+                ImmutableGpxTrackSegment points = ImmutableGpxTrackSegment.of(seg);
+                int runStart = 0;
+                for (int i = 0; i <= points.size(); i++) {
+                    if (i == points.size() || points.getTime(i) <= 0) {
+                        // a point without time ends the run
+                        if (i > runStart) {
+                            list.add(createRun(list.size(), points, runStart, i));
+                        }
+                        runStart = i + 1;
+                    } else if (first < 0) {
+                        first = toMillis(points.getTime(i));
+                    }
+                }
+            }
+        }
+        list.sort(Comparator.comparingLong(r -> r.start));
+        runs = list.toArray(new Run[list.size()]);
+        starts = new long[runs.length];
+        maxEnds = new long[runs.length];
+        for (int k = 0; k < runs.length; k++) {
+            starts[k] = runs[k].start;
+            maxEnds[k] = k == 0 ? runs[k].end : Math.max(maxEnds[k - 1], runs[k].end);
+        }
+        firstTime = first;
+    }
+
+    private static long toMillis(double seconds) {
+        return Math.round(seconds * 1000);
+    }
+
+    private static Run createRun(int order, ImmutableGpxTrackSegment points, int from, int to) {
+        int size = to - from;
+        long[] times = new long[size];
+        double[] lat = new double[size];
+        double[] lon = new double[size];
+        double[] ele = new double[size];
+        for (int j = 0; j < size; j++) {
+            times[j] = toMillis(points.getTime(from + j));
+            lat[j] = points.getLat(from + j);
+            lon[j] = points.getLon(from + j);
+            ele[j] = getElevation(points.getAttribute(from + j, GpxConstants.PT_ELE));
+        }
+        return new Run(order, times, lat, lon, ele);
+    }
+
+    private static double getElevation(Object value) {
+        if (value != null && !value.toString().isEmpty()) {
+            try {
+                return Double.parseDouble(value.toString());
+            } catch (NumberFormatException e) {
+                Main.warn(e);
+            }
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * Returns the time of the first track point with a time.
+     * @return the time in milliseconds, -1 if no track point has a time
+     */
+    long getFirstTime() {
+        return firstTime;
+    }
+
+    /**
+     * Sets the position of images which have no position yet, as done by {@link CorrelateGpxWithImages#matchGpxTrack}.
+     * @param images the images to match, with a {@link ImageEntry#tmp temporary copy}
+     * @param offset the offset added to the track point times, in milliseconds
+     * @return the number of matched images
+     */
+    int match(List<ImageEntry> images, long offset) {
+        int ret = 0;
+        for (ImageEntry img : images) {
+            if (img.tmp.getPos() == null && match(img, offset)) {
+                ret++;
+            }
+        }
+        return ret;
+    }
+
+    private boolean match(ImageEntry img, long offset) {
+        long imgTime = img.getExifTime().getTime();
+        long time = imgTime - offset;
+        // the last run starting before the time
+        int k = Arrays.binarySearch(starts, time);
+        if (k < 0) {
+            k = -k - 2;
+        } else {
+            while (k + 1 < starts.length && starts[k + 1] == time) {
+                k++;
+            }
+        }
+        Run best = null;
+        int bestIndex = -1;
+        for (; k >= 0 && maxEnds[k] >= time; k--) {
+            Run run = runs[k];
+            if (run.end >= time && (best == null || run.order < best.order)) {
+                int j = run.find(time);
+                if (j >= 0) {
+                    best = run;
+                    bestIndex = j;
+                }
+            }
+        }
+        if (best == null) {
+            return false;
+        }
+        setPosition(img, best, bestIndex, time);
+        img.tmp.setGpsTime(new Date(imgTime - offset));
+        img.flagNewGpsData();
+        return true;
+    }
+
+    private static void setPosition(ImageEntry img, Run run, int j, long time) {
+        LatLon cur = new LatLon(run.lat[j], run.lon[j]);
+        Double curElevation = Double.isNaN(run.ele[j]) ? null : run.ele[j];
+        if (j == 0 || run.times[j] <= run.times[j - 1]) {
+            img.tmp.setPos(cur);
+            img.tmp.setSpeed(null);
+            img.tmp.setElevation(curElevation);
+            return;
+        }
+        // This code gives a simple linear interpolation of the coordinates between current and
+        // previous track point assuming a constant speed in between
+        LatLon prev = new LatLon(run.lat[j - 1], run.lon[j - 1]);
+        long interval = run.times[j] - run.times[j - 1];
+        // The values of timeDiff are between 0 and 1, it is not seconds but a dimensionless variable
+        double timeDiff = (double) (time - run.times[j - 1]) / interval;
+        img.tmp.setPos(prev.interpolate(cur, timeDiff));
+        // This is in km/h, 3.6 * m/s
+        img.tmp.setSpeed(3600 * prev.greatCircleDistance(cur) / interval);
+        if (curElevation != null && !Double.isNaN(run.ele[j - 1])) {
+            img.tmp.setElevation(run.ele[j - 1] + (curElevation - run.ele[j - 1]) * timeDiff);
+        }
+    }
+}
@@ -5,6 +5,7 @@ import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.MediaTracker;
 import java.awt.Rectangle;
+import java.awt.RenderingHints;
 import java.awt.Toolkit;
 import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
@@ -13,27 +14,59 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 
 import org.apache.commons.jcs.access.behavior.ICacheAccess;
 import org.openstreetmap.josm.Main;
+import org.openstreetmap.josm.data.Bounds;
 import org.openstreetmap.josm.data.cache.BufferedImageCacheEntry;
 import org.openstreetmap.josm.data.cache.JCSCacheManager;
+import org.openstreetmap.josm.data.preferences.IntegerProperty;
 import org.openstreetmap.josm.tools.ExifReader;
+import org.openstreetmap.josm.tools.Utils;
 
+/**
+ * Loads the thumbnails of geotagged images, from the thumbnail cache or by decoding the images.
+ * <p>
+ * The images are decoded in parallel by a pool shared by all layers. The images visible in the map view are loaded
+ * first. Images supported by {@link ImageIO} are decoded with a subsampling, so only a few times the thumbnail size
+ * is read into memory.
+ */
 public class ThumbsLoader implements Runnable {
     public static final int maxSize = 120;
     public static final int minSize = 22;
+
+    /**
+     * The maximum number of images decoded at the same time.
+     */
+    public static final IntegerProperty THREAD_LIMIT = new IntegerProperty("geoimage.thumbnails.threads",
+            Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    private static final ThreadPoolExecutor DECODE_POOL = createDecodePool();
+
     public volatile boolean stop;
-    private final Collection<ImageEntry> data;
+    /** the images whose thumbnail has not been loaded yet */
+    private final LinkedList<ImageEntry> pending;
+    /** the map view bounds for which no image is left to load first */
+    private Bounds noVisibleLeft;
     private final GeoImageLayer layer;
-    private MediaTracker tracker;
     private ICacheAccess<String, BufferedImageCacheEntry> cache;
     private final boolean cacheOff = Main.pref.getBoolean("geoimage.noThumbnailCache", false);
 
     private ThumbsLoader(Collection<ImageEntry> data, GeoImageLayer layer) {
-        this.data = data;
+        this.pending = new LinkedList<>(data);
         this.layer = layer;
         initCache();
     }
@@ -69,13 +102,54 @@ public class ThumbsLoader implements Runnable {
         }
     }
 
+    private static ThreadPoolExecutor createDecodePool() {
+        int threads = Math.max(1, THREAD_LIMIT.get());
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                Utils.newThreadFactory("thumbnail-decoder-%d", Thread.MIN_PRIORITY));
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
     @Override
     public void run() {
         Main.debug("Load Thumbnails");
-        tracker = new MediaTracker(Main.map.mapView);
-        for (ImageEntry entry : data) {
-            if (stop) return;
+        int threads;
+        synchronized (this) {
+            threads = Math.min(DECODE_POOL.getMaximumPoolSize(), pending.size());
+        }
+        if (threads <= 1) {
+            loadThumbs();
+        } else {
+            List<Future<?>> workers = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++) {
+                workers.add(DECODE_POOL.submit(this::loadThumbs));
+            }
+            try {
+                for (Future<?> worker : workers) {
+                    worker.get();
+                }
+            } catch (InterruptedException e) {
+                stop = true;
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                Main.error(e);
+            }
+        }
+        if (stop) return;
+        if (layer != null) {
+            layer.thumbsLoaded();
+            layer.updateOffscreenBuffer = true;
+            Main.map.mapView.repaint();
+        }
+    }
 
+    /**
+     * Loads the thumbnails of the pending images until all are loaded or the loader is stopped.
+     */
+    private void loadThumbs() {
+        ImageEntry entry;
+        while (!stop && (entry = nextEntry()) != null) {
             // Do not load thumbnails that were loaded before.
             if (!entry.hasThumbnail()) {
                 entry.setThumbnail(loadThumb(entry));
@@ -86,11 +160,29 @@ public class ThumbsLoader implements Runnable {
                 }
             }
         }
-        if (layer != null) {
-            layer.thumbsLoaded();
-            layer.updateOffscreenBuffer = true;
-            Main.map.mapView.repaint();
+    }
+
+    /**
+     * Returns the next image to load, preferring the images in the current map view.
+     * @return the next image to load, or {@code null} if all images have been loaded
+     */
+    private synchronized ImageEntry nextEntry() {
+        if (pending.isEmpty()) {
+            return null;
+        }
+        Bounds visible = layer != null && Main.isDisplayingMapView() ? Main.map.mapView.getRealBounds() : null;
+        if (visible != null && !visible.equals(noVisibleLeft)) {
+            for (Iterator<ImageEntry> it = pending.iterator(); it.hasNext();) {
+                ImageEntry entry = it.next();
+                if (entry.getPos() != null && visible.contains(entry.getPos())) {
+                    it.remove();
+                    return entry;
+                }
+            }
+            // don't search again until the view changes
+            noVisibleLeft = visible;
         }
+        return pending.removeFirst();
     }
 
     private BufferedImage loadThumb(ImageEntry entry) {
@@ -108,15 +200,25 @@ public class ThumbsLoader implements Runnable {
             }
         }
 
-        Image img = Toolkit.getDefaultToolkit().createImage(entry.getFile().getPath());
-        tracker.addImage(img, 0);
-        try {
-            tracker.waitForID(0);
-        } catch (InterruptedException e) {
-            Main.error(" InterruptedException while loading thumb");
-            return null;
+        Image img = readSubsampled(entry.getFile());
+        MediaTracker tracker = null;
+        if (img == null) {
+            // not supported by ImageIO, e.g. some CMYK images
+            img = Toolkit.getDefaultToolkit().createImage(entry.getFile().getPath());
+            tracker = new MediaTracker(Main.map.mapView);
+            tracker.addImage(img, 0);
+            try {
+                tracker.waitForID(0);
+            } catch (InterruptedException e) {
+                Main.error(" InterruptedException while loading thumb");
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            if (tracker.isErrorID(0)) {
+                img = null;
+            }
         }
-        if (tracker.isErrorID(1) || img.getWidth(null) <= 0 || img.getHeight(null) <= 0) {
+        if (img == null || img.getWidth(null) <= 0 || img.getHeight(null) <= 0) {
             Main.error(" Invalid image");
             return null;
         }
@@ -138,6 +240,7 @@ public class ThumbsLoader implements Runnable {
                 new Rectangle(0, 0, maxSize, maxSize));
         BufferedImage scaledBI = new BufferedImage(targetSize.width, targetSize.height, BufferedImage.TYPE_INT_RGB);
         Graphics2D g = scaledBI.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
 
         final AffineTransform scale = AffineTransform.getScaleInstance((double) targetSize.width / ww, (double) targetSize.height / hh);
         if (exifOrientation != null) {
@@ -153,7 +256,9 @@ public class ThumbsLoader implements Runnable {
             }
         }
         g.dispose();
-        tracker.removeImage(img);
+        if (tracker != null) {
+            tracker.removeImage(img);
+        }
 
         if (scaledBI.getWidth() <= 0 || scaledBI.getHeight() <= 0) {
             Main.error(" Invalid image");
@@ -172,4 +277,32 @@ public class ThumbsLoader implements Runnable {
 
         return scaledBI;
     }
+
+    /**
+     * Decodes an image with {@link ImageIO}, reading only every n-th pixel of large images.
+     * @param file the image file
+     * @return the subsampled image, at least twice the thumbnail size if possible, or {@code null} if the image cannot be
+     * read by {@link ImageIO}
+     */
+    static BufferedImage readSubsampled(File file) {
+        try (ImageInputStream input = ImageIO.createImageInputStream(file)) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int subsampling = Math.max(1, Math.max(reader.getWidth(0), reader.getHeight(0)) / (2 * maxSize));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException e) {
+            Main.debug(e);
+            return null;
+        }
+    }
 }
@@ -16,6 +16,7 @@ import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.Stroke;
+import java.awt.geom.Area;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferInt;
 import java.awt.image.Raster;
@@ -26,21 +27,31 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.swing.ImageIcon;
 
 import org.openstreetmap.josm.Main;
+import org.openstreetmap.josm.data.Bounds;
 import org.openstreetmap.josm.data.SystemOfMeasurement;
 import org.openstreetmap.josm.data.SystemOfMeasurement.SoMChangeListener;
+import org.openstreetmap.josm.data.coor.EastNorth;
 import org.openstreetmap.josm.data.coor.LatLon;
 import org.openstreetmap.josm.data.gpx.GpxConstants;
 import org.openstreetmap.josm.data.gpx.GpxData;
-import org.openstreetmap.josm.data.gpx.WayPoint;
+import org.openstreetmap.josm.data.gpx.GpxRoute;
+import org.openstreetmap.josm.data.gpx.GpxTrack;
+import org.openstreetmap.josm.data.gpx.GpxTrackSegment;
+import org.openstreetmap.josm.data.gpx.ImmutableGpxTrackSegment;
 import org.openstreetmap.josm.data.preferences.AbstractProperty;
 import org.openstreetmap.josm.data.preferences.ColorProperty;
+import org.openstreetmap.josm.data.projection.Projection;
 import org.openstreetmap.josm.gui.MapView;
 import org.openstreetmap.josm.gui.MapViewState;
+import org.openstreetmap.josm.gui.MapViewState.MapViewPoint;
 import org.openstreetmap.josm.io.CachedFile;
 import org.openstreetmap.josm.tools.ColorScale;
 import org.openstreetmap.josm.tools.JosmRuntimeException;
@@ -87,6 +98,15 @@ public class GpxDrawHelper implements SoMChangeListener {
 
     private static final double PHI = Math.toRadians(15);
 
+    /** direction of points without a line to the previous point */
+    private static final byte NO_LINE = -1;
+
+    /** level of detail keeping all points of a line */
+    private static final int[] ALL_POINTS = new int[0];
+
+    /** the track segments and routes, with their colors */
+    private List<Line> gpxLines = Collections.emptyList();
+
     //// Variables used only to check cache validity
     private boolean computeCacheInSync;
     private int computeCacheMaxLineLengthUsed;
@@ -138,11 +158,17 @@ public class GpxDrawHelper implements SoMChangeListener {
     // normal buffered image and draw object (cached)
     private BufferedImage heatMapImgGray;
     private Graphics2D heatMapGraph2d;
+    // colored heat map, drawn again only if the gray image changes
+    private BufferedImage heatMapImgColor;
 
     // some cached values
     Rectangle heatMapCacheScreenBounds = new Rectangle();
     MapViewState heatMapMapViewState;
     int heatMapCacheLineWith;
+    private boolean[] heatMapTrackVisibility;
+    // sub-pixel offset of the cached image after moving it
+    private double heatMapShiftErrorX;
+    private double heatMapShiftErrorY;
 
     // copied value for line drawing
     private final List<Integer> heatMapPolyX = new ArrayList<>();
@@ -292,20 +318,26 @@ public class GpxDrawHelper implements SoMChangeListener {
      * Draw all enabled GPX elements of layer.
      * @param g               the common draw object to use
      * @param mv              the meta data to current displayed area
-     * @param visibleSegments segments visible in the current scope of mv
+     * @param box             the bounds of the area to draw
+     * @param trackVisibility An array indicating which tracks should be drawn. Can be null, then all tracks are drawn.
+     * @return {@code true} if any point has been drawn
      */
-    public void drawAll(Graphics2D g, MapView mv, List<WayPoint> visibleSegments) {
+    public boolean drawAll(Graphics2D g, MapView mv, Bounds box, boolean... trackVisibility) {
 
         final long timeStart = System.currentTimeMillis();
 
         checkCache();
+        updateLines();
 
         // STEP 2b - RE-COMPUTE CACHE DATA *********************
         if (!computeCacheInSync) { // don't compute if the cache is good
             calculateColors();
         }
 
-        fixColors(visibleSegments);
+        VisiblePoints visibleSegments = listVisiblePoints(box, mv.getScale(), trackVisibility);
+        if (visibleSegments.size() == 0) {
+            return false;
+        }
 
         // backup the environment
         Composite oldComposite = g.getComposite();
@@ -334,7 +366,7 @@ public class GpxDrawHelper implements SoMChangeListener {
 
         // use heatmap background layer
         if (useHeatMap) {
-            drawHeatMap(g, mv, visibleSegments);
+            drawHeatMap(g, mv, visibleSegments, trackVisibility);
         } else {
             // use normal line style or alpha-blending lines
             if (!alphaLines) {
@@ -359,7 +391,7 @@ public class GpxDrawHelper implements SoMChangeListener {
         g.setComposite(oldComposite);
 
         // show some debug info
-        if (Main.isDebugEnabled() && !visibleSegments.isEmpty()) {
+        if (Main.isDebugEnabled()) {
             final long timeDiff = System.currentTimeMillis() - timeStart;
 
             Main.debug("gpxdraw::draw takes " +
@@ -370,34 +402,287 @@ public class GpxDrawHelper implements SoMChangeListener {
                          ")"
               );
         }
+        return true;
+    }
+
+    /**
+     * A track segment or route, with the colors and line directions of its points.
+     */
+    private static final class Line {
+        /** the track segment or route */
+        private final Object source;
+        private final int updateCount;
+        /** the index of the track, -1 for routes */
+        private final int track;
+        private final ImmutableGpxTrackSegment points;
+        private final Color[] colors;
+        /** the direction of the line from the previous point, {@link #NO_LINE} if no line is drawn */
+        private final byte[] directions;
+        private final Bounds bounds;
+        /** the indexes of the points kept at each level of detail, computed on demand */
+        private final Map<Integer, int[]> levels = new HashMap<>();
+        private Projection levelsProjection;
+
+        Line(Object source, int updateCount, int track, ImmutableGpxTrackSegment points) {
+            this.source = source;
+            this.updateCount = updateCount;
+            this.track = track;
+            this.points = points;
+            this.colors = new Color[points.size()];
+            this.directions = new byte[points.size()];
+            this.bounds = points.getBounds();
+            Arrays.fill(directions, NO_LINE);
+        }
+
+        /**
+         * Returns the points to draw at a level of detail. Starting from the first point, a point is skipped if it is
+         * less than {@code 2^level} east/north units away from the last kept point in both directions. The points
+         * before and after a gap in the line are always kept, so the kept points draw the same lines.
+         * @param level the level of detail, see {@link Math#getExponent(double)}
+         * @return the indexes of the kept points, or {@link #ALL_POINTS}
+         */
+        int[] getLevel(int level) {
+            Projection projection = Main.getProjection();
+            if (projection != levelsProjection) {
+                levels.clear();
+                levelsProjection = projection;
+            }
+            return levels.computeIfAbsent(level, this::computeLevel);
+        }
+
+        private int[] computeLevel(int level) {
+            double tolerance = Math.scalb(1.0, level);
+            int size = points.size();
+            int[] kept = new int[size];
+            int count = 0;
+            double lastEast = 0;
+            double lastNorth = 0;
+            for (int i = 0; i < size; i++) {
+                EastNorth en = points.getEastNorth(i);
+                if (directions[i] == NO_LINE || i == size - 1 || directions[i + 1] == NO_LINE
+                        || Math.abs(en.east() - lastEast) >= tolerance || Math.abs(en.north() - lastNorth) >= tolerance) {
+                    kept[count++] = i;
+                    lastEast = en.east();
+                    lastNorth = en.north();
+                }
+            }
+            return count == size ? ALL_POINTS : Arrays.copyOf(kept, count);
+        }
+
+        void clearLevels() {
+            levels.clear();
+        }
+    }
+
+    /**
+     * Updates the track segments and routes to draw, if the data has changed. Unchanged segments are kept.
+     */
+    private void updateLines() {
+        Map<Object, Line> previous = new IdentityHashMap<>();
+        for (Line line : gpxLines) {
+            previous.put(line.source, line);
+        }
+        List<Line> result = new ArrayList<>();
+        boolean changed = false;
+        int track = 0;
+        for (GpxTrack trk : data.tracks) {
+            for (GpxTrackSegment seg : trk.getSegments()) {
+                Line line = previous.get(seg);
+                if (line == null || line.updateCount != seg.getUpdateCount() || line.track != track) {
+                    line = new Line(seg, seg.getUpdateCount(), track, ImmutableGpxTrackSegment.of(seg));
+                    changed = true;
+                }
+                result.add(line);
+            }
+            track++;
+        }
+        for (GpxRoute rte : data.routes) {
+            if (rte.routePoints == null) {
+                continue;
+            }
+            Line line = previous.get(rte);
+            if (line == null || line.updateCount != rte.routePoints.size()) {
+                line = new Line(rte, rte.routePoints.size(), -1, new ImmutableGpxTrackSegment(rte.routePoints));
+                changed = true;
+            }
+            result.add(line);
+        }
+        if (changed || result.size() != gpxLines.size()) {
+            gpxLines = result;
+            computeCacheInSync = false;
+            heatMapMapViewState = null;
+        }
+    }
+
+    /**
+     * Returns the colors calculated for the points of a track segment or route.
+     * @param line the index of the segment or route, in the order of {@link GpxData#getLinesIterable}
+     * @return the colors of the points
+     */
+    Color[] getColors(int line) {
+        return gpxLines.get(line).colors.clone();
+    }
+
+    /**
+     * Returns the points of a track segment or route kept at a level of detail, see {@link Line#getLevel(int)}.
+     * @param line the index of the segment or route, in the order of {@link GpxData#getLinesIterable}
+     * @param level the level of detail
+     * @return the indexes of the kept points, an empty array if all points are kept
+     */
+    int[] getLevel(int line, int level) {
+        return gpxLines.get(line).getLevel(level);
+    }
+
+    /**
+     * The points to draw, in drawing order. A point may be added without the line from its previous point.
+     */
+    private final class VisiblePoints {
+        private Line[] pointLines = new Line[64];
+        private int[] indexes = new int[64];
+        private boolean[] noLine = new boolean[64];
+        private int size;
+
+        void add(Line line, int index, boolean drawLine) {
+            if (size == indexes.length) {
+                pointLines = Arrays.copyOf(pointLines, size * 2);
+                indexes = Arrays.copyOf(indexes, size * 2);
+                noLine = Arrays.copyOf(noLine, size * 2);
+            }
+            pointLines[size] = line;
+            indexes[size] = index;
+            noLine[size] = !drawLine;
+            size++;
+        }
+
+        boolean isLast(Line line, int index) {
+            return size > 0 && pointLines[size - 1] == line && indexes[size - 1] == index;
+        }
+
+        int size() {
+            return size;
+        }
+
+        EastNorth getEastNorth(int i) {
+            return pointLines[i].points.getEastNorth(indexes[i]);
+        }
+
+        LatLon getCoor(int i) {
+            return new LatLon(pointLines[i].points.getLat(indexes[i]), pointLines[i].points.getLon(indexes[i]));
+        }
+
+        Object get(int i, String key) {
+            return pointLines[i].points.getAttribute(indexes[i], key);
+        }
+
+        boolean drawLine(int i) {
+            return !noLine[i] && getDirection(i) != NO_LINE;
+        }
+
+        int getDirection(int i) {
+            return pointLines[i].directions[indexes[i]];
+        }
+
+        Color getColor(int i) {
+            Color color = pointLines[i].colors[indexes[i]];
+            return color != null ? color : neutralColor;
+        }
+    }
+
+    /**
+     * Lists the points in the given bounds and the points before them, to draw the lines to them. Points closer than
+     * a pixel to the previous point are skipped, see {@link Line#getLevel(int)}.
+     * @param box the bounds of the area to draw
+     * @param scale the current scale, in east/north units per pixel
+     * @param trackVisibility An array indicating which tracks should be drawn. Can be null, then all tracks are drawn.
+     * @return the points to draw
+     */
+    private VisiblePoints listVisiblePoints(Bounds box, double scale, boolean... trackVisibility) {
+        VisiblePoints visible = new VisiblePoints();
+        // the largest power of two not above the scale, so skipped points are less than a pixel away
+        int level = scale > 0 ? Math.getExponent(scale) : Integer.MIN_VALUE;
+        Line lastLine = null;
+        int last = -1;
+        for (Line line : gpxLines) {
+            if (line.bounds == null || (line.track >= 0 && trackVisibility != null && !trackVisibility[line.track])) {
+                continue;
+            }
+            ImmutableGpxTrackSegment points = line.points;
+            int[] kept = level == Integer.MIN_VALUE ? ALL_POINTS : line.getLevel(level);
+            int count = kept == ALL_POINTS ? points.size() : kept.length;
+            if (line.directions[0] == NO_LINE && !box.intersects(line.bounds)) {
+                // no point of the line is visible and no line comes from the previous line
+                lastLine = line;
+                last = kept == ALL_POINTS ? count - 1 : kept[count - 1];
+                continue;
+            }
+            for (int k = 0; k < count; k++) {
+                int i = kept == ALL_POINTS ? k : kept[k];
+                double lat = points.getLat(i);
+                double lon = points.getLon(i);
+                if (Double.isNaN(lat) || Double.isNaN(lon)) {
+                    continue;
+                }
+                double minLat = lat;
+                double maxLat = lat;
+                double minLon = lon;
+                double maxLon = lon;
+                if (line.directions[i] != NO_LINE && lastLine != null) {
+                    minLat = Math.min(minLat, lastLine.points.getLat(last));
+                    maxLat = Math.max(maxLat, lastLine.points.getLat(last));
+                    minLon = Math.min(minLon, lastLine.points.getLon(last));
+                    maxLon = Math.max(maxLon, lastLine.points.getLon(last));
+                }
+                if (intersects(box, minLat, minLon, maxLat, maxLon)) {
+                    if (lastLine != null && !visible.isLast(lastLine, last)) {
+                        // only draw the line to the previous point from its own previous point
+                        visible.add(lastLine, last, false);
+                    }
+                    visible.add(line, i, true);
+                }
+                lastLine = line;
+                last = i;
+            }
+        }
+        return visible;
+    }
+
+    private static boolean intersects(Bounds box, double minLat, double minLon, double maxLat, double maxLon) {
+        if (box.crosses180thMeridian()) {
+            return box.intersects(new Bounds(minLat, minLon, maxLat, maxLon, false));
+        }
+        return maxLat >= box.getMinLat() && minLat <= box.getMaxLat() && maxLon >= box.getMinLon() && minLon <= box.getMaxLon();
     }
 
     /**
      *  Calculate colors of way segments based on latest configuration settings
      */
     public void calculateColors() {
+        updateLines();
         double minval = +1e10;
         double maxval = -1e10;
-        WayPoint oldWp = null;
+        LatLon oldCoor = null;
+        double oldTime = 0;
 
         if (colorModeDynamic) {
             if (colored == ColorMode.VELOCITY) {
                 final List<Double> velocities = new ArrayList<>();
-                for (Collection<WayPoint> segment : data.getLinesIterable(null)) {
+                for (Line line : gpxLines) {
                     if (!forceLines) {
-                        oldWp = null;
+                        oldCoor = null;
                     }
-                    for (WayPoint trkPnt : segment) {
-                        LatLon c = trkPnt.getCoor();
-                        if (Double.isNaN(c.lat()) || Double.isNaN(c.lon())) {
+                    ImmutableGpxTrackSegment points = line.points;
+                    for (int i = 0; i < points.size(); i++) {
+                        if (Double.isNaN(points.getLat(i)) || Double.isNaN(points.getLon(i))) {
                             continue;
                         }
-                        if (oldWp != null && trkPnt.time > oldWp.time) {
-                            double vel = c.greatCircleDistance(oldWp.getCoor())
-                                    / (trkPnt.time - oldWp.time);
+                        LatLon c = new LatLon(points.getLat(i), points.getLon(i));
+                        double time = points.getTime(i);
+                        if (oldCoor != null && time > oldTime) {
+                            double vel = c.greatCircleDistance(oldCoor) / (time - oldTime);
                             velocities.add(vel);
                         }
-                        oldWp = trkPnt;
+                        oldCoor = c;
+                        oldTime = time;
                     }
                 }
                 Collections.sort(velocities);
@@ -409,9 +694,9 @@ public class GpxDrawHelper implements SoMChangeListener {
                     velocityScale.setRange(minval, maxval);
                 }
             } else if (colored == ColorMode.HDOP) {
-                for (Collection<WayPoint> segment : data.getLinesIterable(null)) {
-                    for (WayPoint trkPnt : segment) {
-                        Object val = trkPnt.get(GpxConstants.PT_HDOP);
+                for (Line line : gpxLines) {
+                    for (int i = 0; i < line.points.size(); i++) {
+                        Object val = line.points.getAttribute(i, GpxConstants.PT_HDOP);
                         if (val != null) {
                             double hdop = ((Float) val).doubleValue();
                             if (hdop > maxval) {
@@ -429,7 +714,7 @@ public class GpxDrawHelper implements SoMChangeListener {
                     hdopScale.setRange(minval, maxval);
                 }
             }
-            oldWp = null;
+            oldCoor = null;
         } else { // color mode not dynamic
             velocityScale.setRange(0, colorTracksTune);
             hdopScale.setRange(0, hdoprange);
@@ -448,29 +733,32 @@ public class GpxDrawHelper implements SoMChangeListener {
         }
 
         // Now the colors for all the points will be assigned
-        for (Collection<WayPoint> segment : data.getLinesIterable(null)) {
+        for (Line line : gpxLines) {
             if (!forceLines) { // don't draw lines between segments, unless forced to
-                oldWp = null;
+                oldCoor = null;
             }
-            for (WayPoint trkPnt : segment) {
-                LatLon c = trkPnt.getCoor();
-                trkPnt.customColoring = neutralColor;
-                if (Double.isNaN(c.lat()) || Double.isNaN(c.lon())) {
+            line.clearLevels();
+            ImmutableGpxTrackSegment points = line.points;
+            for (int i = 0; i < points.size(); i++) {
+                line.colors[i] = neutralColor;
+                line.directions[i] = NO_LINE;
+                if (Double.isNaN(points.getLat(i)) || Double.isNaN(points.getLon(i))) {
                     continue;
                 }
+                LatLon c = new LatLon(points.getLat(i), points.getLon(i));
+                double time = points.getTime(i);
                 // now we are sure some color will be assigned
                 Color color = null;
 
                 if (colored == ColorMode.HDOP) {
-                    Float hdop = (Float) trkPnt.get(GpxConstants.PT_HDOP);
+                    Float hdop = (Float) points.getAttribute(i, GpxConstants.PT_HDOP);
                     color = hdopScale.getColor(hdop);
                 }
-                if (oldWp != null) { // other coloring modes need segment for calcuation
-                    double dist = c.greatCircleDistance(oldWp.getCoor());
-                    boolean noDraw = false;
+                if (oldCoor != null) { // other coloring modes need segment for calcuation
+                    double dist = c.greatCircleDistance(oldCoor);
                     switch (colored) {
                     case VELOCITY:
-                        double dtime = trkPnt.time - oldWp.time;
+                        double dtime = time - oldTime;
                         if (dtime > 0) {
                             color = velocityScale.getColor(dist / dtime);
                         } else {
@@ -478,35 +766,31 @@ public class GpxDrawHelper implements SoMChangeListener {
                         }
                         break;
                     case DIRECTION:
-                        double dirColor = oldWp.getCoor().bearing(trkPnt.getCoor());
+                        double dirColor = oldCoor.bearing(c);
                         color = directionScale.getColor(dirColor);
                         break;
                     case TIME:
-                        double t = trkPnt.time;
                         // skip bad timestamps and very short tracks
-                        if (t > 0 && t <= now && maxval - minval > minTrackDurationForTimeColoring) {
-                            color = dateScale.getColor(t);
+                        if (time > 0 && time <= now && maxval - minval > minTrackDurationForTimeColoring) {
+                            color = dateScale.getColor(time);
                         } else {
                             color = dateScale.getNoDataColor();
                         }
                         break;
                     default: // Do nothing
                     }
-                    if (!noDraw && (maxLineLength == -1 || dist <= maxLineLength)) {
-                        trkPnt.drawLine = true;
-                        double bearing = oldWp.getCoor().bearing(trkPnt.getCoor());
-                        trkPnt.dir = ((int) (bearing / Math.PI * 4 + 1.5)) % 8;
-                    } else {
-                        trkPnt.drawLine = false;
+                    if (maxLineLength == -1 || dist <= maxLineLength) {
+                        double bearing = oldCoor.bearing(c);
+                        line.directions[i] = (byte) (((int) (bearing / Math.PI * 4 + 1.5)) % 8);
                     }
                 } else { // make sure we reset outdated data
-                    trkPnt.drawLine = false;
                     color = neutralColor;
                 }
                 if (color != null) {
-                    trkPnt.customColoring = color;
+                    line.colors[i] = color;
                 }
-                oldWp = trkPnt;
+                oldCoor = c;
+                oldTime = time;
             }
         }
 
@@ -515,11 +799,11 @@ public class GpxDrawHelper implements SoMChangeListener {
 
             // generate and get new user color map
             heatMapLutColor = selectColorMap(neutralColor != null ? neutralColor : Color.WHITE, heatMapDrawColorTableIdx);
-
-            // force redraw of image
-            heatMapMapViewState = null;
         }
 
+        // force redraw of heat map image, the lines may have changed
+        heatMapMapViewState = null;
+
         computeCacheInSync = true;
     }
 
@@ -529,18 +813,14 @@ public class GpxDrawHelper implements SoMChangeListener {
      * @param mv              the meta data to current displayed area
      * @param visibleSegments segments visible in the current scope of mv
      */
-    private void drawLines(Graphics2D g, MapView mv, List<WayPoint> visibleSegments) {
+    private void drawLines(Graphics2D g, MapView mv, VisiblePoints visibleSegments) {
         if (lines) {
             Point old = null;
-            for (WayPoint trkPnt : visibleSegments) {
-                LatLon c = trkPnt.getCoor();
-                if (Double.isNaN(c.lat()) || Double.isNaN(c.lon())) {
-                    continue;
-                }
-                Point screen = mv.getPoint(trkPnt.getEastNorth());
+            for (int i = 0; i < visibleSegments.size(); i++) {
+                Point screen = mv.getPoint(visibleSegments.getEastNorth(i));
                 // skip points that are on the same screenposition
-                if (trkPnt.drawLine && old != null && ((old.x != screen.x) || (old.y != screen.y))) {
-                    g.setColor(trkPnt.customColoring);
+                if (visibleSegments.drawLine(i) && old != null && ((old.x != screen.x) || (old.y != screen.y))) {
+                    g.setColor(visibleSegments.getColor(i));
                     g.drawLine(old.x, old.y, screen.x, screen.y);
                 }
                 old = screen;
@@ -554,25 +834,21 @@ public class GpxDrawHelper implements SoMChangeListener {
      * @param mv              the meta data to current displayed area
      * @param visibleSegments segments visible in the current scope of mv
      */
-    private void drawArrows(Graphics2D g, MapView mv, List<WayPoint> visibleSegments) {
+    private void drawArrows(Graphics2D g, MapView mv, VisiblePoints visibleSegments) {
         /****************************************************************
          ********** STEP 3b - DRAW NICE ARROWS **************************
          ****************************************************************/
         if (lines && direction && !alternateDirection) {
             Point old = null;
             Point oldA = null; // last arrow painted
-            for (WayPoint trkPnt : visibleSegments) {
-                LatLon c = trkPnt.getCoor();
-                if (Double.isNaN(c.lat()) || Double.isNaN(c.lon())) {
-                    continue;
-                }
-                if (trkPnt.drawLine) {
-                    Point screen = mv.getPoint(trkPnt.getEastNorth());
+            for (int i = 0; i < visibleSegments.size(); i++) {
+                if (visibleSegments.drawLine(i)) {
+                    Point screen = mv.getPoint(visibleSegments.getEastNorth(i));
                     // skip points that are on the same screenposition
                     if (old != null
                             && (oldA == null || screen.x < oldA.x - delta || screen.x > oldA.x + delta
                             || screen.y < oldA.y - delta || screen.y > oldA.y + delta)) {
-                        g.setColor(trkPnt.customColoring);
+                        g.setColor(visibleSegments.getColor(i));
                         double t = Math.atan2((double) screen.y - old.y, (double) screen.x - old.x) + Math.PI;
                         g.drawLine(screen.x, screen.y, (int) (screen.x + 10 * Math.cos(t - PHI)),
                                 (int) (screen.y + 10 * Math.sin(t - PHI)));
@@ -591,22 +867,19 @@ public class GpxDrawHelper implements SoMChangeListener {
         if (lines && direction && alternateDirection) {
             Point old = null;
             Point oldA = null; // last arrow painted
-            for (WayPoint trkPnt : visibleSegments) {
-                LatLon c = trkPnt.getCoor();
-                if (Double.isNaN(c.lat()) || Double.isNaN(c.lon())) {
-                    continue;
-                }
-                if (trkPnt.drawLine) {
-                    Point screen = mv.getPoint(trkPnt.getEastNorth());
+            for (int i = 0; i < visibleSegments.size(); i++) {
+                if (visibleSegments.drawLine(i)) {
+                    Point screen = mv.getPoint(visibleSegments.getEastNorth(i));
                     // skip points that are on the same screenposition
                     if (old != null
                             && (oldA == null || screen.x < oldA.x - delta || screen.x > oldA.x + delta
                             || screen.y < oldA.y - delta || screen.y > oldA.y + delta)) {
-                        g.setColor(trkPnt.customColoring);
-                        g.drawLine(screen.x, screen.y, screen.x + dir[trkPnt.dir][0], screen.y
-                                + dir[trkPnt.dir][1]);
-                        g.drawLine(screen.x, screen.y, screen.x + dir[trkPnt.dir][2], screen.y
-                                + dir[trkPnt.dir][3]);
+                        g.setColor(visibleSegments.getColor(i));
+                        int d = visibleSegments.getDirection(i);
+                        g.drawLine(screen.x, screen.y, screen.x + dir[d][0], screen.y
+                                + dir[d][1]);
+                        g.drawLine(screen.x, screen.y, screen.x + dir[d][2], screen.y
+                                + dir[d][3]);
                         oldA = screen;
                     }
                     old = screen;
@@ -621,43 +894,41 @@ public class GpxDrawHelper implements SoMChangeListener {
      * @param mv              the meta data to current displayed area
      * @param visibleSegments segments visible in the current scope of mv
      */
-    private void drawPoints(Graphics2D g, MapView mv, List<WayPoint> visibleSegments) {
+    private void drawPoints(Graphics2D g, MapView mv, VisiblePoints visibleSegments) {
         /****************************************************************
          ********** STEP 3d - DRAW LARGE POINTS AND HDOP CIRCLE *********
          ****************************************************************/
         if (large || hdopCircle) {
             final int halfSize = largesize/2;
-            for (WayPoint trkPnt : visibleSegments) {
-                LatLon c = trkPnt.getCoor();
-                if (Double.isNaN(c.lat()) || Double.isNaN(c.lon())) {
-                    continue;
-                }
-                Point screen = mv.getPoint(trkPnt.getEastNorth());
+            for (int i = 0; i < visibleSegments.size(); i++) {
+                Point screen = mv.getPoint(visibleSegments.getEastNorth(i));
+
 
+                Object hdopValue = hdopCircle ? visibleSegments.get(i, GpxConstants.PT_HDOP) : null;
+                Color customColoring = visibleSegments.getColor(i);
 
-                if (hdopCircle && trkPnt.get(GpxConstants.PT_HDOP) != null) {
+                if (hdopValue != null) {
                     // hdop value
-                    float hdop = (Float) trkPnt.get(GpxConstants.PT_HDOP);
+                    float hdop = (Float) hdopValue;
                     if (hdop < 0) {
                         hdop = 0;
                     }
-                    Color customColoringTransparent = hdopAlpha < 0 ? trkPnt.customColoring :
-                        new Color((trkPnt.customColoring.getRGB() & 0x00ffffff) | (hdopAlpha << 24), true);
+                    Color customColoringTransparent = hdopAlpha < 0 ? customColoring :
+                        new Color((customColoring.getRGB() & 0x00ffffff) | (hdopAlpha << 24), true);
                     g.setColor(customColoringTransparent);
                     // hdop circles
+                    LatLon c = visibleSegments.getCoor(i);
                     int hdopp = mv.getPoint(new LatLon(
-                            trkPnt.getCoor().lat(),
-                            trkPnt.getCoor().lon() + 2d*6*hdop*360/40000000d)).x - screen.x;
+                            c.lat(),
+                            c.lon() + 2d*6*hdop*360/40000000d)).x - screen.x;
                     g.drawArc(screen.x-hdopp/2, screen.y-hdopp/2, hdopp, hdopp, 0, 360);
                 }
                 if (large) {
                     // color the large GPS points like the gps lines
-                    if (trkPnt.customColoring != null) {
-                        Color customColoringTransparent = largePointAlpha < 0 ? trkPnt.customColoring :
-                            new Color((trkPnt.customColoring.getRGB() & 0x00ffffff) | (largePointAlpha << 24), true);
+                    Color customColoringTransparent = largePointAlpha < 0 ? customColoring :
+                        new Color((customColoring.getRGB() & 0x00ffffff) | (largePointAlpha << 24), true);
 
-                        g.setColor(customColoringTransparent);
-                    }
+                    g.setColor(customColoringTransparent);
                     g.fillRect(screen.x-halfSize, screen.y-halfSize, largesize, largesize);
                 }
             } // end for trkpnt
@@ -668,13 +939,9 @@ public class GpxDrawHelper implements SoMChangeListener {
          ****************************************************************/
         if (!large && lines) {
             g.setColor(neutralColor);
-            for (WayPoint trkPnt : visibleSegments) {
-                LatLon c = trkPnt.getCoor();
-                if (Double.isNaN(c.lat()) || Double.isNaN(c.lon())) {
-                    continue;
-                }
-                if (!trkPnt.drawLine) {
-                    Point screen = mv.getPoint(trkPnt.getEastNorth());
+            for (int i = 0; i < visibleSegments.size(); i++) {
+                if (!visibleSegments.drawLine(i)) {
+                    Point screen = mv.getPoint(visibleSegments.getEastNorth(i));
                     g.drawRect(screen.x, screen.y, 0, 0);
                 }
             } // end for trkpnt
@@ -685,13 +952,9 @@ public class GpxDrawHelper implements SoMChangeListener {
          ****************************************************************/
         if (!large && !lines) {
             g.setColor(neutralColor);
-            for (WayPoint trkPnt : visibleSegments) {
-                LatLon c = trkPnt.getCoor();
-                if (Double.isNaN(c.lat()) || Double.isNaN(c.lon())) {
-                    continue;
-                }
-                Point screen = mv.getPoint(trkPnt.getEastNorth());
-                g.setColor(trkPnt.customColoring);
+            for (int i = 0; i < visibleSegments.size(); i++) {
+                Point screen = mv.getPoint(visibleSegments.getEastNorth(i));
+                g.setColor(visibleSegments.getColor(i));
                 g.drawRect(screen.x, screen.y, 0, 0);
             } // end for trkpnt
         } // end if large
@@ -704,7 +967,7 @@ public class GpxDrawHelper implements SoMChangeListener {
      * @param visibleSegments segments visible in the current scope of mv
      * @param layerAlpha      the color alpha value set for that operation
      */
-    private void drawLinesAlpha(Graphics2D g, MapView mv, List<WayPoint> visibleSegments, float layerAlpha) {
+    private void drawLinesAlpha(Graphics2D g, MapView mv, VisiblePoints visibleSegments, float layerAlpha) {
 
         // 1st. backup the paint environment ----------------------------------
         Composite oldComposite = g.getComposite();
@@ -737,16 +1000,16 @@ public class GpxDrawHelper implements SoMChangeListener {
         // 5th draw the layer ---------------------------------------------------
 
         // for all points
-        for (WayPoint trkPnt : visibleSegments) {
+        for (int i = 0; i < visibleSegments.size(); i++) {
 
             // transform coordinates
-            final Point paintPnt = mv.getPoint(trkPnt.getEastNorth());
+            final Point paintPnt = mv.getPoint(visibleSegments.getEastNorth(i));
 
             // skip single points
-            if (lastPaintPnt != null && trkPnt.drawLine && !lastPaintPnt.equals(paintPnt)) {
+            if (lastPaintPnt != null && visibleSegments.drawLine(i) && !lastPaintPnt.equals(paintPnt)) {
 
                 // set different color
-                g.setColor(trkPnt.customColoring);
+                g.setColor(visibleSegments.getColor(i));
 
                 // draw it
                 g.drawLine(lastPaintPnt.x, lastPaintPnt.y, paintPnt.x, paintPnt.y);
@@ -970,7 +1233,7 @@ public class GpxDrawHelper implements SoMChangeListener {
      * @param backComp        composite use to draw background objects
      * @param backStroke      stroke use to draw background objects
      */
-    private void drawHeatGrayMap(Graphics2D gB, MapView mv, List<WayPoint> listSegm,
+    private void drawHeatGrayMap(Graphics2D gB, MapView mv, VisiblePoints listSegm,
                                  Composite foreComp, Stroke foreStroke,
                                  Composite backComp, Stroke backStroke) {
 
@@ -980,17 +1243,14 @@ public class GpxDrawHelper implements SoMChangeListener {
         // set initial values
         gB.setStroke(backStroke); gB.setComposite(backComp);
 
-        // get last point in list
-        final WayPoint lastPnt = !listSegm.isEmpty() ? listSegm.get(listSegm.size() - 1) : null;
-
         // for all points, draw single lines by using optimized drawing
-        for (WayPoint trkPnt : listSegm) {
+        for (int i = 0; i < listSegm.size(); i++) {
 
             // get transformed coordinates
-            final Point paintPnt = mv.getPoint(trkPnt.getEastNorth());
+            final Point paintPnt = mv.getPoint(listSegm.getEastNorth(i));
 
             // end of line segment or end of list reached
-            if (!trkPnt.drawLine || (lastPnt == trkPnt)) {
+            if (!listSegm.drawLine(i) || i == listSegm.size() - 1) {
 
                 // convert to primitive type
                 final int[] polyXArr = heatMapPolyX.stream().mapToInt(Integer::intValue).toArray();
@@ -1118,8 +1378,9 @@ public class GpxDrawHelper implements SoMChangeListener {
      * @param g               the common draw object to use
      * @param mv              the meta data to current displayed area
      * @param visibleSegments segments visible in the current scope of mv
+     * @param trackVisibility the visible tracks, can be null
      */
-    private void drawHeatMap(Graphics2D g, MapView mv, List<WayPoint> visibleSegments) {
+    private void drawHeatMap(Graphics2D g, MapView mv, VisiblePoints visibleSegments, boolean... trackVisibility) {
 
         // get bounds of screen image and projection, zoom and adjust input parameters
         final Rectangle screenBounds = new Rectangle(mv.getWidth(), mv.getHeight());
@@ -1141,6 +1402,7 @@ public class GpxDrawHelper implements SoMChangeListener {
             heatMapGraph2d = heatMapImgGray.createGraphics();
             heatMapGraph2d.setBackground(new Color(0, 0, 0, 255));
             heatMapGraph2d.setColor(Color.WHITE);
+            heatMapImgColor = new BufferedImage(screenBounds.width, screenBounds.height, BufferedImage.TYPE_INT_ARGB);
 
             // cache it
             heatMapCacheScreenBounds = screenBounds;
@@ -1153,14 +1415,28 @@ public class GpxDrawHelper implements SoMChangeListener {
         final int lineWidthF = lineWidthB > 2 ? (globalLineWidth - 1) : 0;
 
         // recalculation of image needed
-        final boolean imageRecalc = !mapViewState.equalsInWindow(heatMapMapViewState) ||
-                                    heatMapCacheLineWith != globalLineWidth;
+        final boolean dataRecalc = heatMapCacheLineWith != globalLineWidth ||
+                                   !Arrays.equals(heatMapTrackVisibility, trackVisibility);
+        final boolean imageRecalc = !mapViewState.equalsInWindow(heatMapMapViewState) || dataRecalc;
 
         // 3rd Calculate the heat map data by draw GPX traces with alpha value ----------
 
         // need re-generation of gray image ?
         if (imageSetup || imageRecalc) {
 
+            // the view has only been moved: keep the cached image and only draw the uncovered borders
+            final Point shift = imageSetup || dataRecalc ? null : getHeatMapShift(mapViewState);
+            if (shift != null) {
+                heatMapGraph2d.setComposite(AlphaComposite.Src);
+                heatMapGraph2d.copyArea(0, 0, screenBounds.width, screenBounds.height, shift.x, shift.y);
+                Area border = new Area(screenBounds);
+                border.subtract(new Area(new Rectangle(shift.x, shift.y, screenBounds.width, screenBounds.height)));
+                heatMapGraph2d.setClip(border);
+            } else {
+                heatMapShiftErrorX = 0;
+                heatMapShiftErrorY = 0;
+            }
+
             // clear background
             heatMapGraph2d.clearRect(0, 0, heatMapImgGray.getWidth(), heatMapImgGray.getHeight());
 
@@ -1175,25 +1451,59 @@ public class GpxDrawHelper implements SoMChangeListener {
                             AlphaComposite.SrcOver.derive(lineAlphaB),
                             new BasicStroke(lineWidthB, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
 
+            heatMapGraph2d.setClip(null);
+
             // remember draw parameters
             heatMapMapViewState = mapViewState;
+            heatMapTrackVisibility = trackVisibility == null ? null : trackVisibility.clone();
             heatMapCacheLineWith = globalLineWidth;
         }
 
         // 4th. Draw data on target layer, map data via color lookup table --------------
-        drawHeatMapGrayMap(g, heatMapImgGray, lineWidthB > 2 ? (lineWidthB / 2) : 1, lineWidth > 2 ? (lineWidth - 2) : 1);
+
+        // map the gray image only if it has changed, otherwise draw the cached colored image
+        if (imageSetup || imageRecalc) {
+            final Graphics2D gColor = heatMapImgColor.createGraphics();
+            try {
+                gColor.setComposite(AlphaComposite.Clear);
+                gColor.fillRect(0, 0, heatMapImgColor.getWidth(), heatMapImgColor.getHeight());
+                gColor.setComposite(AlphaComposite.SrcOver);
+                final Object antialiasing = g.getRenderingHint(RenderingHints.KEY_ANTIALIASING);
+                if (antialiasing != null) {
+                    gColor.setRenderingHint(RenderingHints.KEY_ANTIALIASING, antialiasing);
+                }
+                drawHeatMapGrayMap(gColor, heatMapImgGray, lineWidthB > 2 ? (lineWidthB / 2) : 1, lineWidth > 2 ? (lineWidth - 2) : 1);
+            } finally {
+                gColor.dispose();
+            }
+        }
+        g.drawImage(heatMapImgColor, 0, 0, null);
     }
 
     /**
-     * Apply default color configuration to way segments
-     * @param visibleSegments segments visible in the current scope of mv
+     * Returns the pixel offset of the cached heat map image in a moved view.
+     * @param mapViewState the current view
+     * @return the offset, or {@code null} if the view has been zoomed or moved too far and the image must be drawn again
      */
-    private void fixColors(List<WayPoint> visibleSegments) {
-        for (WayPoint trkPnt : visibleSegments) {
-            if (trkPnt.customColoring == null) {
-                trkPnt.customColoring = neutralColor;
-            }
+    Point getHeatMapShift(MapViewState mapViewState) {
+        final MapViewState old = heatMapMapViewState;
+        if (old == null || old.getScale() != mapViewState.getScale() || old.getProjection() != mapViewState.getProjection()
+                || old.getViewWidth() != mapViewState.getViewWidth() || old.getViewHeight() != mapViewState.getViewHeight()) {
+            return null;
+        }
+        final MapViewPoint oldTopLeft = mapViewState.getPointFor(old.getForView(0, 0).getEastNorth());
+        final int dx = (int) Math.round(oldTopLeft.getInViewX());
+        final int dy = (int) Math.round(oldTopLeft.getInViewY());
+        final double errorX = heatMapShiftErrorX + dx - oldTopLeft.getInViewX();
+        final double errorY = heatMapShiftErrorY + dy - oldTopLeft.getInViewY();
+        // don't let rounding errors add up to visible offsets
+        if (Math.abs(dx) >= old.getViewWidth() || Math.abs(dy) >= old.getViewHeight()
+                || Math.abs(errorX) >= 1 || Math.abs(errorY) >= 1) {
+            return null;
         }
+        heatMapShiftErrorX = errorX;
+        heatMapShiftErrorY = errorY;
+        return new Point(dx, dy);
     }
 
     /**
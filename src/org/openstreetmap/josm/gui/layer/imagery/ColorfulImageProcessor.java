@@ -8,10 +8,7 @@ import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.awt.image.BufferedImageOp;
 import java.awt.image.ColorModel;
-import java.awt.image.DataBuffer;
-import java.awt.image.DataBufferByte;
 
-import org.openstreetmap.josm.Main;
 import org.openstreetmap.josm.gui.layer.ImageProcessor;
 
 /**
@@ -21,7 +18,7 @@ import org.openstreetmap.josm.gui.layer.ImageProcessor;
  * @since 10547
  */
 public class ColorfulImageProcessor implements ImageProcessor {
-    private ColorfulFilter op;
+    private volatile ColorfulFilter op;
     private double colorfulness = 1;
 
     /**
@@ -52,13 +49,19 @@ public class ColorfulImageProcessor implements ImageProcessor {
 
     @Override
     public BufferedImage process(BufferedImage image) {
-        if (op != null) {
-            return op.filter(image, null);
+        ColorfulFilter filter = op;
+        if (filter != null) {
+            return filter.filter(image, null);
         } else {
             return image;
         }
     }
 
+    @Override
+    public boolean isIdentity() {
+        return op == null;
+    }
+
     @Override
     public String toString() {
         return "ColorfulImageProcessor [colorfulness=" + colorfulness + ']';
@@ -85,81 +88,27 @@ public class ColorfulImageProcessor implements ImageProcessor {
             if (dest == null) {
                 dest = createCompatibleDestImage(src, null);
             }
-            DataBuffer srcBuffer = src.getRaster().getDataBuffer();
-            DataBuffer destBuffer = dest.getRaster().getDataBuffer();
-            if (!(srcBuffer instanceof DataBufferByte) || !(destBuffer instanceof DataBufferByte)) {
-                Main.trace("Cannot apply color filter: Images do not use DataBufferByte.");
-                return src;
-            }
-
-            int type = src.getType();
-            if (type != dest.getType()) {
-                Main.trace("Cannot apply color filter: Src / Dest differ in type (" + type + '/' + dest.getType() + ')');
-                return src;
-            }
-            int redOffset;
-            int greenOffset;
-            int blueOffset;
-            int alphaOffset = 0;
-            switch (type) {
-            case BufferedImage.TYPE_3BYTE_BGR:
-                blueOffset = 0;
-                greenOffset = 1;
-                redOffset = 2;
-                break;
-            case BufferedImage.TYPE_4BYTE_ABGR:
-            case BufferedImage.TYPE_4BYTE_ABGR_PRE:
-                blueOffset = 1;
-                greenOffset = 2;
-                redOffset = 3;
-                break;
-            case BufferedImage.TYPE_INT_ARGB:
-            case BufferedImage.TYPE_INT_ARGB_PRE:
-                redOffset = 0;
-                greenOffset = 1;
-                blueOffset = 2;
-                alphaOffset = 3;
-                break;
-            default:
-                Main.trace("Cannot apply color filter: Source image is of wrong type (" + type + ").");
-                return src;
-            }
-            doFilter((DataBufferByte) srcBuffer, (DataBufferByte) destBuffer, redOffset, greenOffset, blueOffset,
-                    alphaOffset, src.getAlphaRaster() != null);
-            return dest;
-        }
-
-        private void doFilter(DataBufferByte src, DataBufferByte dest, int redOffset, int greenOffset, int blueOffset,
-                int alphaOffset, boolean hasAlpha) {
-            byte[] srcPixels = src.getData();
-            byte[] destPixels = dest.getData();
-            if (srcPixels.length != destPixels.length) {
-                Main.trace("Cannot apply color filter: Source/Dest lengths differ.");
-                return;
-            }
-            int entries = hasAlpha ? 4 : 3;
-            for (int i = 0; i < srcPixels.length; i += entries) {
-                int r = srcPixels[i + redOffset] & 0xff;
-                int g = srcPixels[i + greenOffset] & 0xff;
-                int b = srcPixels[i + blueOffset] & 0xff;
+            int[] pixels = IntPixels.getPixels(src);
+            for (int i = 0; i < pixels.length; i++) {
+                int p = pixels[i];
+                int r = (p >> 16) & 0xff;
+                int g = (p >> 8) & 0xff;
+                int b = p & 0xff;
                 double luminosity = r * .21d + g * .72d + b * .07d;
-                destPixels[i + redOffset] = mix(r, luminosity);
-                destPixels[i + greenOffset] = mix(g, luminosity);
-                destPixels[i + blueOffset] = mix(b, luminosity);
-                if (hasAlpha) {
-                    destPixels[i + alphaOffset] = srcPixels[i + alphaOffset];
-                }
+                pixels[i] = (p & 0xff000000) | mix(r, luminosity) << 16 | mix(g, luminosity) << 8 | mix(b, luminosity);
             }
+            IntPixels.setPixels(dest, pixels);
+            return dest;
         }
 
-        private byte mix(int color, double luminosity) {
+        private int mix(int color, double luminosity) {
             int val = (int) (colorfulness * color + (1 - colorfulness) * luminosity);
             if (val < 0) {
                 return 0;
             } else if (val > 0xff) {
-                return (byte) 0xff;
+                return 0xff;
             } else {
-                return (byte) val;
+                return val;
             }
         }
 
@@ -170,7 +119,7 @@ public class ColorfulImageProcessor implements ImageProcessor {
 
         @Override
         public BufferedImage createCompatibleDestImage(BufferedImage src, ColorModel destCM) {
-            return new BufferedImage(src.getWidth(), src.getHeight(), src.getType());
+            return IntPixels.createIntImage(src);
         }
 
         @Override
@@ -1,25 +1,20 @@
 // License: GPL. For details, see LICENSE file.
 package org.openstreetmap.josm.gui.layer.imagery;
 
-import java.awt.Transparency;
 import java.awt.image.BufferedImage;
-import java.awt.image.LookupOp;
-import java.awt.image.ShortLookupTable;
 
-import org.openstreetmap.josm.Main;
 import org.openstreetmap.josm.gui.layer.ImageProcessor;
 
 /**
  * An image processor which adjusts the gamma value of an image.
+ * <p>
+ * The color channels are changed through a lookup table on the packed pixels, the alpha channel is kept.
  * @since 10547
  */
 public class GammaImageProcessor implements ImageProcessor {
     private double gamma = 1;
-    final short[] gammaChange = new short[256];
-    private final LookupOp op3 = new LookupOp(
-            new ShortLookupTable(0, new short[][]{gammaChange, gammaChange, gammaChange}), null);
-    private final LookupOp op4 = new LookupOp(
-            new ShortLookupTable(0, new short[][]{gammaChange, gammaChange, gammaChange, gammaChange}), null);
+    /** the lookup table, replaced as a whole so that images processed concurrently see a consistent table */
+    private volatile int[] gammaChange = createTable(1);
 
     /**
      * Returns the currently set gamma value.
@@ -35,9 +30,15 @@ public class GammaImageProcessor implements ImageProcessor {
      */
     public void setGamma(double gamma) {
         this.gamma = gamma;
+        this.gammaChange = createTable(gamma);
+    }
+
+    private static int[] createTable(double gamma) {
+        int[] table = new int[256];
         for (int i = 0; i < 256; i++) {
-            gammaChange[i] = (short) (255 * Math.pow(i / 255., gamma));
+            table[i] = (short) (255 * Math.pow(i / 255., gamma)) & 0xff;
         }
+        return table;
     }
 
     @Override
@@ -45,20 +46,20 @@ public class GammaImageProcessor implements ImageProcessor {
         if (gamma == 1) {
             return image;
         }
-        try {
-            final int bands = image.getRaster().getNumBands();
-            if (image.getType() != BufferedImage.TYPE_CUSTOM && bands == 3) {
-                return op3.filter(image, null);
-            } else if (image.getType() != BufferedImage.TYPE_CUSTOM && bands == 4) {
-                return op4.filter(image, null);
-            }
-        } catch (IllegalArgumentException ignore) {
-            Main.trace(ignore);
+        int[] table = gammaChange;
+        int[] pixels = IntPixels.getPixels(image);
+        for (int i = 0; i < pixels.length; i++) {
+            int p = pixels[i];
+            pixels[i] = (p & 0xff000000) | table[(p >> 16) & 0xff] << 16 | table[(p >> 8) & 0xff] << 8 | table[p & 0xff];
         }
-        final int type = image.getTransparency() == Transparency.OPAQUE ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
-        final BufferedImage to = new BufferedImage(image.getWidth(), image.getHeight(), type);
-        to.getGraphics().drawImage(image, 0, 0, null);
-        return process(to);
+        BufferedImage to = IntPixels.createIntImage(image);
+        IntPixels.setPixels(to, pixels);
+        return to;
+    }
+
+    @Override
+    public boolean isIdentity() {
+        return gamma == 1;
     }
 
     @Override
@@ -0,0 +1,67 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.gui.layer.imagery;
+
+import java.awt.Graphics2D;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+
+/**
+ * Access to the pixels of an image as packed (A)RGB {@code int}s, as stored in a {@code DataBufferInt}.
+ * <p>
+ * The pixels are copied through the raster instead of using the data buffer array itself, so that Java2D can still cache
+ * the images in video memory.
+ */
+final class IntPixels {
+
+    private IntPixels() {
+        // Hide default constructor for utility classes
+    }
+
+    /**
+     * Determines if the image stores its pixels as packed {@code int}s.
+     * @param image the image
+     * @return {@code true} for {@link BufferedImage#TYPE_INT_RGB} and {@link BufferedImage#TYPE_INT_ARGB}
+     */
+    static boolean isIntImage(BufferedImage image) {
+        return image.getType() == BufferedImage.TYPE_INT_RGB || image.getType() == BufferedImage.TYPE_INT_ARGB;
+    }
+
+    /**
+     * Creates an empty image for the pixels of the given image.
+     * @param image the image
+     * @return a new image of {@link BufferedImage#TYPE_INT_RGB}, or {@link BufferedImage#TYPE_INT_ARGB} if the image is not opaque
+     */
+    static BufferedImage createIntImage(BufferedImage image) {
+        int type = image.getTransparency() == Transparency.OPAQUE ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+        return new BufferedImage(image.getWidth(), image.getHeight(), type);
+    }
+
+    /**
+     * Returns a copy of the pixels of an image.
+     * @param image the image
+     * @return the pixels, row by row. The alpha bits are undefined for opaque images.
+     */
+    static int[] getPixels(BufferedImage image) {
+        BufferedImage src = image;
+        if (!isIntImage(src)) {
+            src = createIntImage(image);
+            Graphics2D g = src.createGraphics();
+            g.drawImage(image, 0, 0, null);
+            g.dispose();
+        }
+        return (int[]) src.getRaster().getDataElements(0, 0, src.getWidth(), src.getHeight(), null);
+    }
+
+    /**
+     * Sets the pixels of an image.
+     * @param image the image
+     * @param pixels the pixels, row by row
+     */
+    static void setPixels(BufferedImage image, int[] pixels) {
+        if (isIntImage(image)) {
+            image.getRaster().setDataElements(0, 0, image.getWidth(), image.getHeight(), pixels);
+        } else {
+            image.setRGB(0, 0, image.getWidth(), image.getHeight(), pixels, 0, image.getWidth());
+        }
+    }
+}
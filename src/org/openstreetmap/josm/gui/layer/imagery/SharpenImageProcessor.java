@@ -19,7 +19,7 @@ import org.openstreetmap.josm.gui.layer.ImageProcessor;
  */
 public class SharpenImageProcessor implements ImageProcessor {
     private float sharpenLevel = 1;
-    private ConvolveOp op;
+    private volatile ConvolveOp op;
 
     private static float[] KERNEL_IDENTITY = new float[] {
         0, 0, 0,
@@ -80,13 +80,19 @@ public class SharpenImageProcessor implements ImageProcessor {
 
     @Override
     public BufferedImage process(BufferedImage image) {
-        if (op != null) {
-            return op.filter(image, null);
+        ConvolveOp filter = op;
+        if (filter != null) {
+            return filter.filter(image, null);
         } else {
             return image;
         }
     }
 
+    @Override
+    public boolean isIdentity() {
+        return op == null;
+    }
+
     @Override
     public String toString() {
         return "SharpenImageProcessor [sharpenLevel=" + sharpenLevel + ']';
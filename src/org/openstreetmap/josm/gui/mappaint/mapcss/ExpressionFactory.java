@@ -6,8 +6,10 @@ import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Array;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
@@ -1195,6 +1197,7 @@ public final class ExpressionFactory {
     public static class ParameterFunction implements Expression {
 
         private final Method m;
+        private final MethodHandle handle;
         private final boolean nullable;
         private final List<Expression> args;
         private final Class<?>[] expectedParameterTypes;
@@ -1208,6 +1211,7 @@ public final class ExpressionFactory {
          */
         public ParameterFunction(Method m, List<Expression> args, boolean needsEnvironment) {
             this.m = m;
+            this.handle = toSpreadMethodHandle(m);
             this.nullable = m.getAnnotation(NullableArguments.class) != null;
             this.args = args;
             this.expectedParameterTypes = m.getParameterTypes();
@@ -1236,16 +1240,7 @@ public final class ExpressionFactory {
                     }
                 }
             }
-            Object result = null;
-            try {
-                result = m.invoke(null, convertedArgs);
-            } catch (IllegalAccessException | IllegalArgumentException ex) {
-                throw new JosmRuntimeException(ex);
-            } catch (InvocationTargetException ex) {
-                Main.error(ex);
-                return null;
-            }
-            return result;
+            return invoke(handle, convertedArgs);
         }
 
         @Override
@@ -1261,6 +1256,44 @@ public final class ExpressionFactory {
         }
     }
 
+    /**
+     * Converts a static function into a method handle of type {@code (Object[])Object} that spreads the array over the
+     * parameters of the function. Unlike {@link Method#invoke}, calling the handle does not need an access check and
+     * boxes the result only once.
+     * @param m static method
+     * @return method handle calling {@code m}
+     */
+    static MethodHandle toSpreadMethodHandle(Method m) {
+        try {
+            int parameterCount = m.getParameterTypes().length;
+            return MethodHandles.lookup().unreflect(m).asFixedArity()
+                    .asType(MethodType.genericMethodType(parameterCount))
+                    .asSpreader(Object[].class, parameterCount);
+        } catch (IllegalAccessException ex) {
+            throw new JosmRuntimeException(ex);
+        }
+    }
+
+    /**
+     * Calls a method handle created by {@link #toSpreadMethodHandle}. Errors of the function are logged.
+     * @param handle method handle
+     * @param args converted arguments
+     * @return the result of the function or {@code null} if the function failed
+     * @throws JosmRuntimeException if the arguments do not match the parameters of the function
+     */
+    static Object invoke(MethodHandle handle, Object[] args) {
+        try {
+            return (Object) handle.invokeExact(args);
+        } catch (IllegalArgumentException | ClassCastException ex) {
+            throw new JosmRuntimeException(ex);
+        } catch (Error ex) {
+            throw ex;
+        } catch (Throwable ex) { // NOPMD
+            Main.error(ex);
+            return null;
+        }
+    }
+
     /**
      * Function that takes an arbitrary number of arguments.
      *
@@ -1271,6 +1304,7 @@ public final class ExpressionFactory {
     public static class ArrayFunction implements Expression {
 
         private final Method m;
+        private final MethodHandle handle;
         private final boolean nullable;
         private final List<Expression> args;
         private final Class<?>[] expectedParameterTypes;
@@ -1283,6 +1317,7 @@ public final class ExpressionFactory {
          */
         public ArrayFunction(Method m, List<Expression> args) {
             this.m = m;
+            this.handle = toSpreadMethodHandle(m);
             this.nullable = m.getAnnotation(NullableArguments.class) != null;
             this.args = args;
             this.expectedParameterTypes = m.getParameterTypes();
@@ -1302,16 +1337,7 @@ public final class ExpressionFactory {
             }
             convertedArgs[0] = arrayArg;
 
-            Object result = null;
-            try {
-                result = m.invoke(null, convertedArgs);
-            } catch (IllegalAccessException | IllegalArgumentException ex) {
-                throw new JosmRuntimeException(ex);
-            } catch (InvocationTargetException ex) {
-                Main.error(ex);
-                return null;
-            }
-            return result;
+            return invoke(handle, convertedArgs);
         }
 
         @Override
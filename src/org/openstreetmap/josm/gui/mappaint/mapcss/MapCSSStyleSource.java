@@ -25,6 +25,7 @@ import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.PatternSyntaxException;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -141,6 +142,10 @@ public class MapCSSStyleSource extends StyleSource {
      * To use this index, you need to {@link #add(MapCSSRule)} all rules to it. You then need to call
      * {@link #initIndex()}. Afterwards, you can use {@link #getRuleCandidates(OsmPrimitive)} to get an iterator over
      * all rules that might be applied to that primitive.
+     *
+     * When the index is built, the simple tag conditions ([key], [key=value], [key!=value], ...) that are used by more than
+     * one rule are compiled into a shared condition table. The iterator evaluates each of those conditions at most once per
+     * primitive and skips all candidates for which one of them fails, before the full selector is matched.
      */
     public static class MapCSSRuleIndex {
         /**
@@ -150,10 +155,17 @@ public class MapCSSStyleSource extends StyleSource {
          */
         private final class RuleCandidatesIterator implements Iterator<MapCSSRule>, KeyValueVisitor {
             private final BitSet ruleCandidates;
+            private final OsmPrimitive osm;
+            /**
+             * The results of the shared conditions for {@link #osm}: 0 = not evaluated, 1 = applies, 2 = does not apply.
+             */
+            private byte[] conditionResults;
+            private Environment env;
             private int next;
 
-            private RuleCandidatesIterator(BitSet ruleCandidates) {
+            private RuleCandidatesIterator(BitSet ruleCandidates, OsmPrimitive osm) {
                 this.ruleCandidates = ruleCandidates;
+                this.osm = osm;
             }
 
             @Override
@@ -166,10 +178,50 @@ public class MapCSSStyleSource extends StyleSource {
                 if (!hasNext())
                     throw new NoSuchElementException();
                 MapCSSRule rule = rules.get(next);
-                next = ruleCandidates.nextSetBit(next + 1);
+                next = findNext(next + 1);
                 return rule;
             }
 
+            private int findNext(int from) {
+                int i = ruleCandidates.nextSetBit(from);
+                while (i >= 0 && !sharedConditionsApply(i)) {
+                    i = ruleCandidates.nextSetBit(i + 1);
+                }
+                return i;
+            }
+
+            private boolean sharedConditionsApply(int ruleIndex) {
+                int[] slots = ruleConditions[ruleIndex];
+                if (slots == null) {
+                    return true;
+                }
+                if (conditionResults == null) {
+                    conditionResults = new byte[sharedConditions.size()];
+                    env = new Environment(osm);
+                }
+                for (int slot : slots) {
+                    byte result = conditionResults[slot];
+                    if (result == 0) {
+                        result = evaluate(sharedConditions.get(slot)) ? (byte) 1 : (byte) 2;
+                        conditionResults[slot] = result;
+                    }
+                    if (result == 2) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            private boolean evaluate(Condition c) {
+                try {
+                    return c.applies(env);
+                } catch (PatternSyntaxException e) {
+                    // the selector will report this error when it is matched
+                    Main.trace(e);
+                    return true;
+                }
+            }
+
             @Override
             public void remove() {
                 throw new UnsupportedOperationException();
@@ -188,7 +240,7 @@ public class MapCSSStyleSource extends StyleSource {
              * Call this before using the iterator.
              */
             public void prepare() {
-                next = ruleCandidates.nextSetBit(0);
+                next = findNext(0);
             }
         }
 
@@ -244,6 +296,14 @@ public class MapCSSStyleSource extends StyleSource {
          * Rules that do not require any key to be present. Only the index in the {@link #rules} array is stored.
          */
         private final BitSet remaining = new BitSet();
+        /**
+         * Tag conditions that are shared by several rules. They are evaluated only once per primitive.
+         */
+        private final List<Condition> sharedConditions = new ArrayList<>();
+        /**
+         * For each rule, the indexes in {@link #sharedConditions} of the conditions that need to apply. May be <code>null</code>.
+         */
+        private int[][] ruleConditions = new int[0][];
 
         /**
          * Add a rule to this index. This needs to be called before {@link #initIndex()} is called.
@@ -263,11 +323,7 @@ public class MapCSSStyleSource extends StyleSource {
             for (int ruleIndex = 0; ruleIndex < rules.size(); ruleIndex++) {
                 MapCSSRule r = rules.get(ruleIndex);
                 // find the rightmost selector, this must be a GeneralSelector
-                Selector selRightmost = r.selector;
-                while (selRightmost instanceof ChildOrParentSelector) {
-                    selRightmost = ((ChildOrParentSelector) selRightmost).right;
-                }
-                OptimizedGeneralSelector s = (OptimizedGeneralSelector) selRightmost;
+                OptimizedGeneralSelector s = getRightmostSelector(r);
                 if (s.conds == null) {
                     remaining.set(ruleIndex);
                     continue;
@@ -286,6 +342,90 @@ public class MapCSSStyleSource extends StyleSource {
                     }
                 }
             }
+            compileSharedConditions();
+        }
+
+        /**
+         * Collects the tag conditions of the rightmost selectors that are used by more than one rule and assigns them to
+         * {@link #ruleConditions}.
+         */
+        private void compileSharedConditions() {
+            Map<String, List<Integer>> rulesByCondition = new HashMap<>();
+            Map<String, Condition> conditions = new HashMap<>();
+            for (int ruleIndex = 0; ruleIndex < rules.size(); ruleIndex++) {
+                List<Condition> conds = getRightmostSelector(rules.get(ruleIndex)).conds;
+                if (conds == null) {
+                    continue;
+                }
+                // the last [key=value] condition is already checked by the index
+                List<SimpleKeyValueCondition> sk = new ArrayList<>(Utils.filteredCollection(conds, SimpleKeyValueCondition.class));
+                Condition indexed = sk.isEmpty() ? null : sk.get(sk.size() - 1);
+                for (Condition c : conds) {
+                    String id = c == indexed ? null : getSharedConditionId(c);
+                    if (id != null) {
+                        conditions.putIfAbsent(id, c);
+                        rulesByCondition.computeIfAbsent(id, x -> new ArrayList<>()).add(ruleIndex);
+                    }
+                }
+            }
+
+            sharedConditions.clear();
+            List<List<Integer>> slotsByRule = new ArrayList<>(Collections.nCopies(rules.size(), null));
+            for (Entry<String, List<Integer>> e : rulesByCondition.entrySet()) {
+                List<Integer> ruleIndexes = e.getValue();
+                if (ruleIndexes.size() < 2) {
+                    continue;
+                }
+                int slot = sharedConditions.size();
+                sharedConditions.add(conditions.get(e.getKey()));
+                for (int ruleIndex : ruleIndexes) {
+                    List<Integer> slots = slotsByRule.get(ruleIndex);
+                    if (slots == null) {
+                        slots = new ArrayList<>();
+                        slotsByRule.set(ruleIndex, slots);
+                    }
+                    slots.add(slot);
+                }
+            }
+
+            ruleConditions = new int[rules.size()][];
+            for (int ruleIndex = 0; ruleIndex < rules.size(); ruleIndex++) {
+                List<Integer> slots = slotsByRule.get(ruleIndex);
+                if (slots != null) {
+                    ruleConditions[ruleIndex] = slots.stream().mapToInt(Integer::intValue).toArray();
+                }
+            }
+        }
+
+        /**
+         * Gets an identifier for a condition that only depends on the tags of the primitive.
+         * @param c The condition
+         * @return An identifier that is equal for all conditions with the same result, or <code>null</code> if the condition
+         * cannot be shared.
+         */
+        private static String getSharedConditionId(Condition c) {
+            if (c instanceof SimpleKeyValueCondition) {
+                SimpleKeyValueCondition kv = (SimpleKeyValueCondition) c;
+                return "kv\u0000" + kv.k + '\u0000' + Op.EQ + '\u0000' + kv.v + '\u0000' + false;
+            } else if (c instanceof KeyValueCondition && c.getClass() == KeyValueCondition.class) {
+                KeyValueCondition kv = (KeyValueCondition) c;
+                return "kv\u0000" + kv.k + '\u0000' + kv.op + '\u0000' + kv.v + '\u0000' + kv.considerValAsKey;
+            } else if (c instanceof KeyCondition) {
+                KeyCondition k = (KeyCondition) c;
+                // a plain [key] check is not more expensive than the lookup of a shared result
+                if (k.matchType != KeyMatchType.REGEX && (k.matchType != KeyMatchType.EQ || k.negateResult)) {
+                    return "k\u0000" + k.label + '\u0000' + k.matchType + '\u0000' + k.negateResult;
+                }
+            }
+            return null;
+        }
+
+        private static OptimizedGeneralSelector getRightmostSelector(MapCSSRule r) {
+            Selector selRightmost = r.selector;
+            while (selRightmost instanceof ChildOrParentSelector) {
+                selRightmost = ((ChildOrParentSelector) selRightmost).right;
+            }
+            return (OptimizedGeneralSelector) selRightmost;
         }
 
         /**
@@ -338,7 +478,7 @@ public class MapCSSStyleSource extends StyleSource {
             final BitSet ruleCandidates = new BitSet(rules.size());
             ruleCandidates.or(remaining);
 
-            final RuleCandidatesIterator candidatesIterator = new RuleCandidatesIterator(ruleCandidates);
+            final RuleCandidatesIterator candidatesIterator = new RuleCandidatesIterator(ruleCandidates, osm);
             osm.visitKeys(candidatesIterator);
             candidatesIterator.prepare();
             return candidatesIterator;
@@ -353,6 +493,8 @@ public class MapCSSStyleSource extends StyleSource {
             rules.clear();
             index.clear();
             remaining.clear();
+            sharedConditions.clear();
+            ruleConditions = new int[0][];
         }
     }
 
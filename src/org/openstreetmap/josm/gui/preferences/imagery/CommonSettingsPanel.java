@@ -151,10 +151,15 @@ public class CommonSettingsPanel extends JPanel {
 
     private void removeCacheFiles(String path) {
         File directory = new File(path);
-        File[] cacheFiles = directory.listFiles((FilenameFilter) (dir, name) -> name.endsWith(".data") || name.endsWith(".key"));
+        File[] cacheFiles = directory.listFiles((FilenameFilter) (dir, name) ->
+                name.endsWith(".data") || name.endsWith(".key") || name.endsWith(JCSCacheManager.MAPPED_SUFFIX));
         JCSCacheManager.shutdown(); // shutdown Cache - so files can by safely deleted
         for (File cacheFile: cacheFiles) {
-            Utils.deleteFile(cacheFile);
+            if (cacheFile.isDirectory()) {
+                Utils.deleteDirectory(cacheFile);
+            } else {
+                Utils.deleteFile(cacheFile);
+            }
         }
     }
 }
@@ -48,6 +48,7 @@ public class ValidatorTestsPreference implements SubPreferenceSetting {
     private JCheckBox prefUseLayer;
     private JCheckBox prefOtherUpload;
     private JCheckBox prefOther;
+    private JCheckBox prefIncremental;
 
     /** The list of all tests */
     private Collection<Test> allTests;
@@ -74,6 +75,10 @@ public class ValidatorTestsPreference implements SubPreferenceSetting {
         prefOtherUpload.setToolTipText(tr("Show the informational tests in the upload check windows."));
         testPanel.add(prefOtherUpload, GBC.eol());
 
+        prefIncremental = new JCheckBox(tr("Validate while editing."), ValidatorPreference.PREF_INCREMENTAL.get());
+        prefIncremental.setToolTipText(tr("Validate modified objects and their neighbours after each change."));
+        testPanel.add(prefIncremental, GBC.eol());
+
         ActionListener otherUploadEnabled = e -> prefOtherUpload.setEnabled(prefOther.isSelected());
         prefOther.addActionListener(otherUploadEnabled);
         otherUploadEnabled.actionPerformed(null);
@@ -120,6 +125,7 @@ public class ValidatorTestsPreference implements SubPreferenceSetting {
         ValidatorPreference.PREF_OTHER.put(prefOther.isSelected());
         ValidatorPreference.PREF_OTHER_UPLOAD.put(prefOtherUpload.isSelected());
         ValidatorPreference.PREF_LAYER.put(prefUseLayer.isSelected());
+        ValidatorPreference.PREF_INCREMENTAL.put(prefIncremental.isSelected());
         return false;
     }
 
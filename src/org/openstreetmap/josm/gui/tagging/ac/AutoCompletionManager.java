@@ -8,8 +8,6 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
 import java.util.function.Function;
@@ -19,6 +17,7 @@ import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.data.osm.Relation;
 import org.openstreetmap.josm.data.osm.RelationMember;
+import org.openstreetmap.josm.data.osm.TagIndex;
 import org.openstreetmap.josm.data.osm.event.AbstractDatasetChangedEvent;
 import org.openstreetmap.josm.data.osm.event.DataChangedEvent;
 import org.openstreetmap.josm.data.osm.event.DataSetListener;
@@ -53,7 +52,11 @@ import org.openstreetmap.josm.tools.Utils;
  * Building up auto completion lists should not
  * slow down tabbing from input field to input field. Looping through the complete
  * data set in order to build up the auto completion list for a specific input
- * field is not efficient enough, hence this cache.
+ * field is not efficient enough, hence the keys, values and roles of the data set
+ * are read from its {@link DataSet#getTagIndex() tag index}.
+ *
+ * The manager used to listen to the data set to update its own cache, the {@link DataSetListener} implementation
+ * and the cache methods are only kept for compatibility and will be removed.
  *
  * TODO: respect the relation type for member role autocompletion
  */
@@ -99,20 +102,24 @@ public class AutoCompletionManager implements DataSetListener {
         }
     }
 
-    /** If the dirty flag is set true, a rebuild is necessary. */
+    /**
+     * If the dirty flag is set true, a rebuild is necessary.
+     * @deprecated not used, the tag index of the data set is always up to date
+     */
+    @Deprecated
     protected boolean dirty;
     /** The data set that is managed */
     protected DataSet ds;
 
     /**
      * the cached tags given by a tag key and a list of values for this tag
-     * only accessed by getTagCache(), rebuild() and cachePrimitiveTags()
-     * use getTagCache() accessor
+     * @deprecated use {@link DataSet#getTagIndex()}, this field is only set by {@link #getTagCache()} and {@link #rebuild()}
      */
+    @Deprecated
     protected MultiMap<String, String> tagCache;
 
     /**
-     * the same as tagCache but for the preset keys and values can be accessed directly
+     * the keys and values of the presets
      */
     static final MultiMap<String, String> PRESET_TAG_CACHE = new MultiMap<>();
 
@@ -123,13 +130,13 @@ public class AutoCompletionManager implements DataSetListener {
 
     /**
      * the cached list of member roles
-     * only accessed by getRoleCache(), rebuild() and cacheRelationMemberRoles()
-     * use getRoleCache() accessor
+     * @deprecated use {@link DataSet#getTagIndex()}, this field is only set by {@link #getRoleCache()} and {@link #rebuild()}
      */
+    @Deprecated
     protected Set<String> roleCache;
 
     /**
-     * the same as roleCache but for the preset roles can be accessed directly
+     * the member roles of the presets
      */
     static final Set<String> PRESET_ROLE_CACHE = new HashSet<>();
 
@@ -139,34 +146,50 @@ public class AutoCompletionManager implements DataSetListener {
      */
     public AutoCompletionManager(DataSet ds) {
         this.ds = ds;
-        this.dirty = true;
     }
 
+    /**
+     * Returns the keys and values of the data set.
+     * @return the keys and values of the data set, copied from its tag index
+     * @deprecated use {@link DataSet#getTagIndex()}
+     */
+    @Deprecated
     protected MultiMap<String, String> getTagCache() {
-        if (dirty) {
-            rebuild();
-            dirty = false;
-        }
+        rebuild();
         return tagCache;
     }
 
+    /**
+     * Returns the member roles of the data set.
+     * @return the member roles of the data set, copied from its tag index
+     * @deprecated use {@link TagIndex#getRoles()}
+     */
+    @Deprecated
     protected Set<String> getRoleCache() {
-        if (dirty) {
-            rebuild();
-            dirty = false;
-        }
+        rebuild();
         return roleCache;
     }
 
     /**
-     * initializes the cache from the primitives in the dataset
+     * Copies the keys, values and roles of the data set from its tag index to {@link #tagCache} and {@link #roleCache}.
+     * @deprecated use {@link DataSet#getTagIndex()}
      */
+    @Deprecated
     protected void rebuild() {
+        TagIndex index = ds.getTagIndex();
         tagCache = new MultiMap<>();
-        roleCache = new HashSet<>();
-        cachePrimitives(ds.allNonDeletedCompletePrimitives());
+        for (String key : index.getKeys()) {
+            tagCache.putAll(key, index.getValues(key));
+        }
+        roleCache = new HashSet<>(index.getRoles());
     }
 
+    /**
+     * Adds the tags and member roles of primitives to {@link #tagCache} and {@link #roleCache}.
+     * @param primitives the primitives
+     * @deprecated not needed, the tag index contains the tags of all primitives of the data set
+     */
+    @Deprecated
     protected void cachePrimitives(Collection<? extends OsmPrimitive> primitives) {
         for (OsmPrimitive primitive : primitives) {
             cachePrimitiveTags(primitive);
@@ -177,24 +200,30 @@ public class AutoCompletionManager implements DataSetListener {
     }
 
     /**
-     * make sure, the keys and values of all tags held by primitive are
-     * in the auto completion cache
-     *
+     * Adds the tags of a primitive to {@link #tagCache}.
      * @param primitive an OSM primitive
+     * @deprecated not needed, the tag index contains the tags of all primitives of the data set
      */
+    @Deprecated
     protected void cachePrimitiveTags(OsmPrimitive primitive) {
+        if (tagCache == null) {
+            tagCache = new MultiMap<>();
+        }
         for (String key: primitive.keySet()) {
-            String value = primitive.get(key);
-            tagCache.put(key, value);
+            tagCache.put(key, primitive.get(key));
         }
     }
 
     /**
-     * Caches all member roles of the relation <code>relation</code>
-     *
+     * Adds the member roles of a relation to {@link #roleCache}.
      * @param relation the relation
+     * @deprecated not needed, the tag index contains the roles of all relations of the data set
      */
+    @Deprecated
     protected void cacheRelationMemberRoles(Relation relation) {
+        if (roleCache == null) {
+            roleCache = new HashSet<>();
+        }
         for (RelationMember m: relation.getMembers()) {
             if (m.hasRole()) {
                 roleCache.add(m.getRole());
@@ -256,7 +285,7 @@ public class AutoCompletionManager implements DataSetListener {
      * @return the list of keys held by the cache
      */
     protected List<String> getDataKeys() {
-        return new ArrayList<>(getTagCache().keySet());
+        return ds.getTagIndex().getKeys();
     }
 
     protected List<String> getPresetKeys() {
@@ -282,7 +311,7 @@ public class AutoCompletionManager implements DataSetListener {
      * @return the list of auto completion values
      */
     protected List<String> getDataValues(String key) {
-        return new ArrayList<>(getTagCache().getValues(key));
+        return ds.getTagIndex().getValues(key);
     }
 
     protected static List<String> getPresetValues(String key) {
@@ -306,7 +335,7 @@ public class AutoCompletionManager implements DataSetListener {
      * @return the list of member roles
      */
     public List<String> getMemberRoles() {
-        return new ArrayList<>(getRoleCache());
+        return ds.getTagIndex().getRoles();
     }
 
     /**
@@ -317,7 +346,7 @@ public class AutoCompletionManager implements DataSetListener {
      */
     public void populateWithMemberRoles(AutoCompletionList list) {
         list.add(PRESET_ROLE_CACHE, AutoCompletionItemPriority.IS_IN_STANDARD);
-        list.add(getRoleCache(), AutoCompletionItemPriority.IS_IN_DATASET);
+        list.add(ds.getTagIndex().getRoles(), AutoCompletionItemPriority.IS_IN_DATASET);
     }
 
     /**
@@ -414,60 +443,79 @@ public class AutoCompletionManager implements DataSetListener {
     }
 
     /*********************************************************
-     * Implementation of the DataSetListener interface
-     *
+     * Implementation of the DataSetListener interface, not needed anymore
+     * as the tag index is updated by the data set
      **/
 
+    /**
+     * @deprecated not needed, the tag index is updated by the data set
+     */
     @Override
+    @Deprecated
     public void primitivesAdded(PrimitivesAddedEvent event) {
-        if (dirty)
-            return;
-        cachePrimitives(event.getPrimitives());
+        // ignored
     }
 
+    /**
+     * @deprecated not needed, the tag index is updated by the data set
+     */
     @Override
+    @Deprecated
     public void primitivesRemoved(PrimitivesRemovedEvent event) {
-        dirty = true;
+        // ignored
     }
 
+    /**
+     * @deprecated not needed, the tag index is updated by the data set
+     */
     @Override
+    @Deprecated
     public void tagsChanged(TagsChangedEvent event) {
-        if (dirty)
-            return;
-        Map<String, String> newKeys = event.getPrimitive().getKeys();
-        Map<String, String> oldKeys = event.getOriginalKeys();
-
-        if (!newKeys.keySet().containsAll(oldKeys.keySet())) {
-            // Some keys removed, might be the last instance of key, rebuild necessary
-            dirty = true;
-        } else {
-            for (Entry<String, String> oldEntry: oldKeys.entrySet()) {
-                if (!oldEntry.getValue().equals(newKeys.get(oldEntry.getKey()))) {
-                    // Value changed, might be last instance of value, rebuild necessary
-                    dirty = true;
-                    return;
-                }
-            }
-            cachePrimitives(Collections.singleton(event.getPrimitive()));
-        }
+        // ignored
     }
 
+    /**
+     * @deprecated not needed, the tag index is updated by the data set
+     */
     @Override
-    public void nodeMoved(NodeMovedEvent event) {/* ignored */}
+    @Deprecated
+    public void nodeMoved(NodeMovedEvent event) {
+        // ignored
+    }
 
+    /**
+     * @deprecated not needed, the tag index is updated by the data set
+     */
     @Override
-    public void wayNodesChanged(WayNodesChangedEvent event) {/* ignored */}
+    @Deprecated
+    public void wayNodesChanged(WayNodesChangedEvent event) {
+        // ignored
+    }
 
+    /**
+     * @deprecated not needed, the tag index is updated by the data set
+     */
     @Override
+    @Deprecated
     public void relationMembersChanged(RelationMembersChangedEvent event) {
-        dirty = true; // TODO: not necessary to rebuid if a member is added
+        // ignored
     }
 
+    /**
+     * @deprecated not needed, the tag index is updated by the data set
+     */
     @Override
-    public void otherDatasetChange(AbstractDatasetChangedEvent event) {/* ignored */}
+    @Deprecated
+    public void otherDatasetChange(AbstractDatasetChangedEvent event) {
+        // ignored
+    }
 
+    /**
+     * @deprecated not needed, the tag index is updated by the data set
+     */
     @Override
+    @Deprecated
     public void dataChanged(DataChangedEvent event) {
-        dirty = true;
+        // ignored
     }
 }
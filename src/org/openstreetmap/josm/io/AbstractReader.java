@@ -9,6 +9,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
 
 import org.openstreetmap.josm.Main;
 import org.openstreetmap.josm.data.osm.Changeset;
@@ -22,6 +25,7 @@ import org.openstreetmap.josm.data.osm.RelationMember;
 import org.openstreetmap.josm.data.osm.RelationMemberData;
 import org.openstreetmap.josm.data.osm.SimplePrimitiveId;
 import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.tools.Utils;
 
 /**
  * Abstract Reader, allowing other implementations than OsmReader (PbfReader in PBF plugin for example)
@@ -30,6 +34,19 @@ import org.openstreetmap.josm.data.osm.Way;
  */
 public abstract class AbstractReader {
 
+    /**
+     * The thread pool used to parse and to resolve references between the parsed objects. Its parallelism is given by the
+     * preference {@code osm.reader.numberOfThreads}, or by {@code pbf.reader.numberOfThreads} of the former PBF reader pool.
+     */
+    protected static final ForkJoinPool THREAD_POOL = Utils.newForkJoinPool(
+            Main.pref.getInteger("osm.reader.numberOfThreads",
+                    Main.pref.getInteger("pbf.reader.numberOfThreads", Runtime.getRuntime().availableProcessors())),
+            "osm-reader-%d", Thread.NORM_PRIORITY);
+
+    /** Below this number of ways or relations, the references are looked up sequentially */
+    private static final int PARALLEL_LOOKUP_THRESHOLD = 1000;
+    private static final int LOOKUP_BATCH_SIZE = 250;
+
     /**
      * The dataset to add parsed objects to.
      */
@@ -62,17 +79,63 @@ public abstract class AbstractReader {
         return ds;
     }
 
+    /**
+     * Looks up the references of ways or relations in {@link #externalIdMap}.
+     * The map is not modified during the lookup, so the lookup is executed in parallel for large data sets.
+     */
+    private static final class LookupTask<T> extends RecursiveAction {
+        private final List<T> items;
+        private final Function<T, OsmPrimitive[]> lookup;
+        private final OsmPrimitive[][] results;
+        private final int from;
+        private final int to;
+
+        LookupTask(List<T> items, Function<T, OsmPrimitive[]> lookup, OsmPrimitive[][] results, int from, int to) {
+            this.items = items;
+            this.lookup = lookup;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= LOOKUP_BATCH_SIZE) {
+                for (int i = from; i < to; i++) {
+                    results[i] = lookup.apply(items.get(i));
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new LookupTask<>(items, lookup, results, from, middle),
+                          new LookupTask<>(items, lookup, results, middle, to));
+            }
+        }
+    }
+
+    private static <T> OsmPrimitive[][] lookupAll(List<T> items, Function<T, OsmPrimitive[]> lookup) {
+        OsmPrimitive[][] results = new OsmPrimitive[items.size()][];
+        LookupTask<T> task = new LookupTask<>(items, lookup, results, 0, items.size());
+        if (items.size() < PARALLEL_LOOKUP_THRESHOLD) {
+            task.compute();
+        } else {
+            THREAD_POOL.invoke(task);
+        }
+        return results;
+    }
+
     /**
      * Processes the parsed nodes after parsing. Just adds them to
      * the dataset
      *
      */
     protected void processNodesAfterParsing() {
+        List<Node> nodes = new ArrayList<>();
         for (OsmPrimitive primitive: externalIdMap.values()) {
             if (primitive instanceof Node) {
-                this.ds.addPrimitive(primitive);
+                nodes.add((Node) primitive);
             }
         }
+        this.ds.addPrimitives(nodes);
     }
 
     /**
@@ -82,12 +145,24 @@ public abstract class AbstractReader {
      * @throws IllegalDataException if a data integrity problem is detected
      */
     protected void processWaysAfterParsing() throws IllegalDataException {
-        for (Entry<Long, Collection<Long>> entry : ways.entrySet()) {
+        List<Way> parsedWays = new ArrayList<>(ways.size());
+        List<Entry<Long, Collection<Long>>> entries = new ArrayList<>(ways.entrySet());
+        OsmPrimitive[][] resolvedNodes = lookupAll(entries, entry -> {
+            OsmPrimitive[] nodes = new OsmPrimitive[entry.getValue().size()];
+            int i = 0;
+            for (long id : entry.getValue()) {
+                nodes[i++] = externalIdMap.get(new SimplePrimitiveId(id, OsmPrimitiveType.NODE));
+            }
+            return nodes;
+        });
+        for (int e = 0; e < entries.size(); e++) {
+            Entry<Long, Collection<Long>> entry = entries.get(e);
             Long externalWayId = entry.getKey();
             Way w = (Way) externalIdMap.get(new SimplePrimitiveId(externalWayId, OsmPrimitiveType.WAY));
             List<Node> wayNodes = new ArrayList<>();
+            int i = 0;
             for (long id : entry.getValue()) {
-                Node n = (Node) externalIdMap.get(new SimplePrimitiveId(id, OsmPrimitiveType.NODE));
+                Node n = (Node) resolvedNodes[e][i++];
                 if (n == null) {
                     if (id <= 0)
                         throw new IllegalDataException(
@@ -112,8 +187,9 @@ public abstract class AbstractReader {
                 Main.info(tr("Way {0} with {1} nodes has incomplete nodes because at least one node was missing in the loaded data.",
                           externalWayId, w.getNodesCount()));
             }
-            ds.addPrimitive(w);
+            parsedWays.add(w);
         }
+        ds.addPrimitives(parsedWays);
     }
 
     /**
@@ -125,22 +201,38 @@ public abstract class AbstractReader {
     protected void processRelationsAfterParsing() throws IllegalDataException {
 
         // First add all relations to make sure that when relation reference other relation, the referenced will be already in dataset
+        List<Relation> parsedRelations = new ArrayList<>(relations.size());
         for (Long externalRelationId : relations.keySet()) {
-            Relation relation = (Relation) externalIdMap.get(
+            parsedRelations.add((Relation) externalIdMap.get(
                     new SimplePrimitiveId(externalRelationId, OsmPrimitiveType.RELATION)
-            );
-            ds.addPrimitive(relation);
+            ));
         }
+        ds.addPrimitives(parsedRelations);
 
-        for (Entry<Long, Collection<RelationMemberData>> entry : relations.entrySet()) {
+        List<Entry<Long, Collection<RelationMemberData>>> entries = new ArrayList<>(relations.entrySet());
+        OsmPrimitive[][] resolvedMembers = lookupAll(entries, entry -> {
+            OsmPrimitive[] members = new OsmPrimitive[entry.getValue().size()];
+            int i = 0;
+            for (RelationMemberData rm : entry.getValue()) {
+                members[i++] = externalIdMap.get(new SimplePrimitiveId(rm.getMemberId(), rm.getMemberType()));
+            }
+            return members;
+        });
+        for (int e = 0; e < entries.size(); e++) {
+            Entry<Long, Collection<RelationMemberData>> entry = entries.get(e);
             Long externalRelationId = entry.getKey();
             Relation relation = (Relation) externalIdMap.get(
                     new SimplePrimitiveId(externalRelationId, OsmPrimitiveType.RELATION)
             );
             List<RelationMember> relationMembers = new ArrayList<>();
+            int i = 0;
             for (RelationMemberData rm : entry.getValue()) {
                 // lookup the member from the map of already created primitives
-                OsmPrimitive primitive = externalIdMap.get(new SimplePrimitiveId(rm.getMemberId(), rm.getMemberType()));
+                OsmPrimitive primitive = resolvedMembers[e][i++];
+                if (primitive == null) {
+                    // the member may have been created as incomplete primitive for a previous relation
+                    primitive = externalIdMap.get(new SimplePrimitiveId(rm.getMemberId(), rm.getMemberType()));
+                }
 
                 if (primitive == null) {
                     if (rm.getMemberId() <= 0)
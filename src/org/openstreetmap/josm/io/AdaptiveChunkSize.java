@@ -0,0 +1,70 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.io;
+
+import org.openstreetmap.josm.data.preferences.BooleanProperty;
+import org.openstreetmap.josm.data.preferences.IntegerProperty;
+
+/**
+ * Adapts the size of upload chunks to the time the server takes to process them, see {@link OsmServerWriter}.
+ * <p>
+ * The chunk size is chosen so that an upload request takes about {@link #TARGET_DURATION} seconds: long enough to make
+ * the latency of a single request negligible, short enough to stay well below the timeouts of the server and of proxies.
+ * The time per primitive is smoothed over the uploaded chunks. The size at most doubles from one chunk to the next,
+ * but shrinks at once if the server becomes slower.
+ */
+public class AdaptiveChunkSize {
+
+    /** Whether the size of upload chunks is adapted to the response times of the server */
+    public static final BooleanProperty ENABLED = new BooleanProperty("osm-server.upload.adaptive-chunk-size", true);
+    /** The intended duration of an upload request, in seconds */
+    public static final IntegerProperty TARGET_DURATION = new IntegerProperty("osm-server.upload.chunk-duration", 10);
+    /** The maximum number of primitives in a chunk, unless a larger chunk size has been chosen by the user */
+    public static final IntegerProperty MAX_SIZE = new IntegerProperty("osm-server.upload.max-chunk-size", 10_000);
+
+    private final int maxSize;
+    private final double targetMillis;
+    private int size;
+    private double millisPerPrimitive = -1;
+
+    /**
+     * Constructs a new {@code AdaptiveChunkSize} with the preferred duration and maximum size.
+     * @param initialSize the size of the first chunk. &gt; 0 required.
+     */
+    public AdaptiveChunkSize(int initialSize) {
+        this(initialSize, Math.max(initialSize, MAX_SIZE.get()), TARGET_DURATION.get() * 1000L);
+    }
+
+    /**
+     * Constructs a new {@code AdaptiveChunkSize}.
+     * @param initialSize the size of the first chunk. &gt; 0 required.
+     * @param maxSize the maximum size of a chunk
+     * @param targetMillis the intended duration of an upload request, in milliseconds
+     */
+    public AdaptiveChunkSize(int initialSize, int maxSize, long targetMillis) {
+        this.size = initialSize;
+        this.maxSize = maxSize;
+        this.targetMillis = Math.max(1, targetMillis);
+    }
+
+    /**
+     * Returns the size of the next chunk.
+     * @return the number of primitives to upload in the next request
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Adapts the size of the next chunk to the duration of an upload.
+     * @param chunkSize the number of uploaded primitives
+     * @param durationMillis the time from sending the first byte of the request to receiving the last byte of the response
+     */
+    public void update(int chunkSize, long durationMillis) {
+        if (chunkSize <= 0)
+            return;
+        double observed = Math.max(1, durationMillis) / (double) chunkSize;
+        millisPerPrimitive = millisPerPrimitive < 0 ? observed : (millisPerPrimitive + observed) / 2;
+        long target = (long) (targetMillis / millisPerPrimitive);
+        size = (int) Math.max(1, Math.min(Math.min(target, 2L * size), maxSize));
+    }
+}
@@ -0,0 +1,505 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.NodeData;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
+import org.openstreetmap.josm.data.osm.PrimitiveData;
+import org.openstreetmap.josm.data.osm.PrimitiveId;
+import org.openstreetmap.josm.data.osm.RelationData;
+import org.openstreetmap.josm.data.osm.RelationMemberData;
+import org.openstreetmap.josm.data.osm.SimplePrimitiveId;
+import org.openstreetmap.josm.data.osm.User;
+import org.openstreetmap.josm.data.osm.WayData;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.gui.progress.ProgressMonitor;
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * Append-only journal of the primitives changed since an autosave snapshot was written.
+ * <p>
+ * The journal is a sequence of blocks, one per autosave run. A block contains the complete state of each changed primitive,
+ * or only its id if it has been removed from the data set. Ids are the unique ids of the primitives, as written to the
+ * snapshot. When the id of a new primitive changes, e.g. after an upload, the block records the old and the new id before
+ * the states. A block is only replayed if it has been written completely.
+ * <p>
+ * Before the snapshot is replaced by the result of a replay, the journal is renamed to mark it as applied, so a replay
+ * which has been interrupted is completed instead of applying the journal twice.
+ */
+public final class AutosaveJournal {
+
+    /** The extension appended to the snapshot file name */
+    public static final String EXTENSION = "journal";
+    /** The extension appended to the journal file name while the journal is replayed */
+    private static final String REPLAYED_EXTENSION = "replayed";
+
+    private static final int MAGIC = 0x4a4f534a; // "JOSJ"
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int FLAG_REMOVED = 1;
+    private static final int FLAG_DELETED = 2;
+    private static final int FLAG_MODIFIED = 4;
+    private static final int FLAG_VISIBLE = 8;
+    private static final int FLAG_INCOMPLETE = 16;
+    private static final int FLAG_ID_CHANGED = 32;
+
+    private AutosaveJournal() {
+        // Hide default constructor for utils classes
+    }
+
+    /**
+     * Returns the journal file of a snapshot.
+     * @param snapshot the snapshot file
+     * @return the journal file, next to the snapshot
+     */
+    public static File getJournalFile(File snapshot) {
+        return new File(snapshot.getParentFile(), snapshot.getName() + '.' + EXTENSION);
+    }
+
+    static File getReplayedFile(File journal) {
+        return new File(journal.getParentFile(), journal.getName() + '.' + REPLAYED_EXTENSION);
+    }
+
+    static File getTemporaryFile(File snapshot) {
+        return new File(snapshot.getParentFile(), snapshot.getName() + ".tmp");
+    }
+
+    /**
+     * Determines if a snapshot has a journal to apply, including a journal whose replay has been interrupted.
+     * @param snapshot the snapshot file
+     * @return {@code true} if {@link #replay} has to be called for the snapshot
+     */
+    public static boolean exists(File snapshot) {
+        File journal = getJournalFile(snapshot);
+        return journal.exists() || getReplayedFile(journal).exists();
+    }
+
+    /**
+     * Determines if a file is a journal, or a journal whose replay has been interrupted.
+     * @param file the file
+     * @return {@code true} if the file belongs to the journal of a snapshot
+     */
+    public static boolean isJournal(File file) {
+        String name = file.getName();
+        return name.endsWith('.' + EXTENSION) || name.endsWith('.' + EXTENSION + '.' + REPLAYED_EXTENSION);
+    }
+
+    /**
+     * Deletes the journal of a snapshot, if any.
+     * @param snapshot the snapshot file
+     */
+    public static void delete(File snapshot) {
+        File journal = getJournalFile(snapshot);
+        Utils.deleteFileIfExists(journal);
+        Utils.deleteFileIfExists(getReplayedFile(journal));
+    }
+
+    /**
+     * Moves the journal of a snapshot, if any, next to the snapshot's new location. Must be called before the snapshot
+     * itself is moved, since an interrupted replay is completed first.
+     * @param snapshot the snapshot file
+     * @param target the new location of the snapshot
+     * @throws IOException if an I/O error occurs
+     */
+    public static void move(File snapshot, File target) throws IOException {
+        File journal = getJournalFile(snapshot);
+        completeReplay(snapshot, journal);
+        if (journal.exists()) {
+            Files.move(journal.toPath(), getJournalFile(target).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Utils.deleteFileIfExists(getJournalFile(target));
+        }
+    }
+
+    /**
+     * Appends a block to a journal. The journal is created if it does not exist.
+     * @param journal the journal file
+     * @param states the current state of the changed primitives, as returned by {@link OsmPrimitive#save()}
+     * @param removed the ids of the primitives removed from the data set
+     * @throws IOException if an I/O error occurs
+     */
+    public static void append(File journal, Collection<? extends PrimitiveData> states, Collection<? extends PrimitiveId> removed)
+            throws IOException {
+        append(journal, Collections.emptyMap(), states, removed);
+    }
+
+    /**
+     * Appends a block to a journal. The journal is created if it does not exist.
+     * @param journal the journal file
+     * @param idChanges the new ids of the primitives whose id has changed, by the id written to the snapshot or journal before
+     * @param states the current state of the changed primitives, as returned by {@link OsmPrimitive#save()}
+     * @param removed the ids of the primitives removed from the data set
+     * @throws IOException if an I/O error occurs
+     */
+    public static void append(File journal, Map<? extends PrimitiveId, ? extends PrimitiveId> idChanges,
+            Collection<? extends PrimitiveData> states, Collection<? extends PrimitiveId> removed) throws IOException {
+        boolean header = !journal.exists() || journal.length() == 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(journal, true)))) {
+            if (header) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+            }
+            out.writeInt(idChanges.size() + states.size() + removed.size());
+            // the id changes come first, the states refer to the new ids
+            for (Entry<? extends PrimitiveId, ? extends PrimitiveId> e : idChanges.entrySet()) {
+                out.writeByte(e.getKey().getType().ordinal());
+                out.writeByte(FLAG_ID_CHANGED);
+                out.writeLong(e.getKey().getUniqueId());
+                out.writeLong(e.getValue().getUniqueId());
+            }
+            for (PrimitiveData data : states) {
+                writeState(out, data);
+            }
+            for (PrimitiveId id : removed) {
+                out.writeByte(id.getType().ordinal());
+                out.writeByte(FLAG_REMOVED);
+                out.writeLong(id.getUniqueId());
+            }
+        }
+    }
+
+    private static void writeState(DataOutputStream out, PrimitiveData data) throws IOException {
+        out.writeByte(data.getType().ordinal());
+        out.writeByte((data.isDeleted() ? FLAG_DELETED : 0)
+                | (data.isModified() ? FLAG_MODIFIED : 0)
+                | (data.isVisible() ? FLAG_VISIBLE : 0)
+                | (data.isIncomplete() ? FLAG_INCOMPLETE : 0));
+        out.writeLong(data.getUniqueId());
+        out.writeInt(data.getVersion());
+        out.writeInt(data.getChangesetId());
+        out.writeInt(data.getRawTimestamp());
+        User user = data.getUser();
+        out.writeBoolean(user != null);
+        if (user != null) {
+            out.writeLong(user.getId());
+            out.writeUTF(user.getName());
+        }
+        Map<String, String> keys = data.getKeys();
+        out.writeInt(keys.size());
+        for (Entry<String, String> e : keys.entrySet()) {
+            out.writeUTF(e.getKey());
+            out.writeUTF(e.getValue());
+        }
+        if (data instanceof NodeData) {
+            LatLon coor = ((NodeData) data).getCoor();
+            out.writeBoolean(coor != null);
+            if (coor != null) {
+                out.writeDouble(coor.lat());
+                out.writeDouble(coor.lon());
+            }
+        } else if (data instanceof WayData) {
+            List<Long> nodes = ((WayData) data).getNodes();
+            out.writeInt(nodes.size());
+            for (Long id : nodes) {
+                out.writeLong(id);
+            }
+        } else if (data instanceof RelationData) {
+            List<RelationMemberData> members = ((RelationData) data).getMembers();
+            out.writeInt(members.size());
+            for (RelationMemberData member : members) {
+                out.writeByte(member.getMemberType().ordinal());
+                out.writeLong(member.getMemberId());
+                out.writeUTF(member.getRole());
+            }
+        }
+    }
+
+    /**
+     * Reads the complete blocks of a journal. Only the last state of each primitive is kept.
+     * @param journal the journal file
+     * @param originalIds filled with the id each primitive had in the snapshot, by its last id, for the primitives whose id
+     * has changed
+     * @return the last state of each primitive, by its last id, {@code null} for removed primitives
+     * @throws IOException if an I/O error occurs or the file is not a journal
+     */
+    static Map<PrimitiveId, PrimitiveData> read(File journal, Map<PrimitiveId, PrimitiveId> originalIds) throws IOException {
+        Map<PrimitiveId, PrimitiveData> result = new LinkedHashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journal)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Unsupported journal format: " + journal);
+            }
+            while (true) {
+                int count;
+                try {
+                    count = in.readInt();
+                } catch (EOFException e) {
+                    return result;
+                }
+                Map<PrimitiveId, PrimitiveData> block = new HashMap<>();
+                Map<PrimitiveId, PrimitiveId> idChanges = new LinkedHashMap<>();
+                try {
+                    for (int i = 0; i < count; i++) {
+                        readRecord(in, block, idChanges);
+                    }
+                } catch (EOFException e) {
+                    // the last block has not been written completely
+                    return result;
+                }
+                for (Entry<PrimitiveId, PrimitiveId> e : idChanges.entrySet()) {
+                    PrimitiveId oldId = e.getKey();
+                    PrimitiveId original = originalIds.remove(oldId);
+                    originalIds.put(e.getValue(), original != null ? original : oldId);
+                    if (result.containsKey(oldId)) {
+                        result.put(e.getValue(), result.remove(oldId));
+                    }
+                }
+                result.putAll(block);
+            }
+        }
+    }
+
+    private static void readRecord(DataInputStream in, Map<PrimitiveId, PrimitiveData> block, Map<PrimitiveId, PrimitiveId> idChanges)
+            throws IOException {
+        OsmPrimitiveType type = OsmPrimitiveType.values()[in.readByte()];
+        int flags = in.readByte();
+        long id = in.readLong();
+        if ((flags & FLAG_ID_CHANGED) != 0) {
+            idChanges.put(new SimplePrimitiveId(id, type), new SimplePrimitiveId(in.readLong(), type));
+            return;
+        }
+        if ((flags & FLAG_REMOVED) != 0) {
+            block.put(new SimplePrimitiveId(id, type), null);
+            return;
+        }
+        PrimitiveData data;
+        switch (type) {
+        case NODE:
+            data = new NodeData();
+            break;
+        case WAY:
+            data = new WayData();
+            break;
+        case RELATION:
+            data = new RelationData();
+            break;
+        default:
+            throw new IOException("Unsupported primitive type: " + type);
+        }
+        data.setId(id);
+        data.setDeleted((flags & FLAG_DELETED) != 0);
+        data.setModified((flags & FLAG_MODIFIED) != 0);
+        data.setVisible((flags & FLAG_VISIBLE) != 0);
+        data.setIncomplete((flags & FLAG_INCOMPLETE) != 0);
+        data.setVersion(in.readInt());
+        data.setChangesetId(in.readInt());
+        data.setRawTimestamp(in.readInt());
+        if (in.readBoolean()) {
+            data.setUser(User.createOsmUser(in.readLong(), in.readUTF()));
+        }
+        int tagCount = in.readInt();
+        for (int i = 0; i < tagCount; i++) {
+            data.put(in.readUTF(), in.readUTF());
+        }
+        if (data instanceof NodeData) {
+            if (in.readBoolean()) {
+                ((NodeData) data).setCoor(new LatLon(in.readDouble(), in.readDouble()));
+            }
+        } else if (data instanceof WayData) {
+            int nodeCount = in.readInt();
+            List<Long> nodes = new ArrayList<>(nodeCount);
+            for (int i = 0; i < nodeCount; i++) {
+                nodes.add(in.readLong());
+            }
+            ((WayData) data).setNodes(nodes);
+        } else {
+            int memberCount = in.readInt();
+            List<RelationMemberData> members = new ArrayList<>(memberCount);
+            for (int i = 0; i < memberCount; i++) {
+                OsmPrimitiveType memberType = OsmPrimitiveType.values()[in.readByte()];
+                long memberId = in.readLong();
+                members.add(new RelationMemberData(in.readUTF(), memberType, memberId));
+            }
+            ((RelationData) data).setMembers(members);
+        }
+        block.put(data.getPrimitiveId(), data);
+    }
+
+    /**
+     * Completes a replay which has been interrupted after the new snapshot has been written.
+     * @param snapshot the snapshot file
+     * @param journal the journal file
+     * @throws IOException if an I/O error occurs
+     */
+    private static void completeReplay(File snapshot, File journal) throws IOException {
+        File replayed = getReplayedFile(journal);
+        if (replayed.exists()) {
+            // the journal has been applied to the temporary snapshot, which may not have replaced the snapshot yet
+            File tmp = getTemporaryFile(snapshot);
+            if (tmp.exists()) {
+                Files.move(tmp.toPath(), snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.delete(replayed.toPath());
+        }
+    }
+
+    /**
+     * Applies a journal to its snapshot and deletes the journal. The snapshot is left untouched if the journal cannot be
+     * applied. A replay which has been interrupted after the new snapshot has been written is completed.
+     * @param snapshot the snapshot file
+     * @param journal the journal file
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalDataException if the snapshot cannot be parsed or the journal does not match it
+     */
+    public static void replay(File snapshot, File journal) throws IOException, IllegalDataException {
+        completeReplay(snapshot, journal);
+        if (!journal.exists()) {
+            return;
+        }
+        DataSet ds = load(snapshot, journal, NullProgressMonitor.INSTANCE);
+        File replayed = getReplayedFile(journal);
+        File tmp = getTemporaryFile(snapshot);
+        write(ds, tmp);
+        Files.move(journal.toPath(), replayed.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        Files.move(tmp.toPath(), snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        Files.delete(replayed.toPath());
+    }
+
+    /**
+     * Reads a snapshot and applies its journal, if any, without changing the files.
+     * A replay which has been interrupted after the new snapshot has been written is completed.
+     * @param snapshot the snapshot file
+     * @param journal the journal file
+     * @param progressMonitor the progress monitor used to parse the snapshot
+     * @return the data set of the snapshot, with the changes of the journal
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalDataException if the snapshot cannot be parsed or the journal does not match it
+     */
+    public static DataSet load(File snapshot, File journal, ProgressMonitor progressMonitor) throws IOException, IllegalDataException {
+        completeReplay(snapshot, journal);
+        OsmReader reader = new OsmReader();
+        try (InputStream in = Compression.getUncompressedFileInputStream(snapshot)) {
+            reader.doParseDataSet(in, progressMonitor);
+        }
+        DataSet ds = reader.getDataSet();
+        if (!journal.exists()) {
+            return ds;
+        }
+        Map<PrimitiveId, PrimitiveId> originalIds = new HashMap<>();
+        Map<PrimitiveId, PrimitiveData> states = read(journal, originalIds);
+        // maps the ids of the snapshot and journal to the ids of the parsed primitives
+        Map<PrimitiveId, OsmPrimitive> primitives = new HashMap<>(reader.externalIdMap);
+        Map<OsmPrimitiveType, List<PrimitiveData>> byType = new EnumMap<>(OsmPrimitiveType.class);
+        List<PrimitiveId> removed = new ArrayList<>();
+        try {
+            // primitives of the snapshot whose id has changed, the snapshot has the new id already if the change has been
+            // saved by the snapshot
+            for (Entry<PrimitiveId, PrimitiveId> e : originalIds.entrySet()) {
+                OsmPrimitive p = primitives.get(e.getValue());
+                if (p != null && !primitives.containsKey(e.getKey())) {
+                    primitives.put(e.getKey(), p);
+                    PrimitiveData data = states.get(e.getKey());
+                    if (data != null && e.getKey().getUniqueId() > 0) {
+                        p.setOsmId(e.getKey().getUniqueId(), data.getVersion());
+                    }
+                }
+            }
+            for (Entry<PrimitiveId, PrimitiveData> e : states.entrySet()) {
+                PrimitiveData data = e.getValue();
+                if (data == null) {
+                    removed.add(e.getKey());
+                } else {
+                    byType.computeIfAbsent(data.getType(), t -> new ArrayList<>()).add(data);
+                    primitives.computeIfAbsent(e.getKey(), id -> {
+                        OsmPrimitive p = id.getType().newInstance(Math.max(0, id.getUniqueId()), false);
+                        if (p instanceof Node) {
+                            // complete nodes need their coordinates to be added
+                            p.load(data);
+                        }
+                        ds.addPrimitive(p);
+                        return p;
+                    });
+                }
+            }
+            for (OsmPrimitiveType type : OsmPrimitiveType.dataValues()) {
+                for (PrimitiveData data : byType.getOrDefault(type, Collections.emptyList())) {
+                    OsmPrimitive p = primitives.get(data.getPrimitiveId());
+                    if (!p.isNew()) {
+                        p.setVisible(data.isVisible());
+                    }
+                    p.load(translateIds(data, primitives));
+                }
+            }
+            // remove parents before their children
+            for (OsmPrimitiveType type : new OsmPrimitiveType[] {OsmPrimitiveType.RELATION, OsmPrimitiveType.WAY, OsmPrimitiveType.NODE}) {
+                for (PrimitiveId id : removed) {
+                    OsmPrimitive p = primitives.get(id);
+                    if (id.getType() == type && p != null && p.getDataSet() == ds) {
+                        ds.removePrimitive(p);
+                    }
+                }
+            }
+        } catch (AssertionError | RuntimeException e) {
+            throw new IllegalDataException(e);
+        }
+        return ds;
+    }
+
+    private static PrimitiveData translateIds(PrimitiveData data, Map<PrimitiveId, OsmPrimitive> primitives)
+            throws IllegalDataException {
+        PrimitiveData result = data.makeCopy();
+        result.setId(primitives.get(data.getPrimitiveId()).getUniqueId());
+        if (result instanceof WayData) {
+            List<Long> nodes = new ArrayList<>();
+            for (Long id : ((WayData) data).getNodes()) {
+                nodes.add(getTargetId(primitives, new SimplePrimitiveId(id, OsmPrimitiveType.NODE)));
+            }
+            ((WayData) result).setNodes(nodes);
+        } else if (result instanceof RelationData) {
+            List<RelationMemberData> members = new ArrayList<>();
+            for (RelationMemberData member : ((RelationData) data).getMembers()) {
+                members.add(new RelationMemberData(member.getRole(), member.getMemberType(), getTargetId(primitives, member)));
+            }
+            ((RelationData) result).setMembers(members);
+        }
+        return result;
+    }
+
+    private static long getTargetId(Map<PrimitiveId, OsmPrimitive> primitives, PrimitiveId id) throws IllegalDataException {
+        OsmPrimitive p = primitives.get(new SimplePrimitiveId(id.getUniqueId(), id.getType()));
+        if (p == null) {
+            throw new IllegalDataException("Missing " + id.getType().getAPIName() + ' ' + id.getUniqueId());
+        }
+        return p.getUniqueId();
+    }
+
+    private static void write(DataSet ds, File tmp) throws IOException {
+        try (
+            PrintWriter writer = new PrintWriter(new OutputStreamWriter(
+                    Compression.getCompressedFileOutputStream(tmp), StandardCharsets.UTF_8));
+            OsmWriter w = OsmWriterFactory.createOsmWriter(writer, false, ds.getVersion())
+        ) {
+            w.header(!ds.isUploadDiscouraged());
+            w.writeDataSources(ds);
+            w.writeContent(ds);
+            w.footer();
+        }
+    }
+}
@@ -4,6 +4,7 @@ package org.openstreetmap.josm.io;
 import static org.openstreetmap.josm.tools.I18n.tr;
 
 import java.io.IOException;
+import java.io.Reader;
 import java.io.StringReader;
 import java.util.Collection;
 import java.util.Collections;
@@ -77,14 +78,29 @@ public class DiffResultProcessor {
      *
      */
     public void parse(String diffUploadResponse, ProgressMonitor progressMonitor) throws XmlParsingException {
+        CheckParameterUtil.ensureParameterNotNull(diffUploadResponse, "diffUploadResponse");
+        parseStream(new StringReader(diffUploadResponse), progressMonitor);
+    }
+
+    /**
+     * Parse the response from a diff upload to the OSM API while it is read.
+     *
+     * The progress monitor is advanced by one tick for each primitive acknowledged by the server.
+     *
+     * @param diffUploadResponse the reader of the response. Must not be null.
+     * @param progressMonitor a progress monitor. Defaults to {@link NullProgressMonitor#INSTANCE} if null
+     * @throws IllegalArgumentException if diffUploadResponse is null
+     * @throws XmlParsingException if the response can't be read or parsed successfully
+     */
+    public void parseStream(Reader diffUploadResponse, ProgressMonitor progressMonitor) throws XmlParsingException {
         if (progressMonitor == null) {
             progressMonitor = NullProgressMonitor.INSTANCE;
         }
         CheckParameterUtil.ensureParameterNotNull(diffUploadResponse, "diffUploadResponse");
         try {
-            progressMonitor.beginTask(tr("Parsing response from server..."));
-            InputSource inputSource = new InputSource(new StringReader(diffUploadResponse));
-            Utils.parseSafeSAX(inputSource, new Parser());
+            progressMonitor.beginTask(tr("Parsing response from server..."), primitives.size());
+            InputSource inputSource = new InputSource(diffUploadResponse);
+            Utils.parseSafeSAX(inputSource, new Parser(progressMonitor));
         } catch (XmlParsingException e) {
             throw e;
         } catch (IOException | ParserConfigurationException | SAXException e) {
@@ -150,8 +166,13 @@ public class DiffResultProcessor {
     }
 
     private class Parser extends DefaultHandler {
+        private final ProgressMonitor progressMonitor;
         private Locator locator;
 
+        Parser(ProgressMonitor progressMonitor) {
+            this.progressMonitor = progressMonitor;
+        }
+
         @Override
         public void setDocumentLocator(Locator locator) {
             this.locator = locator;
@@ -183,6 +204,7 @@ public class DiffResultProcessor {
                         entry.newVersion = Integer.parseInt(atts.getValue("new_version"));
                     }
                     diffResults.put(id, entry);
+                    progressMonitor.worked(1);
                     break;
                 default:
                     throwException(tr("Unexpected XML element with name ''{0}''", qName));
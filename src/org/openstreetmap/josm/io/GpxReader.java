@@ -24,7 +24,9 @@ import org.openstreetmap.josm.data.gpx.GpxConstants;
 import org.openstreetmap.josm.data.gpx.GpxData;
 import org.openstreetmap.josm.data.gpx.GpxLink;
 import org.openstreetmap.josm.data.gpx.GpxRoute;
+import org.openstreetmap.josm.data.gpx.GpxTrackSegment;
 import org.openstreetmap.josm.data.gpx.ImmutableGpxTrack;
+import org.openstreetmap.josm.data.gpx.ImmutableGpxTrackSegment;
 import org.openstreetmap.josm.data.gpx.WayPoint;
 import org.openstreetmap.josm.tools.Utils;
 import org.xml.sax.Attributes;
@@ -65,7 +67,7 @@ public class GpxReader implements GpxConstants {
     private class Parser extends DefaultHandler {
 
         private GpxData data;
-        private Collection<Collection<WayPoint>> currentTrack;
+        private List<GpxTrackSegment> currentTrack;
         private Map<String, Object> currentTrackAttr;
         private Collection<WayPoint> currentTrackSeg;
         private GpxRoute currentRoute;
@@ -457,7 +459,8 @@ public class GpxReader implements GpxConstants {
             case TRKSEG:
                 if ("trkseg".equals(localName)) {
                     currentState = states.pop();
-                    currentTrack.add(currentTrackSeg);
+                    // store the points compactly as soon as the segment is complete
+                    currentTrack.add(new ImmutableGpxTrackSegment(currentTrackSeg));
                 }
                 break;
             case TRK:
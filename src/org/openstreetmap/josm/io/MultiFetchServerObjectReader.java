@@ -20,8 +20,10 @@ import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.openstreetmap.josm.Main;
 import org.openstreetmap.josm.data.osm.DataSet;
@@ -66,12 +68,26 @@ public class MultiFetchServerObjectReader extends OsmServerReader {
      */
     private static final int MAX_IDS_PER_REQUEST = 200;
 
+    /**
+     * The threads running the {@link Fetcher}s of all readers. They are kept for a while, so that consecutive fetches
+     * (e.g. of the members of incomplete relations) do not start new threads.
+     */
+    private static final ExecutorService FETCH_EXECUTOR = newFetchExecutor();
+
     private final Set<Long> nodes;
     private final Set<Long> ways;
     private final Set<Long> relations;
     private Set<PrimitiveId> missingPrimitives;
     private final DataSet outputDataSet;
 
+    private static ExecutorService newFetchExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(OsmApi.MAX_DOWNLOAD_THREADS, OsmApi.MAX_DOWNLOAD_THREADS,
+                30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                Utils.newThreadFactory(MultiFetchServerObjectReader.class.getSimpleName() + "-%d", Thread.NORM_PRIORITY));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     /**
      * Constructs a {@code MultiFetchServerObjectReader}.
      */
@@ -323,18 +339,26 @@ public class MultiFetchServerObjectReader extends OsmServerReader {
         // we will run up to MAX_DOWNLOAD_THREADS concurrent fetchers.
         int threadsNumber = Main.pref.getInteger("osm.download.threads", OsmApi.MAX_DOWNLOAD_THREADS);
         threadsNumber = Math.min(Math.max(threadsNumber, 1), OsmApi.MAX_DOWNLOAD_THREADS);
-        final ExecutorService exec = Executors.newFixedThreadPool(
-                threadsNumber, Utils.newThreadFactory(getClass() + "-%d", Thread.NORM_PRIORITY));
-        CompletionService<FetchResult> ecs = new ExecutorCompletionService<>(exec);
-        List<Future<FetchResult>> jobs = new ArrayList<>();
+        List<Fetcher> fetchers = new ArrayList<>();
         while (!toFetch.isEmpty()) {
-            jobs.add(ecs.submit(new Fetcher(type, extractIdPackage(toFetch), progressMonitor)));
+            fetchers.add(new Fetcher(type, extractIdPackage(toFetch), progressMonitor));
+        }
+        CompletionService<FetchResult> ecs = new ExecutorCompletionService<>(FETCH_EXECUTOR);
+        List<Future<FetchResult>> jobs = new ArrayList<>();
+        // The executor is shared, so submit a new fetcher only when one has finished
+        Iterator<Fetcher> it = fetchers.iterator();
+        while (it.hasNext() && jobs.size() < threadsNumber) {
+            jobs.add(ecs.submit(it.next()));
         }
         // Run the fetchers
-        for (int i = 0; i < jobs.size() && !isCanceled(); i++) {
+        for (int i = 0; i < fetchers.size() && !isCanceled(); i++) {
             progressMonitor.subTask(msg + "... " + progressMonitor.getTicks() + '/' + progressMonitor.getTicksCount());
             try {
-                FetchResult result = ecs.take().get();
+                Future<FetchResult> job = ecs.take();
+                if (it.hasNext() && !isCanceled()) {
+                    jobs.add(ecs.submit(it.next()));
+                }
+                FetchResult result = job.get();
                 if (result.missingPrimitives != null) {
                     missingPrimitives.addAll(result.missingPrimitives);
                 }
@@ -346,7 +370,6 @@ public class MultiFetchServerObjectReader extends OsmServerReader {
                 Main.error(e);
             }
         }
-        exec.shutdown();
         // Cancel requests if the user chose to
         if (isCanceled()) {
             for (Future<FetchResult> job : jobs) {
@@ -4,10 +4,14 @@ package org.openstreetmap.josm.io;
 import static org.openstreetmap.josm.tools.I18n.tr;
 import static org.openstreetmap.josm.tools.I18n.trn;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.net.ConnectException;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
@@ -19,6 +23,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import javax.xml.parsers.ParserConfigurationException;
 
@@ -26,6 +31,7 @@ import org.openstreetmap.josm.Main;
 import org.openstreetmap.josm.data.coor.LatLon;
 import org.openstreetmap.josm.data.notes.Note;
 import org.openstreetmap.josm.data.osm.Changeset;
+import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.IPrimitive;
 import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
@@ -524,6 +530,28 @@ public class OsmApi extends OsmConnection {
      */
     public Collection<OsmPrimitive> uploadDiff(Collection<? extends OsmPrimitive> list, ProgressMonitor monitor)
             throws OsmTransferException {
+        try {
+            monitor.beginTask("", list.size() * 2);
+            DiffResultProcessor reader = uploadDiffWithoutPostProcessing(list, monitor.createSubTaskMonitor(list.size() * 2, false));
+            return reader.postProcess(
+                    getChangeset(),
+                    monitor.createSubTaskMonitor(ProgressMonitor.ALL_TICKS, false)
+            );
+        } finally {
+            monitor.finishTask();
+        }
+    }
+
+    /**
+     * Uploads a list of changes in "diff" form to the server, without applying the diff result to the primitives.
+     *
+     * @param list the list of changed OSM Primitives
+     * @param  monitor the progress monitor
+     * @return the diff result read from the server, to be applied by {@link DiffResultProcessor#postProcess}
+     * @throws OsmTransferException if something is wrong
+     */
+    DiffResultProcessor uploadDiffWithoutPostProcessing(Collection<? extends OsmPrimitive> list, ProgressMonitor monitor)
+            throws OsmTransferException {
         try {
             monitor.beginTask("", list.size() * 2);
             if (changeset == null)
@@ -531,38 +559,69 @@ public class OsmApi extends OsmConnection {
 
             initialize(monitor);
 
-            // prepare upload request
-            //
-            OsmChangeBuilder changeBuilder = new OsmChangeBuilder(changeset);
-            monitor.subTask(tr("Preparing upload request..."));
-            changeBuilder.start();
-            changeBuilder.append(list);
-            changeBuilder.finish();
-            String diffUploadRequest = changeBuilder.getDocument();
-
-            // Upload to the server
-            //
-            monitor.indeterminateSubTask(
-                    trn("Uploading {0} object...", "Uploading {0} objects...", list.size(), list.size()));
-            String diffUploadResponse = sendRequest("POST", "changeset/" + changeset.getId() + "/upload", diffUploadRequest, monitor);
-
-            // Process the response from the server
+            // Upload to the server, writing the request while it is sent
             //
+            monitor.subTask(trn("Uploading {0} object...", "Uploading {0} objects...", list.size(), list.size()));
             DiffResultProcessor reader = new DiffResultProcessor(list);
-            reader.parse(diffUploadResponse, monitor.createSubTaskMonitor(ProgressMonitor.ALL_TICKS, false));
-            return reader.postProcess(
-                    getChangeset(),
-                    monitor.createSubTaskMonitor(ProgressMonitor.ALL_TICKS, false)
-            );
-        } catch (OsmTransferException e) {
-            throw e;
-        } catch (XmlParsingException e) {
-            throw new OsmTransferException(e);
+            sendRequest("POST", "changeset/" + changeset.getId() + "/upload",
+                    out -> writeOsmChange(list, out, monitor),
+                    response -> {
+                        // Process the response from the server while it is received
+                        //
+                        try {
+                            reader.parseStream(response.getContentReader(),
+                                    monitor.createSubTaskMonitor(ProgressMonitor.ALL_TICKS, false));
+                        } catch (XmlParsingException e) {
+                            throw new OsmTransferException(e);
+                        }
+                        return null;
+                    }, monitor);
+            return reader;
         } finally {
             monitor.finishTask();
         }
     }
 
+    /**
+     * Writes the osmChange document of a diff upload, advancing the progress monitor by one tick per primitive.
+     * @param list the list of changed OSM Primitives
+     * @param out the output stream of the connection
+     * @param monitor the progress monitor
+     * @throws IOException if the document cannot be written
+     */
+    private void writeOsmChange(Collection<? extends OsmPrimitive> list, OutputStream out, ProgressMonitor monitor)
+            throws IOException {
+        monitor.setTicks(0); // the request is written again when it is retried
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        // Each primitive is written to a buffer while holding the read lock of its data set (the diff result of
+        // the previous chunk may be applied concurrently, see OsmServerWriter), and sent without holding it
+        StringWriter buffer = new StringWriter();
+        OsmChangeBuilder changeBuilder = new OsmChangeBuilder(changeset, null, new PrintWriter(buffer));
+        changeBuilder.start();
+        for (OsmPrimitive p : list) {
+            // do not finish the document, the aborted request must not be applied by the server
+            if (cancel)
+                throw new IOException(tr("Upload canceled."));
+            DataSet ds = p.getDataSet();
+            if (ds != null) {
+                ds.getReadLock().lock();
+            }
+            try {
+                changeBuilder.append(p);
+            } finally {
+                if (ds != null) {
+                    ds.getReadLock().unlock();
+                }
+            }
+            writer.append(buffer.getBuffer());
+            buffer.getBuffer().setLength(0);
+            monitor.worked(1);
+        }
+        changeBuilder.finish();
+        writer.append(buffer.getBuffer());
+        writer.flush();
+    }
+
     private void sleepAndListen(int retry, ProgressMonitor monitor) throws OsmTransferCanceledException {
         Main.info(tr("Waiting 10 seconds ... "));
         for (int i = 0; i < 10; i++) {
@@ -612,6 +671,23 @@ public class OsmApi extends OsmConnection {
         return sendRequest(requestMethod, urlSuffix, requestBody, monitor, true, false);
     }
 
+    /**
+     * Reads the body of a response answered with "200 OK", see
+     * {@link OsmApi#sendRequest(String, String, HttpClient.RequestBodyWriter, ResponseReader, ProgressMonitor)}.
+     * @param <T> the type of the result
+     */
+    @FunctionalInterface
+    protected interface ResponseReader<T> {
+        /**
+         * Reads the response body.
+         * @param response the response
+         * @return the result
+         * @throws IOException if the response cannot be read
+         * @throws OsmTransferException if the response is invalid
+         */
+        T read(HttpClient.Response response) throws IOException, OsmTransferException;
+    }
+
     /**
      * Generic method for sending requests to the OSM API.
      *
@@ -633,12 +709,53 @@ public class OsmApi extends OsmConnection {
      */
     protected final String sendRequest(String requestMethod, String urlSuffix, String requestBody, ProgressMonitor monitor,
             boolean doAuthenticate, boolean fastFail) throws OsmTransferException {
+        // It seems that certain bits of the Ruby API are very unhappy upon
+        // receipt of a PUT/POST message without a Content-length header,
+        // even if the request has no payload.
+        // Since Java will not generate a Content-length header unless
+        // we use the output stream, we create an output stream for PUT/POST
+        // even if there is no payload.
+        return sendRequest(requestMethod, urlSuffix, client -> client.setRequestBody(
+                (requestBody != null ? requestBody : "").getBytes(StandardCharsets.UTF_8)),
+                HttpClient.Response::fetchContent, monitor, doAuthenticate, fastFail);
+    }
+
+    /**
+     * Sends an authenticated request to the OSM API, streaming the request body to the server and
+     * reading the response body while it is received, without holding either in memory.
+     *
+     * The request body is sent with chunked transfer encoding, and gzip-compressed if the preference
+     * {@code osm-server.upload.compress} is set. The request is retried like
+     * {@link #sendRequest(String, String, String, ProgressMonitor, boolean, boolean)}, so the request body
+     * may be written more than once.
+     *
+     * @param <T> the type of the result
+     * @param requestMethod The http method used when talking with the server, {@code PUT} or {@code POST}.
+     * @param urlSuffix The suffix to add at the server url, not including the version number
+     * @param requestBody the writer of the request body
+     * @param responseReader the reader of the response body, if the response code was "200 OK"
+     * @param monitor the progress monitor
+     * @return the result of the response reader
+     * @throws OsmTransferException if the HTTP return code was not 200 (and retries have
+     *    been exhausted), or rewrapping a Java exception.
+     */
+    protected final <T> T sendRequest(String requestMethod, String urlSuffix, HttpClient.RequestBodyWriter requestBody,
+            ResponseReader<T> responseReader, ProgressMonitor monitor) throws OsmTransferException {
+        return sendRequest(requestMethod, urlSuffix, client -> client.setRequestBody(requestBody)
+                .setCompressRequestBody(Main.pref.getBoolean("osm-server.upload.compress", false)),
+                responseReader, monitor, true, false);
+    }
+
+    private <T> T sendRequest(String requestMethod, String urlSuffix, Consumer<HttpClient> requestBody,
+            ResponseReader<T> responseReader, ProgressMonitor monitor, boolean doAuthenticate, boolean fastFail)
+            throws OsmTransferException {
         int retries = fastFail ? 0 : getMaxRetries();
 
         while (true) { // the retry loop
             try {
                 url = new URL(new URL(getBaseUrl()), urlSuffix);
-                final HttpClient client = HttpClient.create(url, requestMethod).keepAlive(false);
+                // reuse the connections to the server (HTTP keep-alive), see HttpClient.Response#release
+                final HttpClient client = HttpClient.create(url, requestMethod).keepAlive(Main.pref.getBoolean("osm-server.keep-alive", true));
                 activeConnection = client;
                 if (fastFail) {
                     client.setConnectTimeout(1000);
@@ -653,13 +770,7 @@ public class OsmApi extends OsmConnection {
 
                 if ("PUT".equals(requestMethod) || "POST".equals(requestMethod) || "DELETE".equals(requestMethod)) {
                     client.setHeader("Content-Type", "text/xml");
-                    // It seems that certain bits of the Ruby API are very unhappy upon
-                    // receipt of a PUT/POST message without a Content-length header,
-                    // even if the request has no payload.
-                    // Since Java will not generate a Content-length header unless
-                    // we use the output stream, we create an output stream for PUT/POST
-                    // even if there is no payload.
-                    client.setRequestBody((requestBody != null ? requestBody : "").getBytes(StandardCharsets.UTF_8));
+                    requestBody.accept(client);
                 }
 
                 final HttpClient.Response response = client.connect();
@@ -667,28 +778,35 @@ public class OsmApi extends OsmConnection {
                 int retCode = response.getResponseCode();
 
                 if (retCode >= 500 && retries-- > 0) {
+                    response.release();
                     sleepAndListen(retries, monitor);
                     Main.info(tr("Starting retry {0} of {1}.", getMaxRetries() - retries, getMaxRetries()));
                     continue;
                 }
 
-                final String responseBody = response.fetchContent();
-
                 String errorHeader = null;
                 // Look for a detailed error message from the server
                 if (response.getHeaderField("Error") != null) {
                     errorHeader = response.getHeaderField("Error");
                     Main.error("Error header: " + errorHeader);
-                } else if (retCode != HttpURLConnection.HTTP_OK && responseBody.length() > 0) {
+                }
+                if (retCode == HttpURLConnection.HTTP_OK) {
+                    try {
+                        return responseReader.read(response);
+                    } finally {
+                        response.release();
+                    }
+                }
+
+                final String responseBody = response.fetchContent();
+                if (errorHeader == null && responseBody.length() > 0) {
                     Main.error("Error body: " + responseBody);
                 }
-                activeConnection.disconnect();
+                response.release();
 
                 errorHeader = errorHeader == null ? null : errorHeader.trim();
                 String errorBody = responseBody.length() == 0 ? null : responseBody.trim();
                 switch(retCode) {
-                case HttpURLConnection.HTTP_OK:
-                    return responseBody;
                 case HttpURLConnection.HTTP_GONE:
                     throw new OsmApiPrimitiveGoneException(errorHeader, errorBody);
                 case HttpURLConnection.HTTP_CONFLICT:
@@ -709,6 +827,8 @@ public class OsmApi extends OsmConnection {
                 }
                 throw new OsmTransferException(e);
             } catch (IOException e) {
+                if (cancel)
+                    throw new OsmTransferCanceledException(e);
                 throw new OsmTransferException(e);
             } catch (OsmTransferException e) {
                 throw e;
@@ -40,9 +40,28 @@ public class OsmChangeBuilder {
      * @param apiVersion OSM API version
      */
     public OsmChangeBuilder(Changeset changeset, String apiVersion) {
+        this(changeset, apiVersion, new StringWriter());
+    }
+
+    /**
+     * Constructs a new {@code OsmChangeBuilder} writing the document directly to the given writer,
+     * e.g. to stream it to the server without building it in memory.
+     * @param changeset changeset
+     * @param apiVersion OSM API version
+     * @param writer the writer receiving the document. It is neither flushed nor closed by the builder.
+     */
+    public OsmChangeBuilder(Changeset changeset, String apiVersion, PrintWriter writer) {
+        this(changeset, apiVersion, null, writer);
+    }
+
+    private OsmChangeBuilder(Changeset changeset, String apiVersion, StringWriter swriter) {
+        this(changeset, apiVersion, swriter, new PrintWriter(swriter));
+    }
+
+    private OsmChangeBuilder(Changeset changeset, String apiVersion, StringWriter swriter, PrintWriter writer) {
         this.apiVersion = apiVersion == null ? DEFAULT_API_VERSION : apiVersion;
-        swriter = new StringWriter();
-        writer = new PrintWriter(swriter);
+        this.swriter = swriter;
+        this.writer = writer;
         osmwriter = OsmWriterFactory.createOsmWriter(writer, false, apiVersion);
         osmwriter.setChangeset(changeset);
         osmwriter.setIsOsmChange(true);
@@ -145,8 +164,11 @@ public class OsmChangeBuilder {
     /**
      * Returns XML document.
      * @return XML document
+     * @throws IllegalStateException if the document has been written to a writer given to the constructor
      */
     public String getDocument() {
+        if (swriter == null)
+            throw new IllegalStateException(tr("OsmChange document has been written to a stream."));
         return swriter.toString();
     }
 }
@@ -7,10 +7,15 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.text.MessageFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -29,8 +34,10 @@ import org.openstreetmap.josm.data.osm.Changeset;
 import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.Node;
 import org.openstreetmap.josm.data.osm.NodeData;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
 import org.openstreetmap.josm.data.osm.PrimitiveData;
+import org.openstreetmap.josm.data.osm.PrimitiveId;
 import org.openstreetmap.josm.data.osm.Relation;
 import org.openstreetmap.josm.data.osm.RelationData;
 import org.openstreetmap.josm.data.osm.RelationMemberData;
@@ -38,6 +45,7 @@ import org.openstreetmap.josm.data.osm.Tagged;
 import org.openstreetmap.josm.data.osm.User;
 import org.openstreetmap.josm.data.osm.Way;
 import org.openstreetmap.josm.data.osm.WayData;
+import org.openstreetmap.josm.data.preferences.BooleanProperty;
 import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
 import org.openstreetmap.josm.tools.CheckParameterUtil;
@@ -50,13 +58,149 @@ import org.openstreetmap.josm.tools.date.DateUtils;
  * For each xml element, there is a dedicated method.
  * The XMLStreamReader cursor points to the start of the element, when the method is
  * entered, and it must point to the end of the same element, when it is exited.
+ * <p>
+ * In pipelined mode (see {@link #PIPELINED}), the parser thread only copies the attributes and child elements of
+ * nodes, ways and relations into records. Batches of these records are turned into primitives by worker threads.
+ * At most two batches per worker are pending, so the parser waits if the workers cannot keep up.
  */
 public class OsmReader extends AbstractReader {
 
+    /**
+     * Whether {@link #parseDataSet(InputStream, ProgressMonitor)} builds the primitives on worker threads.
+     */
+    public static final BooleanProperty PIPELINED = new BooleanProperty("osm.reader.pipelined",
+            Runtime.getRuntime().availableProcessors() > 1);
+
+    /** The number of elements passed to a worker at once in pipelined mode */
+    private static final int BATCH_SIZE = 2000;
+
     protected XMLStreamReader parser;
 
     protected boolean cancel;
 
+    /**
+     * Access to the attributes of the element that is parsed, either directly from the parser or from a record.
+     */
+    private interface Attributes {
+        /**
+         * Gets the value of an attribute.
+         * @param name the attribute name
+         * @return the value or {@code null} if the attribute is missing
+         */
+        String get(String name);
+
+        /**
+         * Gets the location of the element, for error messages.
+         * @return the location
+         */
+        Location getLocation();
+    }
+
+    private final Attributes parserAttributes = new Attributes() {
+        @Override
+        public String get(String name) {
+            return parser.getAttributeValue(null, name);
+        }
+
+        @Override
+        public Location getLocation() {
+            return parser.getLocation();
+        }
+    };
+
+    /**
+     * A copy of a node, way or relation element, to be converted to a primitive by a worker thread.
+     */
+    private static final class ElementRecord implements Attributes {
+        private final String element;
+        private final String[] attributes;
+        private final Location location;
+        private final List<String> tags = new ArrayList<>();
+        private final List<String> nodeRefs = new ArrayList<>();
+        private final List<String[]> members = new ArrayList<>();
+
+        ElementRecord(XMLStreamReader parser) {
+            element = parser.getLocalName();
+            attributes = new String[2 * parser.getAttributeCount()];
+            for (int i = 0; i < parser.getAttributeCount(); i++) {
+                attributes[2 * i] = parser.getAttributeLocalName(i);
+                attributes[2 * i + 1] = parser.getAttributeValue(i);
+            }
+            location = new ElementLocation(parser.getLocation());
+        }
+
+        @Override
+        public String get(String name) {
+            for (int i = 0; i < attributes.length; i += 2) {
+                if (attributes[i].equals(name))
+                    return attributes[i + 1];
+            }
+            return null;
+        }
+
+        @Override
+        public Location getLocation() {
+            return location;
+        }
+    }
+
+    /**
+     * A snapshot of a parser location. The location returned by the parser changes while parsing.
+     */
+    private static final class ElementLocation implements Location {
+        private final int lineNumber;
+        private final int columnNumber;
+        private final int characterOffset;
+        private final String publicId;
+        private final String systemId;
+
+        ElementLocation(Location location) {
+            lineNumber = location.getLineNumber();
+            columnNumber = location.getColumnNumber();
+            characterOffset = location.getCharacterOffset();
+            publicId = location.getPublicId();
+            systemId = location.getSystemId();
+        }
+
+        @Override
+        public int getLineNumber() {
+            return lineNumber;
+        }
+
+        @Override
+        public int getColumnNumber() {
+            return columnNumber;
+        }
+
+        @Override
+        public int getCharacterOffset() {
+            return characterOffset;
+        }
+
+        @Override
+        public String getPublicId() {
+            return publicId;
+        }
+
+        @Override
+        public String getSystemId() {
+            return systemId;
+        }
+    }
+
+    /**
+     * The primitives built from a batch of records.
+     */
+    private static final class PrimitiveBatch {
+        private final Map<PrimitiveId, OsmPrimitive> primitives = new HashMap<>();
+        private final Map<Long, Collection<Long>> ways = new HashMap<>();
+        private final Map<Long, Collection<RelationMemberData>> relations = new HashMap<>();
+    }
+
+    private boolean pipelined;
+    private List<ElementRecord> records = new ArrayList<>(BATCH_SIZE);
+    private final ArrayDeque<Future<PrimitiveBatch>> pendingBatches = new ArrayDeque<>();
+
     /** Used by plugins to register themselves as data postprocessors. */
     private static volatile List<OsmServerReadPostprocessor> postprocessors;
 
@@ -103,6 +247,14 @@ public class OsmReader extends AbstractReader {
         throw new XmlStreamParsingException(msg, parser.getLocation());
     }
 
+    private static void throwException(Attributes attributes, String msg, Throwable th) throws XMLStreamException {
+        throw new XmlStreamParsingException(msg, attributes.getLocation(), th);
+    }
+
+    private static void throwException(Attributes attributes, String msg) throws XMLStreamException {
+        throw new XmlStreamParsingException(msg, attributes.getLocation());
+    }
+
     protected void parse() throws XMLStreamException {
         int event = parser.getEventType();
         while (true) {
@@ -159,13 +311,17 @@ public class OsmReader extends AbstractReader {
                     parseBounds(generator);
                     break;
                 case "node":
-                    parseNode();
-                    break;
                 case "way":
-                    parseWay();
-                    break;
                 case "relation":
-                    parseRelation();
+                    if (pipelined) {
+                        parseRecord();
+                    } else if ("node".equals(parser.getLocalName())) {
+                        parseNode();
+                    } else if ("way".equals(parser.getLocalName())) {
+                        parseWay();
+                    } else {
+                        parseRelation();
+                    }
                     break;
                 case "changeset":
                     parseChangeset(uploadChangesetId);
@@ -173,11 +329,142 @@ public class OsmReader extends AbstractReader {
                 default:
                     parseUnknown();
                 }
-            } else if (event == XMLStreamConstants.END_ELEMENT)
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (pipelined) {
+                    submitRecords();
+                    while (!pendingBatches.isEmpty()) {
+                        mergeBatch(pendingBatches.removeFirst());
+                    }
+                }
                 return;
+            }
         }
     }
 
+    /**
+     * Copies the current node, way or relation element into a record and passes full batches to the workers.
+     * @throws XMLStreamException if there is an error processing the underlying XML source
+     */
+    private void parseRecord() throws XMLStreamException {
+        ElementRecord record = new ElementRecord(parser);
+        while (true) {
+            int event = parser.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String element = parser.getLocalName();
+                if ("tag".equals(element)) {
+                    record.tags.add(parser.getAttributeValue(null, "k"));
+                    record.tags.add(parser.getAttributeValue(null, "v"));
+                    jumpToEnd();
+                } else if ("nd".equals(element) && "way".equals(record.element)) {
+                    record.nodeRefs.add(parser.getAttributeValue(null, "ref"));
+                    jumpToEnd();
+                } else if ("member".equals(element) && "relation".equals(record.element)) {
+                    record.members.add(new String[] {
+                            parser.getAttributeValue(null, "type"),
+                            parser.getAttributeValue(null, "ref"),
+                            parser.getAttributeValue(null, "role")});
+                    jumpToEnd();
+                } else {
+                    parseUnknown();
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                break;
+            }
+        }
+        records.add(record);
+        if (records.size() >= BATCH_SIZE) {
+            submitRecords();
+        }
+    }
+
+    private void submitRecords() throws XMLStreamException {
+        if (records.isEmpty())
+            return;
+        if (pendingBatches.size() >= 2 * THREAD_POOL.getParallelism()) {
+            mergeBatch(pendingBatches.removeFirst());
+        }
+        final List<ElementRecord> batch = records;
+        records = new ArrayList<>(BATCH_SIZE);
+        pendingBatches.addLast(THREAD_POOL.submit(() -> buildPrimitives(batch)));
+    }
+
+    private void mergeBatch(Future<PrimitiveBatch> future) throws XMLStreamException {
+        PrimitiveBatch batch;
+        try {
+            batch = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new XMLStreamException(e);
+        } catch (ExecutionException e) {
+            // the fork/join pool wraps checked exceptions, possibly several times
+            for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof XMLStreamException)
+                    throw (XMLStreamException) cause;
+            }
+            throw new XMLStreamException(e.getCause());
+        }
+        externalIdMap.putAll(batch.primitives);
+        ways.putAll(batch.ways);
+        relations.putAll(batch.relations);
+    }
+
+    private void cancelPendingBatches() {
+        for (Future<PrimitiveBatch> future : pendingBatches) {
+            future.cancel(true);
+        }
+        pendingBatches.clear();
+        records.clear();
+    }
+
+    /**
+     * Builds the primitives for a batch of records. This is executed by the worker threads.
+     * @param batch the records
+     * @return the primitives
+     * @throws XMLStreamException if a record contains invalid data
+     */
+    private PrimitiveBatch buildPrimitives(List<ElementRecord> batch) throws XMLStreamException {
+        PrimitiveBatch result = new PrimitiveBatch();
+        for (ElementRecord record : batch) {
+            OsmPrimitive p;
+            PrimitiveData data;
+            switch (record.element) {
+            case "node":
+                NodeData nd = readNode(record);
+                p = createNode(nd);
+                data = nd;
+                break;
+            case "way":
+                WayData wd = new WayData();
+                readCommon(wd, record);
+                Way w = createWay(wd);
+                Collection<Long> nodeIds = new ArrayList<>(record.nodeRefs.size());
+                for (String ref : record.nodeRefs) {
+                    nodeIds.add(parseWayNodeRef(ref, w, record));
+                }
+                result.ways.put(wd.getUniqueId(), checkWayNodes(w, nodeIds));
+                p = w;
+                data = wd;
+                break;
+            default:
+                RelationData rd = new RelationData();
+                readCommon(rd, record);
+                Relation r = createRelation(rd);
+                Collection<RelationMemberData> members = new ArrayList<>(record.members.size());
+                for (String[] member : record.members) {
+                    members.add(createRelationMember(member[0], member[1], member[2], r, record));
+                }
+                result.relations.put(rd.getUniqueId(), checkRelationMembers(r, members));
+                p = r;
+                data = rd;
+            }
+            for (int i = 0; i < record.tags.size(); i += 2) {
+                addTag(p, record.tags.get(i), record.tags.get(i + 1), record);
+            }
+            result.primitives.put(data.getPrimitiveId(), p);
+        }
+        return result;
+    }
+
     private void parseBounds(String generator) throws XMLStreamException {
         String minlon = parser.getAttributeValue(null, "minlon");
         String minlat = parser.getAttributeValue(null, "minlat");
@@ -207,17 +494,41 @@ public class OsmReader extends AbstractReader {
         jumpToEnd();
     }
 
-    protected Node parseNode() throws XMLStreamException {
+    private NodeData readNode(Attributes attributes) throws XMLStreamException {
         NodeData nd = new NodeData();
-        String lat = parser.getAttributeValue(null, "lat");
-        String lon = parser.getAttributeValue(null, "lon");
+        String lat = attributes.get("lat");
+        String lon = attributes.get("lon");
         if (lat != null && lon != null) {
             nd.setCoor(new LatLon(Double.parseDouble(lat), Double.parseDouble(lon)));
         }
-        readCommon(nd);
+        readCommon(nd, attributes);
+        return nd;
+    }
+
+    private static Node createNode(NodeData nd) {
         Node n = new Node(nd.getId(), nd.getVersion());
         n.setVisible(nd.isVisible());
         n.load(nd);
+        return n;
+    }
+
+    private static Way createWay(WayData wd) {
+        Way w = new Way(wd.getId(), wd.getVersion());
+        w.setVisible(wd.isVisible());
+        w.load(wd);
+        return w;
+    }
+
+    private static Relation createRelation(RelationData rd) {
+        Relation r = new Relation(rd.getId(), rd.getVersion());
+        r.setVisible(rd.isVisible());
+        r.load(rd);
+        return r;
+    }
+
+    protected Node parseNode() throws XMLStreamException {
+        NodeData nd = readNode(parserAttributes);
+        Node n = createNode(nd);
         externalIdMap.put(nd.getPrimitiveId(), n);
         while (true) {
             int event = parser.next();
@@ -234,10 +545,8 @@ public class OsmReader extends AbstractReader {
 
     protected Way parseWay() throws XMLStreamException {
         WayData wd = new WayData();
-        readCommon(wd);
-        Way w = new Way(wd.getId(), wd.getVersion());
-        w.setVisible(wd.isVisible());
-        w.load(wd);
+        readCommon(wd, parserAttributes);
+        Way w = createWay(wd);
         externalIdMap.put(wd.getPrimitiveId(), w);
 
         Collection<Long> nodeIds = new ArrayList<>();
@@ -258,36 +567,43 @@ public class OsmReader extends AbstractReader {
                 break;
             }
         }
+        ways.put(wd.getUniqueId(), checkWayNodes(w, nodeIds));
+        return w;
+    }
+
+    private static Collection<Long> checkWayNodes(Way w, Collection<Long> nodeIds) {
         if (w.isDeleted() && !nodeIds.isEmpty()) {
             Main.info(tr("Deleted way {0} contains nodes", w.getUniqueId()));
-            nodeIds = new ArrayList<>();
+            return new ArrayList<>();
         }
-        ways.put(wd.getUniqueId(), nodeIds);
-        return w;
+        return nodeIds;
     }
 
     private long parseWayNode(Way w) throws XMLStreamException {
-        if (parser.getAttributeValue(null, "ref") == null) {
-            throwException(
+        long id = parseWayNodeRef(parser.getAttributeValue(null, "ref"), w, parserAttributes);
+        jumpToEnd();
+        return id;
+    }
+
+    private static long parseWayNodeRef(String ref, Way w, Attributes attributes) throws XMLStreamException {
+        if (ref == null) {
+            throwException(attributes,
                     tr("Missing mandatory attribute ''{0}'' on <nd> of way {1}.", "ref", w.getUniqueId())
             );
         }
-        long id = getLong("ref");
+        long id = parseLong(attributes, "ref", ref);
         if (id == 0) {
-            throwException(
+            throwException(attributes,
                     tr("Illegal value of attribute ''ref'' of element <nd>. Got {0}.", id)
             );
         }
-        jumpToEnd();
         return id;
     }
 
     protected Relation parseRelation() throws XMLStreamException {
         RelationData rd = new RelationData();
-        readCommon(rd);
-        Relation r = new Relation(rd.getId(), rd.getVersion());
-        r.setVisible(rd.isVisible());
-        r.load(rd);
+        readCommon(rd, parserAttributes);
+        Relation r = createRelation(rd);
         externalIdMap.put(rd.getPrimitiveId(), r);
 
         Collection<RelationMemberData> members = new ArrayList<>();
@@ -308,43 +624,52 @@ public class OsmReader extends AbstractReader {
                 break;
             }
         }
+        relations.put(rd.getUniqueId(), checkRelationMembers(r, members));
+        return r;
+    }
+
+    private static Collection<RelationMemberData> checkRelationMembers(Relation r, Collection<RelationMemberData> members) {
         if (r.isDeleted() && !members.isEmpty()) {
             Main.info(tr("Deleted relation {0} contains members", r.getUniqueId()));
-            members = new ArrayList<>();
+            return new ArrayList<>();
         }
-        relations.put(rd.getUniqueId(), members);
-        return r;
+        return members;
     }
 
     private RelationMemberData parseRelationMember(Relation r) throws XMLStreamException {
+        RelationMemberData member = createRelationMember(parser.getAttributeValue(null, "type"),
+                parser.getAttributeValue(null, "ref"), parser.getAttributeValue(null, "role"), r, parserAttributes);
+        jumpToEnd();
+        return member;
+    }
+
+    private static RelationMemberData createRelationMember(String typeName, String ref, String role, Relation r, Attributes attributes)
+            throws XMLStreamException {
         OsmPrimitiveType type = null;
         long id = 0;
-        String value = parser.getAttributeValue(null, "ref");
-        if (value == null) {
-            throwException(tr("Missing attribute ''ref'' on member in relation {0}.", r.getUniqueId()));
+        if (ref == null) {
+            throwException(attributes, tr("Missing attribute ''ref'' on member in relation {0}.", r.getUniqueId()));
         }
         try {
-            id = Long.parseLong(value);
+            id = Long.parseLong(ref);
         } catch (NumberFormatException e) {
-            throwException(tr("Illegal value for attribute ''ref'' on member in relation {0}. Got {1}", Long.toString(r.getUniqueId()),
-                    value), e);
+            throwException(attributes, tr("Illegal value for attribute ''ref'' on member in relation {0}. Got {1}",
+                    Long.toString(r.getUniqueId()), ref), e);
         }
-        value = parser.getAttributeValue(null, "type");
-        if (value == null) {
-            throwException(tr("Missing attribute ''type'' on member {0} in relation {1}.", Long.toString(id), Long.toString(r.getUniqueId())));
+        if (typeName == null) {
+            throwException(attributes, tr("Missing attribute ''type'' on member {0} in relation {1}.",
+                    Long.toString(id), Long.toString(r.getUniqueId())));
         }
         try {
-            type = OsmPrimitiveType.fromApiTypeName(value);
+            type = OsmPrimitiveType.fromApiTypeName(typeName);
         } catch (IllegalArgumentException e) {
-            throwException(tr("Illegal value for attribute ''type'' on member {0} in relation {1}. Got {2}.",
-                    Long.toString(id), Long.toString(r.getUniqueId()), value), e);
+            throwException(attributes, tr("Illegal value for attribute ''type'' on member {0} in relation {1}. Got {2}.",
+                    Long.toString(id), Long.toString(r.getUniqueId()), typeName), e);
         }
-        String role = parser.getAttributeValue(null, "role");
 
         if (id == 0) {
-            throwException(tr("Incomplete <member> specification with ref=0"));
+            throwException(attributes, tr("Incomplete <member> specification with ref=0"));
         }
-        jumpToEnd();
         return new RelationMemberData(role, type, id);
     }
 
@@ -374,10 +699,13 @@ public class OsmReader extends AbstractReader {
     }
 
     private void parseTag(Tagged t) throws XMLStreamException {
-        String key = parser.getAttributeValue(null, "k");
-        String value = parser.getAttributeValue(null, "v");
+        addTag(t, parser.getAttributeValue(null, "k"), parser.getAttributeValue(null, "v"), parserAttributes);
+        jumpToEnd();
+    }
+
+    private static void addTag(Tagged t, String key, String value, Attributes attributes) throws XMLStreamException {
         if (key == null || value == null) {
-            throwException(tr("Missing key or value attribute in tag."));
+            throwException(attributes, tr("Missing key or value attribute in tag."));
         } else if (Utils.isStripEmpty(key) && t instanceof AbstractPrimitive) {
             // #14199: Empty keys as ignored by AbstractPrimitive#put, but it causes problems to fix existing data
             // Drop the tag on import, but flag the primitive as modified
@@ -385,7 +713,6 @@ public class OsmReader extends AbstractReader {
         } else {
             t.put(key.intern(), value.intern());
         }
-        jumpToEnd();
     }
 
     protected void parseUnknown(boolean printWarning) throws XMLStreamException {
@@ -432,7 +759,7 @@ public class OsmReader extends AbstractReader {
         jumpToEnd(true);
     }
 
-    private User createUser(String uid, String name) throws XMLStreamException {
+    private static User createUser(String uid, String name, Attributes attributes) throws XMLStreamException {
         if (uid == null) {
             if (name == null)
                 return null;
@@ -442,7 +769,7 @@ public class OsmReader extends AbstractReader {
             long id = Long.parseLong(uid);
             return User.createOsmUser(id, name);
         } catch (NumberFormatException e) {
-            throwException(MessageFormat.format("Illegal value for attribute ''uid''. Got ''{0}''.", uid), e);
+            throwException(attributes, MessageFormat.format("Illegal value for attribute ''uid''. Got ''{0}''.", uid), e);
         }
         return null;
     }
@@ -450,41 +777,42 @@ public class OsmReader extends AbstractReader {
     /**
      * Read out the common attributes and put them into current OsmPrimitive.
      * @param current primitive to update
+     * @param attributes the attributes of the element
      * @throws XMLStreamException if there is an error processing the underlying XML source
      */
-    private void readCommon(PrimitiveData current) throws XMLStreamException {
-        current.setId(getLong("id"));
+    private void readCommon(PrimitiveData current, Attributes attributes) throws XMLStreamException {
+        current.setId(parseLong(attributes, "id", attributes.get("id")));
         if (current.getUniqueId() == 0) {
-            throwException(tr("Illegal object with ID=0."));
+            throwException(attributes, tr("Illegal object with ID=0."));
         }
 
-        String time = parser.getAttributeValue(null, "timestamp");
+        String time = attributes.get("timestamp");
         if (time != null && !time.isEmpty()) {
             current.setRawTimestamp((int) (DateUtils.tsFromString(time)/1000));
         }
 
-        String user = parser.getAttributeValue(null, "user");
-        String uid = parser.getAttributeValue(null, "uid");
-        current.setUser(createUser(uid, user));
+        String user = attributes.get("user");
+        String uid = attributes.get("uid");
+        current.setUser(createUser(uid, user, attributes));
 
-        String visible = parser.getAttributeValue(null, "visible");
+        String visible = attributes.get("visible");
         if (visible != null) {
             current.setVisible(Boolean.parseBoolean(visible));
         }
 
-        String versionString = parser.getAttributeValue(null, "version");
+        String versionString = attributes.get("version");
         int version = 0;
         if (versionString != null) {
             try {
                 version = Integer.parseInt(versionString);
             } catch (NumberFormatException e) {
-                throwException(tr("Illegal value for attribute ''version'' on OSM primitive with ID {0}. Got {1}.",
+                throwException(attributes, tr("Illegal value for attribute ''version'' on OSM primitive with ID {0}. Got {1}.",
                         Long.toString(current.getUniqueId()), versionString), e);
             }
             switch (ds.getVersion()) {
             case "0.6":
                 if (version <= 0 && !current.isNew()) {
-                    throwException(tr("Illegal value for attribute ''version'' on OSM primitive with ID {0}. Got {1}.",
+                    throwException(attributes, tr("Illegal value for attribute ''version'' on OSM primitive with ID {0}. Got {1}.",
                             Long.toString(current.getUniqueId()), versionString));
                 } else if (version < 0 && current.isNew()) {
                     Main.warn(tr("Normalizing value of attribute ''version'' of element {0} to {2}, API version is ''{3}''. Got {1}.",
@@ -494,17 +822,17 @@ public class OsmReader extends AbstractReader {
                 break;
             default:
                 // should not happen. API version has been checked before
-                throwException(tr("Unknown or unsupported API version. Got {0}.", ds.getVersion()));
+                throwException(attributes, tr("Unknown or unsupported API version. Got {0}.", ds.getVersion()));
             }
         } else {
             // version expected for OSM primitives with an id assigned by the server (id > 0), since API 0.6
             if (!current.isNew() && ds.getVersion() != null && "0.6".equals(ds.getVersion())) {
-                throwException(tr("Missing attribute ''version'' on OSM primitive with ID {0}.", Long.toString(current.getUniqueId())));
+                throwException(attributes, tr("Missing attribute ''version'' on OSM primitive with ID {0}.", Long.toString(current.getUniqueId())));
             }
         }
         current.setVersion(version);
 
-        String action = parser.getAttributeValue(null, "action");
+        String action = attributes.get("action");
         if (action == null) {
             // do nothing
         } else if ("delete".equals(action)) {
@@ -514,7 +842,7 @@ public class OsmReader extends AbstractReader {
             current.setModified(true);
         }
 
-        String v = parser.getAttributeValue(null, "changeset");
+        String v = attributes.get("changeset");
         if (v == null) {
             current.setChangesetId(0);
         } else {
@@ -529,7 +857,7 @@ public class OsmReader extends AbstractReader {
                     current.setChangesetId(0);
                 } else {
                     // for an existing primitive this is a problem
-                    throwException(tr("Illegal value for attribute ''changeset''. Got {0}.", v), e);
+                    throwException(attributes, tr("Illegal value for attribute ''changeset''. Got {0}.", v), e);
                 }
             } catch (IllegalStateException e) {
                 // thrown for positive changeset id on new primitives
@@ -545,21 +873,24 @@ public class OsmReader extends AbstractReader {
                     current.setChangesetId(0);
                 } else {
                     // for an existing primitive this is a problem
-                    throwException(tr("Illegal value for attribute ''changeset''. Got {0}.", v));
+                    throwException(attributes, tr("Illegal value for attribute ''changeset''. Got {0}.", v));
                 }
             }
         }
     }
 
     private long getLong(String name) throws XMLStreamException {
-        String value = parser.getAttributeValue(null, name);
+        return parseLong(parserAttributes, name, parser.getAttributeValue(null, name));
+    }
+
+    private static long parseLong(Attributes attributes, String name, String value) throws XMLStreamException {
         if (value == null) {
-            throwException(tr("Missing required attribute ''{0}''.", name));
+            throwException(attributes, tr("Missing required attribute ''{0}''.", name));
         }
         try {
             return Long.parseLong(value);
         } catch (NumberFormatException e) {
-            throwException(tr("Illegal long value for attribute ''{0}''. Got ''{1}''.", name, value), e);
+            throwException(attributes, tr("Illegal long value for attribute ''{0}''. Got ''{1}''.", name, value), e);
         }
         return 0; // should not happen
     }
@@ -595,7 +926,11 @@ public class OsmReader extends AbstractReader {
                 factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
                 factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
                 setParser(factory.createXMLStreamReader(ir));
-                parse();
+                try {
+                    parse();
+                } finally {
+                    cancelPendingBatches();
+                }
             }
             progressMonitor.worked(1);
 
@@ -646,6 +981,8 @@ public class OsmReader extends AbstractReader {
      * @throws IllegalArgumentException if source is null
      */
     public static DataSet parseDataSet(InputStream source, ProgressMonitor progressMonitor) throws IllegalDataException {
-        return new OsmReader().doParseDataSet(source, progressMonitor);
+        OsmReader reader = new OsmReader();
+        reader.pipelined = PIPELINED.get();
+        return reader.doParseDataSet(source, progressMonitor);
     }
 }
@@ -7,19 +7,31 @@ import static org.openstreetmap.josm.tools.I18n.trn;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import org.openstreetmap.josm.data.osm.Changeset;
+import org.openstreetmap.josm.data.osm.Node;
 import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.RelationMember;
+import org.openstreetmap.josm.data.osm.Way;
 import org.openstreetmap.josm.gui.JosmUserIdentityManager;
 import org.openstreetmap.josm.gui.io.UploadStrategySpecification;
 import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
 import org.openstreetmap.josm.tools.CheckParameterUtil;
+import org.openstreetmap.josm.tools.Utils;
 
 /**
  * Class that uploads all changes to the osm server.
@@ -64,6 +76,11 @@ public class OsmServerWriter {
     private final OsmApi api = OsmApi.getOsmApi();
     private boolean canceled;
 
+    /** the application of the diff result of the previous chunk to the primitives, see {@link #uploadChangesInChunks} */
+    private Future<Set<OsmPrimitive>> pendingPostProcessing;
+    /** the new primitives of the previous chunk, which have no id until the post-processing is finished */
+    private Set<OsmPrimitive> pendingNewPrimitives;
+
     private long uploadStartTime;
 
     protected String timeLeft(int progress, int listSize) {
@@ -140,7 +157,14 @@ public class OsmServerWriter {
     }
 
     /**
-     * Upload all changes in one diff upload
+     * Upload all changes in chunks of diff uploads.
+     * <p>
+     * The chunks are uploaded one after another, but the diff result of a chunk is applied to the uploaded primitives
+     * in the background while the next chunk is uploaded. Only if the next chunk refers to new primitives of the previous
+     * chunk, it waits for their new ids. The primitives are written to the request while holding the read lock of their data set,
+     * see {@link OsmApi#uploadDiffWithoutPostProcessing}. Unless disabled by {@link AdaptiveChunkSize#ENABLED}, the given
+     * chunk size is only used for the first chunk, the size of the following chunks is adapted to the response times of the
+     * server.
      *
      * @param primitives the collection of primitives to upload
      * @param progressMonitor  the progress monitor
@@ -152,30 +176,106 @@ public class OsmServerWriter {
             throws OsmTransferException {
         if (chunkSize <= 0)
             throw new IllegalArgumentException(tr("Value >0 expected for parameter ''{0}'', got {1}", "chunkSize", chunkSize));
+        AdaptiveChunkSize adaptiveChunkSize = AdaptiveChunkSize.ENABLED.get() ? new AdaptiveChunkSize(chunkSize) : null;
+        ExecutorService postProcessor = Executors.newSingleThreadExecutor(
+                Utils.newThreadFactory("upload-postprocessor-%d", Thread.NORM_PRIORITY));
+        Exception failure = null;
         try {
             progressMonitor.beginTask(tr("Starting to upload in chunks..."));
-            List<OsmPrimitive> chunk = new ArrayList<>(chunkSize);
             Iterator<? extends OsmPrimitive> it = primitives.iterator();
-            int numChunks = (int) Math.ceil((double) primitives.size() / (double) chunkSize);
+            int remaining = primitives.size();
             int i = 0;
             while (it.hasNext()) {
                 i++;
                 if (canceled) return;
-                int j = 0;
-                chunk.clear();
-                while (it.hasNext() && j < chunkSize) {
+                int size = adaptiveChunkSize != null ? adaptiveChunkSize.getSize() : chunkSize;
+                List<OsmPrimitive> chunk = new ArrayList<>(Math.min(size, remaining));
+                while (it.hasNext() && chunk.size() < size) {
                     if (canceled) return;
-                    j++;
                     chunk.add(it.next());
                 }
+                remaining -= chunk.size();
+                if (pendingPostProcessing != null && refersToAny(chunk, pendingNewPrimitives)) {
+                    // the new primitives are written with their new ids
+                    waitForPostProcessing();
+                }
                 progressMonitor.setCustomText(
                         trn("({0}/{1}) Uploading {2} object...",
                                 "({0}/{1}) Uploading {2} objects...",
-                                chunk.size(), i, numChunks, chunk.size()));
-                processed.addAll(api.uploadDiff(chunk, progressMonitor.createSubTaskMonitor(ProgressMonitor.ALL_TICKS, false)));
+                                chunk.size(), i, i + (int) Math.ceil((double) remaining / size), chunk.size()));
+                long start = System.nanoTime();
+                DiffResultProcessor result = api.uploadDiffWithoutPostProcessing(chunk,
+                        progressMonitor.createSubTaskMonitor(ProgressMonitor.ALL_TICKS, false));
+                if (adaptiveChunkSize != null) {
+                    adaptiveChunkSize.update(chunk.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                }
+                // at most one chunk is post-processed at a time, usually it has been finished long ago
+                waitForPostProcessing();
+                // determined before the post-processing assigns the new ids
+                Set<OsmPrimitive> newPrimitives = Collections.newSetFromMap(new IdentityHashMap<>());
+                for (OsmPrimitive p : chunk) {
+                    if (p.isNew()) {
+                        newPrimitives.add(p);
+                    }
+                }
+                Changeset changeset = api.getChangeset();
+                pendingNewPrimitives = newPrimitives;
+                pendingPostProcessing = postProcessor.submit(() -> result.postProcess(changeset, null));
             }
+        } catch (OsmTransferException | RuntimeException e) {
+            failure = e;
+            throw e;
         } finally {
-            progressMonitor.finishTask();
+            try {
+                // the primitives uploaded successfully are updated even if a later chunk fails
+                waitForPostProcessing();
+            } catch (OsmTransferException | RuntimeException e) {
+                // do not hide the original failure, e.g. a ChangesetClosedException handled by the caller
+                if (failure == null)
+                    throw e;
+                failure.addSuppressed(e);
+            } finally {
+                postProcessor.shutdown();
+                progressMonitor.finishTask();
+            }
+        }
+    }
+
+    private static boolean refersToAny(Collection<OsmPrimitive> chunk, Set<OsmPrimitive> primitives) {
+        for (OsmPrimitive p : chunk) {
+            if (p.isDeleted()) {
+                continue; // deleted primitives are written without their children
+            }
+            if (p instanceof Way) {
+                for (Node n : ((Way) p).getNodes()) {
+                    if (primitives.contains(n))
+                        return true;
+                }
+            } else if (p instanceof Relation) {
+                for (RelationMember m : ((Relation) p).getMembers()) {
+                    if (primitives.contains(m.getMember()))
+                        return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void waitForPostProcessing() throws OsmTransferException {
+        if (pendingPostProcessing == null)
+            return;
+        try {
+            processed.addAll(pendingPostProcessing.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OsmTransferCanceledException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new OsmTransferException(e.getCause());
+        } finally {
+            pendingPostProcessing = null;
+            pendingNewPrimitives = null;
         }
     }
 
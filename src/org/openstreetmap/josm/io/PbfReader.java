@@ -0,0 +1,842 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.io;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.DataSource;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.NodeData;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
+import org.openstreetmap.josm.data.osm.PrimitiveData;
+import org.openstreetmap.josm.data.osm.PrimitiveId;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.RelationData;
+import org.openstreetmap.josm.data.osm.RelationMemberData;
+import org.openstreetmap.josm.data.osm.TagMap;
+import org.openstreetmap.josm.data.osm.User;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.osm.WayData;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.gui.progress.ProgressMonitor;
+import org.openstreetmap.josm.tools.CheckParameterUtil;
+
+/**
+ * Parser for the <a href="https://wiki.openstreetmap.org/wiki/PBF_Format">OSM PBF format</a>.
+ * <p>
+ * The file blocks are read sequentially, but decompressed and decoded in parallel. The decoded primitives are added to
+ * the data set in bulk, like in {@link OsmReader}.
+ */
+public class PbfReader extends AbstractReader {
+
+    /** The maximum size of a blob header, as defined by the format */
+    private static final int MAX_HEADER_SIZE = 64 * 1024;
+    /** The maximum size of a blob, as defined by the format */
+    private static final int MAX_BLOB_SIZE = 32 * 1024 * 1024;
+
+    private static final String[] SUPPORTED_FEATURES = {"OsmSchema-V0.6", "DenseNodes", "HistoricalInformation"};
+
+    protected boolean cancel;
+
+    /**
+     * Exception thrown after user cancelation.
+     */
+    private static final class PbfParsingCanceledException extends IllegalDataException implements ImportCancelException {
+        PbfParsingCanceledException(String msg) {
+            super(msg);
+        }
+    }
+
+    /**
+     * The primitives decoded from one data block.
+     */
+    private static final class PrimitiveBlock {
+        private final Map<PrimitiveId, OsmPrimitive> primitives = new HashMap<>();
+        private final Map<Long, Collection<Long>> ways = new HashMap<>();
+        private final Map<Long, Collection<RelationMemberData>> relations = new HashMap<>();
+        private final Map<Long, User> users = new HashMap<>();
+    }
+
+    /**
+     * A minimal decoder for the protocol buffer wire format.
+     */
+    static final class ProtobufDecoder {
+        static final int VARINT = 0;
+        static final int FIXED64 = 1;
+        static final int LENGTH_DELIMITED = 2;
+        static final int FIXED32 = 5;
+
+        private final byte[] buffer;
+        private int position;
+        private final int limit;
+        private int tag;
+
+        ProtobufDecoder(byte[] buffer, int offset, int limit) {
+            this.buffer = buffer;
+            this.position = offset;
+            this.limit = limit;
+        }
+
+        /**
+         * Reads the next field key.
+         * @return {@code true} if there is a field, {@code false} at the end of the message
+         * @throws IllegalDataException if the message is truncated
+         */
+        boolean next() throws IllegalDataException {
+            if (position >= limit)
+                return false;
+            tag = (int) readVarint();
+            return true;
+        }
+
+        int field() {
+            return tag >>> 3;
+        }
+
+        long readVarint() throws IllegalDataException {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (position >= limit)
+                    throw new IllegalDataException(tr("Truncated PBF message"));
+                byte b = buffer[position++];
+                result |= (long) (b & 0x7f) << shift;
+                if (b >= 0)
+                    return result;
+            }
+            throw new IllegalDataException(tr("Malformed varint in PBF message"));
+        }
+
+        long readSignedVarint() throws IllegalDataException {
+            long value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        ProtobufDecoder readMessage() throws IllegalDataException {
+            int length = (int) readVarint();
+            if (length < 0 || position + length > limit)
+                throw new IllegalDataException(tr("Truncated PBF message"));
+            ProtobufDecoder message = new ProtobufDecoder(buffer, position, position + length);
+            position += length;
+            return message;
+        }
+
+        String readString() throws IllegalDataException {
+            ProtobufDecoder s = readMessage();
+            return new String(buffer, s.position, s.limit - s.position, StandardCharsets.UTF_8);
+        }
+
+        byte[] readBytes() throws IllegalDataException {
+            ProtobufDecoder s = readMessage();
+            byte[] result = new byte[s.limit - s.position];
+            System.arraycopy(buffer, s.position, result, 0, result.length);
+            return result;
+        }
+
+        /**
+         * Reads a packed or a single varint field.
+         * @param signed {@code true} for zigzag encoded values
+         * @param delta {@code true} if the values are delta coded
+         * @return the values
+         * @throws IllegalDataException if the message is malformed
+         */
+        long[] readPacked(boolean signed, boolean delta) throws IllegalDataException {
+            if ((tag & 7) != LENGTH_DELIMITED)
+                return new long[] {signed ? readSignedVarint() : readVarint()};
+            ProtobufDecoder packed = readMessage();
+            long[] values = new long[packed.limit - packed.position];
+            int count = 0;
+            long last = 0;
+            while (packed.position < packed.limit) {
+                long value = signed ? packed.readSignedVarint() : packed.readVarint();
+                if (delta) {
+                    value += last;
+                    last = value;
+                }
+                values[count++] = value;
+            }
+            return count == values.length ? values : Arrays.copyOf(values, count);
+        }
+
+        void skip() throws IllegalDataException {
+            switch (tag & 7) {
+            case VARINT:
+                readVarint();
+                break;
+            case FIXED64:
+                position += 8;
+                break;
+            case LENGTH_DELIMITED:
+                readMessage();
+                break;
+            case FIXED32:
+                position += 4;
+                break;
+            default:
+                throw new IllegalDataException(tr("Unsupported wire type {0} in PBF message", tag & 7));
+            }
+        }
+    }
+
+    /**
+     * Constructs a new {@code PbfReader}.
+     */
+    public PbfReader() {
+        ds.setVersion("0.6");
+    }
+
+    /**
+     * Parse the given input source and return the dataset.
+     *
+     * @param source the source input stream. Must not be null.
+     * @param progressMonitor the progress monitor. If null, {@link NullProgressMonitor#INSTANCE} is assumed
+     *
+     * @return the dataset with the parsed data
+     * @throws IllegalDataException if an error was found while parsing the data from the source
+     * @throws IllegalArgumentException if source is null
+     */
+    public static DataSet parseDataSet(InputStream source, ProgressMonitor progressMonitor)
+            throws IllegalDataException {
+        return new PbfReader().doParseDataSet(source, progressMonitor);
+    }
+
+    protected DataSet doParseDataSet(InputStream source, ProgressMonitor progressMonitor)
+            throws IllegalDataException {
+        if (progressMonitor == null) {
+            progressMonitor = NullProgressMonitor.INSTANCE;
+        }
+        ProgressMonitor.CancelListener cancelListener = () -> cancel = true;
+        progressMonitor.addCancelListener(cancelListener);
+        CheckParameterUtil.ensureParameterNotNull(source, "source");
+        try {
+            progressMonitor.beginTask(tr("Prepare OSM data...", 2));
+            progressMonitor.indeterminateSubTask(tr("Parsing OSM data..."));
+            parse(new DataInputStream(source));
+            progressMonitor.worked(1);
+
+            progressMonitor.indeterminateSubTask(tr("Preparing data set..."));
+            prepareDataSet();
+            progressMonitor.worked(1);
+            return getDataSet();
+        } catch (IOException e) {
+            throw new IllegalDataException(e);
+        } finally {
+            progressMonitor.finishTask();
+            progressMonitor.removeCancelListener(cancelListener);
+        }
+    }
+
+    private void parse(DataInputStream in) throws IOException, IllegalDataException {
+        // decode up to two blocks per worker in advance, but keep the order of the blocks
+        int maxPending = 2 * THREAD_POOL.getParallelism();
+        ArrayDeque<Future<PrimitiveBlock>> pending = new ArrayDeque<>();
+        try {
+            while (true) {
+                if (cancel) {
+                    cancel = false;
+                    throw new PbfParsingCanceledException(tr("Reading was canceled"));
+                }
+                int headerSize;
+                try {
+                    headerSize = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (headerSize < 0 || headerSize > MAX_HEADER_SIZE)
+                    throw new IllegalDataException(tr("Invalid PBF blob header size {0}", headerSize));
+                byte[] header = new byte[headerSize];
+                in.readFully(header);
+                String type = null;
+                int dataSize = -1;
+                ProtobufDecoder headerDecoder = new ProtobufDecoder(header, 0, header.length);
+                while (headerDecoder.next()) {
+                    switch (headerDecoder.field()) {
+                    case 1:
+                        type = headerDecoder.readString();
+                        break;
+                    case 3:
+                        dataSize = (int) headerDecoder.readVarint();
+                        break;
+                    default:
+                        headerDecoder.skip();
+                    }
+                }
+                if (dataSize < 0 || dataSize > MAX_BLOB_SIZE)
+                    throw new IllegalDataException(tr("Invalid PBF blob size {0}", dataSize));
+                byte[] blob = new byte[dataSize];
+                in.readFully(blob);
+
+                if ("OSMHeader".equals(type)) {
+                    parseHeaderBlock(decompress(blob));
+                } else if ("OSMData".equals(type)) {
+                    if (pending.size() >= maxPending) {
+                        addBlock(pending.removeFirst());
+                    }
+                    pending.addLast(THREAD_POOL.submit(() -> parsePrimitiveBlock(decompress(blob))));
+                }
+                // unknown blob types are skipped as required by the format
+            }
+            while (!pending.isEmpty()) {
+                addBlock(pending.removeFirst());
+            }
+        } finally {
+            for (Future<PrimitiveBlock> future : pending) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private void addBlock(Future<PrimitiveBlock> future) throws IllegalDataException {
+        PrimitiveBlock block;
+        try {
+            block = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalDataException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IllegalDataException)
+                throw (IllegalDataException) e.getCause();
+            throw new IllegalDataException(e.getCause());
+        }
+        externalIdMap.putAll(block.primitives);
+        ways.putAll(block.ways);
+        relations.putAll(block.relations);
+    }
+
+    private static byte[] decompress(byte[] blob) throws IllegalDataException {
+        ProtobufDecoder decoder = new ProtobufDecoder(blob, 0, blob.length);
+        byte[] raw = null;
+        byte[] zlib = null;
+        int rawSize = -1;
+        while (decoder.next()) {
+            switch (decoder.field()) {
+            case 1:
+                raw = decoder.readBytes();
+                break;
+            case 2:
+                rawSize = (int) decoder.readVarint();
+                break;
+            case 3:
+                zlib = decoder.readBytes();
+                break;
+            case 4:
+            case 5:
+            case 6:
+                throw new IllegalDataException(tr("Unsupported PBF compression"));
+            default:
+                decoder.skip();
+            }
+        }
+        if (raw != null)
+            return raw;
+        if (zlib == null || rawSize < 0 || rawSize > MAX_BLOB_SIZE)
+            throw new IllegalDataException(tr("Invalid PBF blob"));
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(zlib);
+            byte[] result = new byte[rawSize];
+            int length = 0;
+            while (length < rawSize && !inflater.finished()) {
+                int n = inflater.inflate(result, length, rawSize - length);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    break;
+                length += n;
+            }
+            if (length != rawSize)
+                throw new IllegalDataException(tr("Invalid PBF blob"));
+            return result;
+        } catch (DataFormatException e) {
+            throw new IllegalDataException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private void parseHeaderBlock(byte[] data) throws IllegalDataException {
+        ProtobufDecoder decoder = new ProtobufDecoder(data, 0, data.length);
+        Bounds bounds = null;
+        String origin = null;
+        while (decoder.next()) {
+            switch (decoder.field()) {
+            case 1:
+                bounds = parseHeaderBBox(decoder.readMessage());
+                break;
+            case 4:
+                String feature = decoder.readString();
+                if (!isSupportedFeature(feature))
+                    throw new IllegalDataException(tr("Unsupported PBF feature {0}", feature));
+                break;
+            case 16:
+                origin = decoder.readString();
+                break;
+            default:
+                decoder.skip();
+            }
+        }
+        if (bounds != null) {
+            ds.dataSources.add(new DataSource(bounds, origin));
+        }
+    }
+
+    private static boolean isSupportedFeature(String feature) {
+        for (String supported : SUPPORTED_FEATURES) {
+            if (supported.equals(feature))
+                return true;
+        }
+        return false;
+    }
+
+    private static Bounds parseHeaderBBox(ProtobufDecoder decoder) throws IllegalDataException {
+        double left = 0;
+        double right = 0;
+        double top = 0;
+        double bottom = 0;
+        while (decoder.next()) {
+            switch (decoder.field()) {
+            case 1:
+                left = decoder.readSignedVarint() * 1e-9;
+                break;
+            case 2:
+                right = decoder.readSignedVarint() * 1e-9;
+                break;
+            case 3:
+                top = decoder.readSignedVarint() * 1e-9;
+                break;
+            case 4:
+                bottom = decoder.readSignedVarint() * 1e-9;
+                break;
+            default:
+                decoder.skip();
+            }
+        }
+        return new Bounds(bottom, left, top, right);
+    }
+
+    /**
+     * The context needed to decode the primitive groups of one block.
+     */
+    private static final class BlockContext {
+        private final PrimitiveBlock block = new PrimitiveBlock();
+        private String[] strings = new String[0];
+        private long granularity = 100;
+        private long dateGranularity = 1000;
+        private long latOffset;
+        private long lonOffset;
+
+        LatLon getLatLon(long lat, long lon) {
+            return new LatLon(1e-9 * (latOffset + granularity * lat), 1e-9 * (lonOffset + granularity * lon));
+        }
+
+        String getString(long index) throws IllegalDataException {
+            if (index < 0 || index >= strings.length)
+                throw new IllegalDataException(tr("Invalid PBF string table index {0}", index));
+            return strings[(int) index];
+        }
+
+        User getUser(long uid, long userSid) throws IllegalDataException {
+            if (uid <= 0)
+                return null;
+            User user = block.users.get(uid);
+            if (user == null) {
+                user = User.createOsmUser(uid, getString(userSid));
+                block.users.put(uid, user);
+            }
+            return user;
+        }
+    }
+
+    private static PrimitiveBlock parsePrimitiveBlock(byte[] data) throws IllegalDataException {
+        BlockContext context = new BlockContext();
+        // the string table and the granularity may follow the groups, so decode the groups last
+        List<ProtobufDecoder> groups = new ArrayList<>();
+        ProtobufDecoder decoder = new ProtobufDecoder(data, 0, data.length);
+        while (decoder.next()) {
+            switch (decoder.field()) {
+            case 1:
+                context.strings = parseStringTable(decoder.readMessage());
+                break;
+            case 2:
+                groups.add(decoder.readMessage());
+                break;
+            case 17:
+                context.granularity = decoder.readVarint();
+                break;
+            case 18:
+                context.dateGranularity = decoder.readVarint();
+                break;
+            case 19:
+                context.latOffset = decoder.readVarint();
+                break;
+            case 20:
+                context.lonOffset = decoder.readVarint();
+                break;
+            default:
+                decoder.skip();
+            }
+        }
+        for (ProtobufDecoder group : groups) {
+            while (group.next()) {
+                switch (group.field()) {
+                case 1:
+                    parseNode(context, group.readMessage());
+                    break;
+                case 2:
+                    parseDenseNodes(context, group.readMessage());
+                    break;
+                case 3:
+                    parseWay(context, group.readMessage());
+                    break;
+                case 4:
+                    parseRelation(context, group.readMessage());
+                    break;
+                default:
+                    group.skip();
+                }
+            }
+        }
+        return context.block;
+    }
+
+    private static String[] parseStringTable(ProtobufDecoder decoder) throws IllegalDataException {
+        List<String> strings = new ArrayList<>();
+        while (decoder.next()) {
+            if (decoder.field() == 1) {
+                strings.add(decoder.readString().intern());
+            } else {
+                decoder.skip();
+            }
+        }
+        return strings.toArray(new String[strings.size()]);
+    }
+
+    private static String[] getTags(BlockContext context, long[] keys, long[] values) throws IllegalDataException {
+        if (keys.length != values.length)
+            throw new IllegalDataException(tr("Invalid PBF tags"));
+        if (keys.length == 0)
+            return null;
+        String[] tags = new String[keys.length * 2];
+        for (int i = 0; i < keys.length; i++) {
+            tags[2 * i] = context.getString(keys[i]);
+            tags[2 * i + 1] = context.getString(values[i]);
+        }
+        return mergeDuplicateKeys(tags);
+    }
+
+    /**
+     * Removes the duplicate keys of a key/value array. Like {@link OsmReader}, the last value of a key is kept, at the
+     * position of the first occurrence of the key.
+     * @param tags the key/value array, may be modified
+     * @return the key/value array without duplicate keys
+     */
+    static String[] mergeDuplicateKeys(String[] tags) {
+        int length = tags.length;
+        for (int i = 2; i < length; i += 2) {
+            for (int j = 0; j < i; j += 2) {
+                if (tags[i].equals(tags[j])) {
+                    tags[j + 1] = tags[i + 1];
+                    System.arraycopy(tags, i + 2, tags, i, length - i - 2);
+                    length -= 2;
+                    i -= 2;
+                    break;
+                }
+            }
+        }
+        return length == tags.length ? tags : Arrays.copyOf(tags, length);
+    }
+
+    private static void parseInfo(BlockContext context, ProtobufDecoder decoder, PrimitiveData data) throws IllegalDataException {
+        long uid = 0;
+        long userSid = 0;
+        while (decoder.next()) {
+            switch (decoder.field()) {
+            case 1:
+                data.setVersion((int) decoder.readVarint());
+                break;
+            case 2:
+                data.setRawTimestamp((int) (decoder.readVarint() * context.dateGranularity / 1000));
+                break;
+            case 3:
+                data.setChangesetId((int) decoder.readVarint());
+                break;
+            case 4:
+                uid = decoder.readVarint();
+                break;
+            case 5:
+                userSid = decoder.readVarint();
+                break;
+            case 6:
+                data.setVisible(decoder.readVarint() != 0);
+                break;
+            default:
+                decoder.skip();
+            }
+        }
+        data.setUser(context.getUser(uid, userSid));
+    }
+
+    private static void checkId(long id) throws IllegalDataException {
+        if (id == 0)
+            throw new IllegalDataException(tr("Illegal object with ID=0."));
+    }
+
+    private static void parseNode(BlockContext context, ProtobufDecoder decoder) throws IllegalDataException {
+        NodeData nd = new NodeData();
+        long[] keys = new long[0];
+        long[] values = new long[0];
+        long lat = 0;
+        long lon = 0;
+        while (decoder.next()) {
+            switch (decoder.field()) {
+            case 1:
+                nd.setId(decoder.readSignedVarint());
+                break;
+            case 2:
+                keys = decoder.readPacked(false, false);
+                break;
+            case 3:
+                values = decoder.readPacked(false, false);
+                break;
+            case 4:
+                parseInfo(context, decoder.readMessage(), nd);
+                break;
+            case 8:
+                lat = decoder.readSignedVarint();
+                break;
+            case 9:
+                lon = decoder.readSignedVarint();
+                break;
+            default:
+                decoder.skip();
+            }
+        }
+        checkId(nd.getUniqueId());
+        nd.setCoor(context.getLatLon(lat, lon));
+        nd.setKeys(new TagMap(getTags(context, keys, values)));
+        addNode(context, nd);
+    }
+
+    private static void addNode(BlockContext context, NodeData nd) {
+        Node n = new Node(nd.getId(), nd.getVersion());
+        n.setVisible(nd.isVisible());
+        n.load(nd);
+        context.block.primitives.put(nd.getPrimitiveId(), n);
+    }
+
+    private static void parseDenseNodes(BlockContext context, ProtobufDecoder decoder) throws IllegalDataException {
+        long[] ids = new long[0];
+        long[] lats = new long[0];
+        long[] lons = new long[0];
+        long[] keysVals = new long[0];
+        long[][] info = null;
+        while (decoder.next()) {
+            switch (decoder.field()) {
+            case 1:
+                ids = decoder.readPacked(true, true);
+                break;
+            case 5:
+                info = parseDenseInfo(decoder.readMessage());
+                break;
+            case 8:
+                lats = decoder.readPacked(true, true);
+                break;
+            case 9:
+                lons = decoder.readPacked(true, true);
+                break;
+            case 10:
+                keysVals = decoder.readPacked(false, false);
+                break;
+            default:
+                decoder.skip();
+            }
+        }
+        if (lats.length != ids.length || lons.length != ids.length)
+            throw new IllegalDataException(tr("Invalid PBF dense nodes"));
+        int kv = 0;
+        List<String> tags = new ArrayList<>();
+        for (int i = 0; i < ids.length; i++) {
+            NodeData nd = new NodeData();
+            checkId(ids[i]);
+            nd.setId(ids[i]);
+            nd.setCoor(context.getLatLon(lats[i], lons[i]));
+            if (info != null) {
+                nd.setVersion((int) getDenseInfo(info[0], i, 0));
+                nd.setRawTimestamp((int) (getDenseInfo(info[1], i, 0) * context.dateGranularity / 1000));
+                nd.setChangesetId((int) getDenseInfo(info[2], i, 0));
+                nd.setUser(context.getUser(getDenseInfo(info[3], i, 0), getDenseInfo(info[4], i, 0)));
+                nd.setVisible(getDenseInfo(info[5], i, 1) != 0);
+            }
+            // the tags of all nodes are stored in one array, each node is terminated by 0
+            tags.clear();
+            while (kv < keysVals.length && keysVals[kv] != 0) {
+                if (kv + 1 >= keysVals.length)
+                    throw new IllegalDataException(tr("Invalid PBF tags"));
+                tags.add(context.getString(keysVals[kv++]));
+                tags.add(context.getString(keysVals[kv++]));
+            }
+            kv++;
+            if (!tags.isEmpty()) {
+                nd.setKeys(new TagMap(mergeDuplicateKeys(tags.toArray(new String[tags.size()]))));
+            }
+            addNode(context, nd);
+        }
+    }
+
+    private static long getDenseInfo(long[] values, int index, long defaultValue) {
+        return index < values.length ? values[index] : defaultValue;
+    }
+
+    private static long[][] parseDenseInfo(ProtobufDecoder decoder) throws IllegalDataException {
+        // version, timestamp, changeset, uid, user_sid, visible
+        long[][] info = new long[6][0];
+        while (decoder.next()) {
+            switch (decoder.field()) {
+            case 1:
+                info[0] = decoder.readPacked(false, false);
+                break;
+            case 2:
+                info[1] = decoder.readPacked(true, true);
+                break;
+            case 3:
+                info[2] = decoder.readPacked(true, true);
+                break;
+            case 4:
+                info[3] = decoder.readPacked(true, true);
+                break;
+            case 5:
+                info[4] = decoder.readPacked(true, true);
+                break;
+            case 6:
+                info[5] = decoder.readPacked(false, false);
+                break;
+            default:
+                decoder.skip();
+            }
+        }
+        return info;
+    }
+
+    private static void parseWay(BlockContext context, ProtobufDecoder decoder) throws IllegalDataException {
+        WayData wd = new WayData();
+        long[] keys = new long[0];
+        long[] values = new long[0];
+        long[] refs = new long[0];
+        while (decoder.next()) {
+            switch (decoder.field()) {
+            case 1:
+                wd.setId(decoder.readVarint());
+                break;
+            case 2:
+                keys = decoder.readPacked(false, false);
+                break;
+            case 3:
+                values = decoder.readPacked(false, false);
+                break;
+            case 4:
+                parseInfo(context, decoder.readMessage(), wd);
+                break;
+            case 8:
+                refs = decoder.readPacked(true, true);
+                break;
+            default:
+                decoder.skip();
+            }
+        }
+        checkId(wd.getUniqueId());
+        wd.setKeys(new TagMap(getTags(context, keys, values)));
+        Way w = new Way(wd.getId(), wd.getVersion());
+        w.setVisible(wd.isVisible());
+        w.load(wd);
+        context.block.primitives.put(wd.getPrimitiveId(), w);
+
+        List<Long> nodeIds = new ArrayList<>(refs.length);
+        for (long ref : refs) {
+            if (ref == 0)
+                throw new IllegalDataException(tr("Illegal value of attribute ''ref'' of element <nd>. Got {0}.", ref));
+            nodeIds.add(ref);
+        }
+        context.block.ways.put(wd.getUniqueId(), nodeIds);
+    }
+
+    private static void parseRelation(BlockContext context, ProtobufDecoder decoder) throws IllegalDataException {
+        RelationData rd = new RelationData();
+        long[] keys = new long[0];
+        long[] values = new long[0];
+        long[] roles = new long[0];
+        long[] memberIds = new long[0];
+        long[] types = new long[0];
+        while (decoder.next()) {
+            switch (decoder.field()) {
+            case 1:
+                rd.setId(decoder.readVarint());
+                break;
+            case 2:
+                keys = decoder.readPacked(false, false);
+                break;
+            case 3:
+                values = decoder.readPacked(false, false);
+                break;
+            case 4:
+                parseInfo(context, decoder.readMessage(), rd);
+                break;
+            case 8:
+                roles = decoder.readPacked(false, false);
+                break;
+            case 9:
+                memberIds = decoder.readPacked(true, true);
+                break;
+            case 10:
+                types = decoder.readPacked(false, false);
+                break;
+            default:
+                decoder.skip();
+            }
+        }
+        checkId(rd.getUniqueId());
+        if (roles.length != memberIds.length || types.length != memberIds.length)
+            throw new IllegalDataException(tr("Invalid PBF relation members in relation {0}", rd.getUniqueId()));
+        rd.setKeys(new TagMap(getTags(context, keys, values)));
+        Relation r = new Relation(rd.getId(), rd.getVersion());
+        r.setVisible(rd.isVisible());
+        r.load(rd);
+        context.block.primitives.put(rd.getPrimitiveId(), r);
+
+        List<RelationMemberData> members = new ArrayList<>(memberIds.length);
+        for (int i = 0; i < memberIds.length; i++) {
+            OsmPrimitiveType type;
+            switch ((int) types[i]) {
+            case 0:
+                type = OsmPrimitiveType.NODE;
+                break;
+            case 1:
+                type = OsmPrimitiveType.WAY;
+                break;
+            case 2:
+                type = OsmPrimitiveType.RELATION;
+                break;
+            default:
+                throw new IllegalDataException(tr("Illegal member type in relation {0}", rd.getUniqueId()));
+            }
+            members.add(new RelationMemberData(context.getString(roles[i]), type, memberIds[i]));
+        }
+        context.block.relations.put(rd.getUniqueId(), members);
+    }
+}
@@ -24,6 +24,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import org.openstreetmap.josm.Main;
 import org.openstreetmap.josm.data.Version;
@@ -46,6 +47,8 @@ public final class HttpClient {
     private int connectTimeout = (int) TimeUnit.SECONDS.toMillis(Main.pref.getInteger("socket.timeout.connect", 15));
     private int readTimeout = (int) TimeUnit.SECONDS.toMillis(Main.pref.getInteger("socket.timeout.read", 30));
     private byte[] requestBody;
+    private RequestBodyWriter requestBodyWriter;
+    private boolean compressRequestBody;
     private long ifModifiedSince;
     private final Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
     private int maxRedirects = Main.pref.getInteger("socket.maxredirects", 5);
@@ -59,6 +62,19 @@ public final class HttpClient {
         CookieHandler.setDefault(new CookieManager());
     }
 
+    /**
+     * Writes a request body to the connection, see {@link HttpClient#setRequestBody(RequestBodyWriter)}.
+     */
+    @FunctionalInterface
+    public interface RequestBodyWriter {
+        /**
+         * Writes the request body.
+         * @param out the output stream of the connection, closed by the caller
+         * @throws IOException if any I/O error occurs. The request is aborted then, the server does not receive a complete body.
+         */
+        void writeTo(OutputStream out) throws IOException;
+    }
+
     private HttpClient(URL url, String requestMethod) {
         this.url = url;
         this.requestMethod = requestMethod;
@@ -108,7 +124,26 @@ public final class HttpClient {
         progressMonitor.beginTask(tr("Contacting Server..."), 1);
         progressMonitor.indeterminateSubTask(null);
 
-        if ("PUT".equals(requestMethod) || "POST".equals(requestMethod) || "DELETE".equals(requestMethod)) {
+        if (requestBodyWriter != null && ("PUT".equals(requestMethod) || "POST".equals(requestMethod))) {
+            Main.info("{0} {1} (streamed{2}) ...", requestMethod, url, compressRequestBody ? ", gzip" : "");
+            if (compressRequestBody) {
+                connection.setRequestProperty("Content-Encoding", "gzip");
+            }
+            connection.setChunkedStreamingMode(0);
+            connection.setDoOutput(true);
+            OutputStream out = compressRequestBody
+                    ? new GZIPOutputStream(connection.getOutputStream(), 8192)
+                    : new BufferedOutputStream(connection.getOutputStream());
+            try {
+                requestBodyWriter.writeTo(out);
+            } catch (IOException | RuntimeException e) {
+                // Abort the request instead of closing the stream, which would send the final chunk:
+                // the server must not receive (and process) the incomplete body as a complete request
+                disconnect(connection);
+                throw e;
+            }
+            out.close();
+        } else if ("PUT".equals(requestMethod) || "POST".equals(requestMethod) || "DELETE".equals(requestMethod)) {
             Main.info("{0} {1} ({2}) ...", requestMethod, url, Utils.getSizeString(requestBody.length, Locale.getDefault()));
             connection.setFixedLengthStreamingMode(requestBody.length);
             connection.setDoOutput(true);
@@ -118,10 +153,15 @@ public final class HttpClient {
             }
         }
 
+        final HttpStatistics statistics = HttpStatistics.getHost(url.getHost());
+        // a request body has been sent already, do not count its upload time as latency
+        final long start = System.nanoTime();
         boolean successfulConnection = false;
         try {
             try {
                 connection.connect();
+                connection.getResponseCode();
+                statistics.addRequest(System.nanoTime() - start);
                 final boolean hasReason = reasonForRequest != null && !reasonForRequest.isEmpty();
                 Main.info("{0} {1}{2} -> {3}{4}",
                         requestMethod, url, hasReason ? (" (" + reasonForRequest + ')') : "",
@@ -137,6 +177,7 @@ public final class HttpClient {
                     DefaultAuthenticator.getInstance().addFailedCredentialHost(url.getHost());
                 }
             } catch (IOException e) {
+                statistics.addFailure();
                 Main.info("{0} {1} -> !!!", requestMethod, url);
                 Main.warn(e);
                 //noinspection ThrowableResultOfMethodCallIgnored
@@ -278,16 +319,7 @@ public final class HttpClient {
          */
         @SuppressWarnings("resource")
         public InputStream getContent() throws IOException {
-            InputStream in;
-            try {
-                in = connection.getInputStream();
-            } catch (IOException ioe) {
-                Main.debug(ioe);
-                in = connection.getErrorStream();
-                if (in == null) {
-                    in = new ByteArrayInputStream(new byte[]{});
-                }
-            }
+            InputStream in = HttpStatistics.getHost(connection.getURL().getHost()).countReceived(getRawContent());
             in = new ProgressInputStream(in, getContentLength(), monitor);
             in = "gzip".equalsIgnoreCase(getContentEncoding()) ? new GZIPInputStream(in) : in;
             Compression compression = Compression.NONE;
@@ -438,6 +470,41 @@ public final class HttpClient {
         public void disconnect() {
             HttpClient.disconnect(connection);
         }
+
+        /**
+         * Reads the remaining content and closes it, so that the connection can be reused for further requests
+         * to the same host (HTTP keep-alive). Unlike {@link #disconnect()}, this does not close the connection.
+         * <p>
+         * This should be called when a response is not needed (e.g. an error response), or has not been read to the end.
+         * Large remaining content is not read, the connection is closed instead.
+         */
+        public void release() {
+            try (InputStream in = getRawContent()) {
+                byte[] buffer = new byte[4096];
+                int remaining = 64 * 1024;
+                int n;
+                while (remaining > 0 && (n = in.read(buffer)) != -1) {
+                    remaining -= n;
+                }
+            } catch (IOException e) {
+                // the content has already been closed, or the connection cannot be reused
+                Main.trace(e);
+            }
+        }
+
+        private InputStream getRawContent() {
+            InputStream in;
+            try {
+                in = connection.getInputStream();
+            } catch (IOException ioe) {
+                Main.debug(ioe);
+                in = connection.getErrorStream();
+                if (in == null) {
+                    in = new ByteArrayInputStream(new byte[]{});
+                }
+            }
+            return in;
+        }
     }
 
     /**
@@ -561,6 +628,35 @@ public final class HttpClient {
      */
     public HttpClient setRequestBody(byte[] requestBody) {
         this.requestBody = requestBody;
+        this.requestBodyWriter = null;
+        return this;
+    }
+
+    /**
+     * Sets a request body for {@code PUT}/{@code POST} requests which is written directly to the connection.
+     * <p>
+     * The body is sent with chunked transfer encoding, so its length need not be known in advance.
+     * The writer is called again if the request is redirected.
+     * @param requestBodyWriter writer of the request body
+     *
+     * @return {@code this}
+     * @see #setCompressRequestBody(boolean)
+     */
+    public HttpClient setRequestBody(RequestBodyWriter requestBodyWriter) {
+        this.requestBodyWriter = requestBodyWriter;
+        this.requestBody = null;
+        return this;
+    }
+
+    /**
+     * Sets whether a request body set by {@link #setRequestBody(RequestBodyWriter)} is sent gzip-compressed.
+     * The server must support the {@code Content-Encoding: gzip} request header.
+     * @param compressRequestBody whether to compress the request body
+     *
+     * @return {@code this}
+     */
+    public HttpClient setCompressRequestBody(boolean compressRequestBody) {
+        this.compressRequestBody = compressRequestBody;
         return this;
     }
 
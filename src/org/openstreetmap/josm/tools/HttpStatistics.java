@@ -0,0 +1,156 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.tools;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of the HTTP requests made by {@link HttpClient} to one host.
+ * <p>
+ * The latency is the time from sending the request (after its body, if any) until the response headers have been
+ * received, the throughput is the number of bytes of response bodies received per second spent waiting for them.
+ * Comparing both tells whether requests to a host are limited by the round trips or by the bandwidth.
+ * The counters are cumulative since the start of JOSM.
+ */
+public final class HttpStatistics {
+
+    private static final Map<String, HttpStatistics> HOSTS = new ConcurrentHashMap<>();
+
+    private final String host;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder latencyNanos = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+    private final LongAdder readNanos = new LongAdder();
+
+    private HttpStatistics(String host) {
+        this.host = host;
+    }
+
+    /**
+     * Returns the counters of a host, creating them if necessary.
+     * @param host the host name
+     * @return the counters of the host
+     */
+    public static HttpStatistics getHost(String host) {
+        return HOSTS.computeIfAbsent(host, HttpStatistics::new);
+    }
+
+    /**
+     * Returns the counters of all hosts requested so far.
+     * @return a map of host names to counters, sorted by host name
+     */
+    public static Map<String, HttpStatistics> getHosts() {
+        return new TreeMap<>(HOSTS);
+    }
+
+    /**
+     * Records a request which has received a response.
+     * @param latencyNanos the time until the response headers have been received, in nanoseconds
+     */
+    void addRequest(long latencyNanos) {
+        requests.increment();
+        this.latencyNanos.add(latencyNanos);
+    }
+
+    /**
+     * Records a request which has failed before a response has been received.
+     */
+    void addFailure() {
+        failures.increment();
+    }
+
+    /**
+     * Returns a stream counting the bytes read from the given response body.
+     * @param in the response body
+     * @return a stream recording the received bytes and the time spent reading them
+     */
+    InputStream countReceived(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                long start = System.nanoTime();
+                int b = super.read();
+                readNanos.add(System.nanoTime() - start);
+                if (b >= 0) {
+                    bytesReceived.increment();
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                long start = System.nanoTime();
+                int n = super.read(b, off, len);
+                readNanos.add(System.nanoTime() - start);
+                if (n > 0) {
+                    bytesReceived.add(n);
+                }
+                return n;
+            }
+        };
+    }
+
+    /**
+     * Returns the host name.
+     * @return the host name
+     */
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * Returns the number of requests which have received a response, including error responses.
+     * @return the number of requests
+     */
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    /**
+     * Returns the number of requests which failed without a response, e.g. because of a timeout.
+     * @return the number of failed requests
+     */
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    /**
+     * Returns the average time until the response headers have been received.
+     * @return the average latency in milliseconds, or 0 if there has been no response
+     */
+    public double getAverageLatency() {
+        long count = requests.sum();
+        return count == 0 ? 0 : latencyNanos.sum() / (double) count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * Returns the number of bytes read from response bodies, before uncompressing them.
+     * @return the number of bytes received
+     */
+    public long getBytesReceived() {
+        return bytesReceived.sum();
+    }
+
+    /**
+     * Returns the rate at which response bodies have been received.
+     * @return the throughput in bytes per second, or 0 if nothing has been received
+     */
+    public double getThroughput() {
+        long nanos = readNanos.sum();
+        return nanos == 0 ? 0 : bytesReceived.sum() * (double) TimeUnit.SECONDS.toNanos(1) / nanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ENGLISH, "%s: %d requests, %d failures, %.0f ms latency, %d bytes received, %.0f bytes/s",
+                host, getRequestCount(), getFailureCount(), getAverageLatency(), getBytesReceived(), getThroughput());
+    }
+}
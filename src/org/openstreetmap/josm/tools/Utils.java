@@ -1214,7 +1214,17 @@ public final class Utils {
      * @return a {@link ForkJoinPool}
      */
     public static ForkJoinPool newForkJoinPool(String pref, final String nameFormat, final int threadPriority) {
-        int noThreads = Main.pref.getInteger(pref, Runtime.getRuntime().availableProcessors());
+        return newForkJoinPool(Main.pref.getInteger(pref, Runtime.getRuntime().availableProcessors()), nameFormat, threadPriority);
+    }
+
+    /**
+     * Returns a {@link ForkJoinPool} with the given parallelism.
+     * @param noThreads The parallelism
+     * @param nameFormat see {@link #newThreadFactory(String, int)}
+     * @param threadPriority see {@link #newThreadFactory(String, int)}
+     * @return a {@link ForkJoinPool}
+     */
+    public static ForkJoinPool newForkJoinPool(int noThreads, final String nameFormat, final int threadPriority) {
         return new ForkJoinPool(noThreads, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
             final AtomicLong count = new AtomicLong(0);
             @Override
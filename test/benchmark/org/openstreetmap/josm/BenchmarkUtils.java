@@ -0,0 +1,91 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.io.Compression;
+import org.openstreetmap.josm.io.IllegalDataException;
+import org.openstreetmap.josm.io.OsmReader;
+
+/**
+ * Shared setup of the JMH benchmarks.
+ * <p>
+ * Benchmarks run in forked JVMs started in the base directory of JOSM, so the test data is read from {@code data_nodist}
+ * like in the performance tests.
+ */
+public final class BenchmarkUtils {
+
+    /**
+     * The city data set, a good real world example of an OSM file.
+     */
+    public static final String CITY_FILE = "data_nodist/neubrandenburg.osm.bz2";
+
+    /**
+     * The bounds of the whole city data set.
+     */
+    public static final Bounds BOUNDS_CITY_ALL = new Bounds(53.4382, 13.1094, 53.6153, 13.4074, false);
+
+    /**
+     * The bounds of the city center.
+     */
+    public static final Bounds BOUNDS_CITY_CENTER = new Bounds(53.55, 13.25, 53.57, 13.28);
+
+    private static boolean initialized;
+    private static byte[] cityOsm;
+
+    private BenchmarkUtils() {
+        // Hide default constructor for utils classes
+    }
+
+    /**
+     * Initializes the performance test environment, including the main GUI components. Does nothing if it has already
+     * been initialized in this JVM.
+     */
+    public static synchronized void init() {
+        if (!initialized) {
+            JOSMFixture.createPerformanceTestFixture().init(true);
+            initialized = true;
+        }
+    }
+
+    /**
+     * Returns the uncompressed content of the city data set. The file is read only once.
+     * @return the OSM XML of the city data set
+     */
+    public static synchronized byte[] getCityOsm() {
+        if (cityOsm == null) {
+            try (InputStream is = Compression.getUncompressedFileInputStream(new File(CITY_FILE))) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = is.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+                cityOsm = out.toByteArray();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return cityOsm;
+    }
+
+    /**
+     * Parses a new copy of the city data set.
+     * @return the city data set
+     */
+    public static DataSet loadCity() {
+        try {
+            return OsmReader.parseDataSet(new ByteArrayInputStream(getCityOsm()), NullProgressMonitor.INSTANCE);
+        } catch (IllegalDataException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
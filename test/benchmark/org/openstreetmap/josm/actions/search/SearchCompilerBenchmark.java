@@ -0,0 +1,83 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.actions.search;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openstreetmap.josm.BenchmarkUtils;
+import org.openstreetmap.josm.actions.search.SearchCompiler.Match;
+import org.openstreetmap.josm.actions.search.SearchCompiler.ParseError;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+
+/**
+ * Benchmark of {@link SearchCompiler} matching, against all primitives of the city data set.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SearchCompilerBenchmark {
+
+    /**
+     * The search expression.
+     */
+    @Param({
+        "highway=residential",
+        "building=* OR landuse=*",
+        "type:way -untagged closed",
+        "name:Straße",
+        "child (type:way highway=*)"
+    })
+    public String expression;
+
+    private OsmPrimitive[] primitives;
+    private Match match;
+
+    /**
+     * Loads the data set and compiles the expression.
+     * @throws ParseError if the expression is invalid
+     */
+    @Setup
+    public void setUp() throws ParseError {
+        BenchmarkUtils.init();
+        primitives = BenchmarkUtils.loadCity().allPrimitives().toArray(new OsmPrimitive[0]);
+        match = SearchCompiler.compile(expression);
+    }
+
+    /**
+     * Matches all primitives.
+     * @return the number of matching primitives
+     */
+    @Benchmark
+    public int match() {
+        int count = 0;
+        for (OsmPrimitive osm : primitives) {
+            if (match.match(osm)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Compiles the expression.
+     * @return the compiled expression
+     * @throws ParseError if the expression is invalid
+     */
+    @Benchmark
+    public Match compile() throws ParseError {
+        return SearchCompiler.compile(expression);
+    }
+}
@@ -0,0 +1,83 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openstreetmap.josm.BenchmarkUtils;
+import org.openstreetmap.josm.data.Bounds;
+
+/**
+ * Benchmarks of the {@link QuadBuckets} search, through {@link DataSet#searchNodes} and {@link DataSet#searchWays}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class QuadBucketsBenchmark {
+
+    private static final int BOXES = 1024;
+
+    /**
+     * The size of the searched boxes, in degrees.
+     */
+    @Param({"0.001", "0.01", "0.1"})
+    public double size;
+
+    private DataSet ds;
+    private final BBox[] boxes = new BBox[BOXES];
+    private int next;
+
+    /**
+     * Loads the data set and creates the searched boxes, at fixed random positions within the data.
+     */
+    @Setup
+    public void setUp() {
+        BenchmarkUtils.init();
+        ds = BenchmarkUtils.loadCity();
+        Bounds b = BenchmarkUtils.BOUNDS_CITY_ALL;
+        Random random = new Random(42);
+        for (int i = 0; i < BOXES; i++) {
+            double lat = b.getMinLat() + random.nextDouble() * (b.getMaxLat() - b.getMinLat() - size);
+            double lon = b.getMinLon() + random.nextDouble() * (b.getMaxLon() - b.getMinLon() - size);
+            boxes[i] = new BBox(lon, lat, lon + size, lat + size);
+        }
+    }
+
+    private BBox nextBox() {
+        next = (next + 1) & (BOXES - 1);
+        return boxes[next];
+    }
+
+    /**
+     * Searches the nodes in a box.
+     * @return the found nodes
+     */
+    @Benchmark
+    public List<Node> searchNodes() {
+        return ds.searchNodes(nextBox());
+    }
+
+    /**
+     * Searches the ways in a box.
+     * @return the found ways
+     */
+    @Benchmark
+    public List<Way> searchWays() {
+        return ds.searchWays(nextBox());
+    }
+}
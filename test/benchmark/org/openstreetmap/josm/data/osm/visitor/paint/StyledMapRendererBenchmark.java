@@ -0,0 +1,81 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm.visitor.paint;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openstreetmap.josm.BenchmarkUtils;
+import org.openstreetmap.josm.Main;
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.gui.NavigatableComponent;
+import org.openstreetmap.josm.gui.mappaint.MapPaintStyles;
+
+/**
+ * Benchmark of {@link StyledMapRenderer#render}, painting the city data set with the default map style into a
+ * {@link BufferedImage}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StyledMapRendererBenchmark {
+
+    private static final int IMG_WIDTH = 1400;
+    private static final int IMG_HEIGHT = 1050;
+
+    /**
+     * The painted area: {@code all} for the whole city, {@code center} for the city center.
+     */
+    @Param({"all", "center"})
+    public String area;
+
+    private DataSet ds;
+    private Bounds bounds;
+    private Graphics2D g;
+    private NavigatableComponent nc;
+
+    /**
+     * Loads the styles and the data set and zooms to the painted area.
+     */
+    @Setup
+    public void setUp() {
+        BenchmarkUtils.init();
+        MapPaintStyles.readFromPreferences();
+        ds = BenchmarkUtils.loadCity();
+        bounds = "all".equals(area) ? BenchmarkUtils.BOUNDS_CITY_ALL : BenchmarkUtils.BOUNDS_CITY_CENTER;
+        BufferedImage img = new BufferedImage(IMG_WIDTH, IMG_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        g = img.createGraphics();
+        g.setClip(0, 0, IMG_WIDTH, IMG_HEIGHT);
+        nc = Main.map.mapView;
+        nc.setBounds(0, 0, IMG_WIDTH, IMG_HEIGHT);
+        nc.zoomTo(bounds);
+    }
+
+    /**
+     * Paints the data set.
+     * @return the graphics painted to
+     */
+    @Benchmark
+    public Graphics2D render() {
+        g.setColor(Color.BLACK);
+        g.fillRect(0, 0, IMG_WIDTH, IMG_HEIGHT);
+        new StyledMapRenderer(g, nc, false).render(ds, false, bounds);
+        return g;
+    }
+}
@@ -0,0 +1,80 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.validation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openstreetmap.josm.BenchmarkUtils;
+import org.openstreetmap.josm.Main;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.gui.layer.OsmDataLayer;
+import org.openstreetmap.josm.gui.preferences.validator.ValidatorPreference;
+
+/**
+ * Benchmark of a validator run with all enabled tests over the city data set, as done by the validate action.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ValidatorBenchmark {
+
+    /**
+     * Value of {@link ValidatorPreference#PREF_PARALLEL}.
+     */
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private Collection<Test> tests;
+    private List<OsmPrimitive> primitives;
+
+    /**
+     * Initializes the tests and loads the data set as edit layer. Tests that cannot be initialized are skipped.
+     */
+    @Setup
+    public void setUp() {
+        BenchmarkUtils.init();
+        ValidatorPreference.PREF_PARALLEL.put(parallel);
+        OsmValidator.initialize();
+        tests = new ArrayList<>();
+        for (Test test : OsmValidator.getEnabledTests(false)) {
+            try {
+                test.initialize();
+                test.setPartialSelection(false);
+                tests.add(test);
+            } catch (Exception e) {
+                // e.g. tests that need network access
+                Main.warn(e, "Skipping " + test.getName());
+            }
+        }
+        // some tests use the edit data set
+        DataSet ds = BenchmarkUtils.loadCity();
+        Main.getLayerManager().addLayer(new OsmDataLayer(ds, "city", null));
+        primitives = new ArrayList<>(ds.allPrimitives());
+    }
+
+    /**
+     * Runs the tests.
+     * @return the errors found
+     */
+    @Benchmark
+    public List<TestError> validate() {
+        return TestRunner.runTests(tests, primitives, test -> null);
+    }
+}
@@ -0,0 +1,61 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.gui.mappaint.mapcss;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openstreetmap.josm.BenchmarkUtils;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.gui.mappaint.MultiCascade;
+
+/**
+ * Benchmark of {@link MapCSSStyleSource#apply}, applying the default map style to all primitives of the city data set.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MapCSSStyleSourceBenchmark {
+
+    private MapCSSStyleSource source;
+    private OsmPrimitive[] primitives;
+
+    /**
+     * Loads the default style and the data set.
+     */
+    @Setup
+    public void setUp() {
+        BenchmarkUtils.init();
+        source = new MapCSSStyleSource("resource://styles/standard/elemstyles.mapcss", "standard", "");
+        source.loadStyleSource();
+        if (!source.getErrors().isEmpty()) {
+            throw new IllegalStateException("Errors in style: " + source.getErrors());
+        }
+        primitives = BenchmarkUtils.loadCity().allPrimitives().toArray(new OsmPrimitive[0]);
+    }
+
+    /**
+     * Applies the style to all primitives, at zoom level 17.
+     * @param bh the black hole consuming the cascades
+     */
+    @Benchmark
+    public void apply(Blackhole bh) {
+        for (OsmPrimitive osm : primitives) {
+            MultiCascade mc = new MultiCascade();
+            source.apply(mc, osm, 1.5, false);
+            bh.consume(mc);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openstreetmap.josm.BenchmarkUtils;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+
+/**
+ * Benchmarks of reading and writing OSM XML, using the city data set.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OsmReaderWriterBenchmark {
+
+    /**
+     * Value of {@link OsmReader#PIPELINED}.
+     */
+    @Param({"false", "true"})
+    public boolean pipelined;
+
+    private byte[] osm;
+    private DataSet ds;
+
+    /**
+     * Loads the data set.
+     */
+    @Setup
+    public void setUp() {
+        BenchmarkUtils.init();
+        OsmReader.PIPELINED.put(pipelined);
+        osm = BenchmarkUtils.getCityOsm();
+        ds = BenchmarkUtils.loadCity();
+    }
+
+    /**
+     * Parses the data set from memory.
+     * @return the parsed data set
+     * @throws IllegalDataException if the data cannot be parsed
+     */
+    @Benchmark
+    public DataSet read() throws IllegalDataException {
+        return OsmReader.parseDataSet(new ByteArrayInputStream(osm), NullProgressMonitor.INSTANCE);
+    }
+
+    /**
+     * Writes the data set to memory.
+     * @return the written bytes
+     */
+    @Benchmark
+    public byte[] write() {
+        return write(ds);
+    }
+
+    /**
+     * Writes the data set and parses the result again.
+     * @return the parsed data set
+     * @throws IllegalDataException if the data cannot be parsed
+     */
+    @Benchmark
+    public DataSet roundTrip() throws IllegalDataException {
+        return OsmReader.parseDataSet(new ByteArrayInputStream(write(ds)), NullProgressMonitor.INSTANCE);
+    }
+
+    private static byte[] write(DataSet data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1 << 24);
+        try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            OsmWriter w = OsmWriterFactory.createOsmWriter(writer, true, "0.6");
+            w.header();
+            w.writeDataSources(data);
+            w.writeContent(data);
+            w.footer();
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,114 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.PerformanceTestUtils;
+import org.openstreetmap.josm.PerformanceTestUtils.PerformanceTestTimer;
+import org.openstreetmap.josm.data.coor.LatLon;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * This test compares the load and query performance of {@link QuadBuckets} and {@link PackedRTree}.
+ * <p>
+ * The nodes are clustered like in a real extract: many dense towns with empty space between them.
+ */
+public class SpatialIndexPerformanceTest {
+    private static final int NODE_COUNT = 1000000;
+    private static final int CLUSTER_COUNT = 500;
+    private static final int SEARCH_RUNS = 2000;
+    private static final double SEARCH_SIZE = 0.01;
+
+    private static List<Node> nodes;
+    private static List<BBox> searchBoxes;
+
+    /**
+     * Global timeout applied to all test methods.
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public Timeout globalTimeout = Timeout.seconds(15*60);
+
+    /**
+     * Prepare the test.
+     */
+    @BeforeClass
+    public static void createJOSMFixture() {
+        JOSMFixture.createPerformanceTestFixture().init(true);
+        Random random = new Random(1);
+        double[] clusters = new double[2 * CLUSTER_COUNT];
+        for (int i = 0; i < clusters.length; i++) {
+            clusters[i] = random.nextDouble() * 5;
+        }
+        nodes = new ArrayList<>(NODE_COUNT);
+        for (int i = 0; i < NODE_COUNT; i++) {
+            int cluster = random.nextInt(CLUSTER_COUNT);
+            Node n = new Node(i + 1);
+            n.setCoor(new LatLon(clusters[2 * cluster] + random.nextGaussian() * 0.02,
+                    clusters[2 * cluster + 1] + random.nextGaussian() * 0.02));
+            nodes.add(n);
+        }
+        searchBoxes = new ArrayList<>(SEARCH_RUNS);
+        for (int i = 0; i < SEARCH_RUNS; i++) {
+            int cluster = random.nextInt(CLUSTER_COUNT);
+            double lon = clusters[2 * cluster + 1] + random.nextGaussian() * 0.02;
+            double lat = clusters[2 * cluster] + random.nextGaussian() * 0.02;
+            searchBoxes.add(new BBox(lon, lat, lon + SEARCH_SIZE, lat + SEARCH_SIZE));
+        }
+    }
+
+    /**
+     * Measures the {@link QuadBuckets} performance.
+     */
+    @Test
+    public void testQuadBuckets() {
+        runTest("QuadBuckets", QuadBuckets::new);
+    }
+
+    /**
+     * Measures the {@link PackedRTree} performance.
+     */
+    @Test
+    public void testPackedRTree() {
+        runTest("PackedRTree", PackedRTree::new);
+    }
+
+    private static void runTest(String name, Supplier<SpatialIndex<Node>> factory) {
+        PerformanceTestTimer timer = PerformanceTestUtils.startTimer(name + " bulk load " + NODE_COUNT + " nodes");
+        SpatialIndex<Node> index = factory.get();
+        index.addAll(nodes);
+        timer.done();
+        assertEquals(NODE_COUNT, index.size());
+
+        timer = PerformanceTestUtils.startTimer(name + " add " + NODE_COUNT + " nodes one by one");
+        SpatialIndex<Node> incremental = factory.get();
+        for (Node n : nodes) {
+            incremental.add(n);
+        }
+        timer.done();
+
+        long found = 0;
+        timer = PerformanceTestUtils.startTimer(name + " search " + SEARCH_RUNS + " bboxes");
+        for (BBox bbox : searchBoxes) {
+            found += index.search(bbox).size();
+        }
+        timer.done();
+
+        long foundIncremental = 0;
+        for (BBox bbox : searchBoxes) {
+            foundIncremental += incremental.search(bbox).size();
+        }
+        assertEquals(found, foundIncremental);
+    }
+}
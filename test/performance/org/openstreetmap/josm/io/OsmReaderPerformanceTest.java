@@ -62,7 +62,26 @@ public class OsmReaderPerformanceTest {
      */
     @Test
     public void testPlain() throws Exception {
-        runTest(".osm-file", true);
+        OsmReader.PIPELINED.put(false);
+        try {
+            runTest(".osm-file", true);
+        } finally {
+            OsmReader.PIPELINED.remove();
+        }
+    }
+
+    /**
+     * Simulates a plain read of a .osm file (from memory), creating the primitives on worker threads
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testPlainPipelined() throws Exception {
+        OsmReader.PIPELINED.put(true);
+        try {
+            runTest(".osm-file pipelined", true);
+        } finally {
+            OsmReader.PIPELINED.remove();
+        }
     }
 
     private void runTest(String what, boolean decompressBeforeRead) throws IllegalDataException, IOException {
@@ -0,0 +1,90 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.io;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.PerformanceTestUtils;
+import org.openstreetmap.josm.PerformanceTestUtils.PerformanceTestTimer;
+import org.openstreetmap.josm.data.osm.DataSet;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * This test tests how fast we are at reading an OSM PBF file, compared to the same data as .osm file.
+ * <p>
+ * The PBF file is created from the neubrandenburg-file used by {@link OsmReaderPerformanceTest}. We ignore disk access times.
+ */
+public class PbfReaderPerformanceTest {
+    private static final int TIMES = 4;
+    private static final String DATA_FILE = "data_nodist/neubrandenburg.osm.bz2";
+
+    private static byte[] osmData;
+    private static byte[] pbfData;
+    private static int primitiveCount;
+
+    /**
+     * Global timeout applied to all test methods.
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public Timeout globalTimeout = Timeout.seconds(15*60);
+
+    /**
+     * Prepare the test.
+     * @throws Exception if the test data cannot be read
+     */
+    @BeforeClass
+    public static void createJOSMFixture() throws Exception {
+        JOSMFixture.createPerformanceTestFixture().init(true);
+        try (InputStream is = Compression.getUncompressedFileInputStream(new File(DATA_FILE))) {
+            ByteArrayOutputStream temporary = new ByteArrayOutputStream();
+            byte[] readBuffer = new byte[4096];
+            int readBytes;
+            while ((readBytes = is.read(readBuffer)) != -1) {
+                temporary.write(readBuffer, 0, readBytes);
+            }
+            osmData = temporary.toByteArray();
+        }
+        DataSet ds = OsmReader.parseDataSet(new ByteArrayInputStream(osmData), null);
+        primitiveCount = ds.allPrimitives().size();
+        ByteArrayOutputStream pbf = new ByteArrayOutputStream();
+        PbfReaderTest.writePbf(ds, pbf);
+        pbfData = pbf.toByteArray();
+    }
+
+    /**
+     * Reads the .osm file (from memory)
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testOsm() throws Exception {
+        PerformanceTestTimer timer = PerformanceTestUtils.startTimer("load .osm-file " + TIMES + " times");
+        for (int i = 0; i < TIMES; i++) {
+            assertEquals(primitiveCount, OsmReader.parseDataSet(new ByteArrayInputStream(osmData), null).allPrimitives().size());
+        }
+        timer.done();
+    }
+
+    /**
+     * Reads the .osm.pbf file (from memory)
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testPbf() throws Exception {
+        PerformanceTestTimer timer = PerformanceTestUtils.startTimer("load .osm.pbf-file " + TIMES + " times");
+        for (int i = 0; i < TIMES; i++) {
+            assertEquals(primitiveCount, PbfReader.parseDataSet(new ByteArrayInputStream(pbfData), null).allPrimitives().size());
+        }
+        timer.done();
+    }
+}
@@ -4,12 +4,14 @@ package org.openstreetmap.josm.actions.search;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.Arrays;
 
 import org.junit.Rule;
 import org.junit.Test;
@@ -481,4 +483,25 @@ public class SearchCompilerTest {
         assertNotNull(SearchCompiler.compile(new String(Files.readAllBytes(
                 Paths.get(TestUtils.getRegressionDataFile(14217, "filter.txt"))), StandardCharsets.UTF_8)));
     }
+
+    /**
+     * Test that tag criteria find their candidates in the tag index.
+     * @throws ParseError if an error has been encountered while compiling
+     */
+    @Test
+    public void testCandidates() throws ParseError {
+        DataSet ds = new DataSet();
+        Node n1 = new Node(LatLon.ZERO);
+        n1.put("highway", "bus_stop");
+        n1.put("name", "foo");
+        Node n2 = new Node(LatLon.ZERO);
+        n2.put("highway", "primary");
+        ds.addPrimitive(n1);
+        ds.addPrimitive(n2);
+        assertEquals(Arrays.asList(n1), SearchCompiler.compile("highway=bus_stop").getCandidates(ds));
+        assertEquals(2, SearchCompiler.compile("highway=*").getCandidates(ds).size());
+        assertEquals(Arrays.asList(n1), SearchCompiler.compile("highway=* name=foo").getCandidates(ds));
+        assertNull(SearchCompiler.compile("highway=* | name=foo").getCandidates(ds));
+        assertNull(SearchCompiler.compile("highway:bus").getCandidates(ds));
+    }
 }
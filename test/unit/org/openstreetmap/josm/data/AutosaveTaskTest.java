@@ -15,6 +15,8 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
@@ -26,7 +28,10 @@ import org.openstreetmap.josm.data.AutosaveTask.AutosaveLayerInfo;
 import org.openstreetmap.josm.data.coor.LatLon;
 import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Way;
 import org.openstreetmap.josm.gui.layer.OsmDataLayer;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.io.AutosaveJournal;
 import org.openstreetmap.josm.testutils.JOSMTestRules;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
@@ -243,4 +248,96 @@ public class AutosaveTaskTest {
 
         assertEquals(1, countFiles());
     }
+
+    /**
+     * Test that {@link AutosaveTask#recoverUnsavedLayers()} recovers a layer with its journal applied.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testRecoverJournal() throws Exception {
+        Files.createDirectories(task.getAutosaveDir().resolve("deleted_layers"));
+        File snapshot = new File(task.getAutosaveDir().toFile(), "journal.osm");
+        try (BufferedWriter file = Files.newBufferedWriter(snapshot.toPath(), StandardCharsets.UTF_8)) {
+            file.append("<?xml version=\"1.0\"?><osm version=\"0.6\"><node id=\"1\" lat=\"1\" lon=\"2\" version=\"1\"/></osm>");
+        }
+        Node added = new Node(new LatLon(3, 4));
+        new DataSet().addPrimitive(added);
+        AutosaveJournal.append(AutosaveJournal.getJournalFile(snapshot), Collections.singleton(added.save()), Collections.emptyList());
+
+        task.recoverUnsavedLayers().get();
+
+        List<OsmDataLayer> layers = Main.getLayerManager().getLayersOfType(OsmDataLayer.class);
+        assertEquals(1, layers.size());
+        assertEquals(2, layers.get(0).data.getNodes().size());
+        // the snapshot and its journal are moved to the deleted layers folder
+        assertEquals(0, countFiles());
+        File backup = new File(new File(task.getAutosaveDir().toFile(), "deleted_layers"), snapshot.getName());
+        assertTrue(backup.exists());
+        assertTrue(AutosaveJournal.getJournalFile(backup).exists());
+    }
+
+    /**
+     * Tests that {@link AutosaveTask#run()} appends the changes to a journal in journal mode,
+     * and that the journal is moved with the snapshot when the layer is removed.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testAutosaveJournal() throws Exception {
+        AutosaveTask.PROP_JOURNAL.put(true);
+        DataSet data = new DataSet();
+        OsmDataLayer layer = new OsmDataLayer(data, "OsmData", null);
+        Main.getLayerManager().addLayer(layer);
+        try {
+            task.schedule();
+            Node n1 = new Node(new LatLon(10, 10));
+            data.addPrimitive(n1);
+            task.run();
+            assertEquals(1, countFiles());
+            File snapshot = task.getAutosaveDir().toFile().listFiles((dir, name) -> name.endsWith(".osm"))[0];
+            File journal = AutosaveJournal.getJournalFile(snapshot);
+            assertFalse(journal.exists());
+
+            Node n2 = new Node(new LatLon(11, 11));
+            Node n3 = new Node(new LatLon(12, 12));
+            data.addPrimitive(n2);
+            data.addPrimitive(n3);
+            Way w = new Way();
+            w.setNodes(Arrays.asList(n1, n2, n3));
+            w.put("highway", "residential");
+            data.addPrimitive(w);
+            task.run();
+            assertEquals(1, countFiles());
+            assertTrue(journal.exists());
+
+            n1.setCoor(new LatLon(10.5, 10.5));
+            w.setNodes(Arrays.asList(n1, n2));
+            data.removePrimitive(n3);
+            task.run();
+            assertEquals(1, countFiles());
+
+            // upload of a node of the snapshot and of the way created in the journal
+            n1.setOsmId(101, 1);
+            w.setOsmId(102, 1);
+            task.run();
+
+            Main.getLayerManager().removeLayer(layer);
+            assertFalse(journal.exists());
+            File backup = new File(new File(task.getAutosaveDir().toFile(), "deleted_layers"), snapshot.getName());
+            File backupJournal = AutosaveJournal.getJournalFile(backup);
+            assertTrue(backupJournal.exists());
+            DataSet recovered = AutosaveJournal.load(backup, backupJournal, NullProgressMonitor.INSTANCE);
+            assertEquals(2, recovered.getNodes().size());
+            assertEquals(1, recovered.getWays().size());
+            Way way = recovered.getWays().iterator().next();
+            assertEquals(102, way.getUniqueId());
+            assertEquals(101, way.firstNode().getUniqueId());
+            assertEquals(1, way.firstNode().getVersion());
+            assertTrue(way.lastNode().isNew());
+            assertEquals("residential", way.get("highway"));
+            assertEquals(2, way.getNodesCount());
+            assertEquals(new LatLon(10.5, 10.5), way.firstNode().getCoor());
+        } finally {
+            task.cancel();
+        }
+    }
 }
@@ -6,6 +6,10 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -161,4 +165,41 @@ public class HostLimitQueueTest {
         assertTrue("Expected duration between 4 and 6 seconds not met. Actual duration: " + (duration /1000),
                 duration < 6*1000 & duration > 4*1000);
     }
+
+    /**
+     * Check that queued jobs are executed by priority, and in FIFO order for equal priorities
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testPriority() throws Exception {
+        ThreadPoolExecutor tpe = getNewThreadPoolExecutor("test-%d", 1, 1);
+        ICacheAccess<String, CacheEntry> cache = JCSCacheManager.getCache("test", 3, 0, "");
+        AtomicInteger counter = new AtomicInteger(0);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        List<Task> tasks = new ArrayList<>();
+        int[] priorities = {0, 5, 1, 3, 1, 0};
+        for (int i = 0; i < priorities.length; i++) {
+            final int id = i;
+            Task task = new Task(cache, new URL("http://localhost/" + i), counter) {
+                @Override
+                public void run() {
+                    order.add(id);
+                    super.run();
+                }
+            };
+            task.setPriority(priorities[i]);
+            tasks.add(task);
+            tpe.execute(task);
+            while (i == 0 && order.isEmpty()) {
+                // wait until the first job runs, so that the others are queued
+                Thread.sleep(10);
+            }
+        }
+        // the priority of a queued job may be changed
+        tasks.get(1).setPriority(-1);
+        tpe.shutdown();
+        tpe.awaitTermination(15, TimeUnit.SECONDS);
+        assertEquals(6, counter.get());
+        assertEquals(Arrays.asList(0, 1, 5, 2, 4, 3), order);
+    }
 }
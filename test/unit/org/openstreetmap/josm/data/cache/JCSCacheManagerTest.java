@@ -2,6 +2,7 @@
 package org.openstreetmap.josm.data.cache;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.FileOutputStream;
@@ -9,9 +10,11 @@ import java.io.IOException;
 import java.util.logging.Logger;
 
 import org.apache.commons.jcs.access.CacheAccess;
+import org.apache.commons.jcs.auxiliary.disk.behavior.IDiskCacheAttributes;
 import org.apache.commons.jcs.auxiliary.disk.block.BlockDiskCacheAttributes;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.openstreetmap.josm.testutils.JOSMTestRules;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
@@ -28,6 +31,13 @@ public class JCSCacheManagerTest {
     @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
     public JOSMTestRules test = new JOSMTestRules().preferences();
 
+    /**
+     * Folder for the caches.
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public TemporaryFolder folder = new TemporaryFolder();
+
     /**
      * Non-regression test for <a href="https://josm.openstreetmap.de/ticket/12054">Bug #12054</a>.
      * @throws IOException if any I/O error occurs
@@ -40,7 +50,7 @@ public class JCSCacheManagerTest {
 
     @Test
     public void testUseBigDiskFile() throws IOException {
-        if (JCSCacheManager.USE_BLOCK_CACHE.get()) {
+        if (JCSCacheManager.USE_BLOCK_CACHE.get() && !JCSCacheManager.USE_MAPPED_CACHE.get()) {
             // test only when using block cache
             File cacheFile = new File("foobar/testUseBigDiskFile_BLOCK_v2.data");
             if (!cacheFile.exists()) {
@@ -58,4 +68,21 @@ public class JCSCacheManagerTest {
                     ((BlockDiskCacheAttributes) cache.getCacheControl().getAuxCaches()[0].getAuxiliaryCacheAttributes()).getMaxKeySize());
         }
     }
+
+    /**
+     * Test that the size of a mapped disk cache is given in kB.
+     */
+    @Test
+    public void testMappedCacheSize() {
+        // the disk cache factory is chosen once, so the attributes are checked directly
+        JCSCacheManager.USE_MAPPED_CACHE.put(true);
+        try {
+            IDiskCacheAttributes attributes = JCSCacheManager.getDiskCacheAttributes(100, folder.getRoot().getPath(), "testMappedCacheSize");
+            assertTrue(attributes instanceof MappedDiskCacheAttributes);
+            assertEquals("testMappedCacheSize" + JCSCacheManager.MAPPED_SUFFIX, attributes.getCacheName());
+            assertEquals(100 * 1024, ((MappedDiskCacheAttributes) attributes).getMaxBytes());
+        } finally {
+            JCSCacheManager.USE_MAPPED_CACHE.put(false);
+        }
+    }
 }
@@ -0,0 +1,174 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.apache.commons.jcs.engine.CacheElement;
+import org.apache.commons.jcs.engine.behavior.ICacheElement;
+import org.apache.commons.jcs.utils.serialization.StandardSerializer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link MappedDiskCache}.
+ */
+public class MappedDiskCacheTest {
+
+    /**
+     * Setup test.
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules().preferences();
+
+    /**
+     * Folder for the cache.
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MappedDiskCache<String, BufferedImageCacheEntry> createCache(long maxBytes, int segmentSize) throws IOException {
+        MappedDiskCacheAttributes attr = new MappedDiskCacheAttributes();
+        attr.setDiskPath(folder.getRoot());
+        attr.setCacheName("test");
+        attr.setMaxBytes(maxBytes);
+        attr.setSegmentSize(segmentSize);
+        return new MappedDiskCache<>(attr, new StandardSerializer());
+    }
+
+    private static ICacheElement<String, BufferedImageCacheEntry> createElement(String key, int size) {
+        byte[] content = new byte[size];
+        Arrays.fill(content, (byte) key.hashCode());
+        CacheEntryAttributes attr = new CacheEntryAttributes();
+        attr.setEtag(key);
+        attr.setExpirationTime(1234);
+        return new CacheElement<>("test", key, new BufferedImageCacheEntry(content), attr);
+    }
+
+    private static void assertElement(String key, int size, ICacheElement<String, BufferedImageCacheEntry> element) {
+        assertNotNull(key, element);
+        assertEquals(key, element.getKey());
+        assertEquals(size, element.getVal().getContent().length);
+        assertEquals((byte) key.hashCode(), element.getVal().getContent()[0]);
+        CacheEntryAttributes attr = (CacheEntryAttributes) element.getElementAttributes();
+        assertEquals(key, attr.getEtag());
+        assertEquals(1234, attr.getExpirationTime());
+        assertEquals(200, attr.getResponseCode());
+    }
+
+    /**
+     * Test storing, reading and removing entries, and reopening the cache.
+     * @throws IOException if an I/O error occurs
+     */
+    @Test
+    public void testUpdateAndGet() throws IOException {
+        MappedDiskCache<String, BufferedImageCacheEntry> cache = createCache(1 << 20, 1 << 16);
+        for (int i = 0; i < 100; i++) {
+            cache.processUpdate(createElement("a:" + i, 1000 + i));
+        }
+        cache.processUpdate(createElement("b:0", 10));
+        // replace an entry
+        cache.processUpdate(createElement("a:0", 5));
+        assertEquals(101, cache.getSize());
+        assertElement("a:0", 5, cache.processGet("a:0"));
+        assertElement("a:99", 1099, cache.processGet("a:99"));
+        assertNull(cache.processGet("c:0"));
+
+        assertTrue(cache.processRemove("a:1"));
+        assertNull(cache.processGet("a:1"));
+        assertEquals(100, cache.getSize());
+        cache.processDispose();
+
+        cache = createCache(1 << 20, 1 << 16);
+        assertEquals(100, cache.getSize());
+        assertElement("a:2", 1002, cache.processGet("a:2"));
+        assertElement("b:0", 10, cache.processGet("b:0"));
+        assertNull(cache.processGet("a:1"));
+
+        // remove all keys of a region
+        assertTrue(cache.processRemove("a:"));
+        assertEquals(new HashSet<>(Arrays.asList("b:0")), cache.getKeySet());
+
+        // remove the keys of a longer prefix
+        cache.processUpdate(createElement("b:1:0", 10));
+        cache.processUpdate(createElement("b:1:1", 10));
+        cache.processUpdate(createElement("b:2:0", 10));
+        assertTrue(cache.processRemove("b:1:"));
+        assertFalse(cache.processRemove("c:"));
+        assertEquals(new HashSet<>(Arrays.asList("b:0", "b:2:0")), cache.getKeySet());
+        cache.processDispose();
+    }
+
+    /**
+     * Test that entries written after the index has been saved are recovered, up to an incomplete record.
+     * @throws IOException if an I/O error occurs
+     */
+    @Test
+    public void testRecovery() throws IOException {
+        MappedDiskCache<String, BufferedImageCacheEntry> cache = createCache(1 << 20, 1 << 20);
+        cache.processUpdate(createElement("a:0", 100));
+        cache.processDispose();
+
+        cache = createCache(1 << 20, 1 << 20);
+        cache.processUpdate(createElement("a:1", 100));
+        cache.processUpdate(createElement("a:2", 100));
+        // simulate a crash while writing the last record, the index is not saved
+        File segment = new File(new File(folder.getRoot(), "test"), "00000001.seg");
+        try (RandomAccessFile f = new RandomAccessFile(segment, "rw")) {
+            f.setLength(f.length() - 10);
+        }
+
+        cache = createCache(1 << 20, 1 << 20);
+        assertEquals(2, cache.getSize());
+        assertElement("a:0", 100, cache.processGet("a:0"));
+        assertElement("a:1", 100, cache.processGet("a:1"));
+        assertNull(cache.processGet("a:2"));
+        cache.processUpdate(createElement("a:3", 100));
+        assertElement("a:3", 100, cache.processGet("a:3"));
+        cache.processDispose();
+    }
+
+    /**
+     * Test that the oldest segments are removed when the size limit is exceeded, except the recently used entries.
+     * @throws IOException if an I/O error occurs
+     */
+    @Test
+    public void testEviction() throws IOException {
+        MappedDiskCache<String, BufferedImageCacheEntry> cache = createCache(100_000, 20_000);
+        for (int i = 0; i < 10; i++) {
+            cache.processUpdate(createElement("a:" + i, 900));
+        }
+        // sealed segments only keep entries accessed after they have been sealed
+        for (int i = 10; i < 200; i++) {
+            assertNotNull(cache.processGet("a:0"));
+            cache.processUpdate(createElement("a:" + i, 900));
+        }
+        assertTrue(cache.getSize() < 200);
+        assertElement("a:0", 900, cache.processGet("a:0"));
+        assertNull(cache.processGet("a:1"));
+        assertElement("a:199", 900, cache.processGet("a:199"));
+        File[] files = new File(folder.getRoot(), "test").listFiles((dir, name) -> name.endsWith(".seg"));
+        long length = 0;
+        for (File f : files) {
+            length += f.length();
+        }
+        assertTrue(length <= 100_000);
+        cache.processDispose();
+    }
+}
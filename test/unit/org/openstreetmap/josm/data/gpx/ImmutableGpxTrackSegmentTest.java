@@ -1,10 +1,19 @@
 // License: GPL. For details, see LICENSE file.
 package org.openstreetmap.josm.data.gpx;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
 import org.junit.Rule;
 import org.junit.Test;
 import org.openstreetmap.josm.data.coor.LatLon;
 import org.openstreetmap.josm.testutils.JOSMTestRules;
+import org.openstreetmap.josm.tools.date.DateUtils;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import nl.jqno.equalsverifier.EqualsVerifier;
@@ -27,8 +36,52 @@ public class ImmutableGpxTrackSegmentTest {
     @Test
     public void testEqualsContract() {
         EqualsVerifier.forClass(ImmutableGpxTrackSegment.class).usingGetClass()
-            .withIgnoredFields("bounds", "length")
-            .withPrefabValues(WayPoint.class, new WayPoint(LatLon.NORTH_POLE), new WayPoint(LatLon.SOUTH_POLE))
+            .withPrefabValues(WayPoint.class, new WayPoint(new LatLon(1, 2)), new WayPoint(new LatLon(3, 4)))
+            .withIgnoredFields("bounds", "length", "wayPoints", "projected")
             .verify();
     }
+
+    /**
+     * Test that the waypoints are restored from the columns with their coordinates, times and attributes.
+     */
+    @Test
+    public void testWayPoints() {
+        WayPoint wp1 = new WayPoint(new LatLon(1, 2));
+        wp1.attr.put(GpxConstants.PT_TIME, DateUtils.fromDate(new Date(1_000_000_000_000L)));
+        wp1.attr.put(GpxConstants.PT_ELE, "100");
+        wp1.setTime();
+        WayPoint wp2 = new WayPoint(new LatLon(3, 4));
+        wp2.attr.put(GpxConstants.PT_TIME, "2001-09-09T01:46:41.5Z");
+        wp2.attr.put(GpxConstants.PT_HDOP, 1.5f);
+        wp2.setTime();
+        ImmutableGpxTrackSegment segment = new ImmutableGpxTrackSegment(Arrays.asList(wp1, wp2));
+
+        assertEquals(2, segment.size());
+        assertEquals(3, segment.getLat(1), 0);
+        assertEquals(4, segment.getLon(1), 0);
+        assertEquals(wp2.time, segment.getTime(1), 0);
+        assertEquals(1.5f, segment.getAttribute(1, GpxConstants.PT_HDOP));
+        assertNull(segment.getAttribute(1, GpxConstants.PT_ELE));
+
+        List<WayPoint> wayPoints = segment.getWayPoints();
+        assertEquals(2, wayPoints.size());
+        for (int i = 0; i < wayPoints.size(); i++) {
+            WayPoint expected = i == 0 ? wp1 : wp2;
+            WayPoint actual = wayPoints.get(i);
+            assertEquals(expected.getCoor(), actual.getCoor());
+            assertEquals(expected.time, actual.time, 0);
+            assertEquals(expected.attr, actual.attr);
+        }
+        assertEquals(new ImmutableGpxTrackSegment(wayPoints), segment);
+
+        // the waypoints are created once and kept by the segment, changes to them are seen by the accessors
+        assertEquals(wayPoints, segment.getWayPoints());
+        assertSame(wayPoints.get(0), segment.getWayPoints().get(0));
+        wayPoints.get(0).attr.put(GpxConstants.PT_ELE, "200");
+        wayPoints.get(0).time = 42;
+        assertEquals("200", segment.getWayPoints().get(0).get(GpxConstants.PT_ELE));
+        assertEquals("200", segment.getAttribute(0, GpxConstants.PT_ELE));
+        assertEquals(42, segment.getTime(0), 0);
+        assertSame(wayPoints.get(1), segment.getWayPoint(1));
+    }
 }
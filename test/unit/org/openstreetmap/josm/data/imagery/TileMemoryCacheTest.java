@@ -0,0 +1,197 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.imagery;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.openstreetmap.gui.jmapviewer.Tile;
+import org.openstreetmap.gui.jmapviewer.interfaces.TileCache;
+import org.openstreetmap.gui.jmapviewer.interfaces.TileSource;
+import org.openstreetmap.gui.jmapviewer.tilesources.OsmTileSource;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+import org.openstreetmap.josm.tools.MemoryManager.MemoryHandle;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link TileMemoryCache}.
+ */
+public class TileMemoryCacheTest {
+
+    /**
+     * Setup test.
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules();
+
+    private final TileSource source = new OsmTileSource.Mapnik();
+
+    private static byte[] encode(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    private Tile addTile(TileCache cache, int x, byte[] content) throws IOException {
+        Tile tile = new Tile(source, x, 0, 10);
+        cache.addTile(tile);
+        if (content != null) {
+            tile.loadImage(new ByteArrayInputStream(content));
+        }
+        TileMemoryCache.getInstance().setContent(tile, content);
+        return tile;
+    }
+
+    /**
+     * Test that decoded images are dropped first and decoded again in the background when the tile is requested.
+     * @throws IOException if an image cannot be encoded
+     */
+    @Test
+    public void testDropDecodedImages() throws IOException {
+        TileMemoryCache memoryCache = TileMemoryCache.getInstance();
+        List<Runnable> tasks = new ArrayList<>();
+        List<Tile> finished = new ArrayList<>();
+        TileCache cache = memoryCache.createCache(100, (tile, success) -> {
+            assertTrue(success);
+            finished.add(tile);
+        }, tasks::add);
+        byte[] content = encode(new BufferedImage(256, 256, BufferedImage.TYPE_INT_ARGB));
+        Tile first = addTile(cache, 0, content);
+        long imageSize = memoryCache.getDecodedBytes();
+        assertEquals(256 * 256 * 4, TileMemoryCache.getSize(first.getImage()));
+        assertTrue(imageSize >= 256 * 256 * 4);
+
+        int count = (int) (memoryCache.getBudget() / (256 * 256 * 4)) + 10;
+        for (int x = 1; x < count; x++) {
+            addTile(cache, x, content);
+        }
+        // all tiles are kept, as the raw data is small, but the images of the least recently used ones are dropped
+        assertEquals(count, cache.getTileCount());
+        assertTrue(memoryCache.getDecodedBytes() < (long) count * 256 * 256 * 4);
+        assertTrue(memoryCache.getDecodedBytes() + memoryCache.getRawBytes() <= memoryCache.getBudget());
+        assertNull(first.getImage());
+
+        // the least recently used image is not decoded by the caller, but by the executor
+        assertSame(first, cache.getTile(source, 0, 0, 10));
+        assertNull(first.getImage());
+        assertTrue(first.isLoading());
+        assertEquals(1, tasks.size());
+        // requesting the tile again does not decode it twice
+        assertSame(first, cache.getTile(source, 0, 0, 10));
+        assertEquals(1, tasks.size());
+
+        tasks.remove(0).run();
+        assertNotNull(first.getImage());
+        assertEquals(256, first.getImage().getWidth());
+        assertFalse(first.isLoading());
+        assertTrue(first.isLoaded());
+        assertEquals(Collections.singletonList(first), finished);
+        cache.clear();
+        assertEquals(0, cache.getTileCount());
+    }
+
+    /**
+     * Test that a tile whose image has been dropped is returned as not loaded when the cache cannot decode it in the
+     * background, so that the layer loads it again.
+     * @throws IOException if an image cannot be encoded
+     */
+    @Test
+    public void testDropDecodedImagesReload() throws IOException {
+        TileMemoryCache memoryCache = TileMemoryCache.getInstance();
+        TileCache cache = memoryCache.createCache(100);
+        byte[] content = encode(new BufferedImage(256, 256, BufferedImage.TYPE_INT_ARGB));
+        Tile first = addTile(cache, 0, content);
+        first.finishLoading();
+        int count = (int) (memoryCache.getBudget() / (256 * 256 * 4)) + 10;
+        for (int x = 1; x < count; x++) {
+            addTile(cache, x, content);
+        }
+        assertNull(first.getImage());
+
+        assertSame(first, cache.getTile(source, 0, 0, 10));
+        assertNull(first.getImage());
+        assertFalse(first.isLoaded());
+        assertFalse(first.isLoading());
+        cache.clear();
+    }
+
+    /**
+     * Test that the least recently used tiles are removed, and that allocated memory increases the budget.
+     * @throws Exception if the memory cannot be allocated
+     */
+    @Test
+    public void testRemoveTiles() throws Exception {
+        TileMemoryCache memoryCache = TileMemoryCache.getInstance();
+        TileCache cache = memoryCache.createCache(100);
+        MemoryHandle<?> memory = memoryCache.allocateMemory("test", TileMemoryCache.MIN_BUDGET * 2);
+        assertEquals(TileMemoryCache.MIN_BUDGET * 2, memoryCache.getBudget());
+        byte[] content = new byte[1024 * 1024];
+        for (int x = 0; x < 40; x++) {
+            addTile(cache, x, content);
+            // keep the first tile in use
+            assertNotNull(cache.getTile(source, 0, 0, 10));
+        }
+        assertTrue(cache.getTileCount() < 32);
+        assertNotNull(cache.getTile(source, 0, 0, 10));
+        assertNull(cache.getTile(source, 1, 0, 10));
+        assertNotNull(cache.getTile(source, 39, 0, 10));
+
+        memory.free();
+        assertEquals(TileMemoryCache.MIN_BUDGET, memoryCache.getBudget());
+        assertTrue(cache.getTileCount() < 16);
+        cache.clear();
+    }
+
+    /**
+     * Test that processed images are kept for the current image of a tile, and dropped with the decoded images.
+     * @throws IOException if an image cannot be encoded
+     */
+    @Test
+    public void testProcessedImage() throws IOException {
+        TileMemoryCache memoryCache = TileMemoryCache.getInstance();
+        TileCache cache = memoryCache.createCache(100);
+        byte[] content = encode(new BufferedImage(256, 256, BufferedImage.TYPE_INT_ARGB));
+        Tile tile = addTile(cache, 0, content);
+        BufferedImage image = tile.getImage();
+        long decoded = memoryCache.getDecodedBytes();
+        BufferedImage processed = new BufferedImage(256, 256, BufferedImage.TYPE_INT_ARGB);
+
+        assertNull(memoryCache.getProcessedImage(tile, null));
+        assertTrue(memoryCache.setProcessedImage(tile, image, 1, processed));
+        assertSame(processed, memoryCache.getProcessedImage(tile, 1));
+        assertSame(processed, memoryCache.getProcessedImage(tile, null));
+        assertNull(memoryCache.getProcessedImage(tile, 2));
+        assertEquals(decoded + 256 * 256 * 4, memoryCache.getDecodedBytes());
+
+        // an unchanged image takes no additional memory
+        assertTrue(memoryCache.setProcessedImage(tile, image, 2, image));
+        assertSame(image, memoryCache.getProcessedImage(tile, 2));
+        assertEquals(decoded, memoryCache.getDecodedBytes());
+
+        // the processed image is outdated when the tile image changes
+        assertTrue(memoryCache.setProcessedImage(tile, image, 3, processed));
+        tile.loadImage(new ByteArrayInputStream(content));
+        assertNull(memoryCache.getProcessedImage(tile, null));
+        assertFalse(memoryCache.setProcessedImage(tile, image, 3, processed));
+        memoryCache.update(tile);
+        assertEquals(decoded, memoryCache.getDecodedBytes());
+        cache.clear();
+    }
+}
@@ -76,4 +76,34 @@ public class DataSetTest {
         ds.addPrimitive(w2);
         ds.unlinkNodeFromWays(n2);
     }
+
+    /**
+     * Unit test of method {@link DataSet#addPrimitives}: an invalid batch leaves the data set unchanged.
+     */
+    @Test
+    public void testAddPrimitivesInvalidBatch() {
+        final DataSet ds = new DataSet();
+        Node existing = new Node(new LatLon(1, 1));
+        ds.addPrimitive(existing);
+        Node n1 = new Node(1);
+        n1.setCoor(new LatLon(2, 2));
+        Node n2 = new Node(1);
+        n2.setCoor(new LatLon(3, 3));
+
+        for (List<Node> batch : Arrays.asList(Arrays.asList(n1, n2), Arrays.asList(n1, existing))) {
+            try {
+                ds.addPrimitives(batch);
+                Assert.fail("DataIntegrityProblemException expected");
+            } catch (DataIntegrityProblemException e) {
+                Assert.assertEquals(1, ds.allPrimitives().size());
+                Assert.assertEquals(1, ds.getNodes().size());
+                Assert.assertNull(n1.getDataSet());
+                Assert.assertNull(ds.getPrimitiveById(n1));
+            }
+        }
+
+        ds.addPrimitives(Arrays.asList(n1));
+        Assert.assertEquals(2, ds.getNodes().size());
+        Assert.assertEquals(1, ds.searchNodes(new BBox(1.5, 1.5, 2.5, 2.5)).size());
+    }
 }
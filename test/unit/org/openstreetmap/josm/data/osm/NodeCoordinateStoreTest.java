@@ -0,0 +1,147 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.openstreetmap.josm.Main;
+import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.projection.Projection;
+import org.openstreetmap.josm.data.projection.Projections;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link NodeCoordinateStore}.
+ */
+public class NodeCoordinateStoreTest {
+
+    /**
+     * Setup test.
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules().preferences().projection();
+
+    /**
+     * Enable the coordinate store for new data sets.
+     */
+    @Before
+    public void setUp() {
+        DataSet.NODE_COORDINATE_STORE.put(true);
+    }
+
+    /**
+     * Restore the default.
+     */
+    @After
+    public void tearDown() {
+        DataSet.NODE_COORDINATE_STORE.remove();
+    }
+
+    /**
+     * Test that nodes use the store while they are in the dataset and keep their coordinates when removed.
+     */
+    @Test
+    public void testAddRemove() {
+        DataSet ds = new DataSet();
+        NodeCoordinateStore store = ds.getNodeCoordinateStore();
+        assertNotNull(store);
+
+        Node n1 = new Node(new LatLon(10, 20));
+        Node n2 = new Node(new LatLon(30, 40));
+        ds.addPrimitive(n1);
+        ds.addPrimitive(n2);
+        assertEquals(2, store.size());
+        assertEquals(new LatLon(10, 20), n1.getCoor());
+        assertEquals(new BBox(20, 10), n1.getBBox());
+
+        n1.setCoor(new LatLon(11, 21));
+        assertEquals(new LatLon(11, 21), n1.getCoor());
+        assertEquals(1, ds.searchNodes(new BBox(20.5, 10.5, 21.5, 11.5)).size());
+
+        ds.removePrimitive(n1);
+        assertEquals(1, store.size());
+        assertEquals(new LatLon(11, 21), n1.getCoor());
+
+        // the free slot is reused
+        Node n3 = new Node(new LatLon(50, 60));
+        ds.addPrimitive(n3);
+        assertEquals(2, store.size());
+        assertEquals(new LatLon(50, 60), n3.getCoor());
+        assertEquals(new LatLon(30, 40), n2.getCoor());
+        assertEquals(new LatLon(11, 21), n1.getCoor());
+    }
+
+    /**
+     * Test that incomplete nodes have no coordinates.
+     */
+    @Test
+    public void testIncomplete() {
+        DataSet ds = new DataSet();
+        Node n = new Node(1);
+        ds.addPrimitive(n);
+        assertFalse(n.isLatLonKnown());
+        assertNull(n.getCoor());
+        assertNull(n.getEastNorth());
+        assertFalse(n.getBBox().isValid());
+    }
+
+    /**
+     * Test the projected coordinates after setting east/north and after a projection change.
+     */
+    @Test
+    public void testProjection() {
+        DataSet ds = new DataSet();
+        Node n = new Node(new LatLon(10, 20));
+        ds.addPrimitive(n);
+        EastNorth en = Main.getProjection().latlon2eastNorth(new LatLon(10, 20));
+        assertTrue(en.equalsEpsilon(n.getEastNorth(), 1e-7));
+
+        n.setEastNorth(new EastNorth(en.east() + 100, en.north() + 100));
+        assertTrue(new EastNorth(en.east() + 100, en.north() + 100).equalsEpsilon(n.getEastNorth(), 1e-7));
+
+        Projection old = Main.getProjection();
+        try {
+            Projection projection = Projections.getProjectionByCode("EPSG:4326");
+            Main.setProjection(projection);
+            EastNorth expected = projection.latlon2eastNorth(n.getCoor());
+            assertTrue(expected.equalsEpsilon(n.getEastNorth(), 1e-7));
+        } finally {
+            Main.setProjection(old);
+        }
+    }
+
+    /**
+     * Test that the coordinates are kept when the store grows and that the node keeps no copy of them.
+     */
+    @Test
+    public void testGrow() {
+        DataSet ds = new DataSet();
+        NodeCoordinateStore store = ds.getNodeCoordinateStore();
+        Node first = new Node(new LatLon(1, 2));
+        ds.addPrimitive(first);
+        assertTrue(first.isInCoordinateStore());
+        EastNorth en = first.getEastNorth();
+        for (int i = 0; i < 3000; i++) {
+            ds.addPrimitive(new Node(new LatLon(i / 100.0, i / 50.0)));
+        }
+        assertEquals(3001, store.size());
+        assertEquals(new LatLon(1, 2), first.getCoor());
+        assertTrue(en.equalsEpsilon(first.getEastNorth(), 1e-7));
+
+        ds.removePrimitive(first);
+        assertFalse(first.isInCoordinateStore());
+        assertEquals(new LatLon(1, 2), first.getCoor());
+        assertTrue(en.equalsEpsilon(first.getEastNorth(), 1e-7));
+    }
+}
@@ -0,0 +1,191 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.io.OsmReader;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link PackedRTree}.
+ */
+public class PackedRTreeTest {
+
+    /**
+     * Setup test.
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules();
+
+    private static List<Node> createRandomNodes(Random random, int count) {
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Node n = new Node(i + 1);
+            n.setCoor(new LatLon(random.nextDouble() * 10, random.nextDouble() * 10));
+            nodes.add(n);
+        }
+        return nodes;
+    }
+
+    private static Set<Node> bruteForceSearch(List<Node> nodes, BBox bbox) {
+        return nodes.stream().filter(n -> n.getBBox().intersects(bbox)).collect(Collectors.toSet());
+    }
+
+    private static void assertSearchMatches(PackedRTree<Node> tree, List<Node> nodes, Random random) {
+        for (int i = 0; i < 50; i++) {
+            double lat = random.nextDouble() * 10;
+            double lon = random.nextDouble() * 10;
+            BBox bbox = new BBox(lon, lat, lon + random.nextDouble(), lat + random.nextDouble());
+            List<Node> found = tree.search(bbox);
+            assertEquals(bruteForceSearch(nodes, bbox), new HashSet<>(found));
+            assertEquals(found.size(), new HashSet<>(found).size());
+        }
+    }
+
+    /**
+     * Test that a bulk loaded tree returns the same results as a linear scan.
+     */
+    @Test
+    public void testBulkLoadSearch() {
+        Random random = new Random(42);
+        List<Node> nodes = createRandomNodes(random, 10000);
+        PackedRTree<Node> tree = new PackedRTree<>();
+        tree.addAll(nodes);
+        assertEquals(nodes.size(), tree.size());
+        // 10000 entries need at least 4 levels of 16 entries
+        assertEquals(4, tree.getHeight());
+        assertSearchMatches(tree, nodes, random);
+        for (Node n : nodes) {
+            assertTrue(tree.contains(n));
+        }
+    }
+
+    /**
+     * Test incremental inserts and removes, mixed with bulk loading.
+     */
+    @Test
+    public void testIncrementalInsertRemove() {
+        Random random = new Random(7);
+        List<Node> nodes = createRandomNodes(random, 5000);
+        PackedRTree<Node> tree = new PackedRTree<>();
+        tree.addAll(nodes.subList(0, 3000));
+        for (Node n : nodes.subList(3000, nodes.size())) {
+            tree.add(n);
+        }
+        assertEquals(nodes.size(), tree.size());
+        assertSearchMatches(tree, nodes, random);
+
+        List<Node> remaining = new ArrayList<>(nodes);
+        for (Iterator<Node> it = remaining.iterator(); it.hasNext();) {
+            Node n = it.next();
+            if (random.nextBoolean()) {
+                assertTrue(tree.remove(n));
+                assertFalse(tree.contains(n));
+                it.remove();
+            }
+        }
+        assertEquals(remaining.size(), tree.size());
+        assertSearchMatches(tree, remaining, random);
+
+        int count = 0;
+        for (Node n : tree) {
+            assertTrue(remaining.contains(n));
+            count++;
+        }
+        assertEquals(remaining.size(), count);
+
+        for (Node n : remaining) {
+            assertTrue(tree.remove(n));
+        }
+        assertTrue(tree.isEmpty());
+        assertTrue(tree.search(new BBox(-180, -90, 180, 90)).isEmpty());
+    }
+
+    /**
+     * Test handling of objects with invalid bbox
+     */
+    @Test
+    public void testSpecialBBox() {
+        PackedRTree<Way> ways = new PackedRTree<>();
+        Way w1 = new Way(1);
+        Way w2 = new Way(2);
+        Node n1 = new Node(1);
+        Node n2 = new Node(2); n2.setCoor(new LatLon(10, 20));
+        w2.setNodes(Arrays.asList(n1, n2));
+
+        PackedRTree<Way> incomplete = new PackedRTree<>();
+        incomplete.addAll(Arrays.asList(w1));
+        assertEquals(1, incomplete.size());
+        assertTrue(incomplete.contains(w1));
+        assertTrue(incomplete.search(new BBox(-180, -90, 180, 90)).isEmpty());
+
+        ways.addAll(Arrays.asList(w1, w2));
+        assertEquals(2, ways.size());
+        assertTrue(ways.contains(w1));
+        assertTrue(ways.contains(w2));
+        assertEquals(Arrays.asList(w2), ways.search(new BBox(19, 9, 21, 11)));
+
+        Iterator<Way> iter = ways.iterator();
+        int count = 2;
+        while (iter.hasNext()) {
+            iter.next();
+            iter.remove();
+            count--;
+            assertEquals(count, ways.size());
+        }
+        assertEquals(0, ways.size());
+        assertFalse(ways.contains(w1));
+        assertFalse(ways.contains(w2));
+    }
+
+    /**
+     * Test that a data set using the R-tree can be loaded, moved and emptied.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testDataSet() throws Exception {
+        DataSet.SPATIAL_INDEX.put("rtree");
+        try (InputStream fis = new FileInputStream("data_nodist/restriction.osm")) {
+            DataSet ds = OsmReader.parseDataSet(fis, NullProgressMonitor.INSTANCE);
+            BBox planet = new BBox(-180, -90, 180, 90);
+            assertEquals(ds.getNodes().stream().filter(n -> n.getBBox().isValid()).count(), ds.searchNodes(planet).size());
+            for (Node n : ds.getNodes()) {
+                assertTrue(ds.containsNode(n));
+            }
+            for (Way w : ds.getWays()) {
+                assertTrue(ds.containsWay(w));
+            }
+            for (Node n : ds.getNodes()) {
+                n.setCoor(new LatLon(10, 10));
+            }
+            assertEquals(ds.getNodes().size(), ds.searchNodes(new BBox(9, 9, 11, 11)).size());
+            for (OsmPrimitive o : new ArrayList<>(ds.allPrimitives())) {
+                ds.removePrimitive(o);
+            }
+            assertTrue(ds.searchNodes(planet).isEmpty());
+            assertTrue(ds.searchWays(planet).isEmpty());
+        } finally {
+            DataSet.SPATIAL_INDEX.remove();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link TagIndex}.
+ */
+public class TagIndexTest {
+
+    /**
+     * Setup test.
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules();
+
+    private static Node addNode(DataSet ds, String... tags) {
+        Node n = new Node(LatLon.ZERO);
+        for (int i = 0; i < tags.length; i += 2) {
+            n.put(tags[i], tags[i + 1]);
+        }
+        ds.addPrimitive(n);
+        return n;
+    }
+
+    /**
+     * Test that the counts and primitives are updated with the tag changes of the data set.
+     */
+    @Test
+    public void testTags() {
+        DataSet ds = new DataSet();
+        Node n1 = addNode(ds, "building", "yes");
+        TagIndex index = ds.getTagIndex();
+        Node n2 = addNode(ds, "building", "yes", "name", "foo");
+        Node n3 = addNode(ds, "building", "no");
+        assertEquals(new HashSet<>(Arrays.asList("building", "name")), new HashSet<>(index.getKeys()));
+        assertEquals(2, index.getCount("building", "yes"));
+        assertEquals(3, index.getCount("building"));
+        assertEquals(new HashSet<>(Arrays.asList(n1, n2)), new HashSet<>(index.getPrimitives("building", "yes")));
+
+        n3.put("building", "yes");
+        n2.remove("name");
+        assertEquals(3, index.getCount("building", "yes"));
+        assertEquals(0, index.getCount("building", "no"));
+        assertEquals(Arrays.asList("yes"), index.getValues("building"));
+        assertEquals(Arrays.asList("building"), index.getKeys());
+        assertTrue(index.getPrimitives("name").isEmpty());
+
+        // several changes of the same primitive before the events are sent to the listeners
+        ds.beginUpdate();
+        try {
+            n1.put("building", "house");
+            n1.put("building", "garage");
+            n1.put("name", "bar");
+        } finally {
+            ds.endUpdate();
+        }
+        assertEquals(1, index.getCount("building", "garage"));
+        assertEquals(0, index.getCount("building", "house"));
+        assertEquals(Arrays.asList(n1), index.getPrimitives("name", "bar"));
+
+        // new primitives keep their entries when they are uploaded
+        n1.setOsmId(1, 1);
+        n1.remove("name");
+        assertEquals(0, index.getCount("name"));
+    }
+
+    /**
+     * Test that the index is built once if it is requested by several threads at the same time.
+     * @throws Exception if a thread fails
+     */
+    @Test
+    public void testConcurrentCreation() throws Exception {
+        DataSet ds = new DataSet();
+        for (int i = 0; i < 10_000; i++) {
+            addNode(ds, "ref", Integer.toString(i));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<TagIndex>> indexes = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                indexes.add(executor.submit(ds::getTagIndex));
+            }
+            for (Future<TagIndex> index : indexes) {
+                assertSame(ds.getTagIndex(), index.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(10_000, ds.getTagIndex().getCount("ref"));
+    }
+
+    /**
+     * Test that deleted and removed primitives are not counted.
+     */
+    @Test
+    public void testDeleteAndRemove() {
+        DataSet ds = new DataSet();
+        TagIndex index = ds.getTagIndex();
+        Node n1 = addNode(ds, "amenity", "bench");
+        Node n2 = addNode(ds, "amenity", "bench");
+        n1.setDeleted(true);
+        n1.setDeleted(true);
+        assertEquals(1, index.getCount("amenity", "bench"));
+        // changes of deleted primitives are ignored
+        n1.put("amenity", "cafe");
+        assertEquals(0, index.getCount("amenity", "cafe"));
+        n1.setDeleted(false);
+        assertEquals(1, index.getCount("amenity", "cafe"));
+
+        ds.removePrimitive(n2);
+        assertEquals(0, index.getCount("amenity", "bench"));
+        ds.clear();
+        assertTrue(index.getKeys().isEmpty());
+        addNode(ds, "amenity", "bench");
+        assertEquals(1, index.getCount("amenity", "bench"));
+    }
+
+    /**
+     * Test that member roles are counted.
+     */
+    @Test
+    public void testRoles() {
+        DataSet ds = new DataSet();
+        TagIndex index = ds.getTagIndex();
+        Node n = addNode(ds);
+        Relation r = new Relation();
+        r.addMember(new RelationMember("stop", n));
+        r.addMember(new RelationMember("stop", n));
+        ds.addPrimitive(r);
+        assertEquals(2, index.getRoleCount("stop"));
+
+        r.setMembers(Arrays.asList(new RelationMember("platform", n)));
+        assertEquals(0, index.getRoleCount("stop"));
+        assertEquals(Arrays.asList("platform"), index.getRoles());
+        ds.removePrimitive(r);
+        assertTrue(index.getRoles().isEmpty());
+    }
+}
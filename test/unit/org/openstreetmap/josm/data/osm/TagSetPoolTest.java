@@ -0,0 +1,76 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link TagSetPool}.
+ */
+public class TagSetPoolTest {
+
+    /**
+     * Setup test.
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules();
+
+    private static Node createNode(String key, String value) {
+        Node n = new Node(LatLon.ZERO);
+        // use a new string instance to make sure the arrays are not equal by chance
+        n.put(new String(key), new String(value));
+        return n;
+    }
+
+    /**
+     * Test that primitives with the same tags share one array while they are in the dataset.
+     */
+    @Test
+    public void testSharing() {
+        DataSet ds = new DataSet();
+        TagSetPool pool = ds.getTagSetPool();
+        Node n1 = createNode("building", "yes");
+        Node n2 = createNode("building", "yes");
+        Node n3 = createNode("building", "no");
+        assertNotSame(n1.keys, n2.keys);
+
+        ds.addPrimitive(n1);
+        ds.addPrimitive(n2);
+        ds.addPrimitive(n3);
+        assertSame(n1.keys, n2.keys);
+        assertNotSame(n1.keys, n3.keys);
+        assertEquals(2, pool.getTagSetCount());
+        assertEquals(3, pool.getReferenceCount());
+        assertTrue(pool.getSavedBytes() > 0);
+        assertTrue(n1.hasEqualSemanticAttributes(n2, false));
+
+        // changing the tags of one primitive does not affect the others
+        n3.put("building", "yes");
+        assertSame(n1.keys, n3.keys);
+        assertEquals(1, pool.getTagSetCount());
+        n1.put("name", "foo");
+        assertEquals("yes", n2.get("building"));
+        assertEquals(null, n2.get("name"));
+        assertEquals(2, pool.getTagSetCount());
+        n1.removeAll();
+        assertEquals(1, pool.getTagSetCount());
+        assertEquals(2, pool.getReferenceCount());
+
+        ds.removePrimitive(n2);
+        ds.removePrimitive(n3);
+        assertEquals(0, pool.getTagSetCount());
+        assertEquals(0, pool.getReferenceCount());
+        assertEquals(0, pool.getSavedBytes());
+        assertEquals("yes", n2.get("building"));
+    }
+}
@@ -0,0 +1,143 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm.event;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.BBox;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link DataSetChangeSummary}.
+ */
+public class DataSetChangeSummaryTest {
+
+    /**
+     * Setup test.
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules();
+
+    private static final class EventCollector extends DataSetListenerAdapter {
+        private final List<DataChangedEvent> events = new ArrayList<>();
+
+        EventCollector() {
+            super(event -> { });
+        }
+
+        @Override
+        public void dataChanged(DataChangedEvent event) {
+            events.add(event);
+        }
+    }
+
+    /**
+     * Test that a large update is summarized, although its single events are dropped.
+     */
+    @Test
+    public void testLargeUpdate() {
+        DataSet ds = new DataSet();
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            Node n = new Node(new LatLon(0, 0));
+            n.put("name", "n" + i);
+            ds.addPrimitive(n);
+            nodes.add(n);
+        }
+        EventCollector collector = new EventCollector();
+        ds.addDataSetListener(collector);
+
+        Node added = new Node(LatLon.ZERO);
+        Node addedAndRemoved = new Node(LatLon.ZERO);
+        ds.beginUpdate();
+        try {
+            for (Node n : nodes) {
+                n.put("building", "yes");
+            }
+            nodes.get(0).setCoor(new LatLon(1, 2));
+            nodes.get(1).setDeleted(true);
+            nodes.get(1).setDeleted(false);
+            nodes.get(2).setDeleted(true);
+            ds.addPrimitive(added);
+            ds.addPrimitive(addedAndRemoved);
+            ds.removePrimitive(addedAndRemoved);
+        } finally {
+            ds.endUpdate();
+        }
+
+        assertEquals(1, collector.events.size());
+        DataChangedEvent event = collector.events.get(0);
+        assertNull(event.getEvents());
+        DataSetChangeSummary summary = event.getSummary();
+        assertNotNull(summary);
+        assertEquals(Collections.singleton(added), summary.getAddedPrimitives());
+        assertEquals(Collections.singleton(nodes.get(2)), summary.getRemovedPrimitives());
+        assertEquals(1999, summary.getModifiedPrimitives().size());
+        assertTrue(summary.getModifiedPrimitives().contains(nodes.get(1)));
+        assertEquals(Collections.singleton("building"), summary.getChangedKeys());
+        BBox bbox = summary.getMovedNodesBBox();
+        assertTrue(bbox.bounds(LatLon.ZERO));
+        assertTrue(bbox.bounds(new LatLon(1, 2)));
+    }
+
+    /**
+     * Test that a listener added during an update receives the summary of the whole update.
+     */
+    @Test
+    public void testListenerAddedDuringUpdate() {
+        DataSet ds = new DataSet();
+        EventCollector collector = new EventCollector();
+        ds.beginUpdate();
+        try {
+            for (int i = 0; i < 100; i++) {
+                ds.addPrimitive(new Node(LatLon.ZERO));
+            }
+            ds.addDataSetListener(collector);
+        } finally {
+            ds.endUpdate();
+        }
+        assertEquals(1, collector.events.size());
+        assertNotNull(collector.events.get(0).getSummary());
+        assertEquals(100, collector.events.get(0).getSummary().getAddedPrimitives().size());
+    }
+
+    /**
+     * Test that the summaries of consolidated events are merged.
+     */
+    @Test
+    public void testConsolidation() {
+        DataSet ds = new DataSet();
+        Node n1 = new Node(LatLon.ZERO);
+        Node n2 = new Node(LatLon.ZERO);
+        DataChangedEvent merged = new DataChangedEvent(ds, new ArrayList<>(), new DataSetChangeSummary());
+        merged.add(new PrimitivesAddedEvent(ds, Arrays.asList(n1, n2), false));
+        DataSetChangeSummary other = new DataSetChangeSummary();
+        other.add(new PrimitivesRemovedEvent(ds, Collections.singletonList(n2), false));
+        merged.add(new DataChangedEvent(ds, null, other));
+        assertNull(merged.getEvents());
+        assertEquals(Collections.singleton(n1), merged.getSummary().getAddedPrimitives());
+        assertTrue(merged.getSummary().getRemovedPrimitives().isEmpty());
+        assertEquals(new HashSet<OsmPrimitive>(Arrays.asList(n1)), merged.getSummary().getPrimitives());
+
+        // a complete change of the data set cannot be summarized
+        merged.add(new DataChangedEvent(ds));
+        assertNull(merged.getSummary());
+    }
+}
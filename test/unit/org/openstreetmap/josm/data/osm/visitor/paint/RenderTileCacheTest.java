@@ -0,0 +1,197 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm.visitor.paint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openstreetmap.josm.Main;
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.gui.NavigatableComponent;
+import org.openstreetmap.josm.gui.mappaint.MapPaintStyles;
+import org.openstreetmap.josm.gui.preferences.SourceEntry;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link RenderTileCache}.
+ */
+public class RenderTileCacheTest {
+
+    /**
+     * Setup test.
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules().preferences().projection();
+
+    /**
+     * Folder for the style.
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final int IMAGE_SIZE = 600;
+    private static final int RED = 0xffff0000;
+
+    private SourceEntry style;
+    private DataSet ds;
+    private Node node;
+    private NavigatableComponent nc;
+    private RenderTileCache cache;
+
+    /**
+     * Creates a data set with one node, a style that draws it as red square and a view showing it.
+     * @throws Exception if the style cannot be written
+     */
+    @Before
+    public void setUp() throws Exception {
+        File css = folder.newFile("test.mapcss");
+        Files.write(css.toPath(), Collections.singletonList(
+                "node { symbol-shape: square; symbol-size: 10; symbol-fill-color: #ff0000; }"), StandardCharsets.UTF_8);
+        style = new SourceEntry(css.getAbsolutePath(), "test", "test style", true);
+        MapPaintStyles.addStyle(style);
+
+        ds = new DataSet();
+        node = new Node(new LatLon(0.5, 0.5));
+        ds.addPrimitive(node);
+        nc = new NavigatableComponent() {
+            {
+                setBounds(0, 0, IMAGE_SIZE, IMAGE_SIZE);
+                updateLocationState();
+            }
+
+            @Override
+            protected boolean isVisibleOnScreen() {
+                return true;
+            }
+
+            @Override
+            public Point getLocationOnScreen() {
+                return new Point(0, 0);
+            }
+        };
+        nc.zoomTo(new Bounds(0, 0, 1, 1));
+        cache = new RenderTileCache(ds);
+    }
+
+    /**
+     * Cleanup test.
+     */
+    @After
+    public void tearDown() {
+        cache.destroy();
+        MapPaintStyles.removeStyle(style);
+    }
+
+    private BufferedImage paint() {
+        BufferedImage image = new BufferedImage(IMAGE_SIZE, IMAGE_SIZE, BufferedImage.TYPE_INT_ARGB);
+        StyledMapRenderer painter = new StyledMapRenderer(image.createGraphics(), nc, false);
+        cache.paint(painter, nc, image.createGraphics(), false, false, nc.getRealBounds());
+        return image;
+    }
+
+    private int getColorAt(BufferedImage image, LatLon ll) {
+        Point p = nc.getPoint(ll);
+        return image.getRGB(p.x, p.y);
+    }
+
+    /**
+     * Test that the cached tiles are updated when the data changes.
+     */
+    @Test
+    public void testInvalidation() {
+        LatLon oldPosition = node.getCoor();
+        LatLon newPosition = new LatLon(0.25, 0.75);
+        BufferedImage image = paint();
+        int tiles = cache.getTileCount();
+        assertTrue(tiles >= 4);
+        assertEquals(RED, getColorAt(image, oldPosition));
+        assertEquals(0, getColorAt(image, newPosition));
+
+        // repaint from cache
+        image = paint();
+        assertEquals(tiles, cache.getTileCount());
+        assertEquals(RED, getColorAt(image, oldPosition));
+
+        ds.beginUpdate();
+        try {
+            node.setCoor(newPosition);
+        } finally {
+            ds.endUpdate();
+        }
+        image = paint();
+        assertEquals(0, getColorAt(image, oldPosition));
+        assertEquals(RED, getColorAt(image, newPosition));
+    }
+
+    /**
+     * Test that selected primitives are painted, but not cached.
+     */
+    @Test
+    public void testSelection() {
+        ds.setSelected(node);
+        BufferedImage image = paint();
+        assertTrue(getColorAt(image, node.getCoor()) != 0);
+
+        ds.clearSelection();
+        image = paint();
+        assertEquals(RED, getColorAt(image, node.getCoor()));
+
+        // a change of the style clears the cache
+        MapPaintStyles.fireMapPaintSylesUpdated();
+        image = paint();
+        assertEquals(RED, getColorAt(image, node.getCoor()));
+    }
+
+    /**
+     * Test that highlighted primitives are painted, but not cached.
+     */
+    @Test
+    public void testHighlight() {
+        node.setHighlighted(true);
+        BufferedImage image = paint();
+        assertTrue(getColorAt(image, node.getCoor()) != 0);
+
+        node.setHighlighted(false);
+        image = paint();
+        assertEquals(RED, getColorAt(image, node.getCoor()));
+    }
+
+    /**
+     * Test that only the preferences changing the rendering clear the cache.
+     */
+    @Test
+    public void testPreferenceChange() {
+        paint();
+        int tiles = cache.getTileCount();
+
+        // the tiles of the first view are kept when panning
+        Main.pref.put("render-tile-cache.test", "unrelated");
+        nc.zoomTo(nc.getCenter().add(2 * IMAGE_SIZE * nc.getScale(), 0));
+        paint();
+        int moreTiles = cache.getTileCount();
+        assertTrue(moreTiles > tiles);
+
+        // only the tiles of the current view remain
+        Main.pref.put("mappaint.node.selected-size", "10");
+        paint();
+        assertTrue(cache.getTileCount() < moreTiles);
+    }
+}
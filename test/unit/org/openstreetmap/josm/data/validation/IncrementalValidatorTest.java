@@ -0,0 +1,145 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.validation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.osm.event.DataChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataSetChangeSummary;
+import org.openstreetmap.josm.data.osm.event.DataSetListenerAdapter;
+import org.openstreetmap.josm.data.osm.event.NodeMovedEvent;
+import org.openstreetmap.josm.data.validation.tests.CrossingWays;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link IncrementalValidator}.
+ */
+public class IncrementalValidatorTest {
+
+    /**
+     * Setup test.
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules().platform().projection();
+
+    private DataSet ds;
+    private Collection<Test> tests;
+
+    /**
+     * Setup test.
+     */
+    @Before
+    public void setUp() {
+        OsmValidator.initializeGridDetail();
+        ds = new DataSet();
+        tests = Collections.singletonList(new CrossingWays.Ways());
+    }
+
+    private Way createWay(double lat1, double lon1, double lat2, double lon2) {
+        Node n1 = new Node(new LatLon(lat1, lon1));
+        Node n2 = new Node(new LatLon(lat2, lon2));
+        Way w = new Way();
+        w.setNodes(Arrays.asList(n1, n2));
+        w.put("highway", "residential");
+        ds.addPrimitive(n1);
+        ds.addPrimitive(n2);
+        ds.addPrimitive(w);
+        return w;
+    }
+
+    /**
+     * Test that only the errors of changed primitives and their neighbours are updated.
+     */
+    @org.junit.Test
+    public void testValidate() {
+        Way a = createWay(0, 0, 0.01, 0.01);
+        Way b = createWay(0, 0.01, 0.01, 0);
+        Way c = createWay(1, 1, 1.01, 1.01);
+        Way d = createWay(1, 1.01, 1.01, 1);
+        for (Test t : tests) {
+            t.setPartialSelection(false);
+        }
+        List<TestError> errors = new ArrayList<>(TestRunner.runTests(tests, ds.allPrimitives(), t -> null));
+        assertEquals(2, errors.size());
+
+        IncrementalValidator validator = new IncrementalValidator();
+        ds.addDataSetListener(new DataSetListenerAdapter(validator));
+        assertFalse(validator.hasChanges());
+        assertNull(validator.validate(tests));
+
+        // move b away from a
+        b.lastNode().setCoor(new LatLon(0.01, 0.02));
+        assertTrue(validator.hasChanges());
+        IncrementalValidator.Result result = validator.validate(tests);
+        assertFalse(validator.hasChanges());
+        assertTrue(result.getValidatedPrimitives().contains(a));
+        assertFalse(result.getValidatedPrimitives().contains(c));
+        assertTrue(result.getErrors().isEmpty());
+        assertTrue(result.applyTo(errors));
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0).getPrimitives().contains(c));
+
+        // add a new way crossing a
+        Way e = createWay(0, 0.005, 0.01, 0.005);
+        result = validator.validate(tests);
+        assertEquals(1, result.getErrors().size());
+        assertTrue(result.applyTo(errors));
+        assertEquals(2, errors.size());
+        assertTrue(errors.get(1).getPrimitives().containsAll(Arrays.asList(a, e)));
+
+        // remove d, the error of c and d is removed as well
+        ds.removePrimitive(d);
+        result = validator.validate(tests);
+        assertTrue(result.applyTo(errors));
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0).getPrimitives().contains(e));
+    }
+
+    /**
+     * Test that a data changed event without events is validated from its summary, or completely without summary.
+     */
+    @org.junit.Test
+    public void testValidateDataChanged() {
+        Way a = createWay(0, 0, 0.01, 0.01);
+        Way b = createWay(0, 0.01, 0.01, 0);
+        Way c = createWay(1, 1, 1.01, 1.01);
+        createWay(1, 1.01, 1.01, 1);
+        IncrementalValidator validator = new IncrementalValidator();
+
+        // the summary of a consolidated event with too many events to keep
+        b.lastNode().setCoor(new LatLon(0.01, 0.02));
+        DataSetChangeSummary summary = new DataSetChangeSummary(
+                Collections.singletonList(new NodeMovedEvent(ds, b.lastNode(), new LatLon(0.01, 0))));
+        validator.processDatasetEvent(new DataChangedEvent(ds, null, summary));
+        assertTrue(validator.hasChanges());
+        IncrementalValidator.Result result = validator.validate(tests);
+        assertTrue(result.getValidatedPrimitives().containsAll(Arrays.asList(a, b)));
+        assertFalse(result.getValidatedPrimitives().contains(c));
+        assertTrue(result.getErrors().isEmpty());
+
+        // a complete change of the data
+        validator.processDatasetEvent(new DataChangedEvent(ds, null, null));
+        assertTrue(validator.hasChanges());
+        result = validator.validate(tests);
+        assertTrue(result.getValidatedPrimitives().containsAll(Arrays.asList(a, b, c)));
+        assertEquals(1, result.getErrors().size());
+        assertFalse(validator.hasChanges());
+    }
+}
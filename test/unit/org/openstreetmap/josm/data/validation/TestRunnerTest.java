@@ -0,0 +1,139 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.validation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.Rule;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.validation.tests.UntaggedNode;
+import org.openstreetmap.josm.gui.preferences.validator.ValidatorPreference;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link TestRunner}.
+ */
+public class TestRunnerTest {
+
+    /**
+     * Setup test.
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules rules = new JOSMTestRules().preferences().projection();
+
+    /**
+     * A test that records the thread it runs on. Tests are not thread safe by default.
+     */
+    private static class SerialTest extends Test {
+        private Thread thread;
+
+        SerialTest() {
+            super("serial");
+        }
+
+        @Override
+        public void visit(Node n) {
+            thread = Thread.currentThread();
+            if (n.hasKey("fixme")) {
+                errors.add(TestError.builder(this, Severity.OTHER, 1).message("fixme").primitives(n).build());
+            }
+        }
+    }
+
+    private static List<OsmPrimitive> createNodes(int count) {
+        DataSet ds = new DataSet();
+        List<OsmPrimitive> nodes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Node n = new Node(new LatLon(0, 0));
+            ds.addPrimitive(n);
+            if (i % 3 == 0) {
+                n.put("fixme", Integer.toString(i));
+            } else if (i % 3 == 1) {
+                n.put("note", Integer.toString(i));
+            }
+            nodes.add(n);
+        }
+        return nodes;
+    }
+
+    private static List<TestError> run(Collection<OsmPrimitive> primitives, boolean parallel, Test... tests) {
+        ValidatorPreference.PREF_PARALLEL.put(parallel);
+        for (Test test : tests) {
+            test.setPartialSelection(true);
+        }
+        return TestRunner.runTests(Arrays.asList(tests), primitives, test -> null);
+    }
+
+    /**
+     * Test that the parallel execution finds the same errors in the same order as the serial one.
+     */
+    @org.junit.Test
+    public void testParallelResultIsDeterministic() {
+        List<OsmPrimitive> nodes = createNodes(5000);
+        List<TestError> serial = run(nodes, false, new UntaggedNode(), new SerialTest());
+        List<TestError> parallel = run(nodes, true, new UntaggedNode(), new SerialTest());
+        assertTrue(serial.size() > 2 * 5000 / 3);
+        assertEquals(serial.size(), parallel.size());
+        for (int i = 0; i < serial.size(); i++) {
+            assertEquals(serial.get(i).getTester().getClass(), parallel.get(i).getTester().getClass());
+            assertEquals(serial.get(i).getCode(), parallel.get(i).getCode());
+            assertEquals(new ArrayList<>(serial.get(i).getPrimitives()), new ArrayList<>(parallel.get(i).getPrimitives()));
+        }
+    }
+
+    /**
+     * Test that a test which is not thread safe is run on the calling thread.
+     */
+    @org.junit.Test
+    public void testNotThreadSafe() {
+        SerialTest test = new SerialTest();
+        List<TestError> errors = run(createNodes(10), true, new UntaggedNode(), test);
+        assertTrue(errors.size() > 4);
+        assertEquals(Thread.currentThread(), test.thread);
+    }
+
+    /**
+     * Test that the progress monitors are created on the calling thread, first for the tests that are not thread safe.
+     */
+    @org.junit.Test
+    public void testMonitorsOnCallingThread() {
+        ValidatorPreference.PREF_PARALLEL.put(true);
+        List<Thread> threads = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        TestRunner.runTests(Arrays.asList(new UntaggedNode(), new SerialTest()), createNodes(2000), test -> {
+            threads.add(Thread.currentThread());
+            names.add(test.getName());
+            return null;
+        });
+        assertEquals(Arrays.asList(Thread.currentThread(), Thread.currentThread()), threads);
+        assertEquals(Arrays.asList("serial", new UntaggedNode().getName()), names);
+    }
+
+    /**
+     * Test that the remaining tests are skipped when a progress monitor is canceled.
+     */
+    @org.junit.Test
+    public void testCanceled() {
+        ValidatorPreference.PREF_PARALLEL.put(false);
+        List<OsmPrimitive> nodes = createNodes(10);
+        TestRunContext canceledContext = new TestRunContext(nodes);
+        canceledContext.cancel();
+        SerialTest test = new SerialTest();
+        List<TestError> errors = TestRunner.runTests(Arrays.asList(test, new UntaggedNode()), nodes,
+                t -> t == test ? new WorkerProgressMonitor(canceledContext) : null);
+        assertTrue(errors.isEmpty());
+        assertNull(test.thread);
+    }
+}
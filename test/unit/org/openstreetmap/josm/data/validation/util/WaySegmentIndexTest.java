@@ -0,0 +1,125 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.validation.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.osm.WaySegment;
+import org.openstreetmap.josm.data.validation.OsmValidator;
+import org.openstreetmap.josm.data.validation.TestError;
+import org.openstreetmap.josm.data.validation.TestRunner;
+import org.openstreetmap.josm.data.validation.tests.CrossingWays;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link WaySegmentIndex}.
+ */
+public class WaySegmentIndexTest {
+
+    /**
+     * Setup test.
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules().platform().preferences().projection();
+
+    private DataSet ds;
+
+    /**
+     * Setup test.
+     */
+    @Before
+    public void setUp() {
+        OsmValidator.initializeGridDetail();
+        ds = new DataSet();
+    }
+
+    private Way createWay(double lat1, double lon1, double lat2, double lon2, String highway) {
+        Node n1 = new Node(new LatLon(lat1, lon1));
+        Node n2 = new Node(new LatLon(lat2, lon2));
+        Way w = new Way();
+        w.setNodes(Arrays.asList(n1, n2));
+        w.put("highway", highway);
+        ds.addPrimitive(n1);
+        ds.addPrimitive(n2);
+        ds.addPrimitive(w);
+        return w;
+    }
+
+    /**
+     * Test of {@link WaySegmentIndex#getIntersecting}.
+     */
+    @Test
+    public void testGetIntersecting() {
+        // long segments span many cells
+        Way w1 = createWay(0, 0, 0.01, 0.01, "residential");
+        Way w2 = createWay(0, 0.01, 0.01, 0, "residential");
+        Way w3 = createWay(0.02, 0.02, 0.03, 0.03, "residential");
+        WaySegmentIndex index = new WaySegmentIndex(OsmValidator.griddetail);
+        index.addWay(w1);
+        index.addWay(w2);
+        index.addWay(w3);
+        assertEquals(3, index.getSegmentCount());
+        assertTrue(index.contains(w2));
+
+        List<WaySegment> crossing = index.getIntersecting(new WaySegment(w1, 0), (way, i) -> true);
+        assertEquals(1, crossing.size());
+        assertEquals(w2, crossing.get(0).way);
+        assertTrue(index.getIntersecting(new WaySegment(w1, 0), (way, i) -> way != w2).isEmpty());
+        assertTrue(index.getIntersecting(new WaySegment(w3, 0), (way, i) -> true).isEmpty());
+
+        // each candidate is returned only once, even if it shares several cells with the query
+        List<WaySegment> candidates = index.getCandidates(w1.firstNode().getEastNorth(), w1.lastNode().getEastNorth(),
+                (way, i) -> true);
+        assertEquals(2, candidates.size());
+    }
+
+    /**
+     * Test that {@link CrossingWays} finds the same errors with and without the shared index.
+     */
+    @Test
+    public void testCrossingWaysWithSharedIndex() {
+        for (int i = 0; i < 10; i++) {
+            createWay(0, i * 0.001, 0.01, i * 0.001 + 0.0005, "residential");
+            createWay(i * 0.001, 0, i * 0.001 + 0.0005, 0.01, "residential");
+        }
+        List<OsmPrimitive> primitives = new ArrayList<>(ds.allPrimitives());
+
+        CrossingWays.Ways shared = new CrossingWays.Ways();
+        List<TestError> sharedErrors = TestRunner.runTests(Collections.singletonList(shared), primitives, t -> null);
+        assertNull(shared.getRunContext());
+
+        CrossingWays.Ways incremental = new CrossingWays.Ways();
+        incremental.startTest(null);
+        for (OsmPrimitive p : primitives) {
+            if (incremental.isPrimitiveUsable(p)) {
+                p.accept(incremental);
+            }
+        }
+        incremental.endTest();
+
+        assertEquals(100, sharedErrors.size());
+        assertEquals(incremental.getErrors().size(), sharedErrors.size());
+        for (int i = 0; i < sharedErrors.size(); i++) {
+            TestError e1 = sharedErrors.get(i);
+            TestError e2 = incremental.getErrors().get(i);
+            assertEquals(new ArrayList<>(e2.getPrimitives()), new ArrayList<>(e1.getPrimitives()));
+        }
+    }
+}
@@ -1,8 +1,10 @@
 // License: GPL. For details, see LICENSE file.
 package org.openstreetmap.josm.gui.layer;
 
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import org.junit.Rule;
 import org.junit.Test;
@@ -33,4 +35,23 @@ public class ImageryLayerTest {
         assertNotNull(settings);
         assertSame(settings, layer.getFilterSettings());
     }
+
+    /**
+     * Unit test of {@link ImageryLayer#isImageProcessorsIdentity()}
+     */
+    @Test
+    public void testImageProcessorsIdentity() {
+        ImageryLayer layer = TMSLayerTest.createTmsLayer();
+        assertTrue(layer.isImageProcessorsIdentity());
+        layer.getFilterSettings().setGamma(0.5);
+        assertFalse(layer.isImageProcessorsIdentity());
+        layer.getFilterSettings().setGamma(1);
+        assertTrue(layer.isImageProcessorsIdentity());
+        // a processor changing only some images is applied to every image
+        ImageProcessor processor = image -> image;
+        layer.addImageProcessor(processor);
+        assertFalse(layer.isImageProcessorsIdentity());
+        layer.removeImageProcessor(processor);
+        assertTrue(layer.isImageProcessorsIdentity());
+    }
 }
@@ -2,11 +2,14 @@
 package org.openstreetmap.josm.gui.layer.geoimage;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 import java.text.ParseException;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -64,6 +67,37 @@ public class CorrelateGpxWithImagesTest {
                 i2.getPos()); // interpolated
     }
 
+    /**
+     * Tests matching of unsorted images to a GPX track with an offset, as done when adjusting the offset.
+     * @throws Exception if the track cannot be parsed
+     */
+    @Test
+    public void testMatchGpxTrackWithOffset() throws Exception {
+        final GpxData gpx = GpxReaderTest.parseGpxData("data_nodist/2094047.gpx");
+        final GpxTimeIndex index = new GpxTimeIndex(gpx);
+        assertEquals(DateUtils.fromString("2016:01:03 11:59:58").getTime(), index.getFirstTime());
+
+        final ImageEntry i1 = new ImageEntry();
+        i1.setExifTime(DateUtils.fromString("2016:01:03 13:05:05")); // one hour later than the track
+        final ImageEntry i2 = new ImageEntry();
+        i2.setExifTime(DateUtils.fromString("2016:01:03 13:04:57"));
+        final ImageEntry i3 = new ImageEntry();
+        i3.setExifTime(DateUtils.fromString("2016:01:03 10:00:00")); // long before the track
+        final List<ImageEntry> images = Arrays.asList(i1, i2, i3);
+        for (ImageEntry e : images) {
+            e.createTmp();
+        }
+
+        assertEquals(2, index.match(images, TimeUnit.HOURS.toMillis(1)));
+        assertEquals(new CachedLatLon(47.197319911792874, 8.792139580473304), i1.tmp.getPos());
+        assertEquals(new CachedLatLon((47.197131179273129 + 47.197186248376966) / 2, (8.792974585667253 + 8.792809881269932) / 2),
+                i2.tmp.getPos());
+        assertEquals(DateUtils.fromString("2016:01:03 12:05:05"), i1.tmp.getGpsTime());
+        assertNull(i3.tmp.getPos());
+        // already matched images are kept
+        assertEquals(0, index.match(images, TimeUnit.HOURS.toMillis(1)));
+    }
+
     /**
      * Tests automatic guessing of timezone/offset
      * @throws Exception if an error occurs
@@ -0,0 +1,64 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.gui.layer.geoimage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.openstreetmap.josm.Main;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link ThumbsLoader} class.
+ */
+public class ThumbsLoaderTest {
+
+    /**
+     * Setup test.
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules().preferences();
+
+    /**
+     * Test that large images are only partially decoded.
+     */
+    @Test
+    public void testReadSubsampled() {
+        BufferedImage image = ThumbsLoader.readSubsampled(new File("data_nodist/exif-example_orientation=6.jpg"));
+        assertNotNull(image);
+        // 3264x1836 pixels, every 13th pixel is read
+        assertEquals(252, image.getWidth());
+        assertEquals(142, image.getHeight());
+    }
+
+    /**
+     * Test that the thumbnails of several images are loaded, with the EXIF orientation applied.
+     */
+    @Test
+    public void testRun() {
+        Main.pref.put("geoimage.noThumbnailCache", true);
+        List<ImageEntry> entries = Arrays.asList(
+                new ImageEntry(new File("data_nodist/exif-example_orientation=6.jpg")),
+                new ImageEntry(new File("data_nodist/exif-example_direction.jpg")));
+        for (ImageEntry e : entries) {
+            e.extractExif();
+        }
+        new ThumbsLoader(entries).run();
+        Image rotated = entries.get(0).getThumbnail();
+        assertEquals(67, rotated.getWidth(null));
+        assertEquals(120, rotated.getHeight(null));
+        Image thumb = entries.get(1).getThumbnail();
+        assertEquals(120, thumb.getWidth(null));
+        assertEquals(90, thumb.getHeight(null));
+    }
+}
@@ -1,13 +1,18 @@
 // License: GPL. For details, see LICENSE file.
 package org.openstreetmap.josm.gui.layer.gpx;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import java.awt.Color;
+import java.awt.Point;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 
 import org.junit.BeforeClass;
@@ -15,9 +20,13 @@ import org.junit.Test;
 import org.openstreetmap.josm.JOSMFixture;
 import org.openstreetmap.josm.Main;
 import org.openstreetmap.josm.TestUtils;
+import org.openstreetmap.josm.data.coor.EastNorth;
 import org.openstreetmap.josm.data.gpx.GpxData;
 import org.openstreetmap.josm.data.gpx.WayPoint;
 import org.openstreetmap.josm.data.preferences.ColorProperty;
+import org.openstreetmap.josm.data.projection.Projection;
+import org.openstreetmap.josm.data.projection.Projections;
+import org.openstreetmap.josm.gui.MapViewState;
 import org.openstreetmap.josm.io.GpxReaderTest;
 import org.openstreetmap.josm.tools.ColorHelper;
 import org.xml.sax.SAXException;
@@ -114,6 +123,88 @@ public class GpxDrawHelperTest {
         assertEquals("[#FF00FF, #FF0000, #FF0000, #FF0500, #FF0500, #FF0A00, #FF0A00, #FF1F00, #FF2E00, #FF3300]", colors.toString());
     }
 
+    /**
+     * Tests the points kept at the levels of detail of a track.
+     * @throws IOException if any I/O error occurs
+     * @throws SAXException if any SAX error occurs
+     */
+    @Test
+    public void testLevelOfDetail() throws IOException, SAXException {
+        final GpxData data = GpxReaderTest.parseGpxData("data_nodist/2094047.gpx");
+        final GpxDrawHelper gdh = new GpxDrawHelper(data, new ColorProperty("x", Color.MAGENTA));
+        gdh.readPreferences("004");
+        gdh.calculateColors();
+        final List<EastNorth> points = new ArrayList<>();
+        for (WayPoint wpt : data.tracks.iterator().next().getSegments().iterator().next().getWayPoints()) {
+            points.add(wpt.getEastNorth());
+        }
+
+        // all points are kept at a sub-millimeter level
+        assertEquals(0, gdh.getLevel(0, -20).length);
+
+        final int level = 6;
+        final double tolerance = Math.scalb(1.0, level);
+        final int[] kept = gdh.getLevel(0, level);
+        assertTrue(kept.length > 1 && kept.length < points.size());
+        assertEquals(0, kept[0]);
+        assertEquals(points.size() - 1, kept[kept.length - 1]);
+        for (int k = 0; k + 1 < kept.length; k++) {
+            final EastNorth last = points.get(kept[k]);
+            for (int i = kept[k] + 1; i < kept[k + 1]; i++) {
+                // skipped points are close to the last kept point
+                assertTrue(Math.abs(points.get(i).east() - last.east()) < tolerance);
+                assertTrue(Math.abs(points.get(i).north() - last.north()) < tolerance);
+            }
+        }
+
+        // fewer points at a coarser level
+        assertTrue(gdh.getLevel(0, level + 4).length < kept.length);
+
+        // the levels are cached until the colors are calculated again or the projection changes
+        assertSame(kept, gdh.getLevel(0, level));
+        gdh.calculateColors();
+        assertNotSame(kept, gdh.getLevel(0, level));
+        final int[] recalculated = gdh.getLevel(0, level);
+        assertArrayEquals(kept, recalculated);
+        final Projection projection = Main.getProjection();
+        try {
+            Main.setProjection(Projections.getProjectionByCode("EPSG:4326"));
+            assertNotSame(recalculated, gdh.getLevel(0, level));
+        } finally {
+            Main.setProjection(projection);
+        }
+    }
+
+    /**
+     * Tests that the cached heat map image is moved with the view, and drawn again if the view is zoomed or the data changes.
+     * @throws IOException if any I/O error occurs
+     * @throws SAXException if any SAX error occurs
+     */
+    @Test
+    public void testHeatMapShift() throws IOException, SAXException {
+        final GpxDrawHelper gdh = new GpxDrawHelper(GpxReaderTest.parseGpxData("data_nodist/2094047.gpx"),
+                new ColorProperty("x", Color.MAGENTA));
+        gdh.readPreferences("005");
+        final MapViewState state = MapViewState.createDefaultState(100, 80);
+        assertNull(gdh.getHeatMapShift(state));
+
+        gdh.heatMapMapViewState = state;
+        assertEquals(new Point(0, 0), gdh.getHeatMapShift(state));
+        // the point at (10, 5) is moved to the top left corner
+        final MapViewState moved = state.movedTo(state.getForView(0, 0), state.getForView(10, 5).getEastNorth());
+        assertEquals(new Point(-10, -5), gdh.getHeatMapShift(moved));
+        // moved out of the image
+        assertNull(gdh.getHeatMapShift(state.movedTo(state.getForView(0, 0), state.getForView(100, 0).getEastNorth())));
+        // zoomed
+        assertNull(gdh.getHeatMapShift(state.usingScale(state.getScale() * 2)));
+        // resized
+        assertNull(gdh.getHeatMapShift(state.usingViewArea(state.getForView(0, 0).getEastNorth(), 120, 80)));
+
+        // the cached image is invalidated when the colors are calculated
+        gdh.calculateColors();
+        assertNull(gdh.heatMapMapViewState);
+    }
+
     /**
      *
      * @param fileName the GPX filename to parse
@@ -129,10 +220,10 @@ public class GpxDrawHelperTest {
         final GpxDrawHelper gdh = new GpxDrawHelper(data, new ColorProperty("x", Color.MAGENTA));
         gdh.readPreferences(layerName);
         gdh.calculateColors();
-        final Iterator<WayPoint> wayPointIterator = data.tracks.iterator().next().getSegments().iterator().next().getWayPoints().iterator();
+        final Color[] colors = gdh.getColors(0);
         final List<String> colorCodes = new ArrayList<>(n);
         while (colorCodes.size() < n) {
-            colorCodes.add(ColorHelper.color2html(wayPointIterator.next().customColoring));
+            colorCodes.add(ColorHelper.color2html(colors[colorCodes.size()]));
         }
         return colorCodes;
     }
@@ -78,7 +78,9 @@ public class ColorfulImageProcessorTest {
             for (int type : new int[] {
                     BufferedImage.TYPE_3BYTE_BGR,
                     BufferedImage.TYPE_4BYTE_ABGR,
-                    BufferedImage.TYPE_4BYTE_ABGR_PRE }) {
+                    BufferedImage.TYPE_4BYTE_ABGR_PRE,
+                    BufferedImage.TYPE_INT_RGB,
+                    BufferedImage.TYPE_INT_ARGB }) {
                 assertTrue(runProcessing(data, type));
             }
         }
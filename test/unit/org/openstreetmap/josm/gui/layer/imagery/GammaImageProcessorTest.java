@@ -2,6 +2,9 @@
 package org.openstreetmap.josm.gui.layer.imagery;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.awt.image.BufferedImage;
 
 import org.junit.Rule;
 import org.junit.Test;
@@ -50,6 +53,31 @@ public class GammaImageProcessorTest {
         assertEquals(5, processor.getGamma(), 0.001);
     }
 
+    /**
+     * Test {@link GammaImageProcessor#process(BufferedImage)}
+     */
+    @Test
+    public void testProcessing() {
+        GammaImageProcessor processor = new GammaImageProcessor();
+        for (int type : new int[] {
+                BufferedImage.TYPE_3BYTE_BGR,
+                BufferedImage.TYPE_4BYTE_ABGR,
+                BufferedImage.TYPE_INT_RGB,
+                BufferedImage.TYPE_INT_ARGB }) {
+            BufferedImage image = new BufferedImage(2, 1, type);
+            image.setRGB(0, 0, 0xff408000);
+            image.setRGB(1, 0, 0xffffffff);
+            processor.setGamma(1);
+            assertSame(image, processor.process(image));
+
+            processor.setGamma(2);
+            BufferedImage result = processor.process(image);
+            // 255 * (0x40 / 255) ^ 2 = 16, 255 * (0x80 / 255) ^ 2 = 64.25
+            assertEquals(type + ": dark", 0xff104000, result.getRGB(0, 0));
+            assertEquals(type + ": white", 0xffffffff, result.getRGB(1, 0));
+        }
+    }
+
     /**
      * Test {@link GammaImageProcessor#toString()}
      */
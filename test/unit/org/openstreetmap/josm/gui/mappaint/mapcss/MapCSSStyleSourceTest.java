@@ -0,0 +1,134 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.gui.mappaint.mapcss;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.OsmUtils;
+import org.openstreetmap.josm.gui.mappaint.Environment;
+import org.openstreetmap.josm.gui.mappaint.mapcss.MapCSSStyleSource.MapCSSRuleIndex;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link MapCSSStyleSource}.
+ */
+public class MapCSSStyleSourceTest {
+
+    /**
+     * Setup test.
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules().preferences();
+
+    private static MapCSSStyleSource load(String css) {
+        MapCSSStyleSource source = new MapCSSStyleSource(css);
+        source.loadStyleSource();
+        assertTrue(source.getErrors().toString(), source.getErrors().isEmpty());
+        return source;
+    }
+
+    /**
+     * Returns the declaration indexes of the rule candidates, in the order of the iterator.
+     * @param index the rule index
+     * @param osm the primitive
+     * @return the indexes of the candidate rules
+     */
+    private static List<Integer> getCandidates(MapCSSRuleIndex index, OsmPrimitive osm) {
+        List<Integer> result = new ArrayList<>();
+        for (Iterator<MapCSSRule> it = index.getRuleCandidates(osm); it.hasNext();) {
+            result.add(it.next().declaration.idx);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the declaration indexes of the rules that match, by matching all rules of the index without using it.
+     * @param source the style source
+     * @param osm the primitive
+     * @return the indexes of the matching rules
+     */
+    private static List<Integer> getMatching(MapCSSStyleSource source, OsmPrimitive osm) {
+        List<Integer> result = new ArrayList<>();
+        for (MapCSSRule r : source.rules) {
+            if (r.selector.matches(new Environment(osm))) {
+                result.add(r.declaration.idx);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Test that rules sharing a {@code [key=value]} condition, which is not the indexed one, are skipped when it fails.
+     */
+    @Test
+    public void testSharedKeyValueCondition() {
+        MapCSSStyleSource source = load("node[a=b][k=v] {z-index: 1} node[a=b][m=n] {z-index: 2} node[k=v] {z-index: 3}");
+        OsmPrimitive withoutA = OsmUtils.createPrimitive("n k=v m=n");
+        assertEquals(Arrays.asList(2), getCandidates(source.nodeRules, withoutA));
+        assertEquals(getMatching(source, withoutA), getCandidates(source.nodeRules, withoutA));
+
+        OsmPrimitive withA = OsmUtils.createPrimitive("n a=b k=v m=n");
+        assertEquals(Arrays.asList(0, 1, 2), getCandidates(source.nodeRules, withA));
+        assertEquals(getMatching(source, withA), getCandidates(source.nodeRules, withA));
+
+        OsmPrimitive otherA = OsmUtils.createPrimitive("n a=c k=v m=n");
+        assertEquals(Arrays.asList(2), getCandidates(source.nodeRules, otherA));
+    }
+
+    /**
+     * Test that rules sharing a negated {@code [!key]} condition are skipped when the key is present, including rules that
+     * are not indexed by any key.
+     */
+    @Test
+    public void testSharedNegatedKeyCondition() {
+        MapCSSStyleSource source = load("node[!x][k=v] {z-index: 1} node[!x][m=n] {z-index: 2} node[!x] {z-index: 3}");
+        OsmPrimitive withX = OsmUtils.createPrimitive("n x=1 k=v m=n");
+        assertEquals(Arrays.asList(), getCandidates(source.nodeRules, withX));
+        assertEquals(getMatching(source, withX), getCandidates(source.nodeRules, withX));
+
+        OsmPrimitive withoutX = OsmUtils.createPrimitive("n k=v");
+        assertEquals(Arrays.asList(0, 2), getCandidates(source.nodeRules, withoutX));
+        assertEquals(getMatching(source, withoutX), getCandidates(source.nodeRules, withoutX));
+    }
+
+    /**
+     * Test that regular expression conditions are not shared, so that the rules remain candidates and are matched by their
+     * selectors.
+     */
+    @Test
+    public void testRegexpConditionsNotShared() {
+        MapCSSStyleSource source = load("node[a=~/^b/][k=v] {z-index: 1} node[a=~/^b/][m=n] {z-index: 2} "
+                + "node[/^x/][k=v] {z-index: 3} node[/^x/][m=n] {z-index: 4}");
+        OsmPrimitive osm = OsmUtils.createPrimitive("n a=c k=v m=n");
+        assertEquals(Arrays.asList(0, 1, 2, 3), getCandidates(source.nodeRules, osm));
+        assertEquals(Arrays.asList(), getMatching(source, osm));
+
+        OsmPrimitive matching = OsmUtils.createPrimitive("n a=bc xy=1 k=v m=n");
+        assertEquals(Arrays.asList(0, 1, 2, 3), getMatching(source, matching));
+    }
+
+    /**
+     * Test that a condition indexed for one rule is still shared by the rules indexed by another key.
+     */
+    @Test
+    public void testSharedConditionWithIndexedCondition() {
+        // [a=b] is indexed in the first rule, and shared by the two others
+        MapCSSStyleSource source = load("node[a=b] {z-index: 1} node[a=b][k=v] {z-index: 2} node[a=b][m=n] {z-index: 3}");
+        OsmPrimitive osm = OsmUtils.createPrimitive("n a=b k=v");
+        assertEquals(Arrays.asList(0, 1), getCandidates(source.nodeRules, osm));
+        assertFalse(getCandidates(source.nodeRules, OsmUtils.createPrimitive("n k=v m=n")).contains(1));
+        assertEquals(getMatching(source, osm), getCandidates(source.nodeRules, osm));
+    }
+}
@@ -0,0 +1,49 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.io;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link AdaptiveChunkSize}.
+ */
+public class AdaptiveChunkSizeTest {
+
+    /**
+     * Test that the size grows at most by a factor of two, up to the maximum size.
+     */
+    @Test
+    public void testGrow() {
+        AdaptiveChunkSize size = new AdaptiveChunkSize(100, 1000, 10_000);
+        assertEquals(100, size.getSize());
+        size.update(100, 100);
+        assertEquals(200, size.getSize());
+        size.update(200, 200);
+        assertEquals(400, size.getSize());
+        size.update(400, 400);
+        assertEquals(800, size.getSize());
+        size.update(800, 800);
+        assertEquals(1000, size.getSize());
+    }
+
+    /**
+     * Test that the size shrinks at once to the intended duration when the server becomes slow.
+     */
+    @Test
+    public void testShrink() {
+        AdaptiveChunkSize size = new AdaptiveChunkSize(1000, 1000, 10_000);
+        // 50 ms per primitive
+        size.update(1000, 50_000);
+        assertEquals(200, size.getSize());
+        // 10 ms per primitive, smoothed to 30 ms
+        size.update(200, 2_000);
+        assertEquals(333, size.getSize());
+        // an empty chunk is ignored
+        size.update(0, 1_000);
+        assertEquals(333, size.getSize());
+        // never less than one primitive
+        size.update(1, 1_000_000);
+        assertEquals(1, size.getSize());
+    }
+}
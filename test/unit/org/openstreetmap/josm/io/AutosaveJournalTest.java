@@ -0,0 +1,198 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
+import org.openstreetmap.josm.data.osm.PrimitiveId;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.RelationMember;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link AutosaveJournal} class.
+ */
+public class AutosaveJournalTest {
+
+    /**
+     * Setup test.
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules().preferences();
+
+    /**
+     * Temporary folder for the snapshot and journal.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static void writeSnapshot(DataSet ds, File file) throws IOException {
+        try (OsmWriter w = OsmWriterFactory.createOsmWriter(new PrintWriter(new OutputStreamWriter(
+                new FileOutputStream(file), StandardCharsets.UTF_8)), false, ds.getVersion())) {
+            w.header();
+            w.writeContent(ds);
+            w.footer();
+        }
+    }
+
+    private static DataSet readSnapshot(File file) throws IOException, IllegalDataException {
+        try (InputStream in = new FileInputStream(file)) {
+            return OsmReader.parseDataSet(in, NullProgressMonitor.INSTANCE);
+        }
+    }
+
+    /**
+     * Tests that new and existing primitives are updated, created and removed, and that an incomplete block is ignored.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testReplay() throws Exception {
+        DataSet ds = new DataSet();
+        Node existing = new Node(1, 1);
+        existing.setCoor(new LatLon(1, 1));
+        Node created = new Node(new LatLon(2, 2));
+        Way way = new Way();
+        way.setNodes(Arrays.asList(existing, created));
+        ds.addPrimitive(existing);
+        ds.addPrimitive(created);
+        ds.addPrimitive(way);
+        File snapshot = folder.newFile("layer.osm");
+        writeSnapshot(ds, snapshot);
+        File journal = AutosaveJournal.getJournalFile(snapshot);
+
+        existing.put("name", "existing");
+        existing.setModified(true);
+        created.setCoor(new LatLon(3, 3));
+        Node added = new Node(new LatLon(4, 4));
+        ds.addPrimitive(added);
+        way.setNodes(Arrays.asList(existing, created, added));
+        Relation relation = new Relation();
+        relation.setMembers(Arrays.asList(new RelationMember("outer", way), new RelationMember("", added)));
+        ds.addPrimitive(relation);
+        AutosaveJournal.append(journal, Arrays.asList(existing.save(), created.save(), added.save(), way.save(),
+                relation.save()), Collections.emptyList());
+
+        relation.put("type", "multipolygon");
+        ds.removePrimitive(relation);
+        AutosaveJournal.append(journal, Collections.emptyList(), Collections.singleton(relation.getPrimitiveId()));
+        long complete = journal.length();
+
+        // an incomplete block, written during a crash
+        existing.put("name", "lost");
+        AutosaveJournal.append(journal, Collections.singleton(existing.save()), Collections.emptyList());
+        try (RandomAccessFile raf = new RandomAccessFile(journal, "rw")) {
+            raf.setLength(complete + (journal.length() - complete) / 2);
+        }
+
+        AutosaveJournal.replay(snapshot, journal);
+        assertFalse(journal.exists());
+
+        DataSet result = readSnapshot(snapshot);
+        assertEquals(3, result.getNodes().size());
+        assertEquals(1, result.getWays().size());
+        assertTrue(result.getRelations().isEmpty());
+        Node n = (Node) result.getPrimitiveById(existing);
+        assertEquals("existing", n.get("name"));
+        assertTrue(n.isModified());
+        Way w = result.getWays().iterator().next();
+        assertEquals(3, w.getNodesCount());
+        assertEquals(n, w.firstNode());
+        assertEquals(new LatLon(3, 3), w.getNode(1).getCoor());
+        assertEquals(new LatLon(4, 4), w.lastNode().getCoor());
+    }
+
+    /**
+     * Tests that the new ids of uploaded primitives replace their ids in the snapshot.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testReplayIdChange() throws Exception {
+        DataSet ds = new DataSet();
+        Node node = new Node(new LatLon(1, 1));
+        ds.addPrimitive(node);
+        File snapshot = folder.newFile("layer.osm");
+        writeSnapshot(ds, snapshot);
+        File journal = AutosaveJournal.getJournalFile(snapshot);
+
+        PrimitiveId oldId = node.getPrimitiveId();
+        node.setOsmId(10, 1);
+        AutosaveJournal.append(journal, Collections.singletonMap(oldId, node.getPrimitiveId()),
+                Collections.singleton(node.save()), Collections.emptyList());
+        Way way = new Way();
+        way.setNodes(Arrays.asList(node));
+        ds.addPrimitive(way);
+        AutosaveJournal.append(journal, Collections.singleton(way.save()), Collections.emptyList());
+        AutosaveJournal.replay(snapshot, journal);
+
+        DataSet result = readSnapshot(snapshot);
+        assertEquals(1, result.getNodes().size());
+        Node n = (Node) result.getPrimitiveById(10, OsmPrimitiveType.NODE);
+        assertEquals(1, n.getVersion());
+        assertEquals(n, result.getWays().iterator().next().firstNode());
+    }
+
+    /**
+     * Tests that an interrupted replay is completed, and the journal not applied twice.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testReplayInterrupted() throws Exception {
+        DataSet ds = new DataSet();
+        ds.addPrimitive(new Node(new LatLon(1, 1)));
+        File snapshot = folder.newFile("layer.osm");
+        writeSnapshot(ds, snapshot);
+        File original = folder.newFile("original.osm");
+        Files.copy(snapshot.toPath(), original.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        File journal = AutosaveJournal.getJournalFile(snapshot);
+        Node added = new Node(new LatLon(2, 2));
+        ds.addPrimitive(added);
+        AutosaveJournal.append(journal, Collections.singleton(added.save()), Collections.emptyList());
+        File copy = folder.newFile("copy.journal");
+        Files.copy(journal.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        AutosaveJournal.replay(snapshot, journal);
+        assertEquals(2, readSnapshot(snapshot).getNodes().size());
+
+        // interrupted after the journal has been marked as applied, before the snapshot has been replaced
+        File replayed = AutosaveJournal.getReplayedFile(journal);
+        Files.move(snapshot.toPath(), AutosaveJournal.getTemporaryFile(snapshot).toPath());
+        Files.copy(original.toPath(), snapshot.toPath());
+        Files.copy(copy.toPath(), replayed.toPath());
+        assertTrue(AutosaveJournal.exists(snapshot));
+        AutosaveJournal.replay(snapshot, journal);
+        assertEquals(2, readSnapshot(snapshot).getNodes().size());
+        assertFalse(replayed.exists());
+
+        // interrupted after the snapshot has been replaced
+        Files.copy(copy.toPath(), replayed.toPath());
+        AutosaveJournal.replay(snapshot, journal);
+        assertEquals(2, readSnapshot(snapshot).getNodes().size());
+        assertFalse(AutosaveJournal.exists(snapshot));
+    }
+}
@@ -77,6 +77,29 @@ class DiffResultProcessorTest {
         assert entry.newVersion == 1
     }
 
+    @Test
+    public void testParseStream() {
+        def DiffResultProcessor processor  = new DiffResultProcessor([])
+        String doc = """\
+        <diffResult version="0.6" generator="Test Data">
+            <node old_id="-1" new_id="1" new_version="1"/>
+            <way old_id="-2"/>
+        </diffResult>
+        """
+
+        processor.parseStream new StringReader(doc), null
+        assert processor.@diffResults.size() == 2
+        def entry = processor.@diffResults[new SimplePrimitiveId(-1, OsmPrimitiveType.NODE)]
+        assert entry.newId == 1
+        assert processor.@diffResults[new SimplePrimitiveId(-2, OsmPrimitiveType.WAY)] != null
+
+        final shouldFail = new GroovyTestCase().&shouldFail
+
+        shouldFail(XmlParsingException) {
+            processor.parseStream new StringReader("<diffResult><x/>"), NullProgressMonitor.INSTANCE
+        }
+    }
+
     @Test
     public void testPostProcess_Invocation_Variants() {
         def DiffResultProcessor processor  = new DiffResultProcessor([])
@@ -204,4 +204,27 @@ class OsmChangeBuilderTest {
         node = doc.children()[2].node[0]
         assert node.@id == n3.uniqueId.toString()
     }
+
+    /**
+     * Test writing the document to a given writer
+     */
+    @Test
+    public void testWriter() {
+        def Changeset cs = new Changeset(1)
+        def StringWriter swriter = new StringWriter()
+        OsmChangeBuilder builder = new OsmChangeBuilder(cs, null, new PrintWriter(swriter))
+
+        builder.start()
+        builder.append(new Node(LatLon.ZERO))
+        builder.finish()
+
+        def doc = new XmlParser().parseText(swriter.toString())
+        assert doc.children().size() == 1
+        assert doc.children()[0].name() == "create"
+
+        final shouldFail = new GroovyTestCase().&shouldFail
+        shouldFail(IllegalStateException) {
+            builder.document
+        }
+    }
 }
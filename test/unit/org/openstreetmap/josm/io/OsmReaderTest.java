@@ -2,13 +2,22 @@
 package org.openstreetmap.josm.io;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 
 import org.junit.Test;
 import org.openstreetmap.josm.TestUtils;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
+import org.openstreetmap.josm.data.osm.Relation;
 import org.openstreetmap.josm.data.osm.Way;
 import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
 
@@ -30,4 +39,84 @@ public class OsmReaderTest {
             assertTrue(w.isModified());
         }
     }
+
+    private static String createLargeOsmFile() {
+        StringBuilder sb = new StringBuilder("<?xml version='1.0' encoding='UTF-8'?>\n<osm version='0.6' generator='test'>\n");
+        for (int i = 1; i <= 5000; i++) {
+            sb.append("<node id='").append(i).append("' version='1' lat='").append(50 + i / 10000.0)
+              .append("' lon='").append(10 + i / 10000.0).append("' user='u").append(i % 7).append("' uid='").append(i % 7 + 1)
+              .append("' timestamp='2017-01-01T00:00:00Z'>");
+            if (i % 3 == 0) {
+                sb.append("<tag k='amenity' v='bench'/>");
+            }
+            sb.append("</node>\n");
+        }
+        for (int i = 1; i <= 2500; i++) {
+            // the last node of each way is missing and becomes incomplete
+            sb.append("<way id='").append(i).append("' version='2'><nd ref='").append(2 * i - 1).append("'/><nd ref='")
+              .append(2 * i).append("'/><nd ref='").append(10000 + i).append("'/><tag k='highway' v='residential'/></way>\n");
+        }
+        for (int i = 1; i <= 100; i++) {
+            // forward reference to the next relation, the last one becomes incomplete
+            sb.append("<relation id='").append(i).append("' version='1'><member type='way' ref='").append(i)
+              .append("' role='outer'/><member type='node' ref='").append(i).append("' role=''/><member type='relation' ref='")
+              .append(i + 1).append("' role='sub'/><tag k='type' v='multipolygon'/></relation>\n");
+        }
+        return sb.append("</osm>\n").toString();
+    }
+
+    private static DataSet parse(String osm, boolean pipelined) throws IllegalDataException {
+        OsmReader.PIPELINED.put(pipelined);
+        try {
+            return OsmReader.parseDataSet(new ByteArrayInputStream(osm.getBytes(StandardCharsets.UTF_8)), null);
+        } finally {
+            OsmReader.PIPELINED.remove();
+        }
+    }
+
+    /**
+     * Test that the pipelined reader returns the same data as the sequential reader.
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void testPipelined() throws Exception {
+        String osm = createLargeOsmFile();
+        DataSet expected = parse(osm, false);
+        DataSet actual = parse(osm, true);
+        assertEquals(5000 + 2500 + 2500 + 101, expected.allPrimitives().size());
+        assertEquals(expected.allPrimitives().size(), actual.allPrimitives().size());
+        for (OsmPrimitive e : expected.allPrimitives()) {
+            OsmPrimitive a = actual.getPrimitiveById(e);
+            assertNotNull(e.toString(), a);
+            assertEquals(e.isIncomplete(), a.isIncomplete());
+            assertEquals(e.getKeys(), a.getKeys());
+            assertEquals(e.getVersion(), a.getVersion());
+            assertEquals(e.getRawTimestamp(), a.getRawTimestamp());
+            assertEquals(e.getUser(), a.getUser());
+            if (e instanceof Way) {
+                assertEquals(((Way) e).getNodes().toString(), ((Way) a).getNodes().toString());
+            } else if (e instanceof Relation) {
+                assertEquals(((Relation) e).getMemberPrimitivesList().toString(), ((Relation) a).getMemberPrimitivesList().toString());
+            } else if (!e.isIncomplete()) {
+                assertEquals(((Node) e).getCoor(), ((Node) a).getCoor());
+            }
+        }
+        assertTrue(actual.getPrimitiveById(101, OsmPrimitiveType.RELATION).isIncomplete());
+    }
+
+    /**
+     * Test that errors found by the worker threads of the pipelined reader are reported with their location.
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void testPipelinedError() throws Exception {
+        String osm = createLargeOsmFile().replace("<nd ref='1000'/>", "<nd ref='x'/>");
+        try {
+            parse(osm, true);
+            fail("IllegalDataException expected");
+        } catch (IllegalDataException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Illegal long value for attribute 'ref'. Got 'x'."));
+            assertEquals(5502, ((XmlStreamParsingException) e.getCause()).getLocation().getLineNumber());
+        }
+    }
 }
@@ -0,0 +1,238 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.openstreetmap.josm.Main;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.Changeset;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.gui.io.UploadStrategy;
+import org.openstreetmap.josm.gui.io.UploadStrategySpecification;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link OsmServerWriter}, uploading to a local stand-in for the OSM API.
+ */
+public class OsmServerWriterTest {
+
+    /**
+     * Setup test.
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules().preferences();
+
+    private HttpServer server;
+    private final List<Integer> chunkSizes = new ArrayList<>();
+    private final List<String> errors = new ArrayList<>();
+    private long nextId = 1;
+
+    /**
+     * Starts the stand-in API server, which answers diff uploads like the OSM API.
+     * @throws IOException if the server cannot be started
+     */
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/capabilities", exchange -> reply(exchange,
+                "<osm version='0.6'><api><version minimum='0.6' maximum='0.6'/></api></osm>"));
+        server.createContext("/api/0.6/changeset/create", exchange -> {
+            readRequest(exchange);
+            reply(exchange, "1");
+        });
+        server.createContext("/api/0.6/changeset/1/upload", this::upload);
+        server.start();
+        Main.pref.put("osm-server.url", "http://127.0.0.1:" + server.getAddress().getPort() + "/api");
+        Main.pref.put("osm-server.auth-method", "basic");
+        Main.pref.put("osm-server.username", "test");
+        Main.pref.put("osm-server.password", "test");
+    }
+
+    /**
+     * Stops the stand-in API server.
+     */
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private static byte[] readRequest(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static void reply(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private void upload(HttpExchange exchange) throws IOException {
+        Document doc;
+        try {
+            doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new ByteArrayInputStream(readRequest(exchange)));
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+        StringBuilder result = new StringBuilder("<diffResult version='0.6'>");
+        Set<String> placeholders = new HashSet<>();
+        int size = 0;
+        for (String mode : new String[] {"create", "modify", "delete"}) {
+            NodeList actions = doc.getElementsByTagName(mode);
+            for (int i = 0; i < actions.getLength(); i++) {
+                NodeList primitives = actions.item(i).getChildNodes();
+                for (int j = 0; j < primitives.getLength(); j++) {
+                    if (!(primitives.item(j) instanceof Element))
+                        continue;
+                    Element p = (Element) primitives.item(j);
+                    size++;
+                    result.append('<').append(p.getTagName()).append(" old_id='").append(p.getAttribute("id")).append('\'');
+                    if ("create".equals(mode)) {
+                        placeholders.add(p.getAttribute("id"));
+                        result.append(" new_id='").append(nextId++).append("' new_version='1'");
+                    }
+                    result.append("/>");
+                }
+            }
+        }
+        // like the API, reject references to placeholders which are not created by the same upload
+        NodeList refs = doc.getElementsByTagName("nd");
+        for (int i = 0; i < refs.getLength(); i++) {
+            String ref = ((Element) refs.item(i)).getAttribute("ref");
+            if (ref.startsWith("-") && !placeholders.contains(ref)) {
+                errors.add("Placeholder node not found for reference " + ref);
+            }
+        }
+        synchronized (chunkSizes) {
+            chunkSizes.add(size);
+        }
+        reply(exchange, result.append("</diffResult>").toString());
+    }
+
+    /**
+     * Test that chunks refer to the new ids of the primitives created by previous chunks, and that the chunk size grows
+     * if the server answers quickly.
+     * @throws OsmTransferException if the upload fails
+     */
+    @Test
+    public void testUploadInChunks() throws OsmTransferException {
+        DataSet ds = new DataSet();
+        List<OsmPrimitive> primitives = new ArrayList<>();
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            Node n = new Node(new LatLon(0, i * 0.001));
+            ds.addPrimitive(n);
+            nodes.add(n);
+        }
+        primitives.addAll(nodes);
+        for (int i = 0; i < 100; i++) {
+            Way w = new Way();
+            w.setNodes(nodes.subList(3 * i, 3 * i + 3));
+            ds.addPrimitive(w);
+            primitives.add(w);
+        }
+
+        OsmServerWriter writer = new OsmServerWriter();
+        writer.uploadOsm(new UploadStrategySpecification().setStrategy(UploadStrategy.CHUNKED_DATASET_STRATEGY).setChunkSize(50),
+                primitives, new Changeset(), null);
+
+        assertEquals(new ArrayList<String>(), errors);
+        assertEquals(400, writer.getProcessedPrimitives().size());
+        for (OsmPrimitive p : primitives) {
+            assertFalse(p.isNew());
+            assertEquals(1, p.getChangesetId());
+        }
+        assertTrue(primitives.get(399).getId() > 300);
+        // the size doubles with each fast response
+        assertEquals(50, (int) chunkSizes.get(0));
+        assertEquals(100, (int) chunkSizes.get(1));
+        assertEquals(200, (int) chunkSizes.get(2));
+        assertEquals(400, chunkSizes.stream().mapToInt(Integer::intValue).sum());
+    }
+
+    /**
+     * Test that an upload canceled while the request is written is aborted, instead of sending a truncated
+     * osmChange document which the server would apply.
+     * @throws OsmTransferException if the changeset cannot be opened
+     */
+    @Test
+    public void testCancelWhileWriting() throws OsmTransferException {
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            nodes.add(new Node(new LatLon(0, i * 0.001)));
+        }
+        OsmApi api = OsmApi.getOsmApi();
+        api.initialize(null);
+        Changeset changeset = new Changeset();
+        api.openChangeset(changeset, NullProgressMonitor.INSTANCE);
+        api.setChangeset(changeset);
+        // cancel the upload when the 100th node is written
+        List<Node> list = new AbstractList<Node>() {
+            @Override
+            public Node get(int index) {
+                if (index == 100) {
+                    api.cancel = true;
+                }
+                return nodes.get(index);
+            }
+
+            @Override
+            public int size() {
+                return nodes.size();
+            }
+        };
+        try {
+            api.uploadDiffWithoutPostProcessing(list, NullProgressMonitor.INSTANCE);
+            fail("Upload not canceled");
+        } catch (OsmTransferCanceledException e) {
+            Main.trace(e);
+        }
+        // wait for the request to be handled
+        server.stop(5);
+        assertEquals(new ArrayList<Integer>(), chunkSizes);
+    }
+}
@@ -0,0 +1,359 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.RelationMember;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link PbfReader} class.
+ */
+public class PbfReaderTest {
+
+    /**
+     * Setup rule
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules();
+
+    /**
+     * Minimal protocol buffer encoder.
+     */
+    private static final class ProtobufEncoder {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        ProtobufEncoder varint(long value) {
+            while ((value & ~0x7fL) != 0) {
+                out.write((int) ((value & 0x7f) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+            return this;
+        }
+
+        ProtobufEncoder key(int field, int wireType) {
+            return varint(field << 3 | wireType);
+        }
+
+        ProtobufEncoder uint(int field, long value) {
+            return key(field, 0).varint(value);
+        }
+
+        ProtobufEncoder sint(int field, long value) {
+            return uint(field, (value << 1) ^ (value >> 63));
+        }
+
+        ProtobufEncoder bytes(int field, byte[] value) {
+            key(field, 2).varint(value.length);
+            out.write(value, 0, value.length);
+            return this;
+        }
+
+        ProtobufEncoder string(int field, String value) {
+            return bytes(field, value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        ProtobufEncoder message(int field, ProtobufEncoder message) {
+            return bytes(field, message.toByteArray());
+        }
+
+        ProtobufEncoder packed(int field, long[] values, boolean signed, boolean delta) {
+            ProtobufEncoder packed = new ProtobufEncoder();
+            long last = 0;
+            for (long v : values) {
+                long value = delta ? v - last : v;
+                last = v;
+                packed.varint(signed ? (value << 1) ^ (value >> 63) : value);
+            }
+            return message(field, packed);
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * Writes a data set to the PBF format, using dense nodes and one primitive block per 8000 primitives.
+     * @param ds the data set
+     * @param out the output stream
+     * @throws IOException if an I/O error occurs
+     */
+    static void writePbf(DataSet ds, OutputStream out) throws IOException {
+        DataOutputStream dos = new DataOutputStream(out);
+        ProtobufEncoder header = new ProtobufEncoder()
+                .message(1, new ProtobufEncoder().sint(1, -180_000_000_000L).sint(2, 180_000_000_000L)
+                        .sint(3, 90_000_000_000L).sint(4, -90_000_000_000L))
+                .string(4, "OsmSchema-V0.6")
+                .string(4, "DenseNodes")
+                .string(16, "josm-test");
+        writeBlob(dos, "OSMHeader", header.toByteArray());
+
+        List<OsmPrimitive> primitives = new ArrayList<>();
+        primitives.addAll(ds.getNodes());
+        primitives.addAll(ds.getWays());
+        primitives.addAll(ds.getRelations());
+        primitives.removeIf(OsmPrimitive::isIncomplete);
+        for (int start = 0; start < primitives.size(); start += 8000) {
+            writeBlob(dos, "OSMData", encodeBlock(primitives.subList(start, Math.min(primitives.size(), start + 8000))));
+        }
+        dos.flush();
+    }
+
+    private static int getString(Map<String, Integer> strings, String s) {
+        return strings.computeIfAbsent(s, k -> strings.size());
+    }
+
+    private static byte[] encodeBlock(Collection<OsmPrimitive> primitives) {
+        Map<String, Integer> strings = new HashMap<>();
+        getString(strings, "");
+        List<Node> nodes = new ArrayList<>();
+        ProtobufEncoder others = new ProtobufEncoder();
+        for (OsmPrimitive p : primitives) {
+            if (p instanceof Node) {
+                nodes.add((Node) p);
+                continue;
+            }
+            long[] keys = new long[p.getKeys().size()];
+            long[] values = new long[keys.length];
+            int i = 0;
+            for (Map.Entry<String, String> e : p.getKeys().entrySet()) {
+                keys[i] = getString(strings, e.getKey());
+                values[i++] = getString(strings, e.getValue());
+            }
+            ProtobufEncoder info = new ProtobufEncoder().uint(1, p.getVersion()).uint(2, p.getRawTimestamp())
+                    .uint(3, p.getChangesetId());
+            if (p.getUser() != null) {
+                info.uint(4, p.getUser().getId()).uint(5, getString(strings, p.getUser().getName()));
+            }
+            ProtobufEncoder encoded = new ProtobufEncoder().uint(1, p.getUniqueId())
+                    .packed(2, keys, false, false).packed(3, values, false, false).message(4, info);
+            if (p instanceof Way) {
+                encoded.packed(8, ((Way) p).getNodes().stream().mapToLong(Node::getUniqueId).toArray(), true, true);
+                others.message(3, encoded);
+            } else {
+                List<RelationMember> members = ((Relation) p).getMembers();
+                long[] roles = new long[members.size()];
+                long[] ids = new long[members.size()];
+                long[] types = new long[members.size()];
+                for (int m = 0; m < members.size(); m++) {
+                    roles[m] = getString(strings, members.get(m).getRole());
+                    ids[m] = members.get(m).getUniqueId();
+                    types[m] = members.get(m).getType().ordinal();
+                }
+                encoded.packed(8, roles, false, false).packed(9, ids, true, true).packed(10, types, false, false);
+                others.message(4, encoded);
+            }
+        }
+
+        ProtobufEncoder group = new ProtobufEncoder();
+        if (!nodes.isEmpty()) {
+            int n = nodes.size();
+            long[] ids = new long[n];
+            long[] lats = new long[n];
+            long[] lons = new long[n];
+            long[] versions = new long[n];
+            long[] timestamps = new long[n];
+            long[] changesets = new long[n];
+            long[] uids = new long[n];
+            long[] userSids = new long[n];
+            List<Long> keysVals = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                Node node = nodes.get(i);
+                ids[i] = node.getUniqueId();
+                lats[i] = Math.round(node.getCoor().lat() * 1e7);
+                lons[i] = Math.round(node.getCoor().lon() * 1e7);
+                versions[i] = node.getVersion();
+                timestamps[i] = node.getRawTimestamp();
+                changesets[i] = node.getChangesetId();
+                uids[i] = node.getUser() == null ? 0 : node.getUser().getId();
+                userSids[i] = node.getUser() == null ? 0 : getString(strings, node.getUser().getName());
+                for (Map.Entry<String, String> e : node.getKeys().entrySet()) {
+                    keysVals.add((long) getString(strings, e.getKey()));
+                    keysVals.add((long) getString(strings, e.getValue()));
+                }
+                keysVals.add(0L);
+            }
+            ProtobufEncoder denseInfo = new ProtobufEncoder().packed(1, versions, false, false)
+                    .packed(2, timestamps, true, true).packed(3, changesets, true, true)
+                    .packed(4, uids, true, true).packed(5, userSids, true, true);
+            group.message(2, new ProtobufEncoder().packed(1, ids, true, true).message(5, denseInfo)
+                    .packed(8, lats, true, true).packed(9, lons, true, true)
+                    .packed(10, keysVals.stream().mapToLong(Long::longValue).toArray(), false, false));
+        }
+
+        String[] table = new String[strings.size()];
+        strings.forEach((s, i) -> table[i] = s);
+        ProtobufEncoder stringTable = new ProtobufEncoder();
+        for (String s : table) {
+            stringTable.string(1, s);
+        }
+        ProtobufEncoder block = new ProtobufEncoder().message(1, stringTable);
+        if (!nodes.isEmpty()) {
+            block.message(2, group);
+        }
+        byte[] otherGroups = others.toByteArray();
+        if (otherGroups.length > 0) {
+            block.bytes(2, otherGroups);
+        }
+        // granularity of 100 nanodegrees, timestamps in seconds
+        return block.uint(17, 100).uint(18, 1000).toByteArray();
+    }
+
+    private static void writeBlob(DataOutputStream out, String type, byte[] data) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (DeflaterOutputStream deflater = new DeflaterOutputStream(compressed, new Deflater(Deflater.BEST_SPEED))) {
+            deflater.write(data);
+        }
+        byte[] blob = new ProtobufEncoder().uint(2, data.length).bytes(3, compressed.toByteArray()).toByteArray();
+        byte[] header = new ProtobufEncoder().string(1, type).uint(3, blob.length).toByteArray();
+        out.writeInt(header.length);
+        out.write(header);
+        out.write(blob);
+    }
+
+    /**
+     * Test that the data read from a PBF file equals the data of the XML file it was created from.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testReadDataSet() throws Exception {
+        DataSet xml;
+        try (InputStream in = new FileInputStream("data_nodist/filterTests.osm")) {
+            xml = OsmReader.parseDataSet(in, null);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writePbf(xml, out);
+        DataSet pbf = PbfReader.parseDataSet(new ByteArrayInputStream(out.toByteArray()), null);
+
+        assertEquals(xml.allPrimitives().size(), pbf.allPrimitives().size());
+        assertFalse(pbf.getDataSources().isEmpty());
+        for (OsmPrimitive expected : xml.allPrimitives()) {
+            OsmPrimitive actual = pbf.getPrimitiveById(expected);
+            assertNotNull(expected.toString(), actual);
+            assertEquals(expected.isIncomplete(), actual.isIncomplete());
+            if (expected.isIncomplete()) {
+                continue;
+            }
+            assertEquals(expected.getKeys(), actual.getKeys());
+            assertEquals(expected.getVersion(), actual.getVersion());
+            assertEquals(expected.getRawTimestamp(), actual.getRawTimestamp());
+            assertEquals(expected.getUser(), actual.getUser());
+            if (expected instanceof Node) {
+                assertTrue(((Node) expected).getCoor().equalsEpsilon(((Node) actual).getCoor()));
+            } else if (expected instanceof Way) {
+                assertEquals(((Way) expected).getNodes().size(), ((Way) actual).getNodes().size());
+                for (int i = 0; i < ((Way) expected).getNodesCount(); i++) {
+                    assertEquals(((Way) expected).getNodeId(i), ((Way) actual).getNodeId(i));
+                }
+            } else {
+                List<RelationMember> expectedMembers = ((Relation) expected).getMembers();
+                List<RelationMember> actualMembers = ((Relation) actual).getMembers();
+                assertEquals(expectedMembers.size(), actualMembers.size());
+                for (int i = 0; i < expectedMembers.size(); i++) {
+                    assertEquals(expectedMembers.get(i).getRole(), actualMembers.get(i).getRole());
+                    assertEquals(expectedMembers.get(i).getMember().getPrimitiveId(),
+                            actualMembers.get(i).getMember().getPrimitiveId());
+                }
+            }
+        }
+    }
+
+    /**
+     * Test that a simple file with one node and an incomplete way member is read correctly.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testIncompleteMembers() throws Exception {
+        DataSet ds = new DataSet();
+        Node n = new Node(1, 1);
+        n.setCoor(new LatLon(53.5, 13.25));
+        n.put("amenity", "bench");
+        ds.addPrimitive(n);
+        Way w = new Way(2, 1);
+        w.setNodes(Arrays.asList(n, new Node(3)));
+        ds.addPrimitive(w.getNode(1));
+        ds.addPrimitive(w);
+        Relation r = new Relation(4, 1);
+        r.addMember(new RelationMember("outer", new Way(5)));
+        ds.addPrimitive(r.getMember(0).getMember());
+        ds.addPrimitive(r);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // incomplete primitives are not written
+        writePbf(ds, out);
+        byte[] data = out.toByteArray();
+        DataSet read = PbfReader.parseDataSet(new ByteArrayInputStream(data), null);
+        Node readNode = (Node) read.getPrimitiveById(1, OsmPrimitiveType.NODE);
+        assertEquals("bench", readNode.get("amenity"));
+        assertTrue(new LatLon(53.5, 13.25).equalsEpsilon(readNode.getCoor()));
+        assertTrue(read.getPrimitiveById(3, OsmPrimitiveType.NODE).isIncomplete());
+        assertTrue(read.getPrimitiveById(5, OsmPrimitiveType.WAY).isIncomplete());
+        Relation readRelation = (Relation) read.getPrimitiveById(4, OsmPrimitiveType.RELATION);
+        assertEquals(1, readRelation.getMembersCount());
+        assertEquals("outer", readRelation.getMember(0).getRole());
+        assertEquals(5, readRelation.getMember(0).getUniqueId());
+    }
+
+    /**
+     * Test that truncated data is rejected.
+     * @throws Exception if an error occurs
+     */
+    @Test(expected = IllegalDataException.class)
+    public void testTruncated() throws Exception {
+        DataSet ds = new DataSet();
+        Node n = new Node(1, 1);
+        n.setCoor(new LatLon(53.5, 13.25));
+        ds.addPrimitive(n);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writePbf(ds, out);
+        byte[] data = out.toByteArray();
+        PbfReader.parseDataSet(new ByteArrayInputStream(data, 0, data.length - 5), null);
+    }
+
+    /**
+     * Test that duplicate keys are merged like in the XML format, keeping the last value.
+     */
+    @Test
+    public void testMergeDuplicateKeys() {
+        String[] tags = {"a", "1", "b", "2"};
+        assertSame(tags, PbfReader.mergeDuplicateKeys(tags));
+        assertArrayEquals(new String[] {"a", "3", "b", "4"},
+                PbfReader.mergeDuplicateKeys(new String[] {"a", "1", "b", "2", "a", "3", "b", "4", "a", "3"}));
+    }
+}
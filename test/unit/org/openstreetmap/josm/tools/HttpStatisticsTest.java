@@ -0,0 +1,102 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link HttpStatistics}, and of the reuse of connections by {@link HttpClient}.
+ */
+public class HttpStatisticsTest {
+
+    /**
+     * Setup test.
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules().preferences();
+
+    private HttpServer server;
+    private final Set<InetSocketAddress> clients = Collections.synchronizedSet(new HashSet<>());
+
+    /**
+     * Starts a local HTTP server.
+     * @throws IOException if the server cannot be started
+     */
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/ok", exchange -> reply(exchange, 200, "0123456789"));
+        server.createContext("/missing", exchange -> reply(exchange, 404, "not found"));
+        server.start();
+    }
+
+    /**
+     * Stops the local HTTP server.
+     */
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private void reply(HttpExchange exchange, int status, String body) throws IOException {
+        clients.add(exchange.getRemoteAddress());
+        try (InputStream in = exchange.getRequestBody()) {
+            while (in.read() != -1) {
+                // skip
+            }
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Test that the requests are counted, and that one connection is used for consecutive requests,
+     * including requests answered with an error which is not read.
+     * @throws IOException if a request fails
+     */
+    @Test
+    public void testKeepAlive() throws IOException {
+        String base = "http://127.0.0.1:" + server.getAddress().getPort();
+        HttpStatistics statistics = HttpStatistics.getHost("127.0.0.1");
+        long requests = statistics.getRequestCount();
+        long bytes = statistics.getBytesReceived();
+        for (int i = 0; i < 3; i++) {
+            assertEquals("0123456789", HttpClient.create(new URL(base + "/ok")).connect().fetchContent());
+            HttpClient.Response response = HttpClient.create(new URL(base + "/missing")).connect();
+            assertEquals(404, response.getResponseCode());
+            response.release();
+        }
+        assertEquals(1, clients.size());
+        assertEquals(requests + 6, statistics.getRequestCount());
+        // the bodies of error responses are read by the response as well
+        assertEquals(bytes + 3 * (10 + 9), statistics.getBytesReceived());
+        assertTrue(statistics.getAverageLatency() > 0);
+        assertTrue(statistics.getThroughput() > 0);
+        assertTrue(HttpStatistics.getHosts().containsKey("127.0.0.1"));
+    }
+}